@@ -0,0 +1,81 @@
+package eu.bidin.benchmarks;
+
+import eu.bidin.springexample.entities.Student;
+import eu.bidin.utility.ConcurrentMyHashtable;
+import eu.bidin.utility.MyHashtable;
+import eu.bidin.utility.Table;
+import eu.bidin.utility.UuidHashtable;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Aggregates over the whole table with sequential and parallel streams, the parallel ones run on the common
+ * fork-join pool, which has as many threads as there are cores.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+public class AggregateBenchmark {
+
+    @Param({Tables.MY_HASHTABLE, Tables.CONCURRENT_MY_HASHTABLE, Tables.UUID_HASHTABLE})
+    public String implementation;
+
+    @Param({"false", "true"})
+    public boolean parallel;
+
+    @Param({"1000000"})
+    public int size;
+
+    private Table<UUID, Student> table;
+
+    @Setup
+    public void setup() {
+        switch (implementation) {
+            case Tables.MY_HASHTABLE:
+                table = new MyHashtable<>();
+                break;
+            case Tables.CONCURRENT_MY_HASHTABLE:
+                table = new ConcurrentMyHashtable<>();
+                break;
+            default:
+                table = new UuidHashtable<>();
+                break;
+        }
+
+        UUID[] keys = Tables.keys(size, 1);
+        for (int i = 0; i < size; i++)
+            table.put(keys[i], Tables.student(keys[i], i));
+    }
+
+    private Stream<Student> students() {
+        return StreamSupport.stream(table.spliterator(), parallel).map(MyHashtable.TableEntry::getValue);
+    }
+
+    @Benchmark
+    public Map<Integer, Long> gradeHistogram() {
+        return students().collect(Collectors.groupingBy(Student::getGrade, Collectors.counting()));
+    }
+
+    @Benchmark
+    public double averageGrade() {
+        return students().mapToInt(Student::getGrade).average().orElse(0);
+    }
+
+    @Benchmark
+    public Map<Integer, Long> nameInitials() {
+        return students().collect(Collectors.groupingBy(s -> s.getName().codePointAt(0), Collectors.counting()));
+    }
+}
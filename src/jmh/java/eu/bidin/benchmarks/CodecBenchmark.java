@@ -0,0 +1,130 @@
+package eu.bidin.benchmarks;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import eu.bidin.springexample.codecs.StudentProtobuf;
+import eu.bidin.springexample.entities.Student;
+import eu.bidin.springexample.models.StudentBatchModel;
+import eu.bidin.springexample.models.StudentModel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encoding and decoding of single students and of bulk dumps, in JSON with Jackson and in the binary format of
+ * {@link StudentProtobuf}. Bulk dumps are encoded like {@code GET /students} writes them and decoded like a client
+ * would read them, a record at a time. The size of a dump in each format is printed by the setup.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Thread)
+public class CodecBenchmark {
+
+    @Param({"1000"})
+    public int size;
+
+    private ObjectMapper mapper;
+    private Student[] students;
+    private byte[] studentJson;
+    private byte[] studentProtobuf;
+    private byte[] modelJson;
+    private byte[] modelProtobuf;
+    private byte[] bulkJson;
+    private byte[] bulkProtobuf;
+
+    @Setup
+    public void setup() throws IOException {
+        mapper = new ObjectMapper();
+        UUID[] keys = Tables.keys(size, 1);
+        students = new Student[size];
+        for (int i = 0; i < size; i++)
+            students[i] = Tables.student(keys[i], i);
+
+        studentJson = mapper.writeValueAsBytes(students[0]);
+        studentProtobuf = StudentProtobuf.encode(students[0]);
+        StudentModel model = new StudentModel();
+        model.setName(students[0].getName());
+        model.setGrade(students[0].getGrade());
+        modelJson = mapper.writeValueAsBytes(model);
+        modelProtobuf = StudentProtobuf.encode(model);
+        bulkJson = encodeJsonBulk();
+        bulkProtobuf = encodeProtobufBulk();
+
+        System.out.printf("%nstudent: %d bytes of JSON, %d bytes of protobuf%n", studentJson.length, studentProtobuf.length);
+        System.out.printf("bulk: %d bytes of JSON, %d bytes of protobuf%n", bulkJson.length, bulkProtobuf.length);
+    }
+
+    @Benchmark
+    public byte[] encodeJson() throws IOException {
+        return mapper.writeValueAsBytes(students[0]);
+    }
+
+    @Benchmark
+    public byte[] encodeProtobuf() {
+        return StudentProtobuf.encode(students[0]);
+    }
+
+    @Benchmark
+    public StudentModel decodeJson() throws IOException {
+        return mapper.readValue(modelJson, StudentModel.class);
+    }
+
+    @Benchmark
+    public StudentModel decodeProtobuf() throws IOException {
+        return StudentProtobuf.decodeModel(modelProtobuf);
+    }
+
+    @Benchmark
+    public byte[] encodeJsonBulk() throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (JsonGenerator generator = mapper.getFactory().createGenerator(output)) {
+            generator.writeStartArray();
+            for (Student student : students)
+                generator.writeObject(student);
+            generator.writeEndArray();
+        }
+        return output.toByteArray();
+    }
+
+    @Benchmark
+    public byte[] encodeProtobufBulk() throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        for (Student student : students)
+            StudentProtobuf.writeDelimited(output, student);
+        return output.toByteArray();
+    }
+
+    @Benchmark
+    public int decodeJsonBulk() throws IOException {
+        int count = 0;
+        try (MappingIterator<StudentBatchModel> iterator = mapper.readerFor(StudentBatchModel.class).readValues(bulkJson)) {
+            while (iterator.hasNextValue()) {
+                iterator.nextValue();
+                count += 1;
+            }
+        }
+        return count;
+    }
+
+    @Benchmark
+    public int decodeProtobufBulk() throws IOException {
+        int count = 0;
+        InputStream input = new ByteArrayInputStream(bulkProtobuf);
+        while (StudentProtobuf.readDelimited(input) != null)
+            count += 1;
+        return count;
+    }
+}
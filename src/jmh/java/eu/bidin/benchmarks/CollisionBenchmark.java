@@ -0,0 +1,74 @@
+package eu.bidin.benchmarks;
+
+import eu.bidin.springexample.entities.Student;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Single-threaded operations on a table whose keys all have the same hash code, so they share a single slot.
+ * A chain makes every operation O(n), a tree O(log n).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class CollisionBenchmark {
+
+    @Param({Tables.MY_HASHTABLE, Tables.CONCURRENT_MY_HASHTABLE, Tables.UUID_HASHTABLE, Tables.HASH_MAP, Tables.CONCURRENT_HASH_MAP})
+    public String implementation;
+
+    @Param({"1000", "10000"})
+    public int size;
+
+    private Tables.Table table;
+    private UUID[] keys;
+    private UUID[] missingKeys;
+    private Student[] students;
+    private int next;
+
+    @Setup
+    public void setup() {
+        table = Tables.create(implementation);
+        keys = Tables.collidingKeys(size, 1);
+        missingKeys = Tables.collidingKeys(size, 2);
+        students = new Student[size];
+        for (int i = 0; i < size; i++) {
+            students[i] = Tables.student(keys[i], i);
+            table.put(keys[i], students[i]);
+        }
+    }
+
+    private int nextIndex() {
+        int index = next;
+        next = index + 1 == size ? 0 : index + 1;
+        return index;
+    }
+
+    @Benchmark
+    public Student get() {
+        return table.get(keys[nextIndex()]);
+    }
+
+    @Benchmark
+    public Student getMissing() {
+        return table.get(missingKeys[nextIndex()]);
+    }
+
+    /**
+     * Adds a new colliding key and removes it again, so the size of the table stays the same.
+     */
+    @Benchmark
+    public void putRemove() {
+        int index = nextIndex();
+        table.put(missingKeys[index], students[index]);
+        table.remove(missingKeys[index]);
+    }
+}
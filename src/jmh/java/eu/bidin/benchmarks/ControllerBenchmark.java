@@ -0,0 +1,184 @@
+package eu.bidin.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import eu.bidin.springexample.cache.CacheProperties;
+import eu.bidin.springexample.cache.StudentCache;
+import eu.bidin.springexample.controllers.StudentController;
+import eu.bidin.springexample.entities.Student;
+import eu.bidin.springexample.indexes.StudentIndex;
+import eu.bidin.springexample.models.StudentModel;
+import eu.bidin.springexample.models.StudentPage;
+import eu.bidin.springexample.replication.ChangeLog;
+import eu.bidin.springexample.replication.ReplicaStatus;
+import eu.bidin.springexample.replication.ReplicationProperties;
+import eu.bidin.springexample.services.StudentService;
+import eu.bidin.springexample.sharding.ShardClient;
+import eu.bidin.springexample.sharding.ShardDirectory;
+import eu.bidin.springexample.sharding.ShardingProperties;
+import eu.bidin.utility.ConcurrentMyHashtable;
+import eu.bidin.utility.Table;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.servlet.mvc.method.annotation.MvcUriComponentsBuilder;
+
+import java.io.ByteArrayOutputStream;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+
+/**
+ * Hot paths of {@link StudentController}: called directly, directly followed by JSON serialization, and end-to-end
+ * through the Spring MVC dispatcher (argument resolution, message converters, response status) with {@link MockMvc}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+public class ControllerBenchmark {
+
+    @Param({"10000"})
+    public int size;
+
+    private Table<UUID, Student> database;
+    private StudentService service;
+    private StudentController controller;
+    private ObjectMapper mapper;
+    private MockMvc mvc;
+    private String[] uuids;
+    private StudentModel model;
+    private byte[] modelJson;
+    private int next;
+
+    @Setup
+    public void setup() throws Exception {
+        database = new ConcurrentMyHashtable<>();
+        UUID[] keys = Tables.keys(size, 1);
+        uuids = new String[size];
+        for (int i = 0; i < size; i++) {
+            database.put(keys[i], Tables.student(keys[i], i));
+            uuids[i] = keys[i].toString();
+        }
+
+        mapper = new ObjectMapper();
+        ShardingProperties sharding = new ShardingProperties();
+        ShardDirectory shards = new ShardDirectory(sharding);
+        ReplicationProperties replication = new ReplicationProperties();
+        service = new StudentService(database, new StudentIndex(database), new StudentCache(new CacheProperties()), mapper, shards,
+                new ChangeLog(replication), new ReplicaStatus(replication));
+        controller = new StudentController(service, mapper, shards, new ShardClient(shards, sharding, mapper, WebClient.builder()));
+        mvc = MockMvcBuilders.standaloneSetup(controller).build();
+
+        model = new StudentModel();
+        model.setName("benchmark");
+        model.setGrade(3);
+        modelJson = mapper.writeValueAsBytes(model);
+
+        // createStudent builds its Location header from the current request
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+    }
+
+    @TearDown
+    public void tearDown() {
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    private String nextUuid() {
+        String uuid = uuids[next];
+        next = next + 1 == size ? 0 : next + 1;
+        return uuid;
+    }
+
+    /**
+     * Serves the cached JSON of a student; with the default cache size, all students are cached after warmup.
+     */
+    @Benchmark
+    public byte[] getStudent() {
+        return controller.getStudent(nextUuid(), null, null).getBody();
+    }
+
+    /**
+     * Serializes a student, as the controller did before it cached JSON.
+     */
+    @Benchmark
+    public byte[] getStudentUncached() throws Exception {
+        return mapper.writeValueAsBytes(database.get(UUID.fromString(nextUuid())));
+    }
+
+    @Benchmark
+    public byte[] getStudentMvc() throws Exception {
+        return mvc.perform(get("/students/{uuid}", nextUuid()))
+                .andReturn().getResponse().getContentAsByteArray();
+    }
+
+    @Benchmark
+    public StudentPage getStudentPage() {
+        return controller.getStudentPage(null, 100);
+    }
+
+    @Benchmark
+    public byte[] getStudentPageJson() throws Exception {
+        return mapper.writeValueAsBytes(controller.getStudentPage(null, 100));
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public int getStudentsStreamed() throws Exception {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        controller.getStudents(null, null, null).getBody().writeTo(output);
+        return output.size();
+    }
+
+    /**
+     * Creates a student and removes it from the table again, so the table keeps its size.
+     */
+    @Benchmark
+    public ResponseEntity createStudent() {
+        ResponseEntity response = controller.createStudent(model);
+        String path = response.getHeaders().getLocation().getPath();
+        database.remove(UUID.fromString(path.substring(path.lastIndexOf('/') + 1)));
+        return response;
+    }
+
+    /**
+     * The create path as it was before the templates of actions were cached: the Location header is built by
+     * {@link MvcUriComponentsBuilder}, which looks up the method and records a call on a proxy of the controller.
+     */
+    @Benchmark
+    public ResponseEntity createStudentMvcUriComponentsBuilder() {
+        UUID key = service.createStudent(model);
+        HttpHeaders headers = new HttpHeaders();
+        headers.setLocation(MvcUriComponentsBuilder
+                .fromMethodName(StudentController.class, "getStudent", key.toString(), null, null)
+                .buildAndExpand(key.toString(), null, null)
+                .toUri());
+        database.remove(key);
+        return new ResponseEntity(headers, HttpStatus.CREATED);
+    }
+
+    @Benchmark
+    public String createStudentMvc() throws Exception {
+        String location = mvc.perform(post("/students").contentType(MediaType.APPLICATION_JSON).content(modelJson))
+                .andReturn().getResponse().getHeader("Location");
+        mvc.perform(delete(location));
+        return location;
+    }
+}
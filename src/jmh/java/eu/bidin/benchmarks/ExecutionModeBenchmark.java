@@ -0,0 +1,133 @@
+package eu.bidin.benchmarks;
+
+import eu.bidin.springexample.Application;
+import eu.bidin.springexample.models.StudentModel;
+import eu.bidin.springexample.services.StudentService;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.boot.Banner;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+import reactor.netty.resources.LoopResources;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Load test of the execution modes: the application is started in servlet (Tomcat, a thread per request) or reactive
+ * (Netty, event loops) mode and sent rounds of {@code concurrency} simultaneous requests, each over its own connection.
+ * The score is rounds per second; the {@code requests} counter is the number of requests per second.
+ * <p>
+ * The client runs on its own event loops, so it does not compete with the reactive server for them.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+public class ExecutionModeBenchmark {
+
+    @Param({"servlet", "reactive"})
+    public String mode;
+
+    @Param({"16", "256", "1024"})
+    public int concurrency;
+
+    @Param({"10000"})
+    public int size;
+
+    private ConfigurableApplicationContext context;
+    private LoopResources loops;
+    private WebClient client;
+    private String[] uuids;
+    private StudentModel model;
+
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class Requests {
+
+        public long requests;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            requests = 0;
+        }
+    }
+
+    @Setup
+    public void setup() {
+        SpringApplicationBuilder application = new SpringApplicationBuilder(Application.class)
+                .bannerMode(Banner.Mode.OFF)
+                .properties("server.port=0");
+        if (mode.equals("reactive"))
+            application.profiles("reactive");
+        context = application.run();
+
+        model = new StudentModel();
+        model.setName("benchmark");
+        model.setGrade(3);
+        StudentService service = context.getBean(StudentService.class);
+        uuids = new String[size];
+        for (int i = 0; i < size; i++)
+            uuids[i] = service.createStudent(model).toString();
+
+        int port = context.getEnvironment().getRequiredProperty("local.server.port", Integer.class);
+        loops = LoopResources.create("load");
+        HttpClient http = HttpClient.create(ConnectionProvider.fixed("load", concurrency))
+                .tcpConfiguration(tcp -> tcp.runOn(loops));
+        client = WebClient.builder()
+                .baseUrl("http://localhost:" + port)
+                .clientConnector(new ReactorClientHttpConnector(http))
+                .build();
+    }
+
+    @TearDown
+    public void tearDown() {
+        loops.dispose();
+        context.close();
+    }
+
+    private long round(Mono<?> request, Requests requests) {
+        long count = Flux.range(0, concurrency)
+                .flatMap(i -> request, concurrency)
+                .count()
+                .block();
+        requests.requests += count;
+        return count;
+    }
+
+    @Benchmark
+    public long getStudent(Requests requests) {
+        Mono<byte[]> request = Mono.defer(() -> client.get()
+                .uri("/students/{uuid}", uuids[ThreadLocalRandom.current().nextInt(size)])
+                .retrieve()
+                .bodyToMono(byte[].class));
+        return round(request, requests);
+    }
+
+    @Benchmark
+    public long createStudent(Requests requests) {
+        Mono<HttpStatus> request = client.post()
+                .uri("/students")
+                .contentType(MediaType.APPLICATION_JSON)
+                .syncBody(model)
+                .exchange()
+                .flatMap(response -> response.bodyToMono(Void.class).thenReturn(response.statusCode()));
+        return round(request, requests);
+    }
+}
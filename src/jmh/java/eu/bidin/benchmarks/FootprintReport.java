@@ -0,0 +1,71 @@
+package eu.bidin.benchmarks;
+
+import eu.bidin.springexample.entities.Student;
+import org.openjdk.jol.info.ClassLayout;
+import org.openjdk.jol.info.GraphLayout;
+import org.openjdk.jol.vm.VM;
+
+import java.util.SplittableRandom;
+import java.util.UUID;
+
+/**
+ * Compares the heap footprint of students with the layout they had before they were compacted, a name string and a
+ * boxed grade per student. Run with {@code gradlew footprint}, optionally with {@code -Pstudents=<count>}.
+ */
+public final class FootprintReport {
+
+    /**
+     * The layout of a student before it was compacted.
+     */
+    private static final class LegacyStudent {
+
+        private final UUID uuid;
+        private String name;
+        private Integer grade;
+        private final int version;
+
+        private LegacyStudent(UUID uuid, String name, Integer grade, int version) {
+            this.uuid = uuid;
+            this.name = name;
+            this.grade = grade;
+            this.version = version;
+        }
+    }
+
+    private FootprintReport() {
+    }
+
+    public static void main(String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+
+        System.out.println(VM.current().details());
+        System.out.println(ClassLayout.parseClass(LegacyStudent.class).toPrintable());
+        System.out.println(ClassLayout.parseClass(Student.class).toPrintable());
+
+        // names of real students repeat, every name is a new string as it is read from a request
+        report("unique names", count, count);
+        report("1000 distinct names", count, 1000);
+    }
+
+    private static void report(String title, int count, int distinctNames) {
+        SplittableRandom random = new SplittableRandom(42);
+        UUID[] keys = new UUID[count];
+        LegacyStudent[] legacy = new LegacyStudent[count];
+        Student[] compact = new Student[count];
+        for (int i = 0; i < count; i++) {
+            keys[i] = new UUID(random.nextLong(), random.nextLong());
+            int grade = i % 5 + 1;
+            legacy[i] = new LegacyStudent(keys[i], new String("student" + i % distinctNames), grade, 1);
+            compact[i] = new Student(keys[i], new String("student" + i % distinctNames), grade, 1);
+        }
+
+        // the keys are shared with the table, only the students and what they hold are counted
+        long keysSize = GraphLayout.parseInstance((Object) keys).totalSize();
+        long legacySize = GraphLayout.parseInstance((Object) legacy).totalSize() - keysSize;
+        long compactSize = GraphLayout.parseInstance((Object) compact).totalSize() - keysSize;
+        System.out.printf("%s, %d students:%n", title, count);
+        System.out.printf("  legacy:  %,d bytes, %.1f per student%n", legacySize, (double) legacySize / count);
+        System.out.printf("  compact: %,d bytes, %.1f per student (%.0f%% less)%n",
+                compactSize, (double) compactSize / count, 100.0 * (legacySize - compactSize) / legacySize);
+    }
+}
@@ -0,0 +1,87 @@
+package eu.bidin.benchmarks;
+
+import eu.bidin.springexample.entities.Student;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Random reads and writes of a shared table, with different read ratios and thread counts.
+ * Writes put or remove keys of a pool twice the size of the table, so its size stays around the initial one.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class MixedWorkloadBenchmark {
+
+    @Param({Tables.CONCURRENT_MY_HASHTABLE, Tables.UUID_HASHTABLE, Tables.SYNCHRONIZED_HASH_MAP, Tables.CONCURRENT_HASH_MAP})
+    public String implementation;
+
+    @Param({"50", "90", "99"})
+    public int readPercent;
+
+    @Param({"100000"})
+    public int size;
+
+    private Tables.Table table;
+    private UUID[] keys;
+    private Student[] students;
+
+    @State(Scope.Thread)
+    public static class ThreadState {
+
+        private final SplittableRandom random = new SplittableRandom();
+    }
+
+    @Setup
+    public void setup() {
+        table = Tables.create(implementation);
+        keys = Tables.keys(size * 2, 1);
+        students = new Student[keys.length];
+        for (int i = 0; i < keys.length; i++)
+            students[i] = Tables.student(keys[i], i);
+        for (int i = 0; i < keys.length; i += 2)
+            table.put(keys[i], students[i]);
+    }
+
+    private Student operation(ThreadState state) {
+        SplittableRandom random = state.random;
+        int index = random.nextInt(keys.length);
+        int operation = random.nextInt(100);
+        if (operation < readPercent)
+            return table.get(keys[index]);
+        if ((operation & 1) == 0)
+            table.put(keys[index], students[index]);
+        else
+            table.remove(keys[index]);
+        return null;
+    }
+
+    @Benchmark
+    @Threads(1)
+    public Student threads1(ThreadState state) {
+        return operation(state);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Student threads4(ThreadState state) {
+        return operation(state);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public Student threads8(ThreadState state) {
+        return operation(state);
+    }
+}
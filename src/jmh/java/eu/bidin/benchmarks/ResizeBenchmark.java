@@ -0,0 +1,65 @@
+package eu.bidin.benchmarks;
+
+import eu.bidin.springexample.entities.Student;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fills a table that starts with its default capacity, so most of the time goes to resizing it.
+ * {@link #fillLatency} samples single puts, where a resize that is not incremental shows up as a long tail.
+ */
+@State(Scope.Thread)
+public class ResizeBenchmark {
+
+    @Param({Tables.MY_HASHTABLE, Tables.MY_HASHTABLE_INCREMENTAL, Tables.CONCURRENT_MY_HASHTABLE, Tables.UUID_HASHTABLE,
+            Tables.HASH_MAP, Tables.CONCURRENT_HASH_MAP})
+    public String implementation;
+
+    @Param({"1000", "100000"})
+    public int size;
+
+    private UUID[] keys;
+    private Student[] students;
+    private Tables.Table table;
+    private int next;
+
+    @Setup
+    public void setup() {
+        keys = Tables.keys(size, 1);
+        students = new Student[size];
+        for (int i = 0; i < size; i++)
+            students[i] = Tables.student(keys[i], i);
+        table = Tables.create(implementation);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public Tables.Table fill() {
+        Tables.Table table = Tables.create(implementation);
+        for (int i = 0; i < size; i++)
+            table.put(keys[i], students[i]);
+        return table;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public void fillLatency() {
+        if (next == size) {
+            table = Tables.create(implementation);
+            next = 0;
+        }
+        table.put(keys[next], students[next]);
+        next += 1;
+    }
+}
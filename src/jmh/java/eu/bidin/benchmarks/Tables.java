@@ -0,0 +1,164 @@
+package eu.bidin.benchmarks;
+
+import eu.bidin.springexample.entities.Student;
+import eu.bidin.utility.ConcurrentMyHashtable;
+import eu.bidin.utility.MyHashtable;
+import eu.bidin.utility.UuidHashtable;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Common interface of the compared hash tables, so every benchmark runs the same code against each of them.
+ */
+public final class Tables {
+
+    public interface Table {
+
+        Student get(UUID key);
+
+        void put(UUID key, Student value);
+
+        void remove(UUID key);
+
+        /**
+         * Visits all elements, returns a value derived from them so the iteration is not optimized away.
+         */
+        long iterate();
+    }
+
+    private static final class MyHashtableTable implements Table {
+
+        private final eu.bidin.utility.Table<UUID, Student> table;
+
+        private MyHashtableTable(eu.bidin.utility.Table<UUID, Student> table) {
+            this.table = table;
+        }
+
+        @Override
+        public Student get(UUID key) {
+            return table.get(key);
+        }
+
+        @Override
+        public void put(UUID key, Student value) {
+            table.put(key, value);
+        }
+
+        @Override
+        public void remove(UUID key) {
+            table.remove(key);
+        }
+
+        @Override
+        public long iterate() {
+            long sum = 0;
+            for (MyHashtable.TableEntry<UUID, Student> entry : table)
+                sum += entry.getValue().getGrade();
+            return sum;
+        }
+    }
+
+    private static final class MapTable implements Table {
+
+        private final Map<UUID, Student> map;
+
+        private MapTable(Map<UUID, Student> map) {
+            this.map = map;
+        }
+
+        @Override
+        public Student get(UUID key) {
+            return map.get(key);
+        }
+
+        @Override
+        public void put(UUID key, Student value) {
+            map.put(key, value);
+        }
+
+        @Override
+        public void remove(UUID key) {
+            map.remove(key);
+        }
+
+        @Override
+        public long iterate() {
+            long sum = 0;
+            for (Student student : map.values())
+                sum += student.getGrade();
+            return sum;
+        }
+    }
+
+    /**
+     * Names of all implementations, {@code HashMap} and {@code MyHashtable*} are not thread-safe.
+     */
+    public static final String MY_HASHTABLE = "MyHashtable";
+    public static final String MY_HASHTABLE_INCREMENTAL = "MyHashtableIncremental";
+    public static final String CONCURRENT_MY_HASHTABLE = "ConcurrentMyHashtable";
+    public static final String UUID_HASHTABLE = "UuidHashtable";
+    public static final String HASH_MAP = "HashMap";
+    public static final String SYNCHRONIZED_HASH_MAP = "SynchronizedHashMap";
+    public static final String CONCURRENT_HASH_MAP = "ConcurrentHashMap";
+
+    private Tables() {
+    }
+
+    /**
+     * Creates an empty table with the default initial capacity of its implementation.
+     */
+    public static Table create(String implementation) {
+        switch (implementation) {
+            case MY_HASHTABLE:
+                return new MyHashtableTable(new MyHashtable<>());
+            case MY_HASHTABLE_INCREMENTAL:
+                return new MyHashtableTable(new MyHashtable<>(16, 0.75, true));
+            case CONCURRENT_MY_HASHTABLE:
+                return new MyHashtableTable(new ConcurrentMyHashtable<>());
+            case UUID_HASHTABLE:
+                return new MyHashtableTable(new UuidHashtable<>());
+            case HASH_MAP:
+                return new MapTable(new HashMap<>());
+            case SYNCHRONIZED_HASH_MAP:
+                return new MapTable(Collections.synchronizedMap(new HashMap<>()));
+            case CONCURRENT_HASH_MAP:
+                return new MapTable(new ConcurrentHashMap<>());
+            default:
+                throw new IllegalArgumentException("Unknown implementation " + implementation);
+        }
+    }
+
+    /**
+     * Returns random keys, the same ones for the same seed.
+     */
+    public static UUID[] keys(int count, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        UUID[] keys = new UUID[count];
+        for (int i = 0; i < count; i++)
+            keys[i] = new UUID(random.nextLong(), random.nextLong());
+        return keys;
+    }
+
+    /**
+     * Returns random keys that all have the same {@link UUID#hashCode}, which folds both halves of a UUID with XOR:
+     * the halves of each key differ by the same bits.
+     */
+    public static UUID[] collidingKeys(int count, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        UUID[] keys = new UUID[count];
+        for (int i = 0; i < count; i++) {
+            long mostSignificantBits = random.nextLong();
+            keys[i] = new UUID(mostSignificantBits, mostSignificantBits ^ 0x5DEECE66DL);
+        }
+        return keys;
+    }
+
+    public static Student student(UUID key, int i) {
+        return new Student(key, "student" + i, i % 5 + 1);
+    }
+}
@@ -0,0 +1,95 @@
+package eu.bidin.benchmarks;
+
+import eu.bidin.springexample.exceptions.InvalidUuidException;
+import eu.bidin.utility.UuidParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing of valid and invalid UUIDs as they arrive in request paths, compared to {@link UUID#fromString}.
+ * Run with {@code -prof gc} to see the allocations per operation.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class UuidParserBenchmark {
+
+    private static final int COUNT = 1024;
+
+    private String[] valid;
+    private String[] invalid;
+    private int next;
+
+    @Setup
+    public void setup() {
+        UUID[] keys = Tables.keys(COUNT, 1);
+        valid = new String[COUNT];
+        invalid = new String[COUNT];
+        for (int i = 0; i < COUNT; i++) {
+            valid[i] = keys[i].toString();
+            // what scanners send: right length, wrong characters
+            invalid[i] = valid[i].substring(0, 35) + 'x';
+        }
+    }
+
+    private int nextIndex() {
+        int index = next;
+        next = (index + 1) & (COUNT - 1);
+        return index;
+    }
+
+    /**
+     * The parser as it was before, with the exception of {@link UUID#fromString} for invalid values.
+     */
+    private static UUID fromString(String value) {
+        try {
+            return UUID.fromString(value);
+        } catch (IllegalArgumentException ex) {
+            return null;
+        }
+    }
+
+    @Benchmark
+    public UUID fromStringValid() {
+        return fromString(valid[nextIndex()]);
+    }
+
+    @Benchmark
+    public UUID fromStringInvalid() {
+        return fromString(invalid[nextIndex()]);
+    }
+
+    @Benchmark
+    public UUID parseValid() {
+        return UuidParser.Parse(valid[nextIndex()]);
+    }
+
+    @Benchmark
+    public UUID parseInvalid() {
+        return UuidParser.Parse(invalid[nextIndex()]);
+    }
+
+    /**
+     * Creates the exception of a request with an invalid UUID, without a stack trace.
+     */
+    @Benchmark
+    public RuntimeException invalidUuidException() {
+        return new InvalidUuidException(invalid[nextIndex()]);
+    }
+
+    /**
+     * The same exception with a stack trace, as it was before.
+     */
+    @Benchmark
+    public RuntimeException invalidUuidExceptionWithStackTrace() {
+        return new RuntimeException(String.format("UUID '%s' is invalid.", invalid[nextIndex()]));
+    }
+}
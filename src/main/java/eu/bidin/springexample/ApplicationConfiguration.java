@@ -1,18 +1,76 @@
 package eu.bidin.springexample;
 
+import eu.bidin.springexample.cache.CacheProperties;
 import eu.bidin.springexample.entities.Student;
-import eu.bidin.utility.MyHashtable;
+import eu.bidin.springexample.persistence.JournaledStudentTable;
+import eu.bidin.springexample.persistence.PersistenceProperties;
+import eu.bidin.springexample.replication.ReplicationProperties;
+import eu.bidin.springexample.sharding.ShardingProperties;
+import eu.bidin.springexample.storage.MappedStudentTable;
+import eu.bidin.utility.ConcurrentMyHashtable;
+import eu.bidin.utility.EvictionPolicy;
+import eu.bidin.utility.Table;
+import eu.bidin.utility.UuidHashtable;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Scope;
+import org.springframework.util.unit.DataSize;
+import java.io.IOException;
+import java.nio.file.Paths;
 import java.util.UUID;
 
 @Configuration
+@EnableConfigurationProperties({DatabaseProperties.class, PersistenceProperties.class, CacheProperties.class, ShardingProperties.class,
+        ReplicationProperties.class})
 public class ApplicationConfiguration {
 
     @Bean
     @Scope("singleton")
-    public MyHashtable<UUID, Student> database() {
-        return new MyHashtable();
+    public Table<UUID, Student> database(DatabaseProperties properties, PersistenceProperties persistence) throws IOException {
+        EvictionPolicy<Student> policy = policy(properties);
+        // an evicted student would come back on recovery, the journal does not record evictions
+        if (policy.isBounded() && (properties.getEngine() != DatabaseProperties.Engine.CONCURRENT || persistence.isEnabled()))
+            throw new IllegalStateException("Only the concurrent engine without persistence supports maximum size, weight and time to live");
+
+        Table<UUID, Student> table = table(properties, policy);
+        if (persistence.isEnabled())
+            return new JournaledStudentTable(table, persistence);
+        return table;
+    }
+
+    private EvictionPolicy<Student> policy(DatabaseProperties properties) {
+        DataSize maximumWeight = properties.getMaximumWeight();
+        return new EvictionPolicy<>(
+                properties.getMaximumSize(),
+                maximumWeight == null ? 0 : maximumWeight.toBytes(),
+                ApplicationConfiguration::weigh,
+                properties.getTimeToLive());
+    }
+
+    /**
+     * Estimates the heap size of a student with its table node: the node, the student, its UUID, and the UTF-8 bytes
+     * of the name, which are counted even when they are shared with other students.
+     */
+    private static int weigh(Student student) {
+        return 128 + Math.max(student.nameSize(), 0);
+    }
+
+    private Table<UUID, Student> table(DatabaseProperties properties, EvictionPolicy<Student> policy) throws IOException {
+        switch (properties.getEngine()) {
+            case MAPPED:
+                return new MappedStudentTable(Paths.get(properties.getPath()));
+            case UUID:
+                return new UuidHashtable<>(
+                        properties.getInitialCapacity(),
+                        properties.getLoadFactor(),
+                        properties.getConcurrencyLevel());
+            default:
+                return new ConcurrentMyHashtable<>(
+                        properties.getInitialCapacity(),
+                        properties.getLoadFactor(),
+                        properties.getConcurrencyLevel(),
+                        policy);
+        }
     }
-}
\ No newline at end of file
+}
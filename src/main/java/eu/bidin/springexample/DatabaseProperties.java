@@ -0,0 +1,98 @@
+package eu.bidin.springexample;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "students.database")
+public class DatabaseProperties {
+
+    public enum Engine {
+        CONCURRENT,
+        UUID,
+        MAPPED
+    }
+
+    private Engine engine = Engine.CONCURRENT;
+    private int initialCapacity = 16;
+    private double loadFactor = 0.75;
+    private int concurrencyLevel = 16;
+    private String path = "data";
+    private int maximumSize;
+    private DataSize maximumWeight;
+    private Duration timeToLive;
+    private Duration sweepInterval = Duration.ofMinutes(1);
+
+    public Engine getEngine() {
+        return engine;
+    }
+
+    public int getInitialCapacity() {
+        return initialCapacity;
+    }
+
+    public double getLoadFactor() {
+        return loadFactor;
+    }
+
+    public int getConcurrencyLevel() {
+        return concurrencyLevel;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public int getMaximumSize() {
+        return maximumSize;
+    }
+
+    public DataSize getMaximumWeight() {
+        return maximumWeight;
+    }
+
+    public Duration getTimeToLive() {
+        return timeToLive;
+    }
+
+    public Duration getSweepInterval() {
+        return sweepInterval;
+    }
+
+    public void setEngine(Engine engine) {
+        this.engine = engine;
+    }
+
+    public void setInitialCapacity(int initialCapacity) {
+        this.initialCapacity = initialCapacity;
+    }
+
+    public void setLoadFactor(double loadFactor) {
+        this.loadFactor = loadFactor;
+    }
+
+    public void setConcurrencyLevel(int concurrencyLevel) {
+        this.concurrencyLevel = concurrencyLevel;
+    }
+
+    public void setPath(String path) {
+        this.path = path;
+    }
+
+    public void setMaximumSize(int maximumSize) {
+        this.maximumSize = maximumSize;
+    }
+
+    public void setMaximumWeight(DataSize maximumWeight) {
+        this.maximumWeight = maximumWeight;
+    }
+
+    public void setTimeToLive(Duration timeToLive) {
+        this.timeToLive = timeToLive;
+    }
+
+    public void setSweepInterval(Duration sweepInterval) {
+        this.sweepInterval = sweepInterval;
+    }
+}
@@ -1,6 +1,7 @@
 package eu.bidin.springexample;
 
 import io.swagger.models.Contact;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import springfox.documentation.builders.ApiInfoBuilder;
@@ -16,6 +17,7 @@ import java.util.Collections;
 import static springfox.documentation.builders.PathSelectors.regex;
 
 @Configuration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 @EnableSwagger2
 public class SwaggerConfiguration {
 
@@ -0,0 +1,27 @@
+package eu.bidin.springexample.cache;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+@ConfigurationProperties(prefix = "students.cache")
+public class CacheProperties {
+
+    private DataSize maximumSize = DataSize.ofMegabytes(16);
+    private int segments = 16;
+
+    public DataSize getMaximumSize() {
+        return maximumSize;
+    }
+
+    public int getSegments() {
+        return segments;
+    }
+
+    public void setMaximumSize(DataSize maximumSize) {
+        this.maximumSize = maximumSize;
+    }
+
+    public void setSegments(int segments) {
+        this.segments = segments;
+    }
+}
@@ -0,0 +1,205 @@
+package eu.bidin.springexample.cache;
+
+import eu.bidin.springexample.entities.Student;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.stereotype.Component;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Cache of serialized students, bounded by the total size of the cached JSON.
+ * <p>
+ * Keys are divided into segments, each one an LRU list guarded by its own lock. Every modification of a student has
+ * to be reported with {@link #invalidate}, which also increments the version of the whole table. A cached student is
+ * tagged with its own version, so its tag is the one a conditional update compares with. If the table changed while
+ * the student was read, the student may already be outdated, so it is returned once but not kept in the cache.
+ * <p>
+ * Tags start with a random number chosen at startup, so tags of a previous run never match.
+ */
+@Component
+public class StudentCache implements MeterBinder {
+
+    /**
+     * Approximate memory used by an entry besides its JSON.
+     */
+    private static final int ENTRY_OVERHEAD = 96;
+
+    public static final class Entry {
+
+        private final byte[] body;
+        private final String eTag;
+
+        private Entry(byte[] body, String eTag) {
+            this.body = body;
+            this.eTag = eTag;
+        }
+
+        public byte[] getBody() {
+            return body;
+        }
+
+        /**
+         * Strong entity tag of the body.
+         */
+        public String getETag() {
+            return eTag;
+        }
+    }
+
+    private static final class Segment {
+
+        private final LinkedHashMap<UUID, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+        private final long maximumSize;
+        private long size;
+
+        private Segment(long maximumSize) {
+            this.maximumSize = maximumSize;
+        }
+
+        private synchronized Entry get(UUID key) {
+            return entries.get(key);
+        }
+
+        private synchronized void put(UUID key, Entry entry) {
+            Entry previous = entries.put(key, entry);
+            if (previous != null)
+                size -= weight(previous);
+            size += weight(entry);
+
+            // least recently used entries are first
+            Iterator<Entry> iterator = entries.values().iterator();
+            while (size > maximumSize && iterator.hasNext()) {
+                size -= weight(iterator.next());
+                iterator.remove();
+            }
+        }
+
+        private synchronized void remove(UUID key) {
+            Entry previous = entries.remove(key);
+            if (previous != null)
+                size -= weight(previous);
+        }
+
+        private synchronized void remove(UUID key, Entry entry) {
+            if (entries.remove(key, entry))
+                size -= weight(entry);
+        }
+
+        private synchronized long size() {
+            return size;
+        }
+
+        private static long weight(Entry entry) {
+            return entry.body.length + ENTRY_OVERHEAD;
+        }
+    }
+
+    private final Segment[] segments;
+    private final long epoch = ThreadLocalRandom.current().nextLong() >>> 1;
+    private final AtomicLong version = new AtomicLong();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public StudentCache(CacheProperties properties) {
+        int count = Integer.highestOneBit(Math.max(properties.getSegments(), 1));
+        long segmentSize = properties.getMaximumSize().toBytes() / count;
+        this.segments = new Segment[count];
+        for (int i = 0; i < count; i++)
+            this.segments[i] = new Segment(segmentSize);
+    }
+
+    private Segment segmentFor(UUID key) {
+        int h = key.hashCode();
+        return segments[(h ^ (h >>> 16)) & (segments.length - 1)];
+    }
+
+    private String tag(long version) {
+        return "\"" + Long.toHexString(epoch) + "-" + Long.toHexString(version) + "\"";
+    }
+
+    /**
+     * Returns a strong entity tag of a student, which changes with its version.
+     */
+    public String getETag(Student student) {
+        return tag(student.getVersion());
+    }
+
+    /**
+     * Returns the cached JSON of a student, or loads the student and caches its JSON.
+     *
+     * @param key        key of the student
+     * @param loader     returns the current student, {@code null} if there is none
+     * @param serializer returns the JSON of a student
+     * @return cached JSON with its tag, {@code null} if the student does not exist
+     */
+    public Entry get(UUID key, Function<UUID, Student> loader, Function<Student, byte[]> serializer) {
+        Segment segment = segmentFor(key);
+        Entry entry = segment.get(key);
+        if (entry != null) {
+            hits.increment();
+            return entry;
+        }
+        misses.increment();
+
+        long current = version.get();
+        Student student = loader.apply(key);
+        if (student == null)
+            return null;
+
+        entry = new Entry(serializer.apply(student), getETag(student));
+        segment.put(key, entry);
+        // a modification may have been invalidated before the entry was cached
+        if (version.get() != current)
+            segment.remove(key, entry);
+        return entry;
+    }
+
+    /**
+     * Removes a student from the cache, call after every modification of the table.
+     *
+     * @param key key of the modified student
+     */
+    public void invalidate(UUID key) {
+        version.incrementAndGet();
+        segmentFor(key).remove(key);
+    }
+
+    /**
+     * Returns a weak entity tag of the whole table, which changes with every modification.
+     * It is weak because a listing is not a snapshot, modifications can happen while it is written.
+     */
+    public String getTableETag() {
+        return "W/" + tag(version.get());
+    }
+
+    public long getSize() {
+        long size = 0;
+        for (Segment segment : segments)
+            size += segment.size();
+        return size;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("students.cache.hits", hits, LongAdder::sum)
+                .description("Students served from the cache")
+                .register(registry);
+        FunctionCounter.builder("students.cache.misses", misses, LongAdder::sum)
+                .description("Students serialized because they were not cached")
+                .register(registry);
+        Gauge.builder("students.cache.size", this, StudentCache::getSize)
+                .description("Size of the cached JSON")
+                .baseUnit("bytes")
+                .register(registry);
+    }
+}
@@ -0,0 +1,326 @@
+package eu.bidin.springexample.codecs;
+
+import eu.bidin.springexample.entities.Student;
+import eu.bidin.springexample.models.StudentModel;
+import org.springframework.http.MediaType;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+/**
+ * Binary encoding of students in the Protocol Buffers wire format, written by hand for this one message:
+ * <pre>
+ * message Student {
+ *     fixed64 uuid_most_significant_bits = 1;
+ *     fixed64 uuid_least_significant_bits = 2;
+ *     string name = 3;
+ *     int32 grade = 4;
+ *     int32 version = 5;
+ * }
+ * </pre>
+ * A student model is the same message without the UUID and the version. Missing fields are {@code null}, or 0 for
+ * the version, unknown fields are skipped.
+ * A list of students is a stream of messages, each prefixed with its length as a varint, which is what
+ * {@code writeDelimitedTo} and {@code parseDelimitedFrom} of the protobuf library write and read.
+ */
+public final class StudentProtobuf {
+
+    public static final String MEDIA_TYPE_VALUE = "application/x-protobuf";
+    public static final MediaType MEDIA_TYPE = MediaType.parseMediaType(MEDIA_TYPE_VALUE);
+
+    /**
+     * Distinguishes the entity tags of the binary format from those of JSON, see
+     * {@link eu.bidin.utility.HttpResponse#variantETag}.
+     */
+    public static final String E_TAG_VARIANT = "pb";
+
+    private static final int VARINT = 0;
+    private static final int FIXED64 = 1;
+    private static final int LENGTH_DELIMITED = 2;
+    private static final int FIXED32 = 5;
+
+    private static final int UUID_MOST_SIGNIFICANT_BITS = 1;
+    private static final int UUID_LEAST_SIGNIFICANT_BITS = 2;
+    private static final int NAME = 3;
+    private static final int GRADE = 4;
+    private static final int VERSION = 5;
+
+    private static final int MAXIMUM_MESSAGE = 1 << 16;
+
+    private StudentProtobuf() {
+    }
+
+    /**
+     * Checks if a header of a request accepts or declares the binary format.
+     */
+    public static boolean isProtobuf(String header) {
+        return header != null && header.contains(MEDIA_TYPE_VALUE);
+    }
+
+    public static byte[] encode(Student student) {
+        return encode(false, student.getUuid(), student, null, student.getGrade(), student.getVersion());
+    }
+
+    public static byte[] encode(StudentModel model) {
+        byte[] name = model.getName() == null ? null : model.getName().getBytes(StandardCharsets.UTF_8);
+        return encode(false, null, null, name, model.getGrade(), 0);
+    }
+
+    /**
+     * Writes a student prefixed with its length, as an item of a list.
+     */
+    public static void writeDelimited(OutputStream output, Student student) throws IOException {
+        output.write(encode(true, student.getUuid(), student, null, student.getGrade(), student.getVersion()));
+    }
+
+    /**
+     * Encodes a message into a single array, that optionally starts with its length. The name is copied from the
+     * UTF-8 bytes of a student, without decoding it, or given as bytes.
+     */
+    private static byte[] encode(boolean isDelimited, UUID uuid, Student student, byte[] name, Integer grade, int version) {
+        int nameSize = student != null ? student.nameSize() : name == null ? -1 : name.length;
+        int size = 0;
+        if (uuid != null)
+            size += 2 * (1 + 8);
+        if (nameSize >= 0)
+            size += 1 + varintSize(nameSize) + nameSize;
+        if (grade != null)
+            size += 1 + varintSize(grade);
+        if (version != 0)
+            size += 1 + varintSize(version);
+
+        byte[] bytes = new byte[(isDelimited ? varintSize(size) : 0) + size];
+        int position = isDelimited ? writeVarint(bytes, 0, size) : 0;
+        if (uuid != null) {
+            position = writeFixed64(bytes, position, UUID_MOST_SIGNIFICANT_BITS, uuid.getMostSignificantBits());
+            position = writeFixed64(bytes, position, UUID_LEAST_SIGNIFICANT_BITS, uuid.getLeastSignificantBits());
+        }
+        if (nameSize >= 0) {
+            bytes[position++] = tag(NAME, LENGTH_DELIMITED);
+            position = writeVarint(bytes, position, nameSize);
+            if (student != null) {
+                position = student.copyName(bytes, position);
+            } else {
+                System.arraycopy(name, 0, bytes, position, nameSize);
+                position += nameSize;
+            }
+        }
+        if (grade != null) {
+            bytes[position++] = tag(GRADE, VARINT);
+            // negative int32 values are sign extended to ten bytes
+            position = writeVarint(bytes, position, grade);
+        }
+        if (version != 0) {
+            bytes[position++] = tag(VERSION, VARINT);
+            writeVarint(bytes, position, version);
+        }
+        return bytes;
+    }
+
+    private static byte tag(int field, int wireType) {
+        return (byte) (field << 3 | wireType);
+    }
+
+    private static int writeFixed64(byte[] bytes, int position, int field, long value) {
+        bytes[position++] = tag(field, FIXED64);
+        for (int i = 0; i < 8; i++, value >>>= 8)
+            bytes[position++] = (byte) value;
+        return position;
+    }
+
+    private static int varintSize(long value) {
+        int size = 1;
+        while ((value & ~0x7FL) != 0) {
+            value >>>= 7;
+            size += 1;
+        }
+        return size;
+    }
+
+    private static int writeVarint(byte[] bytes, int position, long value) {
+        while ((value & ~0x7FL) != 0) {
+            bytes[position++] = (byte) (value & 0x7F | 0x80);
+            value >>>= 7;
+        }
+        bytes[position++] = (byte) value;
+        return position;
+    }
+
+    public static StudentModel decodeModel(byte[] bytes) throws IOException {
+        Reader reader = new Reader(bytes, 0, bytes.length);
+        StudentModel model = new StudentModel();
+        model.setName(reader.name);
+        model.setGrade(reader.grade);
+        return model;
+    }
+
+    public static Student decodeStudent(byte[] bytes, int offset, int length) throws IOException {
+        Reader reader = new Reader(bytes, offset, offset + length);
+        if (!reader.hasUuid)
+            throw new IOException("Student has no UUID");
+        if (!Student.isStorable(reader.grade))
+            throw new IOException("Grade " + reader.grade + " is out of range");
+        return new Student(new UUID(reader.mostSignificantBits, reader.leastSignificantBits), reader.name, reader.grade, reader.version);
+    }
+
+    /**
+     * Reads the next student of a list.
+     *
+     * @return student, or {@code null} at the end of the stream
+     * @throws IOException if the stream ends within a student or the student is malformed
+     */
+    public static Student readDelimited(InputStream input) throws IOException {
+        long length = 0;
+        for (int shift = 0; ; shift += 7) {
+            int b = input.read();
+            if (b < 0 && shift == 0)
+                return null;
+            if (b < 0)
+                throw new EOFException("Student is truncated");
+            if (shift > 28)
+                throw new IOException("Malformed length");
+            length |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0)
+                break;
+        }
+        if (length > MAXIMUM_MESSAGE)
+            throw new IOException("Student is longer than " + MAXIMUM_MESSAGE + " bytes");
+
+        byte[] bytes = new byte[(int) length];
+        for (int read = 0; read < bytes.length; ) {
+            int count = input.read(bytes, read, bytes.length - read);
+            if (count < 0)
+                throw new EOFException("Student is truncated");
+            read += count;
+        }
+        return decodeStudent(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Returns the length of the first student of a list in a range of bytes, including its length prefix.
+     *
+     * @return length of the student, or -1 if the range ends within the student
+     * @throws IOException if the length of the student is malformed or too long
+     */
+    public static int delimitedLength(byte[] bytes, int offset, int length) throws IOException {
+        long size = 0;
+        for (int i = 0, shift = 0; ; i++, shift += 7) {
+            if (i == length)
+                return -1;
+            if (shift > 28)
+                throw new IOException("Malformed length");
+            byte b = bytes[offset + i];
+            size |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                if (size > MAXIMUM_MESSAGE)
+                    throw new IOException("Student is longer than " + MAXIMUM_MESSAGE + " bytes");
+                return size <= length - i - 1 ? (int) size + i + 1 : -1;
+            }
+        }
+    }
+
+    /**
+     * Reads the fields of a message, the last occurrence of a field wins.
+     */
+    private static class Reader {
+
+        private final byte[] bytes;
+        private int position;
+        private final int end;
+
+        private boolean hasUuid;
+        private long mostSignificantBits;
+        private long leastSignificantBits;
+        private String name;
+        private Integer grade;
+        private int version;
+
+        private Reader(byte[] bytes, int position, int end) throws IOException {
+            this.bytes = bytes;
+            this.position = position;
+            this.end = end;
+
+            boolean hasMostSignificantBits = false;
+            boolean hasLeastSignificantBits = false;
+            while (this.position < end) {
+                long tag = readVarint();
+                int field = (int) (tag >>> 3);
+                int wireType = (int) tag & 7;
+
+                if (field == UUID_MOST_SIGNIFICANT_BITS && wireType == FIXED64) {
+                    mostSignificantBits = readFixed64();
+                    hasMostSignificantBits = true;
+                } else if (field == UUID_LEAST_SIGNIFICANT_BITS && wireType == FIXED64) {
+                    leastSignificantBits = readFixed64();
+                    hasLeastSignificantBits = true;
+                } else if (field == NAME && wireType == LENGTH_DELIMITED) {
+                    int length = readLength();
+                    name = new String(bytes, this.position, length, StandardCharsets.UTF_8);
+                    this.position += length;
+                } else if (field == GRADE && wireType == VARINT) {
+                    grade = (int) readVarint();
+                } else if (field == VERSION && wireType == VARINT) {
+                    version = (int) readVarint();
+                } else {
+                    skip(wireType);
+                }
+            }
+            hasUuid = hasMostSignificantBits && hasLeastSignificantBits;
+        }
+
+        private long readVarint() throws IOException {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                if (position == end)
+                    throw new EOFException("Student is truncated");
+                byte b = bytes[position++];
+                value |= (long) (b & 0x7F) << shift;
+                if (b >= 0)
+                    return value;
+            }
+            throw new IOException("Malformed varint");
+        }
+
+        private long readFixed64() throws IOException {
+            if (end - position < 8)
+                throw new EOFException("Student is truncated");
+            long value = 0;
+            for (int i = 7; i >= 0; i--)
+                value = value << 8 | bytes[position + i] & 0xFF;
+            position += 8;
+            return value;
+        }
+
+        private int readLength() throws IOException {
+            long length = readVarint();
+            if (length < 0 || length > end - position)
+                throw new EOFException("Student is truncated");
+            return (int) length;
+        }
+
+        private void skip(int wireType) throws IOException {
+            switch (wireType) {
+                case VARINT:
+                    readVarint();
+                    break;
+                case FIXED64:
+                    readFixed64();
+                    break;
+                case LENGTH_DELIMITED:
+                    position += readLength();
+                    break;
+                case FIXED32:
+                    if (end - position < 4)
+                        throw new EOFException("Student is truncated");
+                    position += 4;
+                    break;
+                default:
+                    throw new IOException("Unsupported wire type " + wireType);
+            }
+        }
+    }
+}
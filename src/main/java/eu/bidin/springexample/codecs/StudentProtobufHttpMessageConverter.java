@@ -0,0 +1,51 @@
+package eu.bidin.springexample.codecs;
+
+import eu.bidin.springexample.models.StudentModel;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StreamUtils;
+
+import java.io.IOException;
+
+/**
+ * Reads and writes student models in the binary format of {@link StudentProtobuf}, picked up by Spring MVC next to
+ * the JSON converter. Students are written by the controller itself, which decides on the format from the Accept
+ * header, so Spring MVC never picks this converter as a writer: it would be preferred over JSON for clients that
+ * accept anything. It still writes models when {@link #write} is called directly.
+ */
+@Component
+public class StudentProtobufHttpMessageConverter extends AbstractHttpMessageConverter<StudentModel> {
+
+    public StudentProtobufHttpMessageConverter() {
+        super(StudentProtobuf.MEDIA_TYPE);
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return clazz == StudentModel.class;
+    }
+
+    @Override
+    protected boolean canWrite(MediaType mediaType) {
+        return false;
+    }
+
+    @Override
+    protected StudentModel readInternal(Class<? extends StudentModel> clazz, HttpInputMessage inputMessage) throws IOException {
+        byte[] bytes = StreamUtils.copyToByteArray(inputMessage.getBody());
+        try {
+            return StudentProtobuf.decodeModel(bytes);
+        } catch (IOException ex) {
+            throw new HttpMessageNotReadableException("Malformed student: " + ex.getMessage(), ex, inputMessage);
+        }
+    }
+
+    @Override
+    protected void writeInternal(StudentModel model, HttpOutputMessage outputMessage) throws IOException {
+        outputMessage.getBody().write(StudentProtobuf.encode(model));
+    }
+}
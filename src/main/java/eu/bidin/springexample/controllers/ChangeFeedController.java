@@ -0,0 +1,34 @@
+package eu.bidin.springexample.controllers;
+
+import eu.bidin.springexample.models.StudentChange;
+import eu.bidin.springexample.replication.ChangeFeed;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
+
+@RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class ChangeFeedController {
+
+    private final ChangeFeed feed;
+
+    public ChangeFeedController(ChangeFeed feed) {
+        this.feed = feed;
+    }
+
+    /**
+     * Streams the changes of the students of this node as server-sent events, after the change in {@code after}
+     * or, when an event source reconnects, in {@code Last-Event-ID}, otherwise from now on.
+     */
+    @GetMapping(value = "/students/changes", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<StudentChange>> getChanges(
+            @RequestParam(required = false) String after,
+            @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) {
+        return feed.subscribe(after != null ? after : lastEventId);
+    }
+}
@@ -0,0 +1,26 @@
+package eu.bidin.springexample.controllers;
+
+import eu.bidin.utility.RouteTemplate;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.stereotype.Controller;
+
+/**
+ * Resolves the URI templates of all controller actions when the application starts, so building a Location header
+ * never looks up an action while serving a request.
+ */
+@Component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class RouteTemplateRegistrar {
+
+    @EventListener
+    public void register(ContextRefreshedEvent event) {
+        ApplicationContext context = event.getApplicationContext();
+        for (Object controller : context.getBeansWithAnnotation(Controller.class).values())
+            RouteTemplate.register(AopUtils.getTargetClass(controller));
+    }
+}
@@ -0,0 +1,74 @@
+package eu.bidin.springexample.controllers;
+
+import eu.bidin.springexample.codecs.StudentProtobuf;
+import eu.bidin.springexample.services.StudentService;
+import eu.bidin.springexample.sharding.ShardDirectory;
+import eu.bidin.springexample.sharding.ShardRebalancer;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.InputStream;
+import java.util.List;
+
+/**
+ * Endpoints the nodes of a sharded deployment call on each other.
+ */
+@RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class ShardController {
+
+    private final ShardDirectory directory;
+    private final ShardRebalancer rebalancer;
+    private final StudentService service;
+
+    public ShardController(ShardDirectory directory, ShardRebalancer rebalancer, StudentService service) {
+        this.directory = directory;
+        this.rebalancer = rebalancer;
+        this.service = service;
+    }
+
+    @GetMapping("/shards/nodes")
+    @ResponseStatus(value = HttpStatus.OK)
+    public List<String> getNodes() {
+        return directory.getNodes();
+    }
+
+    /**
+     * Adds a starting node to the ring, students that belong to it are handed off in the background.
+     */
+    @PostMapping("/shards/nodes")
+    @ResponseStatus(value = HttpStatus.OK)
+    public List<String> joinNode(
+            @RequestParam String node,
+            @RequestHeader(value = ShardDirectory.SECRET_HEADER, required = false) String secret) {
+        directory.checkMember(node, secret);
+        return rebalancer.join(node);
+    }
+
+    /**
+     * Removes a node from the ring. Removing this node hands off all of its students to the other nodes.
+     */
+    @DeleteMapping("/shards/nodes")
+    @ResponseStatus(value = HttpStatus.OK)
+    public List<String> leaveNode(
+            @RequestParam String node,
+            @RequestHeader(value = ShardDirectory.FORWARDED_HEADER, required = false) String forwarded,
+            @RequestHeader(value = ShardDirectory.SECRET_HEADER, required = false) String secret) {
+        directory.checkMember(forwarded, secret);
+        return rebalancer.leave(node);
+    }
+
+    /**
+     * Stores students handed off by another node.
+     */
+    @PostMapping(value = "/shards/students", consumes = StudentProtobuf.MEDIA_TYPE_VALUE)
+    @ResponseStatus(value = HttpStatus.NO_CONTENT)
+    public void importStudents(
+            InputStream body,
+            @RequestHeader(value = ShardDirectory.FORWARDED_HEADER, required = false) String forwarded,
+            @RequestHeader(value = ShardDirectory.SECRET_HEADER, required = false) String secret) {
+        directory.checkMember(forwarded, secret);
+        service.importStudents(service.readStudents(body));
+    }
+}
@@ -1,97 +1,265 @@
 package eu.bidin.springexample.controllers;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import eu.bidin.springexample.cache.StudentCache;
+import eu.bidin.springexample.codecs.StudentProtobuf;
 import eu.bidin.springexample.entities.Student;
-import eu.bidin.springexample.exceptions.InvalidUuidException;
-import eu.bidin.springexample.exceptions.StudentModelInvalidException;
-import eu.bidin.springexample.exceptions.StudentNotFoundException;
+import eu.bidin.springexample.models.BatchResult;
+import eu.bidin.springexample.models.GradeAverage;
+import eu.bidin.springexample.models.StudentBatchModel;
 import eu.bidin.springexample.models.StudentModel;
-import eu.bidin.utility.MyHashtable;
+import eu.bidin.springexample.models.StudentPage;
+import eu.bidin.springexample.services.StudentService;
+import eu.bidin.springexample.sharding.ShardClient;
+import eu.bidin.springexample.sharding.ShardDirectory;
 import eu.bidin.utility.HttpResponse;
-import eu.bidin.utility.UuidParser;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.SortedMap;
 import java.util.UUID;
-import java.util.stream.Collectors;
-import java.util.stream.StreamSupport;
 
 @RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 public class StudentController {
 
-    private final MyHashtable<UUID, Student> database;
+    private static final int STREAM_BATCH = 256;
+    private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+    private static final String NDJSON_E_TAG_VARIANT = "nd";
 
-    public StudentController(MyHashtable<UUID, Student> database) {
-        this.database = database;
+    private final StudentService service;
+    private final ObjectMapper mapper;
+    private final ShardDirectory shards;
+    private final ShardClient client;
+
+    public StudentController(StudentService service, ObjectMapper mapper, ShardDirectory shards, ShardClient client) {
+        this.service = service;
+        this.mapper = mapper;
+        this.shards = shards;
+        this.client = client;
     }
 
+    /**
+     * Streams all students as a JSON array, or as newline delimited JSON or length-prefixed binary students if
+     * requested. Students are read a batch at a time and written out immediately, so memory does not grow with the
+     * table. In a sharded deployment, the students of the other nodes follow those of this node.
+     */
     @GetMapping("/students")
+    public ResponseEntity<StreamingResponseBody> getStudents(
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+            @RequestHeader(value = ShardDirectory.FORWARDED_HEADER, required = false) String forwarded) {
+        service.checkReadable();
+        List<String> peers = forwarded == null ? shards.getPeers() : Collections.emptyList();
+        boolean protobuf = StudentProtobuf.isProtobuf(accept);
+        boolean ndjson = !protobuf && accept != null && accept.contains(NDJSON.toString());
+        // the entity tag of the table only covers the shard of this node, every format has a tag of its own
+        String eTag = peers.isEmpty() ? service.getTableETag() : null;
+        if (protobuf)
+            eTag = HttpResponse.variantETag(eTag, StudentProtobuf.E_TAG_VARIANT);
+        else if (ndjson)
+            eTag = HttpResponse.variantETag(eTag, NDJSON_E_TAG_VARIANT);
+        if (HttpResponse.isNotModified(ifNoneMatch, eTag))
+            return HttpResponse.notModified(eTag, HttpHeaders.ACCEPT);
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok().varyBy(HttpHeaders.ACCEPT);
+        if (eTag != null)
+            response.eTag(eTag);
+
+        if (protobuf)
+            return response
+                    .contentType(StudentProtobuf.MEDIA_TYPE)
+                    .body(output -> writeDelimitedStudents(output, peers));
+
+        StreamingResponseBody body = output -> writeStudents(output, ndjson, peers);
+        return response
+                .contentType(ndjson ? NDJSON : MediaType.APPLICATION_JSON_UTF8)
+                .body(body);
+    }
+
+    private void writeDelimitedStudents(OutputStream output, List<String> peers) throws IOException {
+        List<Student> batch = new ArrayList<>(STREAM_BATCH);
+        long cursor = 0;
+        do {
+            cursor = service.scanStudents(cursor, STREAM_BATCH, batch::add);
+            for (Student student : batch)
+                StudentProtobuf.writeDelimited(output, student);
+            batch.clear();
+            output.flush();
+        } while (cursor != 0);
+
+        // a list in the binary format is a concatenation of students, so those of other nodes are copied as they are
+        for (String peer : peers)
+            client.copyDelimitedStudents(peer, output);
+    }
+
+    private void writeStudents(OutputStream output, boolean ndjson, List<String> peers) throws IOException {
+        JsonGenerator generator = mapper.getFactory().createGenerator(output);
+        generator.setRootValueSeparator(null);
+        if (!ndjson)
+            generator.writeStartArray();
+
+        List<Student> batch = new ArrayList<>(STREAM_BATCH);
+        long cursor = 0;
+        do {
+            cursor = service.scanStudents(cursor, STREAM_BATCH, batch::add);
+            for (Student student : batch) {
+                generator.writeObject(student);
+                if (ndjson)
+                    generator.writeRaw('\n');
+            }
+            batch.clear();
+            generator.flush();
+        } while (cursor != 0);
+
+        for (String peer : peers)
+            client.readStudentLines(peer, line -> {
+                try {
+                    generator.writeRawValue(line);
+                    if (ndjson)
+                        generator.writeRaw('\n');
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+            });
+
+        if (!ndjson)
+            generator.writeEndArray();
+        generator.flush();
+    }
+
+    /**
+     * Returns one page of students, continue with the cursor in {@link StudentPage#getNext}.
+     * A page holds whole hash table slots, so it can contain a few students more than {@code limit}.
+     */
+    @GetMapping(value = "/students", params = "limit")
     @ResponseStatus(value = HttpStatus.OK)
-    public List<Student> getStudents() {
-        return StreamSupport
-                .stream(database.spliterator(), false)
-                .map(e -> e.getValue())
-                .collect(Collectors.toList());
+    public StudentPage getStudentPage(@RequestParam(required = false) String cursor, @RequestParam int limit) {
+        return service.getStudentPage(cursor, limit);
     }
 
-    @GetMapping("/students/{uuid}")
+    /**
+     * Finds students by grade and name prefix (ignoring case) through the secondary indexes.
+     */
+    @GetMapping("/students/search")
     @ResponseStatus(value = HttpStatus.OK)
-    public Student getStudent(@PathVariable String uuid) {
-        UUID key = UuidParser.Parse(uuid);
-        if (key == null)
-            throw new InvalidUuidException(uuid);
+    public List<Student> searchStudents(@RequestParam(required = false) Integer grade,
+                                        @RequestParam(required = false) String name,
+                                        @RequestParam(defaultValue = "" + StudentService.MAXIMUM_LIMIT) int limit) {
+        return service.searchStudents(grade, name, limit);
+    }
 
-        Student student = database.get(key);
-        if (student == null)
-            throw new StudentNotFoundException(uuid);
+    /**
+     * Returns the number of students with each grade, counted in parallel over ranges of the table.
+     */
+    @GetMapping("/students/statistics/grades")
+    @ResponseStatus(value = HttpStatus.OK)
+    public SortedMap<Integer, Long> getGradeHistogram() {
+        return service.getGradeHistogram();
+    }
 
-        return student;
+    @GetMapping("/students/statistics/average-grade")
+    @ResponseStatus(value = HttpStatus.OK)
+    public GradeAverage getAverageGrade() {
+        return service.getAverageGrade();
     }
 
-    @PostMapping("/students")
-    @ResponseStatus(value = HttpStatus.CREATED)
-    public ResponseEntity createStudent(@RequestBody StudentModel model) {
-        List<String> errors = model.Validate();
-        if (!errors.isEmpty())
-            throw new StudentModelInvalidException(errors);
+    @GetMapping("/students/statistics/initials")
+    @ResponseStatus(value = HttpStatus.OK)
+    public SortedMap<String, Long> getInitialCounts() {
+        return service.getInitialCounts();
+    }
 
-        UUID key = UUID.randomUUID();
-        Student value = new Student(key, model);
-        database.put(key, value);
+    /**
+     * Returns the cached JSON of a student, or only its entity tag if the client already has it.
+     * The binary format is not cached, it is encoded on every request, and has an entity tag of its own.
+     * The entity tags change with the version of the student, updates can be made conditional on either with If-Match.
+     */
+    @GetMapping("/students/{uuid}")
+    public ResponseEntity<byte[]> getStudent(@PathVariable String uuid,
+                                             @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+                                             @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        if (StudentProtobuf.isProtobuf(accept)) {
+            Student student = service.findStudent(uuid);
+            String eTag = HttpResponse.variantETag(service.getETag(student), StudentProtobuf.E_TAG_VARIANT);
+            if (HttpResponse.isNotModified(ifNoneMatch, eTag))
+                return HttpResponse.notModified(eTag, HttpHeaders.ACCEPT);
 
-        return HttpResponse.created(StudentController.class, "getStudent", key.toString());
-    }
+            return ResponseEntity.ok()
+                    .contentType(StudentProtobuf.MEDIA_TYPE)
+                    .eTag(eTag)
+                    .varyBy(HttpHeaders.ACCEPT)
+                    .body(StudentProtobuf.encode(student));
+        }
 
-    @PutMapping("/students/{uuid}")
-    @ResponseStatus(value = HttpStatus.NO_CONTENT)
-    public void updateStudent(@PathVariable String uuid, @RequestBody StudentModel model) {
-        UUID key = UuidParser.Parse(uuid);
-        if (key == null)
-            throw new InvalidUuidException(uuid);
+        StudentCache.Entry entry = service.getStudent(uuid);
+        if (HttpResponse.isNotModified(ifNoneMatch, entry.getETag()))
+            return HttpResponse.notModified(entry.getETag(), HttpHeaders.ACCEPT);
 
-        Student student = database.get(key);
-        if (student == null)
-            throw new StudentNotFoundException(uuid);
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON_UTF8)
+                .eTag(entry.getETag())
+                .varyBy(HttpHeaders.ACCEPT)
+                .body(entry.getBody());
+    }
 
-        List<String> errors = model.Validate();
-        if (!errors.isEmpty())
-            throw new StudentModelInvalidException(errors);
+    @PostMapping("/students")
+    @ResponseStatus(value = HttpStatus.CREATED)
+    public ResponseEntity<Void> createStudent(@RequestBody StudentModel model) {
+        UUID key = service.createStudent(model);
+        return HttpResponse.created(StudentController.class, "getStudent", key);
+    }
 
-        Student value = new Student(key, model);
-        database.put(key, value);
+    /**
+     * Replaces a student, if an If-Match header is present only while it matches the entity tag of the student.
+     */
+    @PutMapping("/students/{uuid}")
+    public ResponseEntity<Void> updateStudent(@PathVariable String uuid,
+                                              @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+                                              @RequestBody StudentModel model) {
+        String eTag = service.updateStudent(uuid, model, ifMatch);
+        return ResponseEntity.noContent().eTag(eTag).build();
     }
 
     @DeleteMapping("/students/{uuid}")
     @ResponseStatus(value = HttpStatus.NO_CONTENT)
     public void deleteStudent(@PathVariable String uuid) {
-        UUID key = UuidParser.Parse(uuid);
-        if (key == null)
-            throw new InvalidUuidException(uuid);
+        service.deleteStudent(uuid);
+    }
 
-        if (!database.containsKey(key))
-            throw new StudentNotFoundException(uuid);
+    /**
+     * Creates all valid students of a JSON array or newline delimited JSON, with a single resize of the table.
+     * Invalid items are reported in their result and do not prevent the others from being created.
+     */
+    @PostMapping(value = "/students/batch", consumes = {MediaType.APPLICATION_JSON_VALUE, "application/x-ndjson"})
+    @ResponseStatus(value = HttpStatus.OK)
+    public List<BatchResult> createStudents(InputStream body) throws IOException {
+        String location = HttpResponse.location(StudentController.class, "getStudent", "");
+        return service.createStudents(service.readBatch(body, StudentModel.class), location);
+    }
 
-        database.remove(key);
+    @PutMapping(value = "/students/batch", consumes = {MediaType.APPLICATION_JSON_VALUE, "application/x-ndjson"})
+    @ResponseStatus(value = HttpStatus.OK)
+    public List<BatchResult> updateStudents(InputStream body) throws IOException {
+        return service.updateStudents(service.readBatch(body, StudentBatchModel.class));
+    }
+
+    @DeleteMapping(value = "/students/batch", consumes = {MediaType.APPLICATION_JSON_VALUE, "application/x-ndjson"})
+    @ResponseStatus(value = HttpStatus.OK)
+    public List<BatchResult> deleteStudents(InputStream body) throws IOException {
+        return service.deleteStudents(service.readBatch(body, String.class));
     }
 }
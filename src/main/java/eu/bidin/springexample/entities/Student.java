@@ -1,23 +1,60 @@
 package eu.bidin.springexample.entities;
 
 import eu.bidin.springexample.models.StudentModel;
+import eu.bidin.utility.Utf8Interner;
 
+import java.util.Objects;
 import java.util.UUID;
 
+/**
+ * A student as it is kept in the table, in a compact layout: the name is stored as UTF-8 bytes, shared with the other
+ * students of the same name, and the grade as a byte. Reading the name returns the string the interner keeps for its
+ * bytes, so it is decoded at most once per distinct name instead of on every read; the protobuf codec copies the
+ * bytes without decoding them.
+ */
 public class Student {
 
+    private static final byte NULL_GRADE = Byte.MIN_VALUE;
+    private static final Utf8Interner NAMES = new Utf8Interner(1 << 16);
+
     private final UUID uuid;
-    private String name;
-    private Integer grade;
+    private byte[] name;
+    private byte grade;
+    private final int version;
 
     public Student(UUID uuid, String name, Integer grade) {
+        this(uuid, name, grade, 0);
+    }
+
+    public Student(UUID uuid, String name, Integer grade, int version) {
         this.uuid = uuid;
-        this.name = name;
-        this.grade = grade;
+        this.name = NAMES.intern(name);
+        this.grade = compact(grade);
+        this.version = version;
     }
 
     public Student(UUID uuid, StudentModel model) {
-        this(uuid, model.getName(), model.getGrade());
+        this(uuid, model, 0);
+    }
+
+    public Student(UUID uuid, StudentModel model, int version) {
+        this(uuid, model.getName(), model.getGrade(), version);
+    }
+
+    private static byte compact(Integer grade) {
+        if (grade == null)
+            return NULL_GRADE;
+        if (grade <= NULL_GRADE || grade > Byte.MAX_VALUE)
+            throw new IllegalArgumentException("Grade " + grade + " is out of range");
+        return (byte) (int) grade;
+    }
+
+    /**
+     * Checks if a grade fits into the byte of a student, other grades are refused with an
+     * {@link IllegalArgumentException}.
+     */
+    public static boolean isStorable(Integer grade) {
+        return grade == null || grade > NULL_GRADE && grade <= Byte.MAX_VALUE;
     }
 
     public UUID getUuid() {
@@ -25,19 +62,46 @@ public class Student {
     }
 
     public String getName() {
-        return name;
+        return NAMES.decode(name);
+    }
+
+    /**
+     * Returns the length of the name in UTF-8 bytes, -1 without a name. Not a getter, so it is not serialized.
+     */
+    public int nameSize() {
+        return name == null ? -1 : name.length;
+    }
+
+    /**
+     * Copies the name as UTF-8 bytes into an array, does nothing without a name.
+     *
+     * @return position after the copied bytes
+     */
+    public int copyName(byte[] target, int position) {
+        if (name == null)
+            return position;
+        System.arraycopy(name, 0, target, position, name.length);
+        return position + name.length;
     }
 
     public Integer getGrade() {
-        return grade;
+        // boxes of byte values are cached, this does not allocate
+        return grade == NULL_GRADE ? null : Integer.valueOf(grade);
+    }
+
+    /**
+     * Returns the number of times the student was written, which changes on every update.
+     */
+    public int getVersion() {
+        return version;
     }
 
     public void setName(String name) {
-        this.name = name;
+        this.name = NAMES.intern(name);
     }
 
     public void setGrade(Integer grade) {
-        this.grade = grade;
+        this.grade = compact(grade);
     }
 
     @Override
@@ -48,7 +112,9 @@ public class Student {
             return false;
 
         final Student other = (Student) obj;
-        if (this.uuid != other.uuid)
+        if (!Objects.equals(this.uuid, other.uuid))
+            return false;
+        if (this.version != other.version)
             return false;
 
         return true;
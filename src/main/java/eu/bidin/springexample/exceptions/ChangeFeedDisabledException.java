@@ -0,0 +1,14 @@
+package eu.bidin.springexample.exceptions;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(value = HttpStatus.NOT_FOUND)
+public class ChangeFeedDisabledException extends RuntimeException {
+
+    private static final String template = "The change feed is disabled.";
+
+    public ChangeFeedDisabledException() {
+        super(template, null, false, false);
+    }
+}
@@ -0,0 +1,14 @@
+package eu.bidin.springexample.exceptions;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(value = HttpStatus.GONE)
+public class ChangesExpiredException extends RuntimeException {
+
+    private static final String template = "Changes after %d are no longer kept, the last change is %d.";
+
+    public ChangesExpiredException(long after, long sequence) {
+        super(String.format(template, after, sequence), null, false, false);
+    }
+}
@@ -0,0 +1,14 @@
+package eu.bidin.springexample.exceptions;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(value = HttpStatus.BAD_REQUEST)
+public class InvalidBatchException extends RuntimeException {
+
+    private static final String template = "Invalid batch: %s.";
+
+    public InvalidBatchException(String reason) {
+        super(String.format(template, reason));
+    }
+}
@@ -0,0 +1,14 @@
+package eu.bidin.springexample.exceptions;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(value = HttpStatus.BAD_REQUEST)
+public class InvalidCursorException extends RuntimeException {
+
+    private static final String template = "Cursor '%s' is invalid.";
+
+    public InvalidCursorException(String cursor) {
+        super(String.format(template, cursor == null ? "null" : cursor));
+    }
+}
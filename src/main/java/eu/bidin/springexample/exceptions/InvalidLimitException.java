@@ -0,0 +1,14 @@
+package eu.bidin.springexample.exceptions;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(value = HttpStatus.BAD_REQUEST)
+public class InvalidLimitException extends RuntimeException {
+
+    private static final String template = "Limit %d must be between 1 and %d.";
+
+    public InvalidLimitException(int limit, int maximum) {
+        super(String.format(template, limit, maximum));
+    }
+}
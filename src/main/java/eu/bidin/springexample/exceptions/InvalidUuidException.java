@@ -9,6 +9,6 @@ public class InvalidUuidException extends RuntimeException {
     private static final String template = "UUID '%s' is invalid.";
 
     public InvalidUuidException(String uuid) {
-        super(String.format(template, uuid == null ? "null" : uuid));
+        super(String.format(template, uuid == null ? "null" : uuid), null, false, false);
     }
 }
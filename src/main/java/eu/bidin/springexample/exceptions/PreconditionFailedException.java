@@ -0,0 +1,14 @@
+package eu.bidin.springexample.exceptions;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(value = HttpStatus.PRECONDITION_FAILED)
+public class PreconditionFailedException extends RuntimeException {
+
+    private static final String template = "Student '%s' was modified, it no longer matches %s.";
+
+    public PreconditionFailedException(String uuid, String ifMatch) {
+        super(String.format(template, uuid, ifMatch), null, false, false);
+    }
+}
@@ -0,0 +1,14 @@
+package eu.bidin.springexample.exceptions;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(value = HttpStatus.FORBIDDEN)
+public class ReadOnlyReplicaException extends RuntimeException {
+
+    private static final String template = "This node is a read-only replica of %s, students are modified on the leader.";
+
+    public ReadOnlyReplicaException(String leader) {
+        super(String.format(template, leader), null, false, false);
+    }
+}
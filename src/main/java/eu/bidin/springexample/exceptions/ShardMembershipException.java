@@ -0,0 +1,14 @@
+package eu.bidin.springexample.exceptions;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(value = HttpStatus.FORBIDDEN)
+public class ShardMembershipException extends RuntimeException {
+
+    private static final String template = "Node %s is not a member of the shards.";
+
+    public ShardMembershipException(String node) {
+        super(String.format(template, node), null, false, false);
+    }
+}
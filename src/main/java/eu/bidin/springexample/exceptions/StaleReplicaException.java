@@ -0,0 +1,14 @@
+package eu.bidin.springexample.exceptions;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(value = HttpStatus.SERVICE_UNAVAILABLE)
+public class StaleReplicaException extends RuntimeException {
+
+    private static final String template = "This replica of %s is more than %d ms behind the leader.";
+
+    public StaleReplicaException(String leader, long maximumStaleness) {
+        super(String.format(template, leader, maximumStaleness), null, false, false);
+    }
+}
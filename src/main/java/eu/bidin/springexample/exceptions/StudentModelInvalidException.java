@@ -11,6 +11,6 @@ public class StudentModelInvalidException extends RuntimeException {
     private static final String template = "Invalid student: %s.";
 
     public StudentModelInvalidException(List<String> errors) {
-        super(String.format(template, errors == null || errors.isEmpty() ? "N/A" : String.join(", ", errors)));
+        super(String.format(template, errors == null || errors.isEmpty() ? "N/A" : String.join(", ", errors)), null, false, false);
     }
 }
@@ -9,6 +9,6 @@ public class StudentNotFoundException extends RuntimeException {
     private static final String template = "Student '%s' does not exist.";
 
     public StudentNotFoundException(String uuid) {
-        super(String.format(template, uuid == null ? "null" : uuid));
+        super(String.format(template, uuid == null ? "null" : uuid), null, false, false);
     }
 }
@@ -0,0 +1,67 @@
+package eu.bidin.springexample.handlers;
+
+import eu.bidin.springexample.services.StudentService;
+import eu.bidin.springexample.sharding.ShardDirectory;
+import eu.bidin.springexample.sharding.ShardRebalancer;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import org.springframework.web.server.ServerWebInputException;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.ByteArrayInputStream;
+
+/**
+ * Reactive counterpart of {@link eu.bidin.springexample.controllers.ShardController}, routed by
+ * {@link StudentRouter}. Handoffs block on the table and the journal, so they run on a separate scheduler.
+ */
+@Component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ShardHandler {
+
+    private final ShardDirectory directory;
+    private final ShardRebalancer rebalancer;
+    private final StudentService service;
+
+    public ShardHandler(ShardDirectory directory, ShardRebalancer rebalancer, StudentService service) {
+        this.directory = directory;
+        this.rebalancer = rebalancer;
+        this.service = service;
+    }
+
+    public Mono<ServerResponse> getNodes(ServerRequest request) {
+        return ServerResponse.ok().contentType(MediaType.APPLICATION_JSON_UTF8).syncBody(directory.getNodes());
+    }
+
+    private static String node(ServerRequest request) {
+        return request.queryParam("node")
+                .orElseThrow(() -> new ServerWebInputException("Parameter node is required"));
+    }
+
+    private static String header(ServerRequest request, String name) {
+        return request.headers().asHttpHeaders().getFirst(name);
+    }
+
+    public Mono<ServerResponse> joinNode(ServerRequest request) {
+        String node = node(request);
+        directory.checkMember(node, header(request, ShardDirectory.SECRET_HEADER));
+        return ServerResponse.ok().contentType(MediaType.APPLICATION_JSON_UTF8).syncBody(rebalancer.join(node));
+    }
+
+    public Mono<ServerResponse> leaveNode(ServerRequest request) {
+        String node = node(request);
+        directory.checkMember(header(request, ShardDirectory.FORWARDED_HEADER), header(request, ShardDirectory.SECRET_HEADER));
+        return ServerResponse.ok().contentType(MediaType.APPLICATION_JSON_UTF8).syncBody(rebalancer.leave(node));
+    }
+
+    public Mono<ServerResponse> importStudents(ServerRequest request) {
+        directory.checkMember(header(request, ShardDirectory.FORWARDED_HEADER), header(request, ShardDirectory.SECRET_HEADER));
+        return StudentHandler.boundedBody(request, StudentHandler.MAXIMUM_BATCH_BYTES)
+                .flatMap(body -> Mono.fromRunnable(() -> service.importStudents(service.readStudents(new ByteArrayInputStream(body))))
+                        .subscribeOn(Schedulers.elastic()))
+                .then(ServerResponse.noContent().build());
+    }
+}
@@ -0,0 +1,28 @@
+package eu.bidin.springexample.handlers;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.web.reactive.error.DefaultErrorAttributes;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.stereotype.Component;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.reactive.function.server.ServerRequest;
+
+import java.util.Map;
+
+/**
+ * Reports the message of exceptions annotated with {@link ResponseStatus}, as the servlet error controller does;
+ * by default, only the reason of the annotation is reported in the reactive execution mode.
+ */
+@Component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class StudentErrorAttributes extends DefaultErrorAttributes {
+
+    @Override
+    public Map<String, Object> getErrorAttributes(ServerRequest request, boolean includeStackTrace) {
+        Map<String, Object> attributes = super.getErrorAttributes(request, includeStackTrace);
+        Throwable error = getError(request);
+        if (AnnotatedElementUtils.hasAnnotation(error.getClass(), ResponseStatus.class))
+            attributes.put("message", error.getMessage());
+        return attributes;
+    }
+}
@@ -0,0 +1,396 @@
+package eu.bidin.springexample.handlers;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import eu.bidin.springexample.DatabaseProperties;
+import eu.bidin.springexample.cache.StudentCache;
+import eu.bidin.springexample.codecs.StudentProtobuf;
+import eu.bidin.springexample.entities.Student;
+import eu.bidin.springexample.models.StudentBatchModel;
+import eu.bidin.springexample.models.StudentModel;
+import eu.bidin.springexample.persistence.PersistenceProperties;
+import eu.bidin.springexample.replication.ChangeFeed;
+import eu.bidin.springexample.services.StudentService;
+import eu.bidin.springexample.sharding.ShardClient;
+import eu.bidin.springexample.sharding.ShardDirectory;
+import eu.bidin.utility.HttpResponse;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.BodyExtractors;
+import org.springframework.web.reactive.function.BodyInserters;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.server.ServerWebInputException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+/**
+ * Reactive counterpart of {@link eu.bidin.springexample.controllers.StudentController}, routed by
+ * {@link StudentRouter}. Reads never block, so they run on the event loop. Writes are moved to a separate scheduler
+ * when the table can block them: the journal waits for the disk, the mapped table remaps and forces its files, and
+ * writers of the UUID table park while readers hold its segments. Statistics wait for the fork-join pool that
+ * computes them, so they are moved to a separate scheduler too.
+ */
+@Component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class StudentHandler {
+
+    private static final int STREAM_BATCH = 256;
+
+    /**
+     * Limits the body of a batch, which is collected before it is parsed. It holds the largest batch of students with
+     * names of the greatest length in UTF-8.
+     */
+    static final int MAXIMUM_BATCH_BYTES = 32 << 20;
+    private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+    private static final String NDJSON_E_TAG_VARIANT = "nd";
+
+    private final StudentService service;
+    private final ObjectMapper mapper;
+    private final ShardDirectory shards;
+    private final ShardClient client;
+    private final ChangeFeed feed;
+    private final Scheduler writes;
+
+    public StudentHandler(StudentService service, ObjectMapper mapper, ShardDirectory shards, ShardClient client,
+                          ChangeFeed feed, DatabaseProperties database, PersistenceProperties persistence) {
+        this.service = service;
+        this.mapper = mapper;
+        this.shards = shards;
+        this.client = client;
+        this.feed = feed;
+        this.writes = canBlock(database, persistence) ? Schedulers.elastic() : Schedulers.immediate();
+    }
+
+    /**
+     * Checks if writes to the table can block, only the concurrent table without a journal holds its locks briefly
+     * enough to write on the event loop.
+     */
+    private static boolean canBlock(DatabaseProperties database, PersistenceProperties persistence) {
+        return persistence.isEnabled() || database.getEngine() != DatabaseProperties.Engine.CONCURRENT;
+    }
+
+    private <T> Mono<T> write(Callable<T> operation) {
+        return Mono.fromCallable(operation).subscribeOn(writes);
+    }
+
+    private static Mono<ServerResponse> statistics(Callable<?> operation) {
+        return Mono.fromCallable(operation)
+                .subscribeOn(Schedulers.elastic())
+                .flatMap(result -> ServerResponse.ok().contentType(MediaType.APPLICATION_JSON_UTF8).syncBody(result));
+    }
+
+    private static String header(ServerRequest request, String name) {
+        List<String> values = request.headers().header(name);
+        return values.isEmpty() ? null : String.join(",", values);
+    }
+
+    private static Integer intParam(ServerRequest request, String name) {
+        String value = request.queryParam(name).orElse(null);
+        if (value == null)
+            return null;
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException ex) {
+            throw new ServerWebInputException("Parameter " + name + " must be a number");
+        }
+    }
+
+    private static <T> Mono<T> requiredBody(ServerRequest request, Class<T> type) {
+        return request.bodyToMono(type).switchIfEmpty(Mono.error(new ServerWebInputException("Request body is missing")));
+    }
+
+    /**
+     * Collects the body of a request, which is refused with 413 as soon as it grows past a limit instead of being
+     * buffered whole.
+     *
+     * @return bytes of the body, empty if there is none
+     */
+    static Mono<byte[]> boundedBody(ServerRequest request, int limit) {
+        return request.body(BodyExtractors.toDataBuffers())
+                .collect(ByteArrayOutputStream::new, (output, buffer) -> {
+                    try {
+                        if (output.size() + buffer.readableByteCount() > limit)
+                            throw new ResponseStatusException(HttpStatus.PAYLOAD_TOO_LARGE,
+                                    "Request body is larger than " + limit + " bytes");
+                        byte[] bytes = new byte[buffer.readableByteCount()];
+                        buffer.read(bytes);
+                        output.write(bytes, 0, bytes.length);
+                    } finally {
+                        DataBufferUtils.release(buffer);
+                    }
+                })
+                .map(ByteArrayOutputStream::toByteArray);
+    }
+
+    private static Mono<byte[]> batchBody(ServerRequest request) {
+        return boundedBody(request, MAXIMUM_BATCH_BYTES)
+                .filter(body -> body.length > 0)
+                .switchIfEmpty(Mono.error(new ServerWebInputException("Request body is missing")));
+    }
+
+    private static boolean accepts(ServerRequest request, MediaType mediaType) {
+        return request.headers().accept().stream().anyMatch(mediaType::includes);
+    }
+
+    /**
+     * Reads a student model from JSON, or from the binary format if the request declares it.
+     */
+    private static Mono<StudentModel> model(ServerRequest request) {
+        boolean protobuf = request.headers().contentType().map(StudentProtobuf.MEDIA_TYPE::includes).orElse(false);
+        if (!protobuf)
+            return requiredBody(request, StudentModel.class);
+        return requiredBody(request, byte[].class).map(body -> {
+            try {
+                return StudentProtobuf.decodeModel(body);
+            } catch (IOException ex) {
+                throw new ServerWebInputException("Malformed student: " + ex.getMessage());
+            }
+        });
+    }
+
+    private static Mono<ServerResponse> notModified(String eTag) {
+        return ServerResponse.status(HttpStatus.NOT_MODIFIED).eTag(eTag).varyBy(HttpHeaders.ACCEPT).build();
+    }
+
+    /**
+     * Streams all students as a JSON array, or as newline delimited JSON or length-prefixed binary students if
+     * requested. A batch of students is read from the table only when the client is ready for more. In a sharded
+     * deployment, the students of the other nodes follow those of this node.
+     */
+    public Mono<ServerResponse> getStudents(ServerRequest request) {
+        service.checkReadable();
+        boolean forwarded = request.headers().header(ShardDirectory.FORWARDED_HEADER).size() > 0;
+        List<String> peers = forwarded ? Collections.emptyList() : shards.getPeers();
+        boolean protobuf = accepts(request, StudentProtobuf.MEDIA_TYPE);
+        boolean ndjson = !protobuf && accepts(request, NDJSON);
+        // the entity tag of the table only covers the shard of this node, every format has a tag of its own
+        String eTag = peers.isEmpty() ? service.getTableETag() : null;
+        if (protobuf)
+            eTag = HttpResponse.variantETag(eTag, StudentProtobuf.E_TAG_VARIANT);
+        else if (ndjson)
+            eTag = HttpResponse.variantETag(eTag, NDJSON_E_TAG_VARIANT);
+        if (HttpResponse.isNotModified(header(request, HttpHeaders.IF_NONE_MATCH), eTag))
+            return notModified(eTag);
+
+        ServerResponse.BodyBuilder response = ServerResponse.ok().varyBy(HttpHeaders.ACCEPT);
+        if (eTag != null)
+            response.eTag(eTag);
+
+        if (protobuf) {
+            // a list in the binary format is a concatenation of students, so those of other nodes are copied as they are
+            Flux<byte[]> remote = Flux.fromIterable(peers).concatMap(client::delimitedStudents);
+            return response
+                    .contentType(StudentProtobuf.MEDIA_TYPE)
+                    .body(BodyInserters.fromPublisher(delimitedStudents().concatWith(remote), byte[].class));
+        }
+
+        return response
+                .contentType(ndjson ? NDJSON : MediaType.APPLICATION_JSON_UTF8)
+                .body(BodyInserters.fromPublisher(students(ndjson, peers), byte[].class));
+    }
+
+    private Flux<byte[]> delimitedStudents() {
+        // the state is the cursor of the next batch, -1 after the last one
+        return Flux.generate(() -> 0L, (cursor, sink) -> {
+            if (cursor < 0) {
+                sink.complete();
+                return cursor;
+            }
+
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            long next = service.scanStudents(cursor, STREAM_BATCH, student -> {
+                try {
+                    StudentProtobuf.writeDelimited(output, student);
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+            });
+
+            sink.next(output.toByteArray());
+            return next == 0 ? -1L : next;
+        });
+    }
+
+    private Flux<byte[]> students(boolean ndjson, List<String> peers) {
+        return Flux.defer(() -> {
+            // whether a student was written, in a JSON array every other student is preceded by a comma
+            boolean[] written = {false};
+            Flux<byte[]> local = localStudents(ndjson, written);
+            Flux<byte[]> remote = Flux.fromIterable(peers)
+                    .concatMap(client::studentLines)
+                    .map(line -> {
+                        byte[] json = line.getBytes(StandardCharsets.UTF_8);
+                        ByteArrayOutputStream output = new ByteArrayOutputStream(json.length + 1);
+                        if (!ndjson && written[0])
+                            output.write(',');
+                        output.write(json, 0, json.length);
+                        if (ndjson)
+                            output.write('\n');
+                        written[0] = true;
+                        return output.toByteArray();
+                    });
+
+            Flux<byte[]> students = local.concatWith(remote);
+            if (ndjson)
+                return students;
+            return Flux.just(new byte[]{'['}).concatWith(students).concatWith(Flux.just(new byte[]{']'}));
+        });
+    }
+
+    private Flux<byte[]> localStudents(boolean ndjson, boolean[] written) {
+        // the state is the cursor of the next batch, -1 after the last one
+        return Flux.generate(() -> 0L, (cursor, sink) -> {
+            if (cursor < 0) {
+                sink.complete();
+                return cursor;
+            }
+
+            List<Student> batch = new ArrayList<>(STREAM_BATCH);
+            long next = service.scanStudents(cursor, STREAM_BATCH, batch::add);
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            try {
+                for (Student student : batch) {
+                    if (!ndjson && written[0])
+                        output.write(',');
+                    mapper.writeValue(output, student);
+                    if (ndjson)
+                        output.write('\n');
+                    written[0] = true;
+                }
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+
+            sink.next(output.toByteArray());
+            return next == 0 ? -1L : next;
+        });
+    }
+
+    public Mono<ServerResponse> getStudentPage(ServerRequest request) {
+        String cursor = request.queryParam("cursor").orElse(null);
+        // routed only with a limit
+        int limit = intParam(request, "limit");
+        return ServerResponse.ok()
+                .contentType(MediaType.APPLICATION_JSON_UTF8)
+                .syncBody(service.getStudentPage(cursor, limit));
+    }
+
+    public Mono<ServerResponse> searchStudents(ServerRequest request) {
+        Integer grade = intParam(request, "grade");
+        String name = request.queryParam("name").orElse(null);
+        Integer limit = intParam(request, "limit");
+        return ServerResponse.ok()
+                .contentType(MediaType.APPLICATION_JSON_UTF8)
+                .syncBody(service.searchStudents(grade, name, limit == null ? StudentService.MAXIMUM_LIMIT : limit));
+    }
+
+    public Mono<ServerResponse> getGradeHistogram(ServerRequest request) {
+        return statistics(service::getGradeHistogram);
+    }
+
+    public Mono<ServerResponse> getAverageGrade(ServerRequest request) {
+        return statistics(service::getAverageGrade);
+    }
+
+    public Mono<ServerResponse> getInitialCounts(ServerRequest request) {
+        return statistics(service::getInitialCounts);
+    }
+
+    public Mono<ServerResponse> getChanges(ServerRequest request) {
+        String after = request.queryParam("after").orElse(header(request, "Last-Event-ID"));
+        return ServerResponse.ok()
+                .contentType(MediaType.TEXT_EVENT_STREAM)
+                .body(BodyInserters.fromServerSentEvents(feed.subscribe(after)));
+    }
+
+    public Mono<ServerResponse> getStudent(ServerRequest request) {
+        if (accepts(request, StudentProtobuf.MEDIA_TYPE)) {
+            Student student = service.findStudent(request.pathVariable("uuid"));
+            String eTag = HttpResponse.variantETag(service.getETag(student), StudentProtobuf.E_TAG_VARIANT);
+            if (HttpResponse.isNotModified(header(request, HttpHeaders.IF_NONE_MATCH), eTag))
+                return notModified(eTag);
+
+            return ServerResponse.ok()
+                    .contentType(StudentProtobuf.MEDIA_TYPE)
+                    .eTag(eTag)
+                    .varyBy(HttpHeaders.ACCEPT)
+                    .syncBody(StudentProtobuf.encode(student));
+        }
+
+        StudentCache.Entry entry = service.getStudent(request.pathVariable("uuid"));
+        if (HttpResponse.isNotModified(header(request, HttpHeaders.IF_NONE_MATCH), entry.getETag()))
+            return notModified(entry.getETag());
+
+        return ServerResponse.ok()
+                .contentType(MediaType.APPLICATION_JSON_UTF8)
+                .eTag(entry.getETag())
+                .varyBy(HttpHeaders.ACCEPT)
+                .syncBody(entry.getBody());
+    }
+
+    public Mono<ServerResponse> createStudent(ServerRequest request) {
+        return model(request)
+                .flatMap(model -> write(() -> service.createStudent(model)))
+                .flatMap(key -> ServerResponse.created(request.uriBuilder().path("/{uuid}").build(key)).build());
+    }
+
+    public Mono<ServerResponse> updateStudent(ServerRequest request) {
+        String uuid = request.pathVariable("uuid");
+        String ifMatch = header(request, HttpHeaders.IF_MATCH);
+        return model(request)
+                .flatMap(model -> write(() -> service.updateStudent(uuid, model, ifMatch)))
+                .flatMap(eTag -> ServerResponse.noContent().eTag(eTag).build());
+    }
+
+    public Mono<ServerResponse> deleteStudent(ServerRequest request) {
+        String uuid = request.pathVariable("uuid");
+        return write(() -> {
+            service.deleteStudent(uuid);
+            return uuid;
+        }).flatMap(key -> ServerResponse.noContent().build());
+    }
+
+    /**
+     * Creates all valid students of a JSON array or newline delimited JSON, see
+     * {@link StudentService#createStudents}. The body is collected before it is parsed, up to
+     * {@link #MAXIMUM_BATCH_BYTES}.
+     */
+    public Mono<ServerResponse> createStudents(ServerRequest request) {
+        String location = request.uriBuilder().replacePath("/students/").replaceQuery(null).build().toString();
+        return batchBody(request)
+                .flatMap(body -> write(() -> service.createStudents(
+                        service.readBatch(new ByteArrayInputStream(body), StudentModel.class), location)))
+                .flatMap(results -> ServerResponse.ok().contentType(MediaType.APPLICATION_JSON_UTF8).syncBody(results));
+    }
+
+    public Mono<ServerResponse> updateStudents(ServerRequest request) {
+        return batchBody(request)
+                .flatMap(body -> write(() -> service.updateStudents(
+                        service.readBatch(new ByteArrayInputStream(body), StudentBatchModel.class))))
+                .flatMap(results -> ServerResponse.ok().contentType(MediaType.APPLICATION_JSON_UTF8).syncBody(results));
+    }
+
+    public Mono<ServerResponse> deleteStudents(ServerRequest request) {
+        return batchBody(request)
+                .flatMap(body -> write(() -> service.deleteStudents(
+                        service.readBatch(new ByteArrayInputStream(body), String.class))))
+                .flatMap(results -> ServerResponse.ok().contentType(MediaType.APPLICATION_JSON_UTF8).syncBody(results));
+    }
+}
@@ -0,0 +1,65 @@
+package eu.bidin.springexample.handlers;
+
+import eu.bidin.springexample.codecs.StudentProtobuf;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.web.embedded.netty.NettyReactiveWebServerFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.server.RequestPredicate;
+import org.springframework.web.reactive.function.server.RouterFunction;
+import org.springframework.web.reactive.function.server.ServerResponse;
+
+import static org.springframework.web.reactive.function.server.RequestPredicates.DELETE;
+import static org.springframework.web.reactive.function.server.RequestPredicates.GET;
+import static org.springframework.web.reactive.function.server.RequestPredicates.POST;
+import static org.springframework.web.reactive.function.server.RequestPredicates.PUT;
+import static org.springframework.web.reactive.function.server.RequestPredicates.contentType;
+import static org.springframework.web.reactive.function.server.RequestPredicates.queryParam;
+import static org.springframework.web.reactive.function.server.RouterFunctions.route;
+
+/**
+ * Routes of the reactive execution mode, the same as those of the servlet controller.
+ * Active with the 'reactive' profile, which runs the application on Netty instead of Tomcat.
+ */
+@Configuration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class StudentRouter {
+
+    private static final RequestPredicate BATCH =
+            contentType(MediaType.APPLICATION_JSON, MediaType.parseMediaType("application/x-ndjson"));
+
+    @Bean
+    public RouterFunction<ServerResponse> studentRoutes(StudentHandler handler) {
+        return route(GET("/students").and(queryParam("limit", limit -> true)), handler::getStudentPage)
+                .andRoute(GET("/students"), handler::getStudents)
+                .andRoute(GET("/students/search"), handler::searchStudents)
+                .andRoute(GET("/students/statistics/grades"), handler::getGradeHistogram)
+                .andRoute(GET("/students/statistics/average-grade"), handler::getAverageGrade)
+                .andRoute(GET("/students/statistics/initials"), handler::getInitialCounts)
+                .andRoute(POST("/students/batch").and(BATCH), handler::createStudents)
+                .andRoute(PUT("/students/batch").and(BATCH), handler::updateStudents)
+                .andRoute(DELETE("/students/batch").and(BATCH), handler::deleteStudents)
+                .andRoute(GET("/students/changes"), handler::getChanges)
+                .andRoute(GET("/students/{uuid}"), handler::getStudent)
+                .andRoute(POST("/students"), handler::createStudent)
+                .andRoute(PUT("/students/{uuid}"), handler::updateStudent)
+                .andRoute(DELETE("/students/{uuid}"), handler::deleteStudent);
+    }
+
+    @Bean
+    public RouterFunction<ServerResponse> shardRoutes(ShardHandler handler) {
+        return route(GET("/shards/nodes"), handler::getNodes)
+                .andRoute(POST("/shards/nodes"), handler::joinNode)
+                .andRoute(DELETE("/shards/nodes"), handler::leaveNode)
+                .andRoute(POST("/shards/students").and(contentType(StudentProtobuf.MEDIA_TYPE)), handler::importStudents);
+    }
+
+    /**
+     * Tomcat is on the classpath for the servlet mode and would be preferred over Netty otherwise.
+     */
+    @Bean
+    public NettyReactiveWebServerFactory nettyReactiveWebServerFactory() {
+        return new NettyReactiveWebServerFactory();
+    }
+}
@@ -0,0 +1,219 @@
+package eu.bidin.springexample.indexes;
+
+import eu.bidin.springexample.entities.Student;
+import eu.bidin.springexample.models.StudentModel;
+import eu.bidin.utility.Table;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * Secondary indexes of the student table, by grade and by name prefix.
+ * <p>
+ * Every grade has a sorted set of keys, names are kept in a sorted set of (lower case name, key) pairs, so a prefix
+ * is a range of it. Both are updated by {@link #refresh}, which reads the current student from the table, after
+ * each modification of the table. Refreshes of the same key are serialized, so the last one always wins.
+ * Between a modification and its refresh the indexes can be stale, so every result is checked against the table.
+ */
+@Component
+public class StudentIndex {
+
+    /**
+     * Indexed fields of a student, {@code null} if a field is not indexed, with the name they were made from.
+     */
+    private static final class Indexed {
+
+        private final Integer grade;
+        private final NameKey name;
+        private final String source;
+
+        private Indexed(Integer grade, NameKey name, String source) {
+            this.grade = grade;
+            this.name = name;
+            this.source = source;
+        }
+    }
+
+    /**
+     * Entry of the name index, ordered by name and then by key.
+     */
+    private static final class NameKey implements Comparable<NameKey> {
+
+        private static final UUID LOWEST = new UUID(Long.MIN_VALUE, Long.MIN_VALUE);
+
+        private final String name;
+        private final UUID key;
+
+        private NameKey(String name, UUID key) {
+            this.name = name;
+            this.key = key;
+        }
+
+        @Override
+        public int compareTo(NameKey other) {
+            int result = name.compareTo(other.name);
+            return result != 0 ? result : key.compareTo(other.key);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof NameKey))
+                return false;
+            NameKey other = (NameKey) obj;
+            return name.equals(other.name) && key.equals(other.key);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * name.hashCode() + key.hashCode();
+        }
+    }
+
+    private final Table<UUID, Student> database;
+    private final ConcurrentMap<UUID, Indexed> indexed = new ConcurrentHashMap<>();
+    private final List<Set<UUID>> grades = new ArrayList<>();
+    private final NavigableSet<NameKey> names = new ConcurrentSkipListSet<>();
+    /**
+     * Key whose refresh runs on this thread: reading it from a bounded table can expire it, which refreshes it again.
+     */
+    private final ThreadLocal<UUID> refreshing = new ThreadLocal<>();
+
+    public StudentIndex(Table<UUID, Student> database) {
+        this.database = database;
+        for (int grade = StudentModel.MINIMUM_GRADE; grade <= StudentModel.MAXIMUM_GRADE; grade++)
+            grades.add(new ConcurrentSkipListSet<>());
+
+        // students that were kept across a restart
+        List<UUID> keys = new ArrayList<>();
+        long cursor = 0;
+        do {
+            cursor = database.scan(cursor, 1024, e -> keys.add(e.getKey()));
+            keys.forEach(this::refresh);
+            keys.clear();
+        } while (cursor != 0);
+    }
+
+    private static String normalize(String name) {
+        return name.toLowerCase(Locale.ROOT);
+    }
+
+    private Set<UUID> grade(int grade) {
+        return grades.get(grade - StudentModel.MINIMUM_GRADE);
+    }
+
+    private static boolean indexable(Integer grade) {
+        return grade != null && grade >= StudentModel.MINIMUM_GRADE && grade <= StudentModel.MAXIMUM_GRADE;
+    }
+
+    /**
+     * Brings the indexes of a key up to date with the table, call after every modification of the key.
+     *
+     * @param key key of the modified student
+     */
+    public void refresh(UUID key) {
+        // the running refresh already reads the table after the expiry
+        if (key.equals(refreshing.get()))
+            return;
+        refreshing.set(key);
+        try {
+            update(key);
+        } finally {
+            refreshing.remove();
+        }
+    }
+
+    private void update(UUID key) {
+        indexed.compute(key, (k, previous) -> {
+            Student student = database.get(k);
+            Integer grade = student == null || !indexable(student.getGrade()) ? null : student.getGrade();
+            String source = student == null ? null : student.getName();
+            // most updates keep the name, its entry is reused instead of normalizing the name again
+            NameKey name = source == null ? null
+                    : previous != null && source.equals(previous.source) ? previous.name
+                    : new NameKey(normalize(source), k);
+
+            if (previous != null && previous.grade != null && !previous.grade.equals(grade))
+                grade(previous.grade).remove(k);
+            if (previous != null && previous.name != null && !previous.name.equals(name))
+                names.remove(previous.name);
+            if (grade != null)
+                grade(grade).add(k);
+            if (name != null)
+                names.add(name);
+
+            return grade == null && name == null ? null : new Indexed(grade, name, source);
+        });
+    }
+
+    /**
+     * Returns students with specified grade whose name starts with specified prefix, ignoring case.
+     * Runs in time proportional to the visited part of one index: the names with the prefix if it is specified,
+     * otherwise the students with the grade.
+     *
+     * @param grade  grade of the students, {@code null} for any
+     * @param prefix start of the names of the students, {@code null} for any
+     * @param limit  highest number of returned students
+     * @return students in the order of the index, by name if a prefix is specified, otherwise by key
+     */
+    public List<Student> find(Integer grade, String prefix, int limit) {
+        List<Student> students = new ArrayList<>();
+        if (grade != null && !indexable(grade))
+            return students;
+
+        String normalized = prefix == null ? null : normalize(prefix);
+        if (normalized != null && (grade == null || !normalized.isEmpty())) {
+            for (NameKey name : names.tailSet(new NameKey(normalized, NameKey.LOWEST))) {
+                if (students.size() == limit || !name.name.startsWith(normalized))
+                    break;
+                add(students, name.key, grade, normalized);
+            }
+        } else if (grade != null) {
+            for (UUID key : grade(grade)) {
+                if (students.size() == limit)
+                    break;
+                add(students, key, grade, normalized);
+            }
+        }
+        return students;
+    }
+
+    /**
+     * Adds the current student of a key to the result, if it still matches the query.
+     */
+    private void add(List<Student> students, UUID key, Integer grade, String prefix) {
+        Student student = database.get(key);
+        if (student == null)
+            return;
+        if (grade != null && !grade.equals(student.getGrade()))
+            return;
+        String name = student.getName();
+        if (prefix != null && (name == null || !startsWith(name, prefix)))
+            return;
+        students.add(student);
+    }
+
+    /**
+     * Checks if a name starts with a normalized prefix. The name is only normalized if its start is not ASCII, whose
+     * characters are lower cased one at a time.
+     */
+    private static boolean startsWith(String name, String prefix) {
+        for (int i = 0; i < prefix.length(); i++) {
+            if (i == name.length())
+                return false;
+            char c = name.charAt(i);
+            if (c >= 0x80)
+                return normalize(name).startsWith(prefix);
+            if (Character.toLowerCase(c) != prefix.charAt(i))
+                return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,67 @@
+package eu.bidin.springexample.metrics;
+
+import eu.bidin.springexample.entities.Student;
+import eu.bidin.utility.Table;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.stereotype.Component;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Exposes the state of the student table. Every value is read from the table when the metrics are scraped,
+ * the table itself only maintains its counters, so reads and writes are not slowed down by the metrics.
+ */
+@Component
+public class StudentTableMetrics implements MeterBinder {
+
+    private final Table<UUID, Student> database;
+
+    public StudentTableMetrics(Table<UUID, Student> database) {
+        this.database = database;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("students.table.size", database, Table::size)
+                .description("Number of students in the table")
+                .strongReference(true)
+                .register(registry);
+        Gauge.builder("students.table.capacity", database, Table::getCapacity)
+                .description("Number of slots of the table")
+                .baseUnit("slots")
+                .strongReference(true)
+                .register(registry);
+        Gauge.builder("students.table.load.factor", database, Table::getLoadFactor)
+                .description("Ratio of students to slots that triggers a resize")
+                .strongReference(true)
+                .register(registry);
+        Gauge.builder("students.table.load", database, t -> t.getCapacity() == 0 ? 0 : (double) t.size() / t.getCapacity())
+                .description("Current ratio of students to slots")
+                .strongReference(true)
+                .register(registry);
+        Gauge.builder("students.table.longest.chain", database, Table::getLongestChain)
+                .description("Number of students in the fullest slot, or the longest probe sequence of open addressing")
+                .strongReference(true)
+                .register(registry);
+        FunctionTimer.builder("students.table.resizes", database,
+                Table::getResizeCount, Table::getResizeTime, TimeUnit.NANOSECONDS)
+                .description("Resizes of the table and the time spent on them")
+                .register(registry);
+        Gauge.builder("students.table.weight", database, Table::getWeight)
+                .description("Estimated size of the students of a table with a maximum weight")
+                .baseUnit("bytes")
+                .strongReference(true)
+                .register(registry);
+        FunctionCounter.builder("students.table.evictions", database, Table::getEvictionCount)
+                .description("Students removed to keep the table within its maximum size or weight")
+                .register(registry);
+        FunctionCounter.builder("students.table.expirations", database, Table::getExpirationCount)
+                .description("Students removed after their time to live")
+                .register(registry);
+    }
+}
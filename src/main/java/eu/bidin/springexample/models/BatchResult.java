@@ -0,0 +1,46 @@
+package eu.bidin.springexample.models;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.util.List;
+
+/**
+ * Outcome of one item of a batch request, with the status a single request would have returned.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class BatchResult {
+
+    private final int index;
+    private final int status;
+    private final String uuid;
+    private final String location;
+    private final List<String> errors;
+
+    public BatchResult(int index, int status, String uuid, String location, List<String> errors) {
+        this.index = index;
+        this.status = status;
+        this.uuid = uuid;
+        this.location = location;
+        this.errors = errors;
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    public String getUuid() {
+        return uuid;
+    }
+
+    public String getLocation() {
+        return location;
+    }
+
+    public List<String> getErrors() {
+        return errors;
+    }
+}
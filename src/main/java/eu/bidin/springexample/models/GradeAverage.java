@@ -0,0 +1,26 @@
+package eu.bidin.springexample.models;
+
+public class GradeAverage {
+
+    private final long count;
+    private final Double average;
+
+    public GradeAverage(long count, Double average) {
+        this.count = count;
+        this.average = average;
+    }
+
+    /**
+     * Number of students with a grade.
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Average of their grades, {@code null} if there are none.
+     */
+    public Double getAverage() {
+        return average;
+    }
+}
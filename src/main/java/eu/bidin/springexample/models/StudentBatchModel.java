@@ -0,0 +1,17 @@
+package eu.bidin.springexample.models;
+
+/**
+ * Item of a batch update, a student model together with the UUID of the student it replaces.
+ */
+public class StudentBatchModel extends StudentModel {
+
+    private String uuid;
+
+    public String getUuid() {
+        return uuid;
+    }
+
+    public void setUuid(String uuid) {
+        this.uuid = uuid;
+    }
+}
@@ -0,0 +1,50 @@
+package eu.bidin.springexample.models;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import eu.bidin.springexample.entities.Student;
+
+import java.util.UUID;
+
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class StudentChange {
+
+    public enum Type {
+        CREATED,
+        UPDATED,
+        DELETED
+    }
+
+    private final long sequence;
+    private final Type type;
+    private final UUID uuid;
+    private final Student student;
+
+    public StudentChange(long sequence, Type type, UUID uuid, Student student) {
+        this.sequence = sequence;
+        this.type = type;
+        this.uuid = uuid;
+        this.student = student;
+    }
+
+    /**
+     * Position of the change in the feed, resume after it with {@code after} or {@code Last-Event-ID}.
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public UUID getUuid() {
+        return uuid;
+    }
+
+    /**
+     * Student after the change, {@code null} if it was deleted.
+     */
+    public Student getStudent() {
+        return student;
+    }
+}
@@ -5,10 +5,10 @@ import java.util.List;
 
 public class StudentModel {
 
-    private static final int MINIMUM_NAME_LENGTH = 1;
-    private static final int MAXIMUM_NAME_LENGTH = 50;
-    private static final int MINIMUM_GRADE = 1;
-    private static final int MAXIMUM_GRADE = 5;
+    public static final int MINIMUM_NAME_LENGTH = 1;
+    public static final int MAXIMUM_NAME_LENGTH = 50;
+    public static final int MINIMUM_GRADE = 1;
+    public static final int MAXIMUM_GRADE = 5;
 
     private String name;
     private Integer grade;
@@ -18,7 +18,7 @@ public class StudentModel {
 
         if (name == null)
             errors.add("name is required");
-        else if (getNameLength() < MINIMUM_NAME_LENGTH || getNameLength() > MAXIMUM_NAME_LENGTH)
+        else if (getNameLength() < MINIMUM_NAME_LENGTH || name.length() > MAXIMUM_NAME_LENGTH)
             errors.add("name must be between " + MINIMUM_NAME_LENGTH + " and " + MAXIMUM_NAME_LENGTH + " characters long");
 
         if (grade == null)
@@ -0,0 +1,27 @@
+package eu.bidin.springexample.models;
+
+import eu.bidin.springexample.entities.Student;
+
+import java.util.List;
+
+public class StudentPage {
+
+    private final List<Student> students;
+    private final String next;
+
+    public StudentPage(List<Student> students, String next) {
+        this.students = students;
+        this.next = next;
+    }
+
+    public List<Student> getStudents() {
+        return students;
+    }
+
+    /**
+     * Cursor of the following page, {@code null} on the last page.
+     */
+    public String getNext() {
+        return next;
+    }
+}
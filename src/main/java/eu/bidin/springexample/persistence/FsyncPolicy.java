@@ -0,0 +1,22 @@
+package eu.bidin.springexample.persistence;
+
+/**
+ * When the write-ahead log is forced to disk.
+ */
+public enum FsyncPolicy {
+
+    /**
+     * Every write is forced to disk on its own before it is acknowledged.
+     */
+    ALWAYS,
+
+    /**
+     * Writes wait until they are forced to disk, concurrent writes share a single fsync (group commit).
+     */
+    BATCH,
+
+    /**
+     * Writes are acknowledged immediately and forced to disk periodically, a crash loses at most one interval.
+     */
+    INTERVAL
+}
@@ -0,0 +1,559 @@
+package eu.bidin.springexample.persistence;
+
+import eu.bidin.springexample.entities.Student;
+import eu.bidin.utility.EvictionPolicy;
+import eu.bidin.utility.MyHashtable.TableEntry;
+import eu.bidin.utility.Table;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Student table that records every modification in a {@link WriteAheadLog} before it is acknowledged, and
+ * periodically writes a {@link SnapshotFile} so the log can be truncated.
+ * <p>
+ * Modifications of the same key are ordered by a striped lock, which is held while the record is appended and the
+ * underlying table is updated, so the order in the log is the order in the table. The record is appended first, so
+ * readers never see a modification the log does not have and a failed append leaves the table as it was. A record
+ * the underlying table then rejects is followed by one that restores the previous student, so replaying the log gives
+ * the same table. Waiting for the record to reach the disk happens after the lock is released, which lets concurrent
+ * writers share one fsync; a writer whose record can not be forced gets the exception, but its modification stays,
+ * as the record may reach the disk anyway.
+ * <p>
+ * Snapshots are fuzzy: the log is rolled over while all stripes are locked, then the table is copied without locks.
+ * Records after the rollover may or may not be part of the snapshot, replaying them again gives the same result.
+ */
+public class JournaledStudentTable implements Table<UUID, Student>, Closeable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(JournaledStudentTable.class);
+    private static final int STRIPES = 64;
+
+    private final Table<UUID, Student> table;
+    private final Path directory;
+    private final WriteAheadLog log;
+    private final ReentrantLock[] locks = new ReentrantLock[STRIPES];
+    private final ScheduledExecutorService scheduler;
+    private final Object snapshotMonitor = new Object();
+
+    /**
+     * Opens the log after the table was recovered.
+     */
+    interface LogFactory {
+        WriteAheadLog open(Path directory, FsyncPolicy policy, long lastLsn) throws IOException;
+    }
+
+    public JournaledStudentTable(Table<UUID, Student> table, PersistenceProperties properties) throws IOException {
+        this(table, properties, WriteAheadLog::new);
+    }
+
+    JournaledStudentTable(Table<UUID, Student> table, PersistenceProperties properties, LogFactory logFactory) throws IOException {
+        this.table = table;
+        this.directory = Paths.get(properties.getDirectory());
+        for (int i = 0; i < STRIPES; i++)
+            locks[i] = new ReentrantLock();
+
+        Files.createDirectories(directory);
+        long lastLsn = recover();
+        this.log = logFactory.open(directory, properties.getFsync(), lastLsn);
+
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "student-journal");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long snapshotInterval = properties.getSnapshotInterval().toMillis();
+        scheduler.scheduleWithFixedDelay(this::snapshotQuietly, snapshotInterval, snapshotInterval, TimeUnit.MILLISECONDS);
+        if (properties.getFsync() == FsyncPolicy.INTERVAL) {
+            long fsyncInterval = properties.getFsyncInterval().toMillis();
+            scheduler.scheduleWithFixedDelay(log::sync, fsyncInterval, fsyncInterval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Rebuilds the table from the latest snapshot and the log records after it.
+     *
+     * @return LSN of the last recovered record
+     */
+    private long recover() throws IOException {
+        boolean journaled;
+        try (Stream<Path> files = Files.list(directory)) {
+            journaled = files.anyMatch(p -> !p.getFileName().toString().endsWith(".tmp"));
+        }
+        // a table that is persistent on its own is rebuilt from the journal, or becomes its first snapshot
+        if (journaled)
+            table.clear();
+        else if (!table.isEmpty())
+            SnapshotFile.write(directory, 0, table);
+
+        long snapshotLsn = SnapshotFile.read(directory, table::put);
+        long lastLsn = WriteAheadLog.replay(directory, snapshotLsn, record -> {
+            switch (record.getOperation()) {
+                case PUT:
+                    try {
+                        table.put(record.getKey(), record.getStudent());
+                    } catch (IllegalArgumentException ex) {
+                        // rejected when it was written too, the next record of the key restores the previous student
+                        LOGGER.debug("Skipped rejected record {}", record.getLsn());
+                    }
+                    break;
+                case REMOVE:
+                    table.remove(record.getKey());
+                    break;
+                case CLEAR:
+                    table.clear();
+                    break;
+            }
+        });
+        LOGGER.info("Recovered {} students from snapshot {} and log up to {}", table.size(), snapshotLsn, lastLsn);
+        return lastLsn;
+    }
+
+    /**
+     * Applies a modification whose record was appended. If the table rejects it, the table is left as it was, and a
+     * record of its current student is appended. The caller must hold the stripe of the key.
+     */
+    private <T> T apply(UUID key, Supplier<T> modification) {
+        try {
+            return modification.get();
+        } catch (RuntimeException ex) {
+            try {
+                Student current = table.get(key);
+                if (current == null)
+                    log.appendRemove(key);
+                else
+                    log.appendPut(key, current);
+            } catch (RuntimeException undo) {
+                ex.addSuppressed(undo);
+            }
+            throw ex;
+        }
+    }
+
+    private static void validate(Student value) {
+        if (value == null)
+            throw new IllegalArgumentException("Value must not be null.");
+    }
+
+    private ReentrantLock lockFor(UUID key) {
+        int h = key.hashCode();
+        return locks[(h ^ (h >>> 16)) & (STRIPES - 1)];
+    }
+
+    private void lockAll() {
+        for (ReentrantLock lock : locks)
+            lock.lock();
+    }
+
+    private void unlockAll() {
+        for (int i = STRIPES - 1; i >= 0; i--)
+            locks[i].unlock();
+    }
+
+    /**
+     * Writes a snapshot of the table and deletes the log segments it makes obsolete.
+     */
+    public void snapshot() throws IOException {
+        synchronized (snapshotMonitor) {
+            long lsn;
+            lockAll();
+            try {
+                lsn = log.rollover();
+            } finally {
+                unlockAll();
+            }
+            SnapshotFile.write(directory, lsn, table);
+            log.truncate(lsn);
+        }
+    }
+
+    private void snapshotQuietly() {
+        try {
+            snapshot();
+        } catch (IOException | RuntimeException ex) {
+            LOGGER.error("Snapshot of the student table failed", ex);
+        }
+    }
+
+    @Override
+    public int size() {
+        return table.size();
+    }
+
+    @Override
+    public int getCapacity() {
+        return table.getCapacity();
+    }
+
+    @Override
+    public double getLoadFactor() {
+        return table.getLoadFactor();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return table.isEmpty();
+    }
+
+    @Override
+    public int getLongestChain() {
+        return table.getLongestChain();
+    }
+
+    @Override
+    public long getResizeCount() {
+        return table.getResizeCount();
+    }
+
+    @Override
+    public long getResizeTime() {
+        return table.getResizeTime();
+    }
+
+    @Override
+    public EvictionPolicy<? super Student> getEvictionPolicy() {
+        return table.getEvictionPolicy();
+    }
+
+    @Override
+    public long getWeight() {
+        return table.getWeight();
+    }
+
+    @Override
+    public long getEvictionCount() {
+        return table.getEvictionCount();
+    }
+
+    @Override
+    public long getExpirationCount() {
+        return table.getExpirationCount();
+    }
+
+    @Override
+    public void setEvictionListener(BiConsumer<? super UUID, ? super Student> listener) {
+        table.setEvictionListener(listener);
+    }
+
+    @Override
+    public long evictExpired(long cursor, int limit) throws IllegalArgumentException {
+        return table.evictExpired(cursor, limit);
+    }
+
+    @Override
+    public Student get(UUID key) {
+        return table.get(key);
+    }
+
+    @Override
+    public boolean containsKey(UUID key) {
+        return table.containsKey(key);
+    }
+
+    @Override
+    public boolean containsValue(Student value) {
+        return table.containsValue(value);
+    }
+
+    @Override
+    public void put(UUID key, Student value) throws IllegalArgumentException {
+        if (key == null)
+            throw new IllegalArgumentException("Key must not be null.");
+        validate(value);
+
+        long lsn;
+        ReentrantLock lock = lockFor(key);
+        lock.lock();
+        try {
+            lsn = log.appendPut(key, value);
+            apply(key, () -> {
+                table.put(key, value);
+                return null;
+            });
+        } finally {
+            lock.unlock();
+        }
+        log.await(lsn);
+    }
+
+    @Override
+    public Student putIfAbsent(UUID key, Student value) throws IllegalArgumentException {
+        if (key == null)
+            throw new IllegalArgumentException("Key must not be null.");
+        validate(value);
+
+        long lsn;
+        ReentrantLock lock = lockFor(key);
+        lock.lock();
+        try {
+            Student existing = table.get(key);
+            if (existing != null)
+                return existing;
+            lsn = log.appendPut(key, value);
+            apply(key, () -> table.putIfAbsent(key, value));
+        } finally {
+            lock.unlock();
+        }
+        log.await(lsn);
+        return null;
+    }
+
+    @Override
+    public boolean replace(UUID key, Student expected, Student value) {
+        if (key == null)
+            return false;
+        validate(value);
+
+        long lsn;
+        ReentrantLock lock = lockFor(key);
+        lock.lock();
+        try {
+            Student current = table.get(key);
+            if (current == null || !current.equals(expected))
+                return false;
+            lsn = log.appendPut(key, value);
+            apply(key, () -> {
+                table.put(key, value);
+                return null;
+            });
+        } finally {
+            lock.unlock();
+        }
+        log.await(lsn);
+        return true;
+    }
+
+    /**
+     * Computes the new student while the stripe of the key is locked, the underlying table is only locked to store it.
+     */
+    @Override
+    public Student computeIfPresent(UUID key, BiFunction<? super UUID, ? super Student, ? extends Student> function) {
+        if (key == null)
+            return null;
+
+        long lsn;
+        Student value;
+        ReentrantLock lock = lockFor(key);
+        lock.lock();
+        try {
+            Student current = table.get(key);
+            if (current == null)
+                return null;
+
+            value = function.apply(key, current);
+            if (value == null) {
+                lsn = log.appendRemove(key);
+                apply(key, () -> table.remove(key));
+            } else {
+                lsn = log.appendPut(key, value);
+                apply(key, () -> {
+                    table.put(key, value);
+                    return null;
+                });
+            }
+        } finally {
+            lock.unlock();
+        }
+        log.await(lsn);
+        return value;
+    }
+
+    @Override
+    public Student remove(UUID key) {
+        if (key == null)
+            return null;
+
+        long lsn;
+        Student removed;
+        ReentrantLock lock = lockFor(key);
+        lock.lock();
+        try {
+            if (!table.containsKey(key))
+                return null;
+            lsn = log.appendRemove(key);
+            removed = apply(key, () -> table.remove(key));
+        } finally {
+            lock.unlock();
+        }
+        log.await(lsn);
+        return removed;
+    }
+
+    @Override
+    public long scan(long cursor, long end, int limit, Consumer<TableEntry<UUID, Student>> consumer) throws IllegalArgumentException {
+        return table.scan(cursor, end, limit, consumer);
+    }
+
+    @Override
+    public Spliterator<TableEntry<UUID, Student>> spliterator() {
+        return table.spliterator();
+    }
+
+    /**
+     * Adds all students, then waits only once for the log to reach the disk.
+     */
+    @Override
+    public void putAll(Collection<TableEntry<UUID, Student>> entries) throws IllegalArgumentException {
+        table.ensureCapacity(table.size() + entries.size());
+        long lsn = 0;
+        for (TableEntry<UUID, Student> entry : entries) {
+            UUID key = entry.getKey();
+            Student value = entry.getValue();
+            if (key == null)
+                throw new IllegalArgumentException("Key must not be null.");
+            validate(value);
+
+            ReentrantLock lock = lockFor(key);
+            lock.lock();
+            try {
+                lsn = log.appendPut(key, value);
+                apply(key, () -> {
+                    table.put(key, value);
+                    return null;
+                });
+            } finally {
+                lock.unlock();
+            }
+        }
+        log.await(lsn);
+    }
+
+    /**
+     * Adds all students whose keys are not present, then waits only once for the log to reach the disk.
+     */
+    @Override
+    public List<TableEntry<UUID, Student>> putAllIfAbsent(Collection<TableEntry<UUID, Student>> entries) throws IllegalArgumentException {
+        table.ensureCapacity(table.size() + entries.size());
+        List<TableEntry<UUID, Student>> present = new ArrayList<>();
+        long lsn = 0;
+        for (TableEntry<UUID, Student> entry : entries) {
+            UUID key = entry.getKey();
+            Student value = entry.getValue();
+            if (key == null)
+                throw new IllegalArgumentException("Key must not be null.");
+            validate(value);
+
+            ReentrantLock lock = lockFor(key);
+            lock.lock();
+            try {
+                if (table.get(key) != null) {
+                    present.add(entry);
+                    continue;
+                }
+                lsn = log.appendPut(key, value);
+                apply(key, () -> table.putIfAbsent(key, value));
+            } finally {
+                lock.unlock();
+            }
+        }
+        log.await(lsn);
+        return present;
+    }
+
+    /**
+     * Removes all students, then waits only once for the log to reach the disk.
+     */
+    @Override
+    public void removeAll(Collection<UUID> keys) {
+        long lsn = 0;
+        for (UUID key : keys) {
+            if (key == null)
+                continue;
+            ReentrantLock lock = lockFor(key);
+            lock.lock();
+            try {
+                if (table.containsKey(key)) {
+                    lsn = log.appendRemove(key);
+                    apply(key, () -> table.remove(key));
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+        log.await(lsn);
+    }
+
+    @Override
+    public void ensureCapacity(int expectedSize) {
+        table.ensureCapacity(expectedSize);
+    }
+
+    @Override
+    public void clear() {
+        long lsn;
+        lockAll();
+        try {
+            lsn = log.appendClear();
+            table.clear();
+        } finally {
+            unlockAll();
+        }
+        log.await(lsn);
+    }
+
+    @Override
+    public String toString() {
+        return table.toString();
+    }
+
+    @Override
+    public void close() throws IOException {
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        log.close();
+        if (table instanceof Closeable)
+            ((Closeable) table).close();
+    }
+
+    @Override
+    public Iterator<TableEntry<UUID, Student>> iterator() {
+        Iterator<TableEntry<UUID, Student>> iterator = table.iterator();
+        return new Iterator<TableEntry<UUID, Student>>() {
+
+            private UUID last;
+
+            @Override
+            public boolean hasNext() {
+                return iterator.hasNext();
+            }
+
+            @Override
+            public TableEntry<UUID, Student> next() {
+                TableEntry<UUID, Student> entry = iterator.next();
+                last = entry.getKey();
+                return entry;
+            }
+
+            @Override
+            public void remove() {
+                if (last == null)
+                    throw new IllegalStateException();
+                JournaledStudentTable.this.remove(last);
+                last = null;
+            }
+        };
+    }
+}
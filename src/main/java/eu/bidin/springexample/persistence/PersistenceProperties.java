@@ -0,0 +1,55 @@
+package eu.bidin.springexample.persistence;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "students.persistence")
+public class PersistenceProperties {
+
+    private boolean enabled = false;
+    private String directory = "data/journal";
+    private FsyncPolicy fsync = FsyncPolicy.BATCH;
+    private Duration fsyncInterval = Duration.ofMillis(100);
+    private Duration snapshotInterval = Duration.ofMinutes(10);
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public String getDirectory() {
+        return directory;
+    }
+
+    public FsyncPolicy getFsync() {
+        return fsync;
+    }
+
+    public Duration getFsyncInterval() {
+        return fsyncInterval;
+    }
+
+    public Duration getSnapshotInterval() {
+        return snapshotInterval;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public void setDirectory(String directory) {
+        this.directory = directory;
+    }
+
+    public void setFsync(FsyncPolicy fsync) {
+        this.fsync = fsync;
+    }
+
+    public void setFsyncInterval(Duration fsyncInterval) {
+        this.fsyncInterval = fsyncInterval;
+    }
+
+    public void setSnapshotInterval(Duration snapshotInterval) {
+        this.snapshotInterval = snapshotInterval;
+    }
+}
@@ -0,0 +1,118 @@
+package eu.bidin.springexample.persistence;
+
+import eu.bidin.springexample.entities.Student;
+import eu.bidin.utility.MyHashtable;
+import eu.bidin.utility.Table;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.BiConsumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Compact copy of the student table, named by the LSN of the last log record it is guaranteed to contain.
+ * Records after that LSN may or may not be included, so recovery replays the log from there on.
+ */
+public class SnapshotFile {
+
+    /**
+     * Marks snapshots whose students carry their version.
+     */
+    private static final int MAGIC = 0x534e4156;
+    /**
+     * Marks snapshots written before versions were recorded.
+     */
+    private static final int UNVERSIONED_MAGIC = 0x534e4150;
+    private static final String PREFIX = "snapshot-";
+    private static final String SUFFIX = ".snap";
+
+    /**
+     * Writes all students of the table into a new snapshot, then deletes the older ones.
+     */
+    public static void write(Path directory, long lsn, Table<UUID, Student> table) throws IOException {
+        Path target = directory.resolve(String.format("%s%020d%s", PREFIX, lsn, SUFFIX));
+        Path temporary = directory.resolve(target.getFileName() + ".tmp");
+
+        CRC32 crc = new CRC32();
+        try (FileOutputStream file = new FileOutputStream(temporary.toFile())) {
+            DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new CheckedOutputStream(file, crc), 1 << 16));
+            output.writeInt(MAGIC);
+            output.writeLong(lsn);
+            long count = 0;
+            for (MyHashtable.TableEntry<UUID, Student> entry : table) {
+                output.writeBoolean(true);
+                StudentRecords.writeKey(output, entry.getKey());
+                StudentRecords.writeStudent(output, entry.getValue());
+                count += 1;
+            }
+            output.writeBoolean(false);
+            output.writeLong(count);
+            output.flush();
+            output.writeLong(crc.getValue());
+            output.flush();
+            file.getFD().sync();
+        }
+        Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        for (Path snapshot : snapshots(directory))
+            if (!snapshot.equals(target))
+                Files.delete(snapshot);
+    }
+
+    /**
+     * Passes all students of the latest snapshot to {@code consumer}.
+     *
+     * @return LSN of the snapshot, 0 if there is none
+     */
+    public static long read(Path directory, BiConsumer<UUID, Student> consumer) throws IOException {
+        List<Path> snapshots = snapshots(directory);
+        if (snapshots.isEmpty())
+            return 0;
+
+        Path path = snapshots.get(snapshots.size() - 1);
+        CRC32 crc = new CRC32();
+        try (InputStream file = Files.newInputStream(path)) {
+            DataInputStream input = new DataInputStream(new CheckedInputStream(new BufferedInputStream(file, 1 << 16), crc));
+            int magic = input.readInt();
+            if (magic != MAGIC && magic != UNVERSIONED_MAGIC)
+                throw new IOException("Invalid snapshot " + path);
+            long lsn = input.readLong();
+            long count = 0;
+            while (input.readBoolean()) {
+                UUID key = StudentRecords.readKey(input);
+                consumer.accept(key, StudentRecords.readStudent(input, key, magic == MAGIC));
+                count += 1;
+            }
+            if (input.readLong() != count)
+                throw new IOException("Invalid snapshot " + path);
+            long expected = crc.getValue();
+            if (input.readLong() != expected)
+                throw new IOException("Corrupted snapshot " + path);
+            return lsn;
+        }
+    }
+
+    private static List<Path> snapshots(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files
+                    .filter(p -> p.getFileName().toString().startsWith(PREFIX))
+                    .filter(p -> p.getFileName().toString().endsWith(SUFFIX))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package eu.bidin.springexample.persistence;
+
+import eu.bidin.springexample.entities.Student;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.UUID;
+
+/**
+ * Binary encoding of students shared by the write-ahead log, snapshots and replication. Students are written with
+ * their version; those written before versions were recorded are read with version 0.
+ */
+public class StudentRecords {
+
+    private static final int NULL_GRADE = Integer.MIN_VALUE;
+
+    public static void writeKey(DataOutput output, UUID key) throws IOException {
+        output.writeLong(key.getMostSignificantBits());
+        output.writeLong(key.getLeastSignificantBits());
+    }
+
+    public static UUID readKey(DataInput input) throws IOException {
+        return new UUID(input.readLong(), input.readLong());
+    }
+
+    public static void writeStudent(DataOutput output, Student student) throws IOException {
+        Integer grade = student.getGrade();
+        String name = student.getName();
+        output.writeInt(grade == null ? NULL_GRADE : grade);
+        output.writeBoolean(name != null);
+        if (name != null)
+            output.writeUTF(name);
+        output.writeInt(student.getVersion());
+    }
+
+    public static Student readStudent(DataInput input, UUID key) throws IOException {
+        return readStudent(input, key, true);
+    }
+
+    /**
+     * Reads a student, with its version unless it was written before versions were recorded.
+     */
+    public static Student readStudent(DataInput input, UUID key, boolean versioned) throws IOException {
+        int grade = input.readInt();
+        String name = input.readBoolean() ? input.readUTF() : null;
+        if (grade != NULL_GRADE && !Student.isStorable(grade))
+            throw new IOException("Grade " + grade + " is out of range");
+        int version = versioned ? input.readInt() : 0;
+        return new Student(key, name, grade == NULL_GRADE ? null : grade, version);
+    }
+}
@@ -0,0 +1,366 @@
+package eu.bidin.springexample.persistence;
+
+import eu.bidin.springexample.entities.Student;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of the modifications of the student table.
+ * <p>
+ * Every record gets a log sequence number (LSN) and is framed as {@code [length][crc32][payload]}, so a torn write
+ * at the end of the log is detected and discarded by {@link #replay}. The log is split into segments named by the LSN
+ * of their first record, a new segment is started by {@link #rollover} whenever a snapshot is taken. Replay stops at
+ * the first missing LSN, the segments after it are set aside, as their records can not be applied without the
+ * missing ones.
+ * <p>
+ * Records are buffered in memory and written out when they have to be durable, as decided by the {@link FsyncPolicy}.
+ */
+public class WriteAheadLog implements Closeable {
+
+    public enum Operation {
+        PUT,
+        REMOVE,
+        CLEAR
+    }
+
+    public static class Record {
+
+        private final Operation operation;
+        private final long lsn;
+        private final UUID key;
+        private final Student student;
+
+        public Record(Operation operation, long lsn, UUID key, Student student) {
+            this.operation = operation;
+            this.lsn = lsn;
+            this.key = key;
+            this.student = student;
+        }
+
+        public Operation getOperation() {
+            return operation;
+        }
+
+        public long getLsn() {
+            return lsn;
+        }
+
+        public UUID getKey() {
+            return key;
+        }
+
+        public Student getStudent() {
+            return student;
+        }
+    }
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(WriteAheadLog.class);
+    private static final String SEGMENT_PREFIX = "wal-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String DISCARDED_SUFFIX = ".discarded";
+    private static final int FRAME_HEADER = 8;
+    private static final int MAXIMUM_RECORD = 1 << 16;
+    /**
+     * Flag of the operation byte of records whose students carry their version, older records have none.
+     */
+    private static final int VERSIONED = 0x80;
+
+    private final Path directory;
+    private final FsyncPolicy policy;
+
+    // guarded by this
+    private FileChannel segment;
+    private ByteBuffer pending = ByteBuffer.allocate(1 << 16);
+    private final ByteArrayOutputStream payload = new ByteArrayOutputStream(128);
+    private final DataOutputStream payloadOutput = new DataOutputStream(payload);
+    private final CRC32 crc = new CRC32();
+    private long lastLsn;
+
+    // guarded by syncMonitor
+    private final Object syncMonitor = new Object();
+    private long durableLsn;
+    private boolean syncing = false;
+
+    /**
+     * Opens the log for appending, after the records up to {@code lastLsn} were recovered with {@link #replay}.
+     */
+    public WriteAheadLog(Path directory, FsyncPolicy policy, long lastLsn) throws IOException {
+        this.directory = directory;
+        this.policy = policy;
+        this.lastLsn = lastLsn;
+        this.durableLsn = lastLsn;
+        Files.createDirectories(directory);
+        this.segment = openSegment(lastLsn + 1);
+    }
+
+    private FileChannel openSegment(long firstLsn) throws IOException {
+        Path path = directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, firstLsn, SEGMENT_SUFFIX));
+        return FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    public synchronized long getLastLsn() {
+        return lastLsn;
+    }
+
+    public long appendPut(UUID key, Student student) {
+        return append(Operation.PUT, key, student);
+    }
+
+    public long appendRemove(UUID key) {
+        return append(Operation.REMOVE, key, null);
+    }
+
+    public long appendClear() {
+        return append(Operation.CLEAR, null, null);
+    }
+
+    private synchronized long append(Operation operation, UUID key, Student student) {
+        long lsn = lastLsn + 1;
+        try {
+            payload.reset();
+            payloadOutput.writeByte(operation.ordinal() | VERSIONED);
+            payloadOutput.writeLong(lsn);
+            if (key != null)
+                StudentRecords.writeKey(payloadOutput, key);
+            if (student != null)
+                StudentRecords.writeStudent(payloadOutput, student);
+
+            byte[] bytes = payload.toByteArray();
+            crc.reset();
+            crc.update(bytes, 0, bytes.length);
+
+            if (pending.remaining() < FRAME_HEADER + bytes.length)
+                writePending();
+            if (pending.remaining() < FRAME_HEADER + bytes.length)
+                pending = ByteBuffer.allocate(FRAME_HEADER + bytes.length);
+            pending.putInt(bytes.length);
+            pending.putInt((int) crc.getValue());
+            pending.put(bytes);
+            lastLsn = lsn;
+
+            if (policy == FsyncPolicy.ALWAYS) {
+                writePending();
+                segment.force(false);
+                synchronized (syncMonitor) {
+                    durableLsn = lsn;
+                }
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        return lsn;
+    }
+
+    /**
+     * Writes buffered records to the current segment, without forcing them to disk.
+     */
+    private void writePending() throws IOException {
+        pending.flip();
+        while (pending.hasRemaining())
+            segment.write(pending);
+        pending.clear();
+    }
+
+    /**
+     * Blocks until the record with specified LSN is on disk, if the policy requires it.
+     * With {@link FsyncPolicy#BATCH}, the first waiting thread forces all records appended so far, while the others
+     * wait for it to finish; one fsync then acknowledges all of them.
+     */
+    public void await(long lsn) {
+        if (policy != FsyncPolicy.BATCH)
+            return;
+
+        try {
+            while (true) {
+                synchronized (syncMonitor) {
+                    while (durableLsn < lsn && syncing)
+                        syncMonitor.wait();
+                    if (durableLsn >= lsn)
+                        return;
+                    syncing = true;
+                }
+                sync();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new UncheckedIOException(new InterruptedIOException());
+        }
+    }
+
+    /**
+     * Forces all records appended so far to disk. The segment is forced without holding the monitor of the log, so
+     * appends go on in the meantime; a segment that {@link #rollover} closed in the meantime was forced before.
+     */
+    public void sync() {
+        synchronized (syncMonitor) {
+            syncing = true;
+        }
+        long target = 0;
+        try {
+            FileChannel segment;
+            synchronized (this) {
+                target = lastLsn;
+                writePending();
+                segment = this.segment;
+            }
+            try {
+                segment.force(false);
+            } catch (ClosedChannelException ex) {
+                synchronized (this) {
+                    if (segment == this.segment)
+                        throw ex;
+                }
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        } finally {
+            synchronized (syncMonitor) {
+                durableLsn = Math.max(durableLsn, target);
+                syncing = false;
+                syncMonitor.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Forces the current segment to disk and starts a new one.
+     *
+     * @return LSN of the last record of the previous segment
+     */
+    public synchronized long rollover() throws IOException {
+        writePending();
+        segment.force(false);
+        segment.close();
+        segment = openSegment(lastLsn + 1);
+        synchronized (syncMonitor) {
+            durableLsn = Math.max(durableLsn, lastLsn);
+        }
+        return lastLsn;
+    }
+
+    /**
+     * Deletes segments whose records all have an LSN up to and including {@code lsn}.
+     */
+    public void truncate(long lsn) throws IOException {
+        List<Path> segments = segments(directory);
+        for (int i = 0; i + 1 < segments.size(); i++)
+            if (firstLsn(segments.get(i + 1)) <= lsn + 1)
+                Files.delete(segments.get(i));
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        writePending();
+        segment.force(false);
+        segment.close();
+    }
+
+    private static List<Path> segments(Path directory) throws IOException {
+        if (!Files.isDirectory(directory))
+            return new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            return files
+                    .filter(p -> p.getFileName().toString().startsWith(SEGMENT_PREFIX))
+                    .filter(p -> p.getFileName().toString().endsWith(SEGMENT_SUFFIX))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private static long firstLsn(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    /**
+     * Passes all records with an LSN higher than {@code afterLsn} to {@code consumer}, in order.
+     * A torn or corrupted record ends its segment, the rest of that segment is cut off. A record whose LSN does not
+     * follow the previous one ends the replay, it and the segments after it are set aside with a
+     * {@code .discarded} suffix.
+     *
+     * @return LSN of the last record in the log, or {@code afterLsn} if there are none
+     */
+    public static long replay(Path directory, long afterLsn, Consumer<Record> consumer) throws IOException {
+        long lastLsn = afterLsn;
+        boolean gap = false;
+        for (Path path : segments(directory)) {
+            long position = 0;
+            if (!gap) {
+                try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                    ByteBuffer header = ByteBuffer.allocate(FRAME_HEADER);
+                    CRC32 crc = new CRC32();
+
+                    while (true) {
+                        header.clear();
+                        if (channel.read(header, position) < FRAME_HEADER)
+                            break;
+                        header.flip();
+                        int length = header.getInt();
+                        int checksum = header.getInt();
+                        if (length <= 0 || length > MAXIMUM_RECORD)
+                            break;
+
+                        ByteBuffer body = ByteBuffer.allocate(length);
+                        if (channel.read(body, position + FRAME_HEADER) < length)
+                            break;
+                        crc.reset();
+                        crc.update(body.array(), 0, length);
+                        if ((int) crc.getValue() != checksum)
+                            break;
+
+                        Record record = decode(body.array());
+                        if (record.getLsn() > afterLsn) {
+                            if (record.getLsn() != lastLsn + 1) {
+                                LOGGER.warn("Log record {} follows {}, the records from {} on are discarded",
+                                        record.getLsn(), lastLsn, path.getFileName());
+                                gap = true;
+                                break;
+                            }
+                            consumer.accept(record);
+                            lastLsn = record.getLsn();
+                        }
+                        position += FRAME_HEADER + length;
+                    }
+                    if (!gap || position > 0)
+                        channel.truncate(position);
+                }
+            }
+            if (gap && position == 0)
+                Files.move(path, path.resolveSibling(path.getFileName() + DISCARDED_SUFFIX), StandardCopyOption.REPLACE_EXISTING);
+        }
+        return lastLsn;
+    }
+
+    private static Record decode(byte[] bytes) throws IOException {
+        DataInputStream input = new DataInputStream(new ByteArrayInputStream(bytes));
+        int header = input.readUnsignedByte();
+        Operation operation = Operation.values()[header & ~VERSIONED];
+        long lsn = input.readLong();
+        UUID key = operation == Operation.CLEAR ? null : StudentRecords.readKey(input);
+        Student student = operation == Operation.PUT ? StudentRecords.readStudent(input, key, (header & VERSIONED) != 0) : null;
+        return new Record(operation, lsn, key, student);
+    }
+}
@@ -0,0 +1,196 @@
+package eu.bidin.springexample.replication;
+
+import eu.bidin.springexample.exceptions.ChangeFeedDisabledException;
+import eu.bidin.springexample.exceptions.ChangesExpiredException;
+import eu.bidin.springexample.exceptions.InvalidCursorException;
+import eu.bidin.springexample.models.StudentChange;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+
+import javax.annotation.PreDestroy;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Streams the changes of the student table to subscribers as server-sent events, read from the {@link ChangeLog}.
+ * <p>
+ * Every event carries the sequence number of its change as its id, a subscriber resumes after it. Subscribers read
+ * the log at their own pace, as much as they requested, so a slow subscriber never holds up writers or other
+ * subscribers; one that falls further behind than the log keeps receives an {@code overflow} event and its stream
+ * ends. A thread waits for changes and wakes the subscribers that have some to send, which are then sent by a small
+ * pool. Idle subscribers receive a comment every {@code students.replication.change-feed-heartbeat}, so closed
+ * connections are noticed.
+ */
+@Component
+public class ChangeFeed implements MeterBinder {
+
+    private static final int BATCH_SIZE = 256;
+
+    private final ChangeLog log;
+    private final boolean enabled;
+    private final long heartbeat;
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+    private final ExecutorService waiter = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "student-change-feed");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final ExecutorService senders = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), runnable -> {
+        Thread thread = new Thread(runnable, "student-change-feed-sender");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public ChangeFeed(ChangeLog log, ReplicationProperties properties) {
+        this.log = log;
+        this.enabled = properties.isChangeFeed();
+        this.heartbeat = properties.getChangeFeedHeartbeat().toNanos();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (enabled)
+            waiter.execute(this::wake);
+    }
+
+    /**
+     * Subscribes to the changes after a sequence number.
+     *
+     * @param after sequence number of the last change the subscriber has, {@code null} for changes from now on
+     * @throws ChangeFeedDisabledException if the feed is disabled
+     * @throws InvalidCursorException      if the sequence number is malformed
+     * @throws ChangesExpiredException     if the changes after the sequence number are no longer kept
+     */
+    public Flux<ServerSentEvent<StudentChange>> subscribe(String after) {
+        if (!enabled)
+            throw new ChangeFeedDisabledException();
+        long start = after == null ? log.getSequence() : parse(after);
+        if (log.read(start, 0) == null)
+            throw new ChangesExpiredException(start, log.getSequence());
+
+        return Flux.create(sink -> {
+            Subscriber subscriber = new Subscriber(sink, start);
+            subscribers.add(subscriber);
+            sink.onDispose(() -> subscribers.remove(subscriber));
+            sink.onRequest(n -> subscriber.schedule());
+        });
+    }
+
+    private static long parse(String after) {
+        try {
+            long sequence = Long.parseLong(after.trim());
+            if (sequence < 0)
+                throw new InvalidCursorException(after);
+            return sequence;
+        } catch (NumberFormatException ex) {
+            throw new InvalidCursorException(after);
+        }
+    }
+
+    private void wake() {
+        long seen = log.getSequence();
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                log.await(seen, heartbeat, TimeUnit.NANOSECONDS);
+                seen = log.getSequence();
+                long now = System.nanoTime();
+                for (Subscriber subscriber : subscribers)
+                    if (subscriber.next < seen || now - subscriber.sentAt >= heartbeat)
+                        subscriber.schedule();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * A subscriber and its position in the log, only one sender at a time sends to it.
+     */
+    private final class Subscriber {
+
+        private final FluxSink<ServerSentEvent<StudentChange>> sink;
+        private final AtomicInteger pending = new AtomicInteger();
+        private volatile long next;
+        private volatile long sentAt = System.nanoTime();
+        private boolean overflowed;
+
+        private Subscriber(FluxSink<ServerSentEvent<StudentChange>> sink, long after) {
+            this.sink = sink;
+            this.next = after;
+        }
+
+        private void schedule() {
+            if (pending.getAndIncrement() == 0)
+                senders.execute(this::drain);
+        }
+
+        private void drain() {
+            int missed = 1;
+            do {
+                send();
+                missed = pending.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        private void send() {
+            if (overflowed || sink.isCancelled())
+                return;
+            long demand = sink.requestedFromDownstream();
+            while (demand > 0) {
+                List<ChangeLog.Change> changes = log.read(next, (int) Math.min(demand, BATCH_SIZE));
+                if (changes == null) {
+                    sink.next(ServerSentEvent.<StudentChange>builder()
+                            .event("overflow")
+                            .comment("Changes after " + next + " are no longer kept")
+                            .build());
+                    overflowed = true;
+                    sink.complete();
+                    return;
+                }
+                if (changes.isEmpty())
+                    break;
+                for (ChangeLog.Change change : changes) {
+                    sink.next(ServerSentEvent.builder(new StudentChange(change.getSequence(), change.getType(), change.getKey(), change.getStudent()))
+                            .id(Long.toString(change.getSequence()))
+                            .build());
+                    next = change.getSequence();
+                }
+                demand -= changes.size();
+                sentAt = System.nanoTime();
+            }
+            if (demand > 0 && System.nanoTime() - sentAt >= heartbeat) {
+                sink.next(ServerSentEvent.<StudentChange>builder().comment("heartbeat").build());
+                sentAt = System.nanoTime();
+            }
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        if (!enabled)
+            return;
+        Gauge.builder("students.changes.subscribers", subscribers, Set::size)
+                .description("Number of subscribers of the change feed")
+                .register(registry);
+    }
+
+    @PreDestroy
+    public void close() {
+        waiter.shutdownNow();
+        senders.shutdownNow();
+        for (Subscriber subscriber : subscribers)
+            subscriber.sink.complete();
+    }
+}
@@ -0,0 +1,175 @@
+package eu.bidin.springexample.replication;
+
+import eu.bidin.springexample.entities.Student;
+import eu.bidin.springexample.models.StudentChange;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Ordered log of the modifications of the student table, kept on the leader for its followers and, with
+ * {@code students.replication.change-feed}, for the subscribers of the {@link ChangeFeed}.
+ * <p>
+ * A modification is recorded by its write site, with its type and the student it wrote. Concurrent writers of a key
+ * can record out of the order of the table, so a change is checked against the table first: once a later write of the
+ * key was recorded, the earlier change is dropped. Whichever write paths and table operations modified a key, the last
+ * change of the key in the log is its current state. Changes of the same key are recorded one at a time.
+ * Only the last {@code students.replication.log-capacity} changes are kept, a follower that is further behind
+ * starts over from a snapshot. Readers never hold up writers for longer than it takes to copy a batch of changes.
+ */
+@Component
+public class ChangeLog {
+
+    private static final int STRIPES = 64;
+
+    /**
+     * A modification and the student it wrote, without a student if it was removed.
+     */
+    public static final class Change {
+
+        private final long sequence;
+        private final StudentChange.Type type;
+        private final UUID key;
+        private final Student student;
+
+        private Change(long sequence, StudentChange.Type type, UUID key, Student student) {
+            this.sequence = sequence;
+            this.type = type;
+            this.key = key;
+            this.student = student;
+        }
+
+        public long getSequence() {
+            return sequence;
+        }
+
+        public StudentChange.Type getType() {
+            return type;
+        }
+
+        public UUID getKey() {
+            return key;
+        }
+
+        public Student getStudent() {
+            return student;
+        }
+    }
+
+    private final boolean enabled;
+    private final long epoch;
+    private final Change[] changes;
+    private final Object[] stripes = new Object[STRIPES];
+
+    /**
+     * Written while holding the lock of the log, read without it by every write of the table.
+     */
+    private volatile long sequence;
+
+    public ChangeLog(ReplicationProperties properties) {
+        this.enabled = properties.getRole() == ReplicationProperties.Role.LEADER || properties.isChangeFeed();
+        // a restarted leader starts a new log, which its followers recognize by the epoch
+        long epoch;
+        do {
+            epoch = ThreadLocalRandom.current().nextLong();
+        } while (epoch == 0);
+        this.epoch = epoch;
+        this.changes = new Change[enabled ? Integer.highestOneBit(Math.max(properties.getLogCapacity() - 1, 1)) << 1 : 1];
+        for (int i = 0; i < STRIPES; i++)
+            stripes[i] = new Object();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public long getEpoch() {
+        return epoch;
+    }
+
+    public int getCapacity() {
+        return changes.length;
+    }
+
+    /**
+     * Returns the sequence number of the last change, 0 before the first one and always 0 if the log is disabled.
+     * Every write of the table calls it, so it takes no lock.
+     */
+    public long getSequence() {
+        return enabled ? sequence : 0;
+    }
+
+    /**
+     * Appends a modification of a key, call after every modification of the key. If the table no longer holds the
+     * written student, a later write of the key came in between; the change is dropped if the current student or a
+     * later version of it was already recorded.
+     *
+     * @param type    type of the modification
+     * @param student student written by the modification, {@code null} if it was removed
+     * @param after   sequence number read before the modification, the changes after it may be of later writes
+     * @param reader  reads the current student of the key from the table
+     */
+    public void record(UUID key, StudentChange.Type type, Student student, long after, Function<UUID, Student> reader) {
+        if (!enabled)
+            return;
+        synchronized (stripes[(key.hashCode() & 0x7FFFFFFF) % STRIPES]) {
+            append(key, type, student, after, reader.apply(key));
+        }
+    }
+
+    private synchronized void append(UUID key, StudentChange.Type type, Student student, long after, Student current) {
+        if (!Objects.equals(current, student) && superseded(key, student, current, after))
+            return;
+        // the change is stored before its sequence number is published
+        long next = sequence + 1;
+        changes[(int) next & (changes.length - 1)] = new Change(next, type, key, student);
+        sequence = next;
+        notifyAll();
+    }
+
+    /**
+     * Checks if the last change of a key after a sequence number is its current student or a later version of the
+     * written one, or the changes after it are no longer kept.
+     */
+    private boolean superseded(UUID key, Student student, Student current, long after) {
+        if (sequence - after > changes.length)
+            return true;
+        for (long i = sequence; i > after; i--) {
+            Change change = changes[(int) i & (changes.length - 1)];
+            if (change.key.equals(key))
+                return Objects.equals(change.student, current)
+                        || student != null && change.student != null && change.student.getVersion() > student.getVersion();
+        }
+        return false;
+    }
+
+    /**
+     * Returns the changes after a sequence number, in order.
+     *
+     * @return at most {@code limit} changes, or {@code null} if the change after {@code after} is no longer kept
+     */
+    public synchronized List<Change> read(long after, int limit) {
+        if (after > sequence || sequence - after > changes.length)
+            return null;
+        int count = (int) Math.min(limit, sequence - after);
+        List<Change> result = new ArrayList<>(count);
+        for (int i = 1; i <= count; i++)
+            result.add(changes[(int) (after + i) & (changes.length - 1)]);
+        return result;
+    }
+
+    /**
+     * Waits until there is a change after a sequence number, or the timeout elapsed.
+     */
+    public synchronized void await(long after, long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        for (long remaining = unit.toNanos(timeout); sequence <= after && remaining > 0; remaining = deadline - System.nanoTime())
+            TimeUnit.NANOSECONDS.timedWait(this, remaining);
+    }
+}
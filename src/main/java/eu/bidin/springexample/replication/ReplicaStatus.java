@@ -0,0 +1,77 @@
+package eu.bidin.springexample.replication;
+
+import eu.bidin.springexample.exceptions.ReadOnlyReplicaException;
+import eu.bidin.springexample.exceptions.StaleReplicaException;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Role of this node in replication, and how far a follower is behind its leader.
+ * <p>
+ * A follower only changes its table as the leader tells it to, so it refuses writes. It is in sync with the leader
+ * when it has applied every change the leader had when it last heard from it, and it refuses reads when that was
+ * longer ago than {@code students.replication.maximum-staleness}, so a read never returns a state older than that.
+ */
+@Component
+public class ReplicaStatus implements MeterBinder {
+
+    private final boolean follower;
+    private final String leader;
+    private final long maximumStaleness;
+    private volatile long syncedAt;
+    private volatile boolean synced;
+
+    public ReplicaStatus(ReplicationProperties properties) {
+        this.follower = properties.getRole() == ReplicationProperties.Role.FOLLOWER;
+        this.leader = properties.getLeader();
+        this.maximumStaleness = properties.getMaximumStaleness().toNanos();
+    }
+
+    public boolean isFollower() {
+        return follower;
+    }
+
+    /**
+     * Records that this follower applied every change the leader had.
+     */
+    public void synced() {
+        syncedAt = System.nanoTime();
+        synced = true;
+    }
+
+    /**
+     * Returns how long ago this follower was last in sync with the leader, 0 on a leader.
+     */
+    public long getStaleness(TimeUnit unit) {
+        if (!follower)
+            return 0;
+        if (!synced)
+            return Long.MAX_VALUE;
+        return unit.convert(System.nanoTime() - syncedAt, TimeUnit.NANOSECONDS);
+    }
+
+    public void checkWritable() {
+        if (follower)
+            throw new ReadOnlyReplicaException(leader);
+    }
+
+    public void checkReadable() {
+        if (getStaleness(TimeUnit.NANOSECONDS) > maximumStaleness)
+            throw new StaleReplicaException(leader, TimeUnit.NANOSECONDS.toMillis(maximumStaleness));
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        if (!follower)
+            return;
+        Gauge.builder("students.replication.staleness", this, s -> s.synced ? s.getStaleness(TimeUnit.NANOSECONDS) / 1e9 : Double.NaN)
+                .description("Time since this follower was last in sync with its leader")
+                .baseUnit("seconds")
+                .strongReference(true)
+                .register(registry);
+    }
+}
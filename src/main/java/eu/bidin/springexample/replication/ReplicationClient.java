@@ -0,0 +1,146 @@
+package eu.bidin.springexample.replication;
+
+import eu.bidin.springexample.entities.Student;
+import eu.bidin.springexample.persistence.StudentRecords;
+import eu.bidin.springexample.services.StudentService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Follows the leader: applies the changes it streams to the table of this node, and reconnects when the connection
+ * is lost, resuming after the last change it applied.
+ *
+ * @see ReplicationProtocol
+ */
+@Component
+@ConditionalOnProperty(name = "students.replication.role", havingValue = "follower")
+public class ReplicationClient {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ReplicationClient.class);
+    private static final long RECONNECT_DELAY = 1000;
+
+    private final StudentService service;
+    private final ReplicaStatus status;
+    private final ReplicationProperties properties;
+    private final Thread thread;
+    private volatile boolean closed;
+    private volatile Socket socket;
+
+    /**
+     * Epoch and sequence number of the last applied change, only used by {@link #thread}.
+     */
+    private long epoch;
+    private long applied;
+
+    public ReplicationClient(StudentService service, ReplicaStatus status, ReplicationProperties properties) {
+        this.service = service;
+        this.status = status;
+        this.properties = properties;
+        this.thread = new Thread(this::run, "student-replication");
+        this.thread.setDaemon(true);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        thread.start();
+    }
+
+    private void run() {
+        while (!closed) {
+            try {
+                follow();
+            } catch (IOException ex) {
+                if (!closed)
+                    LOGGER.warn("Leader {} is not reachable, reconnecting: {}", properties.getLeader(), ex.toString());
+            }
+            try {
+                Thread.sleep(RECONNECT_DELAY);
+            } catch (InterruptedException ex) {
+                return;
+            }
+        }
+    }
+
+    private void follow() throws IOException {
+        String leader = properties.getLeader();
+        int colon = leader.lastIndexOf(':');
+        // a leader that stops sending heartbeats is as good as disconnected
+        int timeout = (int) Math.max(properties.getMaximumStaleness().toMillis(), 10 * properties.getHeartbeatInterval().toMillis());
+
+        try (Socket connection = new Socket()) {
+            socket = connection;
+            connection.connect(new InetSocketAddress(leader.substring(0, colon), Integer.parseInt(leader.substring(colon + 1))), timeout);
+            connection.setSoTimeout(timeout);
+            connection.setTcpNoDelay(true);
+            DataOutputStream output = new DataOutputStream(new BufferedOutputStream(connection.getOutputStream()));
+            DataInputStream input = new DataInputStream(new BufferedInputStream(connection.getInputStream()));
+            output.writeLong(epoch);
+            output.writeLong(applied);
+            output.flush();
+            LOGGER.info("Following leader {} after change {}", leader, applied);
+
+            long snapshotEpoch = 0;
+            long snapshotSequence = 0;
+            Set<UUID> snapshot = null;
+            while (!closed) {
+                byte type = input.readByte();
+                switch (type) {
+                    case ReplicationProtocol.SNAPSHOT:
+                        snapshotEpoch = input.readLong();
+                        snapshotSequence = input.readLong();
+                        snapshot = new HashSet<>();
+                        break;
+                    case ReplicationProtocol.STUDENT:
+                        Student student = ReplicationProtocol.readStudent(input);
+                        service.applyReplicated(student.getUuid(), student);
+                        snapshot.add(student.getUuid());
+                        break;
+                    case ReplicationProtocol.SNAPSHOT_END:
+                        service.retainReplicated(snapshot);
+                        LOGGER.info("Applied a snapshot of {} students up to change {}", snapshot.size(), snapshotSequence);
+                        // the position only moves once the snapshot is complete, an interrupted one is sent again
+                        epoch = snapshotEpoch;
+                        applied = snapshotSequence;
+                        snapshot = null;
+                        break;
+                    case ReplicationProtocol.CHANGE:
+                        long sequence = input.readLong();
+                        UUID key = StudentRecords.readKey(input);
+                        service.applyReplicated(key, input.readBoolean() ? ReplicationProtocol.readStudent(input, key) : null);
+                        applied = sequence;
+                        break;
+                    case ReplicationProtocol.HEARTBEAT:
+                        if (applied >= input.readLong())
+                            status.synced();
+                        break;
+                    default:
+                        throw new IOException("Unknown frame " + type);
+                }
+            }
+        }
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        closed = true;
+        thread.interrupt();
+        if (socket != null)
+            socket.close();
+    }
+}
@@ -0,0 +1,88 @@
+package eu.bidin.springexample.replication;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "students.replication")
+public class ReplicationProperties {
+
+    public enum Role {
+        NONE,
+        LEADER,
+        FOLLOWER
+    }
+
+    private Role role = Role.NONE;
+    private int port = 7070;
+    private String leader = "localhost:7070";
+    private int logCapacity = 65536;
+    private Duration heartbeatInterval = Duration.ofMillis(100);
+    private Duration maximumStaleness = Duration.ofSeconds(1);
+    private boolean changeFeed;
+    private Duration changeFeedHeartbeat = Duration.ofSeconds(15);
+
+    public Role getRole() {
+        return role;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    public String getLeader() {
+        return leader;
+    }
+
+    public int getLogCapacity() {
+        return logCapacity;
+    }
+
+    public Duration getHeartbeatInterval() {
+        return heartbeatInterval;
+    }
+
+    public Duration getMaximumStaleness() {
+        return maximumStaleness;
+    }
+
+    public boolean isChangeFeed() {
+        return changeFeed;
+    }
+
+    public Duration getChangeFeedHeartbeat() {
+        return changeFeedHeartbeat;
+    }
+
+    public void setRole(Role role) {
+        this.role = role;
+    }
+
+    public void setPort(int port) {
+        this.port = port;
+    }
+
+    public void setLeader(String leader) {
+        this.leader = leader;
+    }
+
+    public void setLogCapacity(int logCapacity) {
+        this.logCapacity = logCapacity;
+    }
+
+    public void setHeartbeatInterval(Duration heartbeatInterval) {
+        this.heartbeatInterval = heartbeatInterval;
+    }
+
+    public void setMaximumStaleness(Duration maximumStaleness) {
+        this.maximumStaleness = maximumStaleness;
+    }
+
+    public void setChangeFeed(boolean changeFeed) {
+        this.changeFeed = changeFeed;
+    }
+
+    public void setChangeFeedHeartbeat(Duration changeFeedHeartbeat) {
+        this.changeFeedHeartbeat = changeFeedHeartbeat;
+    }
+}
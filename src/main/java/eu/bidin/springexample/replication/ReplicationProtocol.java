@@ -0,0 +1,69 @@
+package eu.bidin.springexample.replication;
+
+import eu.bidin.springexample.entities.Student;
+import eu.bidin.springexample.persistence.StudentRecords;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.UUID;
+
+/**
+ * Frames sent between a leader and its followers over a socket.
+ * <p>
+ * A follower opens the connection with the epoch and sequence number of the last change it applied, both 0 when it
+ * has none. If the leader still has the changes after it, it streams them, otherwise it sends a snapshot first: the
+ * students of the table, read while it is being modified, followed by every change since the snapshot started, so
+ * the follower ends up with the state of the table however the snapshot overlapped the changes. After every batch of
+ * changes, and whenever there were none for a heartbeat interval, the leader sends the sequence number it had when it
+ * read the batch.
+ */
+final class ReplicationProtocol {
+
+    /**
+     * Start of a snapshot: epoch and sequence number of the changes that follow it.
+     */
+    static final byte SNAPSHOT = 1;
+
+    /**
+     * Student of a snapshot.
+     */
+    static final byte STUDENT = 2;
+
+    static final byte SNAPSHOT_END = 3;
+
+    /**
+     * Change: sequence number, key and the student, if there is one.
+     */
+    static final byte CHANGE = 4;
+
+    /**
+     * Sequence number of the leader, every change up to it was sent.
+     */
+    static final byte HEARTBEAT = 5;
+
+    private ReplicationProtocol() {
+    }
+
+    static void writeStudent(DataOutput output, Student student) throws IOException {
+        StudentRecords.writeKey(output, student.getUuid());
+        StudentRecords.writeStudent(output, student);
+    }
+
+    static Student readStudent(DataInput input) throws IOException {
+        return readStudent(input, StudentRecords.readKey(input));
+    }
+
+    static Student readStudent(DataInput input, UUID key) throws IOException {
+        return StudentRecords.readStudent(input, key);
+    }
+
+    static void writeChange(DataOutput output, ChangeLog.Change change) throws IOException {
+        output.writeByte(CHANGE);
+        output.writeLong(change.getSequence());
+        StudentRecords.writeKey(output, change.getKey());
+        output.writeBoolean(change.getStudent() != null);
+        if (change.getStudent() != null)
+            StudentRecords.writeStudent(output, change.getStudent());
+    }
+}
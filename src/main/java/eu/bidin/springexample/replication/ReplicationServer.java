@@ -0,0 +1,149 @@
+package eu.bidin.springexample.replication;
+
+import eu.bidin.springexample.entities.Student;
+import eu.bidin.springexample.services.StudentService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Streams the change log of the leader to its followers, each follower is served by a thread of its own.
+ *
+ * @see ReplicationProtocol
+ */
+@Component
+@ConditionalOnProperty(name = "students.replication.role", havingValue = "leader")
+public class ReplicationServer {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ReplicationServer.class);
+    private static final int BATCH_SIZE = 1024;
+
+    private final ChangeLog log;
+    private final StudentService service;
+    private final ReplicationProperties properties;
+    private final ExecutorService executor = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "student-replication");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private volatile ServerSocket server;
+
+    public ReplicationServer(ChangeLog log, StudentService service, ReplicationProperties properties) {
+        this.log = log;
+        this.service = service;
+        this.properties = properties;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() throws IOException {
+        server = new ServerSocket(properties.getPort());
+        executor.execute(this::accept);
+        LOGGER.info("Leader of epoch {} accepts followers on port {}", Long.toHexString(log.getEpoch()), server.getLocalPort());
+    }
+
+    private void accept() {
+        while (!server.isClosed()) {
+            try {
+                Socket socket = server.accept();
+                executor.execute(() -> serve(socket));
+            } catch (IOException ex) {
+                if (!server.isClosed())
+                    LOGGER.warn("Accepting a follower failed: {}", ex.getMessage());
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        String follower = socket.getRemoteSocketAddress().toString();
+        try (Socket connection = socket;
+             DataInputStream input = new DataInputStream(new BufferedInputStream(connection.getInputStream()));
+             DataOutputStream output = new DataOutputStream(new BufferedOutputStream(connection.getOutputStream()))) {
+            connection.setTcpNoDelay(true);
+            long epoch = input.readLong();
+            long next = input.readLong();
+            if (epoch != log.getEpoch())
+                next = snapshot(output, follower);
+            else
+                LOGGER.info("Follower {} resumes after change {}", follower, next);
+
+            long heartbeat = properties.getHeartbeatInterval().toNanos();
+            while (!Thread.currentThread().isInterrupted()) {
+                long head = log.getSequence();
+                List<ChangeLog.Change> changes = log.read(next, BATCH_SIZE);
+                if (changes == null) {
+                    next = snapshot(output, follower);
+                    continue;
+                }
+                for (ChangeLog.Change change : changes) {
+                    ReplicationProtocol.writeChange(output, change);
+                    next = change.getSequence();
+                }
+                output.writeByte(ReplicationProtocol.HEARTBEAT);
+                output.writeLong(head);
+                output.flush();
+                if (next >= head)
+                    log.await(next, heartbeat, TimeUnit.NANOSECONDS);
+            }
+        } catch (IOException ex) {
+            LOGGER.info("Follower {} disconnected: {}", follower, ex.toString());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Sends all students of the table.
+     *
+     * @return sequence number of the last change before the snapshot, the follower continues after it
+     */
+    private long snapshot(DataOutputStream output, String follower) throws IOException {
+        long start = System.nanoTime();
+        long sequence = log.getSequence();
+        output.writeByte(ReplicationProtocol.SNAPSHOT);
+        output.writeLong(log.getEpoch());
+        output.writeLong(sequence);
+
+        List<Student> batch = new ArrayList<>(BATCH_SIZE);
+        long count = 0;
+        long cursor = 0;
+        do {
+            cursor = service.scanStudents(cursor, BATCH_SIZE, batch::add);
+            for (Student student : batch) {
+                output.writeByte(ReplicationProtocol.STUDENT);
+                ReplicationProtocol.writeStudent(output, student);
+            }
+            count += batch.size();
+            batch.clear();
+        } while (cursor != 0);
+
+        output.writeByte(ReplicationProtocol.SNAPSHOT_END);
+        output.flush();
+        LOGGER.info("Sent a snapshot of {} students up to change {} to follower {} in {} ms",
+                count, sequence, follower, (System.nanoTime() - start) / 1000000);
+        return sequence;
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        if (server != null)
+            server.close();
+        executor.shutdownNow();
+    }
+}
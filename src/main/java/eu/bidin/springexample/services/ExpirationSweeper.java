@@ -0,0 +1,69 @@
+package eu.bidin.springexample.services;
+
+import eu.bidin.springexample.DatabaseProperties;
+import eu.bidin.springexample.entities.Student;
+import eu.bidin.utility.EvictionPolicy;
+import eu.bidin.utility.Table;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Removes the students that expired but are no longer read, which a table with a time to live only finds when they
+ * are accessed. Every {@code students.database.sweep-interval} the whole table is passed a few slots at a time, the
+ * table notifies the {@link StudentService} of each removed student.
+ */
+@Component
+public class ExpirationSweeper {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ExpirationSweeper.class);
+    private static final int BATCH_SIZE = 1024;
+
+    private final Table<UUID, Student> database;
+    private final long interval;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "student-expiration");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public ExpirationSweeper(Table<UUID, Student> database, DatabaseProperties properties) {
+        this.database = database;
+        this.interval = properties.getSweepInterval().toMillis();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        EvictionPolicy<? super Student> policy = database.getEvictionPolicy();
+        if (policy == null || !policy.isExpiring() || interval <= 0)
+            return;
+        scheduler.scheduleWithFixedDelay(this::sweep, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    private void sweep() {
+        try {
+            long before = database.getExpirationCount();
+            long cursor = 0;
+            do {
+                cursor = database.evictExpired(cursor, BATCH_SIZE);
+            } while (cursor != 0);
+            LOGGER.debug("Removed {} expired students", database.getExpirationCount() - before);
+        } catch (RuntimeException ex) {
+            // a failed pass must not cancel the following ones
+            LOGGER.warn("Sweeping expired students failed", ex);
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        scheduler.shutdownNow();
+    }
+}
@@ -0,0 +1,595 @@
+package eu.bidin.springexample.services;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import eu.bidin.springexample.cache.StudentCache;
+import eu.bidin.springexample.codecs.StudentProtobuf;
+import eu.bidin.springexample.entities.Student;
+import eu.bidin.springexample.exceptions.InvalidBatchException;
+import eu.bidin.springexample.exceptions.InvalidCursorException;
+import eu.bidin.springexample.exceptions.InvalidLimitException;
+import eu.bidin.springexample.exceptions.InvalidQueryException;
+import eu.bidin.springexample.exceptions.InvalidUuidException;
+import eu.bidin.springexample.exceptions.PreconditionFailedException;
+import eu.bidin.springexample.exceptions.StudentModelInvalidException;
+import eu.bidin.springexample.exceptions.StudentNotFoundException;
+import eu.bidin.springexample.indexes.StudentIndex;
+import eu.bidin.springexample.models.BatchResult;
+import eu.bidin.springexample.models.GradeAverage;
+import eu.bidin.springexample.models.StudentBatchModel;
+import eu.bidin.springexample.models.StudentChange;
+import eu.bidin.springexample.models.StudentModel;
+import eu.bidin.springexample.models.StudentPage;
+import eu.bidin.springexample.replication.ChangeLog;
+import eu.bidin.springexample.replication.ReplicaStatus;
+import eu.bidin.springexample.sharding.ShardDirectory;
+import eu.bidin.utility.HttpResponse;
+import eu.bidin.utility.MyHashtable;
+import eu.bidin.utility.Table;
+import eu.bidin.utility.UuidParser;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.IntSummaryStatistics;
+import java.util.List;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Operations on the student table shared by the servlet controller and the reactive handler: validation, the table,
+ * and keeping the index and the cache up to date with it.
+ */
+@Service
+public class StudentService {
+
+    public static final int MAXIMUM_LIMIT = 1000;
+    public static final int MAXIMUM_BATCH_SIZE = 100000;
+
+    /**
+     * Status of a batch item whose student belongs to another shard, 421 Misdirected Request.
+     */
+    public static final int MISDIRECTED = 421;
+
+    private final Table<UUID, Student> database;
+    private final StudentIndex index;
+    private final StudentCache cache;
+    private final ObjectMapper mapper;
+    private final ShardDirectory shards;
+    private final ChangeLog changes;
+    private final ReplicaStatus replica;
+    private final boolean bounded;
+
+    public StudentService(Table<UUID, Student> database, StudentIndex index, StudentCache cache, ObjectMapper mapper,
+                          ShardDirectory shards, ChangeLog changes, ReplicaStatus replica) {
+        this.database = database;
+        this.index = index;
+        this.cache = cache;
+        this.mapper = mapper;
+        this.shards = shards;
+        this.changes = changes;
+        this.replica = replica;
+        this.bounded = database.getEvictionPolicy() != null;
+        // students evicted or expired by a bounded table are removed from everything derived from it
+        database.setEvictionListener((key, student) ->
+                modified(key, StudentChange.Type.DELETED, null, changes.getSequence()));
+    }
+
+    /**
+     * Updates everything derived from the table, call after every modification of a student.
+     *
+     * @param type    type of the modification
+     * @param student student written by the modification, {@code null} if it was removed
+     * @param after   sequence number of the change log read before the modification
+     */
+    private void modified(UUID key, StudentChange.Type type, Student student, long after) {
+        cache.invalidate(key);
+        index.refresh(key);
+        changes.record(key, type, student, after, database::get);
+    }
+
+    private byte[] serialize(Student student) {
+        try {
+            return mapper.writeValueAsBytes(student);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     * Returns a random key that belongs to the shard of this node.
+     */
+    private UUID newKey() {
+        UUID key;
+        do {
+            key = UUID.randomUUID();
+        } while (!shards.isLocal(key));
+        return key;
+    }
+
+    /**
+     * Result of a batch item for a student of another shard, its location is the student on the owning node.
+     */
+    private BatchResult misdirected(int index, String uuid, UUID key) {
+        return new BatchResult(index, MISDIRECTED, uuid, shards.ownerOf(key) + "/students/" + uuid, null);
+    }
+
+    private static UUID parse(String uuid) {
+        UUID key = UuidParser.Parse(uuid);
+        if (key == null)
+            throw new InvalidUuidException(uuid);
+        return key;
+    }
+
+    /**
+     * Fails on a follower that is too far behind its leader, call before reading students.
+     */
+    public void checkReadable() {
+        replica.checkReadable();
+    }
+
+    public String getTableETag() {
+        return cache.getTableETag();
+    }
+
+    public String getETag(Student student) {
+        return cache.getETag(student);
+    }
+
+    /**
+     * Passes the students of the next few slots of the table to {@code consumer}.
+     *
+     * @return cursor of the next call, 0 after the last slot
+     * @see Table#scan
+     */
+    public long scanStudents(long cursor, int count, Consumer<Student> consumer) {
+        return database.scan(cursor, count, e -> consumer.accept(e.getValue()));
+    }
+
+    public StudentPage getStudentPage(String cursor, int limit) {
+        if (limit < 1 || limit > MAXIMUM_LIMIT)
+            throw new InvalidLimitException(limit, MAXIMUM_LIMIT);
+        replica.checkReadable();
+
+        long start = 0;
+        if (cursor != null) {
+            try {
+                start = Long.parseUnsignedLong(cursor, 16);
+            } catch (NumberFormatException ex) {
+                throw new InvalidCursorException(cursor);
+            }
+        }
+
+        List<Student> students = new ArrayList<>(limit);
+        long next = scanStudents(start, limit, students::add);
+        return new StudentPage(students, next == 0 ? null : Long.toHexString(next));
+    }
+
+    /**
+     * Returns a parallel stream of all students, which the common fork-join pool splits into ranges of slots.
+     */
+    private Stream<Student> students() {
+        replica.checkReadable();
+        return StreamSupport.stream(database.spliterator(), true).map(MyHashtable.TableEntry::getValue);
+    }
+
+    /**
+     * Returns the number of students with each grade, including the grades no student has.
+     */
+    public SortedMap<Integer, Long> getGradeHistogram() {
+        long[] counts = students().collect(
+                () -> new long[StudentModel.MAXIMUM_GRADE + 1],
+                (totals, student) -> {
+                    Integer grade = student.getGrade();
+                    if (grade != null && grade >= StudentModel.MINIMUM_GRADE && grade <= StudentModel.MAXIMUM_GRADE)
+                        totals[grade] += 1;
+                },
+                (totals, other) -> {
+                    for (int i = 0; i < totals.length; i++)
+                        totals[i] += other[i];
+                });
+
+        SortedMap<Integer, Long> histogram = new TreeMap<>();
+        for (int grade = StudentModel.MINIMUM_GRADE; grade <= StudentModel.MAXIMUM_GRADE; grade++)
+            histogram.put(grade, counts[grade]);
+        return histogram;
+    }
+
+    public GradeAverage getAverageGrade() {
+        IntSummaryStatistics statistics = students()
+                .map(Student::getGrade)
+                .filter(grade -> grade != null)
+                .mapToInt(Integer::intValue)
+                .summaryStatistics();
+        return new GradeAverage(statistics.getCount(), statistics.getCount() == 0 ? null : statistics.getAverage());
+    }
+
+    /**
+     * Returns the number of students by the first letter of their name, in upper case.
+     */
+    public SortedMap<String, Long> getInitialCounts() {
+        return students()
+                .map(Student::getName)
+                .filter(name -> name != null && !name.trim().isEmpty())
+                .collect(Collectors.groupingBy(StudentService::initial, TreeMap::new, Collectors.counting()));
+    }
+
+    private static String initial(String name) {
+        int codePoint = name.trim().codePointAt(0);
+        return new String(Character.toChars(Character.toUpperCase(codePoint)));
+    }
+
+    public List<Student> searchStudents(Integer grade, String name, int limit) {
+        if (grade == null && (name == null || name.isEmpty()))
+            throw new InvalidQueryException("grade or name is required");
+        if (grade != null && (grade < StudentModel.MINIMUM_GRADE || grade > StudentModel.MAXIMUM_GRADE))
+            throw new InvalidQueryException("grade must be between " + StudentModel.MINIMUM_GRADE + " and " + StudentModel.MAXIMUM_GRADE);
+        if (limit < 1 || limit > MAXIMUM_LIMIT)
+            throw new InvalidLimitException(limit, MAXIMUM_LIMIT);
+        replica.checkReadable();
+
+        return index.find(grade, name, limit);
+    }
+
+    /**
+     * Returns the JSON of a student, from the cache if possible.
+     */
+    public StudentCache.Entry getStudent(String uuid) {
+        UUID key = parse(uuid);
+        replica.checkReadable();
+        // a bounded table still has to see the read, to expire the student or mark it as used
+        if (bounded && database.get(key) == null)
+            throw new StudentNotFoundException(uuid);
+        StudentCache.Entry entry = cache.get(key, database::get, this::serialize);
+        if (entry == null)
+            throw new StudentNotFoundException(uuid);
+        return entry;
+    }
+
+    public Student findStudent(String uuid) {
+        UUID key = parse(uuid);
+        replica.checkReadable();
+        Student student = database.get(key);
+        if (student == null)
+            throw new StudentNotFoundException(uuid);
+        return student;
+    }
+
+    public UUID createStudent(StudentModel model) {
+        List<String> errors = model.Validate();
+        if (!errors.isEmpty())
+            throw new StudentModelInvalidException(errors);
+        replica.checkWritable();
+
+        // a colliding key is never overwritten, it is replaced by a new one
+        long after = changes.getSequence();
+        UUID key;
+        Student student;
+        do {
+            key = newKey();
+            student = new Student(key, model, 1);
+        } while (database.putIfAbsent(key, student) != null);
+        modified(key, StudentChange.Type.CREATED, student, after);
+        return key;
+    }
+
+    /**
+     * Replaces a student with the next version, in a single atomic operation of the table.
+     *
+     * @param ifMatch If-Match header, the update fails unless it matches an entity tag of the current student, of
+     *                either representation
+     * @return entity tag of the updated student
+     */
+    public String updateStudent(String uuid, StudentModel model, String ifMatch) {
+        UUID key = parse(uuid);
+        List<String> errors = model.Validate();
+        if (!errors.isEmpty())
+            throw new StudentModelInvalidException(errors);
+        replica.checkWritable();
+
+        long after = changes.getSequence();
+        Student student = database.computeIfPresent(key, (k, current) -> {
+            String eTag = cache.getETag(current);
+            if (HttpResponse.isPreconditionFailed(ifMatch, eTag)
+                    && HttpResponse.isPreconditionFailed(ifMatch, HttpResponse.variantETag(eTag, StudentProtobuf.E_TAG_VARIANT)))
+                throw new PreconditionFailedException(uuid, ifMatch);
+            return new Student(k, model, current.getVersion() + 1);
+        });
+        if (student == null)
+            throw new StudentNotFoundException(uuid);
+
+        modified(key, StudentChange.Type.UPDATED, student, after);
+        return cache.getETag(student);
+    }
+
+    public void deleteStudent(String uuid) {
+        UUID key = parse(uuid);
+        replica.checkWritable();
+        long after = changes.getSequence();
+        if (database.remove(key) == null)
+            throw new StudentNotFoundException(uuid);
+        modified(key, StudentChange.Type.DELETED, null, after);
+    }
+
+    /**
+     * Creates all valid students with a single resize of the table.
+     * Invalid items are reported in their result and do not prevent the others from being created.
+     *
+     * @param location URI of the students, followed by the UUID of a student in its result
+     */
+    public List<BatchResult> createStudents(List<StudentModel> models, String location) {
+        replica.checkWritable();
+        BatchResult[] results = new BatchResult[models.size()];
+        List<MyHashtable.TableEntry<UUID, Student>> entries = new ArrayList<>(models.size());
+        List<Integer> indexes = new ArrayList<>(models.size());
+
+        for (int i = 0; i < models.size(); i++) {
+            StudentModel model = models.get(i);
+            if (model == null) {
+                results[i] = missingItem(i);
+                continue;
+            }
+            List<String> errors = model.Validate();
+            if (!errors.isEmpty()) {
+                results[i] = new BatchResult(i, HttpStatus.BAD_REQUEST.value(), null, null, errors);
+                continue;
+            }
+
+            UUID key = newKey();
+            entries.add(new MyHashtable.TableEntry<>(key, new Student(key, model, 1), null));
+            indexes.add(i);
+        }
+
+        long after = changes.getSequence();
+        // a colliding key is never overwritten, the student is created again with a new one
+        Set<MyHashtable.TableEntry<UUID, Student>> present = Collections.newSetFromMap(new IdentityHashMap<>());
+        present.addAll(database.putAllIfAbsent(entries));
+        for (int j = 0; j < entries.size(); j++) {
+            UUID key = entries.get(j).getKey();
+            Student student = entries.get(j).getValue();
+            if (present.contains(entries.get(j)))
+                do {
+                    key = newKey();
+                    student = new Student(key, student.getName(), student.getGrade(), 1);
+                } while (database.putIfAbsent(key, student) != null);
+            modified(key, StudentChange.Type.CREATED, student, after);
+
+            int i = indexes.get(j);
+            results[i] = new BatchResult(i, HttpStatus.CREATED.value(), key.toString(), location + key, null);
+        }
+        return Arrays.asList(results);
+    }
+
+    private static BatchResult missingItem(int index) {
+        return new BatchResult(index, HttpStatus.BAD_REQUEST.value(), null, null, Collections.singletonList("item is required"));
+    }
+
+    /**
+     * Replaces each student with its next version in a single atomic operation of the table, as
+     * {@link #updateStudent} does, so a student deleted in the meantime is not recreated and concurrent updates of
+     * the same student get different versions. Batches are not conditional.
+     */
+    public List<BatchResult> updateStudents(List<StudentBatchModel> models) {
+        replica.checkWritable();
+        List<BatchResult> results = new ArrayList<>(models.size());
+
+        for (int i = 0; i < models.size(); i++) {
+            StudentBatchModel model = models.get(i);
+            if (model == null) {
+                results.add(missingItem(i));
+                continue;
+            }
+            String uuid = model.getUuid();
+            UUID key = UuidParser.Parse(uuid);
+            if (key == null) {
+                results.add(new BatchResult(i, HttpStatus.BAD_REQUEST.value(), uuid, null,
+                        Collections.singletonList("uuid is invalid")));
+                continue;
+            }
+            if (!shards.isLocal(key)) {
+                results.add(misdirected(i, uuid, key));
+                continue;
+            }
+            List<String> errors = model.Validate();
+            if (!errors.isEmpty()) {
+                results.add(new BatchResult(i, HttpStatus.BAD_REQUEST.value(), uuid, null, errors));
+                continue;
+            }
+
+            long after = changes.getSequence();
+            Student student = database.computeIfPresent(key, (k, current) -> new Student(k, model, current.getVersion() + 1));
+            if (student == null) {
+                results.add(new BatchResult(i, HttpStatus.NOT_FOUND.value(), uuid, null, null));
+                continue;
+            }
+            modified(key, StudentChange.Type.UPDATED, student, after);
+            results.add(new BatchResult(i, HttpStatus.NO_CONTENT.value(), uuid, null, null));
+        }
+        return results;
+    }
+
+    /**
+     * Removes each student on its own, only the students that were actually removed count as modified. A repeated
+     * key was already removed by its first occurrence, so it is not found.
+     */
+    public List<BatchResult> deleteStudents(List<String> uuids) {
+        replica.checkWritable();
+        List<BatchResult> results = new ArrayList<>(uuids.size());
+
+        for (int i = 0; i < uuids.size(); i++) {
+            String uuid = uuids.get(i);
+            if (uuid == null) {
+                results.add(missingItem(i));
+                continue;
+            }
+            UUID key = UuidParser.Parse(uuid);
+            if (key == null) {
+                results.add(new BatchResult(i, HttpStatus.BAD_REQUEST.value(), uuid, null,
+                        Collections.singletonList("uuid is invalid")));
+                continue;
+            }
+            if (!shards.isLocal(key)) {
+                results.add(misdirected(i, uuid, key));
+                continue;
+            }
+            long after = changes.getSequence();
+            if (database.remove(key) == null) {
+                results.add(new BatchResult(i, HttpStatus.NOT_FOUND.value(), uuid, null, null));
+                continue;
+            }
+
+            modified(key, StudentChange.Type.DELETED, null, after);
+            results.add(new BatchResult(i, HttpStatus.NO_CONTENT.value(), uuid, null, null));
+        }
+        return results;
+    }
+
+    /**
+     * Checks if this node still holds a student, which it serves until the student was handed off to its owner.
+     */
+    public boolean containsStudent(UUID key) {
+        return database.containsKey(key);
+    }
+
+    /**
+     * Stores students handed off by another shard. A student is only replaced by a newer version, so a student sent
+     * again after it was modified on its previous node always ends up with the latest version.
+     */
+    public void importStudents(List<Student> students) {
+        replica.checkWritable();
+        database.ensureCapacity(database.size() + students.size());
+        for (Student student : students) {
+            UUID key = student.getUuid();
+            long after = changes.getSequence();
+            Student existing = database.putIfAbsent(key, student);
+            while (existing != null && existing.getVersion() < student.getVersion() && !database.replace(key, existing, student))
+                existing = database.putIfAbsent(key, student);
+            if (existing == null)
+                modified(key, StudentChange.Type.CREATED, student, after);
+            else if (existing.getVersion() < student.getVersion())
+                modified(key, StudentChange.Type.UPDATED, student, after);
+        }
+    }
+
+    /**
+     * Removes a student that was handed off to another shard, unless it was modified since.
+     *
+     * @return true if the student was removed
+     */
+    public boolean releaseStudent(Student student) {
+        UUID key = student.getUuid();
+        long after = changes.getSequence();
+        boolean[] removed = new boolean[1];
+        Student remaining = database.computeIfPresent(key, (k, current) -> {
+            removed[0] = current.getVersion() == student.getVersion();
+            return removed[0] ? null : current;
+        });
+        if (remaining != null)
+            return false;
+        if (removed[0])
+            modified(key, StudentChange.Type.DELETED, null, after);
+        return true;
+    }
+
+    /**
+     * Applies a change streamed from the leader, on a follower. The change is recorded as it modified the table of
+     * the follower, a student it already has is not recorded again.
+     *
+     * @param student student after the change, {@code null} if it was removed
+     */
+    public void applyReplicated(UUID key, Student student) {
+        long after = changes.getSequence();
+        if (student == null) {
+            if (database.remove(key) != null)
+                modified(key, StudentChange.Type.DELETED, null, after);
+            return;
+        }
+        Student existing = database.putIfAbsent(key, student);
+        if (existing == null) {
+            modified(key, StudentChange.Type.CREATED, student, after);
+        } else if (!existing.equals(student)) {
+            database.put(key, student);
+            modified(key, StudentChange.Type.UPDATED, student, after);
+        }
+    }
+
+    /**
+     * Removes the students that were not in a snapshot of the leader, on a follower.
+     */
+    public void retainReplicated(Set<UUID> keys) {
+        List<UUID> removed = new ArrayList<>();
+        long cursor = 0;
+        do {
+            cursor = database.scan(cursor, MAXIMUM_LIMIT, e -> {
+                if (!keys.contains(e.getKey()))
+                    removed.add(e.getKey());
+            });
+        } while (cursor != 0);
+        long after = changes.getSequence();
+        database.removeAll(removed);
+        for (UUID key : removed)
+            modified(key, StudentChange.Type.DELETED, null, after);
+    }
+
+    /**
+     * Reads the items of a JSON array, or of a stream of JSON values such as newline delimited JSON. A {@code null}
+     * item is kept as {@code null}, so it is reported in its own result.
+     */
+    public <T> List<T> readBatch(InputStream body, Class<T> type) throws IOException {
+        List<T> items = new ArrayList<>();
+        ObjectReader reader = mapper.readerFor(type);
+        try (JsonParser parser = mapper.getFactory().createParser(body)) {
+            JsonToken token = parser.nextToken();
+            boolean array = token == JsonToken.START_ARRAY;
+            if (array)
+                token = parser.nextToken();
+            for (; token != null && !(array && token == JsonToken.END_ARRAY); token = parser.nextToken()) {
+                if (items.size() == MAXIMUM_BATCH_SIZE)
+                    throw new InvalidBatchException("more than " + MAXIMUM_BATCH_SIZE + " items");
+                items.add(token == JsonToken.VALUE_NULL ? null : reader.readValue(parser));
+            }
+        } catch (JsonProcessingException ex) {
+            throw new InvalidBatchException(ex.getOriginalMessage());
+        }
+        return items;
+    }
+
+    /**
+     * Reads length-prefixed students in the binary format, as handed off by another shard. Every student must pass
+     * the same validation as a created one, so no table refuses it later.
+     */
+    public List<Student> readStudents(InputStream body) {
+        List<Student> students = new ArrayList<>();
+        try {
+            for (Student student = StudentProtobuf.readDelimited(body); student != null; student = StudentProtobuf.readDelimited(body)) {
+                if (students.size() == MAXIMUM_BATCH_SIZE)
+                    throw new InvalidBatchException("more than " + MAXIMUM_BATCH_SIZE + " items");
+                StudentModel model = new StudentModel();
+                model.setName(student.getName());
+                model.setGrade(student.getGrade());
+                List<String> errors = model.Validate();
+                if (!errors.isEmpty())
+                    throw new InvalidBatchException("student " + student.getUuid() + ": " + String.join(", ", errors));
+                students.add(student);
+            }
+        } catch (IOException ex) {
+            throw new InvalidBatchException(ex.getMessage());
+        }
+        return students;
+    }
+}
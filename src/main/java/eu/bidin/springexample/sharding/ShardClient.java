@@ -0,0 +1,299 @@
+package eu.bidin.springexample.sharding;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import eu.bidin.springexample.codecs.StudentProtobuf;
+import eu.bidin.springexample.entities.Student;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.ResponseErrorHandler;
+import org.springframework.web.client.RestTemplate;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.BufferedReader;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Requests between the nodes of a sharded deployment. All of them carry {@link ShardDirectory#FORWARDED_HEADER}, so
+ * the receiving node answers from its own shard. The blocking methods are for the servlet mode and background work,
+ * the reactive mode uses the methods that return a {@link Flux}.
+ * <p>
+ * The students of a node that is not reachable, fails or stalls for longer than the timeout are skipped when lists
+ * are merged, those read from it until then are kept. Students in the binary format are passed on whole, so a list
+ * never ends within a student.
+ */
+@Component
+public class ShardClient {
+
+    private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+
+    /**
+     * Leaves every status to the caller, forwarded responses are passed on as they are.
+     */
+    private static final ResponseErrorHandler PASS_THROUGH = new ResponseErrorHandler() {
+
+        @Override
+        public boolean hasError(ClientHttpResponse response) {
+            return false;
+        }
+
+        @Override
+        public void handleError(ClientHttpResponse response) {
+        }
+    };
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ShardClient.class);
+
+    private final ShardDirectory directory;
+    private final ObjectMapper mapper;
+    private final Duration timeout;
+    private final RestTemplate restTemplate;
+    private final WebClient webClient;
+
+    public ShardClient(ShardDirectory directory, ShardingProperties properties, ObjectMapper mapper, WebClient.Builder webClient) {
+        this.directory = directory;
+        this.mapper = mapper;
+        this.timeout = properties.getTimeout();
+
+        SimpleClientHttpRequestFactory requestFactory = new SimpleClientHttpRequestFactory();
+        requestFactory.setBufferRequestBody(false);
+        requestFactory.setConnectTimeout((int) properties.getTimeout().toMillis());
+        requestFactory.setReadTimeout((int) properties.getTimeout().toMillis());
+        this.restTemplate = new RestTemplate(requestFactory);
+        this.restTemplate.setErrorHandler(PASS_THROUGH);
+        this.webClient = webClient.build();
+    }
+
+    public RestTemplate getRestTemplate() {
+        return restTemplate;
+    }
+
+    public WebClient getWebClient() {
+        return webClient;
+    }
+
+    /**
+     * Identifies this node as a member, on requests that change the ring or hand off students.
+     */
+    private void member(HttpHeaders headers) {
+        headers.set(ShardDirectory.FORWARDED_HEADER, directory.getSelf());
+        if (directory.getSecret() != null)
+            headers.set(ShardDirectory.SECRET_HEADER, directory.getSecret());
+    }
+
+    private static void check(String node, ClientHttpResponse response) throws IOException {
+        if (!response.getStatusCode().is2xxSuccessful())
+            throw new IOException("Node " + node + " responded with " + response.getRawStatusCode());
+    }
+
+    private static void skipped(String node, Throwable ex) {
+        LOGGER.warn("Skipped the students of node {}: {}", node, ex.getMessage());
+    }
+
+    /**
+     * Announces this node to another one.
+     *
+     * @return nodes known to the other node
+     */
+    public List<String> join(String node) {
+        String self = directory.getSelf();
+        try {
+            URI uri = URI.create(node + "/shards/nodes?node=" + URLEncoder.encode(self, "UTF-8"));
+            return restTemplate.execute(uri, HttpMethod.POST,
+                    request -> member(request.getHeaders()),
+                    response -> {
+                        check(node, response);
+                        return Arrays.asList(mapper.readValue(response.getBody(), String[].class));
+                    });
+        } catch (IOException ex) {
+            throw new ResourceAccessException(ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * Tells another node that this node leaves the ring.
+     */
+    public void leave(String node) {
+        try {
+            URI uri = URI.create(node + "/shards/nodes?node=" + URLEncoder.encode(directory.getSelf(), "UTF-8"));
+            restTemplate.execute(uri, HttpMethod.DELETE,
+                    request -> member(request.getHeaders()),
+                    response -> {
+                        check(node, response);
+                        return null;
+                    });
+        } catch (IOException ex) {
+            throw new ResourceAccessException(ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * Sends students to the node that owns them now, in the binary format with their versions.
+     */
+    public void handOff(String node, List<Student> students) {
+        restTemplate.execute(URI.create(node + "/shards/students"), HttpMethod.POST,
+                request -> {
+                    request.getHeaders().setContentType(StudentProtobuf.MEDIA_TYPE);
+                    member(request.getHeaders());
+                    OutputStream output = request.getBody();
+                    for (Student student : students)
+                        StudentProtobuf.writeDelimited(output, student);
+                },
+                response -> {
+                    check(node, response);
+                    return null;
+                });
+    }
+
+    /**
+     * Reads the students of another node as lines of JSON.
+     */
+    public void readStudentLines(String node, Consumer<String> consumer) {
+        try {
+            restTemplate.execute(URI.create(node + "/students"), HttpMethod.GET,
+                    request -> {
+                        request.getHeaders().setAccept(Arrays.asList(NDJSON));
+                        request.getHeaders().set(ShardDirectory.FORWARDED_HEADER, directory.getSelf());
+                    },
+                    response -> {
+                        check(node, response);
+                        BufferedReader reader = new BufferedReader(new InputStreamReader(response.getBody(), StandardCharsets.UTF_8));
+                        for (String line = reader.readLine(); line != null; line = reader.readLine())
+                            if (!line.isEmpty())
+                                consumer.accept(line);
+                        return null;
+                    });
+        } catch (RestClientException ex) {
+            skipped(node, ex);
+        }
+    }
+
+    /**
+     * Copies the students of another node in the binary format, which is a concatenation of delimited students.
+     *
+     * @throws UncheckedIOException if writing to the output fails
+     */
+    public void copyDelimitedStudents(String node, OutputStream output) {
+        try {
+            restTemplate.execute(URI.create(node + "/students"), HttpMethod.GET,
+                    request -> {
+                        request.getHeaders().setAccept(Arrays.asList(StudentProtobuf.MEDIA_TYPE));
+                        request.getHeaders().set(ShardDirectory.FORWARDED_HEADER, directory.getSelf());
+                    },
+                    response -> {
+                        check(node, response);
+                        InputStream input = response.getBody();
+                        Student student;
+                        while ((student = StudentProtobuf.readDelimited(input)) != null)
+                            try {
+                                StudentProtobuf.writeDelimited(output, student);
+                            } catch (IOException ex) {
+                                throw new UncheckedIOException(ex);
+                            }
+                        return null;
+                    });
+        } catch (RestClientException ex) {
+            skipped(node, ex);
+        }
+    }
+
+    public Flux<String> studentLines(String node) {
+        return webClient.get()
+                .uri(URI.create(node + "/students"))
+                .accept(NDJSON)
+                .header(ShardDirectory.FORWARDED_HEADER, directory.getSelf())
+                .retrieve()
+                // strings are decoded line by line
+                .bodyToFlux(String.class)
+                .timeout(timeout)
+                .filter(line -> !line.isEmpty())
+                .onErrorResume(ex -> {
+                    skipped(node, ex);
+                    return Flux.empty();
+                });
+    }
+
+    /**
+     * Reads the students of another node in the binary format, every array holds whole delimited students.
+     */
+    public Flux<byte[]> delimitedStudents(String node) {
+        return Flux.defer(() -> {
+            DelimitedStudents students = new DelimitedStudents();
+            return webClient.get()
+                    .uri(URI.create(node + "/students"))
+                    .accept(StudentProtobuf.MEDIA_TYPE)
+                    .header(ShardDirectory.FORWARDED_HEADER, directory.getSelf())
+                    .retrieve()
+                    .bodyToFlux(DataBuffer.class)
+                    .timeout(timeout)
+                    .concatMap(students::append)
+                    .concatWith(Mono.defer(students::end));
+        }).onErrorResume(ex -> {
+            skipped(node, ex);
+            return Flux.empty();
+        });
+    }
+
+    /**
+     * Splits the buffers of a response into whole students, the bytes of a student that is not complete yet are kept
+     * until the next buffer.
+     */
+    private static class DelimitedStudents {
+
+        private byte[] pending = new byte[0];
+
+        private Mono<byte[]> append(DataBuffer buffer) {
+            byte[] bytes = Arrays.copyOf(pending, pending.length + buffer.readableByteCount());
+            buffer.read(bytes, pending.length, bytes.length - pending.length);
+            DataBufferUtils.release(buffer);
+
+            int whole = 0;
+            try {
+                for (int length; (length = StudentProtobuf.delimitedLength(bytes, whole, bytes.length - whole)) >= 0; )
+                    whole += length;
+            } catch (IOException ex) {
+                return Mono.error(ex);
+            }
+            pending = Arrays.copyOfRange(bytes, whole, bytes.length);
+            return whole == 0 ? Mono.empty() : Mono.just(Arrays.copyOf(bytes, whole));
+        }
+
+        private Mono<byte[]> end() {
+            return pending.length == 0 ? Mono.empty() : Mono.error(new EOFException("Student is truncated"));
+        }
+    }
+
+    /**
+     * Removes the headers that only apply to a single connection, before a request or response is passed on.
+     */
+    public static void removeHopByHopHeaders(HttpHeaders headers) {
+        headers.remove(HttpHeaders.CONNECTION);
+        headers.remove(HttpHeaders.TRANSFER_ENCODING);
+        headers.remove(HttpHeaders.HOST);
+        headers.remove("Keep-Alive");
+        headers.remove(HttpHeaders.UPGRADE);
+    }
+}
@@ -0,0 +1,150 @@
+package eu.bidin.springexample.sharding;
+
+import eu.bidin.springexample.exceptions.ShardMembershipException;
+import eu.bidin.utility.ConsistentHashRing;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Knows which node of a sharded deployment owns a student, by consistent hashing of its UUID over the base URLs of
+ * the nodes. Without sharding, this node is the only one and owns every student.
+ * <p>
+ * The ring starts with the configured nodes, grows as nodes announce themselves when they start and shrinks as nodes
+ * leave. Only members may change the ring or hand off students: with a shared secret, every node that sends it is a
+ * member, without one only the configured nodes are.
+ */
+@Component
+public class ShardDirectory {
+
+    /**
+     * Marks requests sent by another node, they are always served by the node that receives them.
+     */
+    public static final String FORWARDED_HEADER = "X-Students-Forwarded";
+
+    /**
+     * Carries the shared secret of the nodes, on requests that change the ring or hand off students.
+     */
+    public static final String SECRET_HEADER = "X-Students-Secret";
+
+    private final boolean enabled;
+    private final String self;
+    private final byte[] secret;
+    private final Set<String> configured;
+    private volatile ConsistentHashRing<String> ring;
+
+    public ShardDirectory(ShardingProperties properties) {
+        this.enabled = properties.isEnabled();
+        this.self = normalize(properties.getSelf());
+
+        List<String> nodes = new ArrayList<>();
+        nodes.add(self);
+        if (enabled)
+            for (String node : properties.getNodes())
+                nodes.add(normalize(node));
+        this.ring = new ConsistentHashRing<>(nodes, properties.getVirtualNodes());
+        this.configured = new HashSet<>(nodes);
+        this.secret = StringUtils.hasText(properties.getSecret()) ? properties.getSecret().getBytes(StandardCharsets.UTF_8) : null;
+    }
+
+    public static String normalize(String node) {
+        String trimmed = node.trim();
+        return trimmed.endsWith("/") ? trimmed.substring(0, trimmed.length() - 1) : trimmed;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public String getSelf() {
+        return self;
+    }
+
+    public String getSecret() {
+        return secret == null ? null : new String(secret, StandardCharsets.UTF_8);
+    }
+
+    public List<String> getNodes() {
+        return ring.getNodes();
+    }
+
+    /**
+     * Returns all nodes except this one.
+     */
+    public List<String> getPeers() {
+        if (!enabled)
+            return Collections.emptyList();
+        List<String> peers = new ArrayList<>(ring.getNodes());
+        peers.remove(self);
+        return peers;
+    }
+
+    public String ownerOf(UUID key) {
+        return enabled ? ring.nodeFor(key) : self;
+    }
+
+    public boolean isLocal(UUID key) {
+        return !enabled || ring.nodeFor(key).equals(self);
+    }
+
+    /**
+     * Checks if a node may change the ring or hand off students.
+     *
+     * @param node   node that asks, or {@code null} if unknown
+     * @param secret secret sent with the request, or {@code null}
+     * @throws ShardMembershipException if the secret does not match, or without a secret, if the node was not configured
+     */
+    public void checkMember(String node, String secret) {
+        boolean member = this.secret != null
+                ? secret != null && MessageDigest.isEqual(this.secret, secret.getBytes(StandardCharsets.UTF_8))
+                : node != null && configured.contains(normalize(node));
+        if (!member)
+            throw new ShardMembershipException(node);
+    }
+
+    /**
+     * Adds nodes to the ring.
+     *
+     * @return true if a node was not part of the ring yet, so some students may now belong to it
+     */
+    public synchronized boolean addNodes(Collection<String> nodes) {
+        if (!enabled)
+            return false;
+
+        ConsistentHashRing<String> grown = ring;
+        for (String node : nodes)
+            grown = grown.with(normalize(node));
+        if (grown == ring)
+            return false;
+        ring = grown;
+        return true;
+    }
+
+    /**
+     * Removes nodes from the ring, the last node always stays.
+     *
+     * @return true if a node was part of the ring, so some students now belong to another node
+     */
+    public synchronized boolean removeNodes(Collection<String> nodes) {
+        if (!enabled)
+            return false;
+
+        ConsistentHashRing<String> shrunk = ring;
+        for (String node : nodes)
+            if (shrunk.getNodes().size() > 1)
+                shrunk = shrunk.without(normalize(node));
+        if (shrunk == ring)
+            return false;
+        ring = shrunk;
+        return true;
+    }
+}
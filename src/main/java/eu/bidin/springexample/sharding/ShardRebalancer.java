@@ -0,0 +1,181 @@
+package eu.bidin.springexample.sharding;
+
+import eu.bidin.springexample.entities.Student;
+import eu.bidin.springexample.services.StudentService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Changes the ring of a sharded deployment and moves students to the nodes that own them after it changed.
+ * <p>
+ * A starting node announces itself to the configured nodes and learns the nodes they know. A node that is asked to
+ * remove itself tells the other nodes it leaves and hands off all of its students. Whenever the ring changes,
+ * every node scans its shard in the background and hands off the students that now belong to another node: a batch
+ * is sent first, then each student is removed unless it was modified in the meantime, in which case the next pass
+ * sends it again. A student is served by the node that still holds it until it is removed there, so no student is
+ * unavailable on its previous node while it moves.
+ */
+@Component
+public class ShardRebalancer {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ShardRebalancer.class);
+    private static final int BATCH_SIZE = 256;
+    private static final int MAXIMUM_PASSES = 3;
+
+    private final ShardDirectory directory;
+    private final ShardClient client;
+    private final StudentService service;
+    private final AtomicBoolean pending = new AtomicBoolean();
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "student-rebalance");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public ShardRebalancer(ShardDirectory directory, ShardClient client, StudentService service) {
+        this.directory = directory;
+        this.client = client;
+        this.service = service;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void announce() {
+        if (!directory.isEnabled())
+            return;
+
+        executor.execute(() -> {
+            // nodes learned from a peer are announced to as well
+            Set<String> announced = new HashSet<>();
+            for (boolean grown = true; grown; ) {
+                grown = false;
+                for (String peer : directory.getPeers()) {
+                    if (!announced.add(peer))
+                        continue;
+                    grown = true;
+                    try {
+                        directory.addNodes(client.join(peer));
+                    } catch (RuntimeException ex) {
+                        LOGGER.warn("Node {} is not reachable, it learns about this node when it starts: {}", peer, ex.getMessage());
+                    }
+                }
+            }
+            LOGGER.info("Shard {} of {}", directory.getSelf(), directory.getNodes());
+            rebalance();
+        });
+    }
+
+    /**
+     * Adds a node that announced itself to the ring.
+     *
+     * @return nodes known to this node
+     */
+    public List<String> join(String node) {
+        if (directory.addNodes(Collections.singletonList(node))) {
+            LOGGER.info("Node {} joined, shards are {}", node, directory.getNodes());
+            scheduleRebalance();
+        }
+        return directory.getNodes();
+    }
+
+    /**
+     * Removes a node from the ring. If it is this node, the other nodes are told it leaves and all students of this
+     * node are handed off in the background; this node keeps serving them until they are removed.
+     *
+     * @return nodes known to this node
+     */
+    public List<String> leave(String node) {
+        String self = directory.getSelf();
+        List<String> peers = directory.getPeers();
+        if (directory.removeNodes(Collections.singletonList(node))) {
+            LOGGER.info("Node {} left, shards are {}", node, directory.getNodes());
+            if (ShardDirectory.normalize(node).equals(self))
+                for (String peer : peers)
+                    try {
+                        client.leave(peer);
+                    } catch (RuntimeException ex) {
+                        LOGGER.warn("Node {} is not reachable, it still forwards to this node: {}", peer, ex.getMessage());
+                    }
+            scheduleRebalance();
+        }
+        return directory.getNodes();
+    }
+
+    private void scheduleRebalance() {
+        if (pending.compareAndSet(false, true))
+            executor.execute(() -> {
+                pending.set(false);
+                rebalance();
+            });
+    }
+
+    private void rebalance() {
+        try {
+            long start = System.nanoTime();
+            int moved = 0;
+            for (int pass = 0; pass < MAXIMUM_PASSES; pass++) {
+                int found = handOff();
+                moved += found;
+                if (found == 0)
+                    break;
+            }
+            LOGGER.info("Handed off {} students in {} ms", moved, (System.nanoTime() - start) / 1000000);
+        } catch (RuntimeException ex) {
+            LOGGER.error("Handoff of students failed, it is retried when the ring changes again", ex);
+        }
+    }
+
+    /**
+     * Sends all students of other shards to their owners.
+     *
+     * @return number of students sent
+     */
+    private int handOff() {
+        String self = directory.getSelf();
+        Map<String, List<Student>> batches = new HashMap<>();
+        int sent = 0;
+
+        long cursor = 0;
+        do {
+            cursor = service.scanStudents(cursor, BATCH_SIZE, student -> {
+                String owner = directory.ownerOf(student.getUuid());
+                if (!owner.equals(self))
+                    batches.computeIfAbsent(owner, node -> new ArrayList<>()).add(student);
+            });
+            for (Map.Entry<String, List<Student>> batch : batches.entrySet())
+                if (batch.getValue().size() >= BATCH_SIZE || cursor == 0) {
+                    sent += send(batch.getKey(), batch.getValue());
+                    batch.getValue().clear();
+                }
+        } while (cursor != 0);
+        return sent;
+    }
+
+    private int send(String node, List<Student> students) {
+        if (students.isEmpty())
+            return 0;
+        client.handOff(node, students);
+        for (Student student : students)
+            service.releaseStudent(student);
+        return students.size();
+    }
+
+    @PreDestroy
+    public void close() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,90 @@
+package eu.bidin.springexample.sharding;
+
+import eu.bidin.springexample.services.StudentService;
+import eu.bidin.utility.UuidParser;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StreamUtils;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.net.URI;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Forwards requests of a single student to the node that owns it, in the servlet mode. The request and the response
+ * are streamed through, with all their headers, so conditional requests and both formats work across nodes.
+ */
+@Component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+@ConditionalOnProperty(name = "students.sharding.enabled", havingValue = "true")
+public class ShardRoutingFilter extends OncePerRequestFilter {
+
+    private static final String PREFIX = "/students/";
+
+    private final ShardDirectory directory;
+    private final ShardClient client;
+    private final StudentService service;
+
+    public ShardRoutingFilter(ShardDirectory directory, ShardClient client, StudentService service) {
+        this.directory = directory;
+        this.client = client;
+        this.service = service;
+    }
+
+    /**
+     * Returns the key of a request of a single student, {@code null} for all other requests.
+     */
+    private static UUID key(HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        if (!path.startsWith(PREFIX) || request.getHeader(ShardDirectory.FORWARDED_HEADER) != null)
+            return null;
+        return UuidParser.Parse(path.substring(PREFIX.length()));
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain) throws ServletException, IOException {
+        UUID key = key(request);
+        // a student that was not handed off yet is still served here
+        if (key == null || directory.isLocal(key) || service.containsStudent(key)) {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        String query = request.getQueryString();
+        URI uri = URI.create(directory.ownerOf(key) + request.getRequestURI() + (query == null ? "" : "?" + query));
+        boolean hasBody = request.getContentLengthLong() > 0 || request.getHeader(HttpHeaders.TRANSFER_ENCODING) != null;
+        client.getRestTemplate().execute(uri, HttpMethod.resolve(request.getMethod()),
+                forwarded -> {
+                    HttpHeaders headers = forwarded.getHeaders();
+                    for (String name : Collections.list(request.getHeaderNames()))
+                        headers.put(name, Collections.list(request.getHeaders(name)));
+                    ShardClient.removeHopByHopHeaders(headers);
+                    headers.set(ShardDirectory.FORWARDED_HEADER, directory.getSelf());
+                    // a GET with an output stream would turn into a POST
+                    if (hasBody)
+                        StreamUtils.copy(request.getInputStream(), forwarded.getBody());
+                },
+                owner -> {
+                    response.setStatus(owner.getRawStatusCode());
+                    HttpHeaders headers = new HttpHeaders();
+                    headers.putAll(owner.getHeaders());
+                    ShardClient.removeHopByHopHeaders(headers);
+                    for (Map.Entry<String, List<String>> header : headers.entrySet())
+                        for (String value : header.getValue())
+                            response.addHeader(header.getKey(), value);
+                    StreamUtils.copy(owner.getBody(), response.getOutputStream());
+                    return null;
+                });
+    }
+}
@@ -0,0 +1,78 @@
+package eu.bidin.springexample.sharding;
+
+import eu.bidin.springexample.services.StudentService;
+import eu.bidin.utility.UuidParser;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.BodyInserters;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+import java.net.URI;
+import java.util.UUID;
+
+/**
+ * Forwards requests of a single student to the node that owns it, in the reactive mode. Like
+ * {@link ShardRoutingFilter}, but the request and the response are streamed through without blocking.
+ */
+@Component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+@ConditionalOnProperty(name = "students.sharding.enabled", havingValue = "true")
+public class ShardRoutingWebFilter implements WebFilter {
+
+    private static final String PREFIX = "/students/";
+
+    private final ShardDirectory directory;
+    private final ShardClient client;
+    private final StudentService service;
+
+    public ShardRoutingWebFilter(ShardDirectory directory, ShardClient client, StudentService service) {
+        this.directory = directory;
+        this.client = client;
+        this.service = service;
+    }
+
+    private static UUID key(ServerHttpRequest request) {
+        String path = request.getPath().pathWithinApplication().value();
+        if (!path.startsWith(PREFIX) || request.getHeaders().containsKey(ShardDirectory.FORWARDED_HEADER))
+            return null;
+        return UuidParser.Parse(path.substring(PREFIX.length()));
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        ServerHttpRequest request = exchange.getRequest();
+        UUID key = key(request);
+        // a student that was not handed off yet is still served here
+        if (key == null || directory.isLocal(key) || service.containsStudent(key))
+            return chain.filter(exchange);
+
+        String query = request.getURI().getRawQuery();
+        URI uri = URI.create(directory.ownerOf(key) + request.getURI().getRawPath() + (query == null ? "" : "?" + query));
+        ServerHttpResponse response = exchange.getResponse();
+        return client.getWebClient()
+                .method(request.getMethod())
+                .uri(uri)
+                .headers(headers -> {
+                    headers.addAll(request.getHeaders());
+                    ShardClient.removeHopByHopHeaders(headers);
+                    headers.set(ShardDirectory.FORWARDED_HEADER, directory.getSelf());
+                })
+                .body(BodyInserters.fromDataBuffers(request.getBody()))
+                .exchange()
+                .flatMap(owner -> {
+                    response.setStatusCode(owner.statusCode());
+                    HttpHeaders headers = response.getHeaders();
+                    headers.putAll(owner.headers().asHttpHeaders());
+                    ShardClient.removeHopByHopHeaders(headers);
+                    return response.writeWith(owner.bodyToFlux(DataBuffer.class));
+                });
+    }
+}
@@ -0,0 +1,66 @@
+package eu.bidin.springexample.sharding;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+@ConfigurationProperties(prefix = "students.sharding")
+public class ShardingProperties {
+
+    private boolean enabled = false;
+    private String self = "http://localhost:8080";
+    private List<String> nodes = new ArrayList<>();
+    private int virtualNodes = 128;
+    private Duration timeout = Duration.ofSeconds(5);
+    private String secret;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public String getSelf() {
+        return self;
+    }
+
+    public List<String> getNodes() {
+        return nodes;
+    }
+
+    public int getVirtualNodes() {
+        return virtualNodes;
+    }
+
+    public Duration getTimeout() {
+        return timeout;
+    }
+
+    public String getSecret() {
+        return secret;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public void setSelf(String self) {
+        this.self = self;
+    }
+
+    public void setNodes(List<String> nodes) {
+        this.nodes = nodes;
+    }
+
+    public void setVirtualNodes(int virtualNodes) {
+        this.virtualNodes = virtualNodes;
+    }
+
+    public void setTimeout(Duration timeout) {
+        this.timeout = timeout;
+    }
+
+    public void setSecret(String secret) {
+        this.secret = secret;
+    }
+}
@@ -0,0 +1,112 @@
+package eu.bidin.springexample.storage;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * A file mapped into memory in fixed-size chunks, so it can grow past the 2 GB limit of a single mapping.
+ * Values are accessed by their absolute offset and must not cross a chunk boundary.
+ */
+public class MappedFile implements Closeable {
+
+    public static final int CHUNK_SHIFT = 24;
+    public static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+
+    private final FileChannel channel;
+    private volatile MappedByteBuffer[] chunks;
+
+    public MappedFile(Path path) throws IOException {
+        this.channel = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.chunks = new MappedByteBuffer[0];
+        ensureSize(channel.size());
+    }
+
+    public long size() {
+        return (long) chunks.length << CHUNK_SHIFT;
+    }
+
+    /**
+     * Maps additional chunks until the file holds at least {@code bytes} bytes, growing the file if needed.
+     */
+    public synchronized void ensureSize(long bytes) {
+        MappedByteBuffer[] chunks = this.chunks;
+        int count = (int) ((bytes + CHUNK_SIZE - 1) >>> CHUNK_SHIFT);
+        if (count <= chunks.length)
+            return;
+
+        MappedByteBuffer[] grown = Arrays.copyOf(chunks, count);
+        try {
+            for (int i = chunks.length; i < count; i++)
+                grown[i] = channel.map(FileChannel.MapMode.READ_WRITE, (long) i << CHUNK_SHIFT, CHUNK_SIZE);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        this.chunks = grown;
+    }
+
+    private MappedByteBuffer chunk(long offset) {
+        return chunks[(int) (offset >>> CHUNK_SHIFT)];
+    }
+
+    private static int position(long offset) {
+        return (int) (offset & (CHUNK_SIZE - 1));
+    }
+
+    public byte getByte(long offset) {
+        return chunk(offset).get(position(offset));
+    }
+
+    public void putByte(long offset, byte value) {
+        chunk(offset).put(position(offset), value);
+    }
+
+    public short getShort(long offset) {
+        return chunk(offset).getShort(position(offset));
+    }
+
+    public void putShort(long offset, short value) {
+        chunk(offset).putShort(position(offset), value);
+    }
+
+    public char getChar(long offset) {
+        return chunk(offset).getChar(position(offset));
+    }
+
+    public void putChar(long offset, char value) {
+        chunk(offset).putChar(position(offset), value);
+    }
+
+    public int getInt(long offset) {
+        return chunk(offset).getInt(position(offset));
+    }
+
+    public void putInt(long offset, int value) {
+        chunk(offset).putInt(position(offset), value);
+    }
+
+    public long getLong(long offset) {
+        return chunk(offset).getLong(position(offset));
+    }
+
+    public void putLong(long offset, long value) {
+        chunk(offset).putLong(position(offset), value);
+    }
+
+    public void force() {
+        for (MappedByteBuffer chunk : chunks)
+            chunk.force();
+    }
+
+    @Override
+    public void close() throws IOException {
+        force();
+        channel.close();
+    }
+}
@@ -0,0 +1,772 @@
+package eu.bidin.springexample.storage;
+
+import eu.bidin.springexample.entities.Student;
+import eu.bidin.springexample.models.StudentModel;
+import eu.bidin.utility.MyHashtable.TableEntry;
+import eu.bidin.utility.ScanSpliterator;
+import eu.bidin.utility.Table;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.UUID;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+
+import static eu.bidin.utility.ScanCursors.isBetween;
+import static eu.bidin.utility.ScanCursors.nextCursor;
+import static eu.bidin.utility.ScanCursors.precedes;
+
+/**
+ * Student table stored outside of the Java heap, in memory-mapped files.
+ * <p>
+ * Every student occupies a fixed-size slot of the data file, freed slots are chained into a free list that is kept in
+ * the file itself. The index file is an open addressing hash table from the two halves of a UUID to a slot number.
+ * A restarted application uses both files as they are, without loading.
+ * <p>
+ * Slots are never overwritten in place: a student is written to a fresh slot, published by pointing its index entry
+ * at it, and only then is the old slot freed. The mapped pages outlive the application, so if it dies at any point an
+ * index entry refers to a whole student, the old or the new one. What an interrupted write can leave behind, a slot
+ * that is neither used nor free, a key that is in the index twice or one that is behind an emptied entry, is repaired
+ * when a table that was not closed is opened again: the index is rehashed and the free list rebuilt from it.
+ * <p>
+ * The files are only forced to the disk when the index is resized and when the table is closed. An operating system
+ * crash or a power loss can lose or tear any write since, the journal ({@code students.persistence.enabled}) is what
+ * makes writes durable.
+ * <p>
+ * Writers are serialized, readers use optimistic reads and only lock if a writer interfered.
+ */
+public class MappedStudentTable implements Table<UUID, Student>, Closeable {
+
+    private static final int MAGIC = 0x53544442;
+    private static final int LAYOUT_VERSION = 1;
+
+    // data file: a header followed by slots, slot 0 is the header itself
+    private static final int SLOT_SIZE = 128;
+    private static final int HEADER_SLOT_COUNT = 8;
+    private static final int HEADER_FREE_HEAD = 16;
+    private static final int HEADER_STUDENT_COUNT = 24;
+    // non-zero while a table has the files open, older files have zeroes there
+    private static final int HEADER_OPEN = 28;
+
+    private static final int SLOT_STATE = 0;
+    // older files have zeroes in the unused bytes after the state, which read as version 0
+    private static final int SLOT_VERSION = 4;
+    private static final int SLOT_NEXT_FREE = 8;
+    private static final int SLOT_MOST_SIGNIFICANT_BITS = 8;
+    private static final int SLOT_LEAST_SIGNIFICANT_BITS = 16;
+    private static final int SLOT_GRADE = 24;
+    private static final int SLOT_NAME_LENGTH = 26;
+    private static final int SLOT_NAME = 28;
+
+    private static final byte STATE_USED = 1;
+    private static final byte STATE_FREE = 2;
+
+    // index file: a header followed by entries, slot number 0 marks an empty entry
+    private static final int INDEX_HEADER = 64;
+    private static final int INDEX_CAPACITY = 8;
+    private static final int ENTRY_SIZE = 32;
+    private static final int ENTRY_MOST_SIGNIFICANT_BITS = 0;
+    private static final int ENTRY_LEAST_SIGNIFICANT_BITS = 8;
+    private static final int ENTRY_SLOT = 16;
+
+    private static final int MINIMUM_INDEX_CAPACITY = 1024;
+    private static final double INDEX_LOAD_FACTOR = 0.5;
+
+    private final Path indexPath;
+    private final MappedFile data;
+    private volatile MappedFile index;
+    private volatile int indexCapacity;
+    private volatile int size;
+
+    private final StampedLock lock = new StampedLock();
+    private final LongAdder resizeCount = new LongAdder();
+    private final LongAdder resizeTime = new LongAdder();
+
+    public MappedStudentTable(Path directory) throws IOException {
+        Files.createDirectories(directory);
+
+        this.data = new MappedFile(directory.resolve("students.dat"));
+        this.indexPath = directory.resolve("students.idx");
+        this.index = new MappedFile(indexPath);
+
+        if (data.size() == 0) {
+            data.ensureSize(MappedFile.CHUNK_SIZE);
+            data.putInt(0, MAGIC);
+            data.putInt(4, LAYOUT_VERSION);
+            data.putLong(HEADER_SLOT_COUNT, 1);
+            data.putLong(HEADER_FREE_HEAD, 0);
+        } else if (data.getInt(0) != MAGIC || data.getInt(4) != LAYOUT_VERSION) {
+            throw new IOException("Unsupported student data file " + directory.resolve("students.dat"));
+        }
+
+        if (index.size() == 0) {
+            this.indexCapacity = MINIMUM_INDEX_CAPACITY;
+            index.ensureSize(INDEX_HEADER + (long) indexCapacity * ENTRY_SIZE);
+            index.putInt(0, MAGIC);
+            index.putInt(INDEX_CAPACITY, indexCapacity);
+        } else {
+            this.indexCapacity = index.getInt(INDEX_CAPACITY);
+        }
+
+        if (data.getInt(HEADER_OPEN) != 0)
+            recover();
+        data.putInt(HEADER_OPEN, 1);
+        this.size = data.getInt(HEADER_STUDENT_COUNT);
+    }
+
+    /**
+     * Repairs the files of a table that was not closed: rehashes the index, which drops keys that are in it twice and
+     * closes the gaps of an interrupted removal, then frees every slot the index does not refer to and counts the rest.
+     */
+    private void recover() {
+        rehashIndex(indexCapacity);
+
+        long slotCount = data.getLong(HEADER_SLOT_COUNT);
+        BitSet used = new BitSet();
+        int count = 0;
+        for (int entry = 0; entry < indexCapacity; entry++) {
+            long slot = index.getLong(entryOffset(entry) + ENTRY_SLOT);
+            if (slot != 0) {
+                used.set((int) slot);
+                count += 1;
+            }
+        }
+
+        long free = 0;
+        for (long slot = slotCount - 1; slot > 0; slot--) {
+            if (used.get((int) slot))
+                continue;
+            data.putByte(slotOffset(slot) + SLOT_STATE, STATE_FREE);
+            data.putLong(slotOffset(slot) + SLOT_NEXT_FREE, free);
+            free = slot;
+        }
+        data.putLong(HEADER_FREE_HEAD, free);
+        data.putInt(HEADER_STUDENT_COUNT, count);
+    }
+
+    private static long hash(long mostSignificantBits, long leastSignificantBits) {
+        long h = mostSignificantBits ^ Long.rotateLeft(leastSignificantBits, 32);
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    private static long entryOffset(int entry) {
+        return INDEX_HEADER + (long) entry * ENTRY_SIZE;
+    }
+
+    private static long slotOffset(long slot) {
+        return slot * SLOT_SIZE;
+    }
+
+    /**
+     * Returns the index entry of specified key, or the empty entry that ends its probe sequence.
+     */
+    private static int probe(MappedFile index, int capacity, long msb, long lsb) {
+        int mask = capacity - 1;
+        int entry = (int) hash(msb, lsb) & mask;
+        for (int i = 0; i <= mask; i++) {
+            long offset = entryOffset(entry);
+            if (index.getLong(offset + ENTRY_SLOT) == 0
+                    || (index.getLong(offset + ENTRY_MOST_SIGNIFICANT_BITS) == msb
+                    && index.getLong(offset + ENTRY_LEAST_SIGNIFICANT_BITS) == lsb))
+                return entry;
+            entry = (entry + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the slot of specified key, 0 if there is none.
+     */
+    private long slotOf(long msb, long lsb) {
+        MappedFile index = this.index;
+        int capacity = this.indexCapacity;
+        if (index.size() < entryOffset(capacity))
+            return 0;
+
+        int entry = probe(index, capacity, msb, lsb);
+        return entry < 0 ? 0 : index.getLong(entryOffset(entry) + ENTRY_SLOT);
+    }
+
+    private Student read(long slot, UUID key) {
+        long offset = slotOffset(slot);
+        if (offset + SLOT_SIZE > data.size() || data.getByte(offset + SLOT_STATE) != STATE_USED)
+            return null;
+
+        byte grade = data.getByte(offset + SLOT_GRADE);
+        short length = data.getShort(offset + SLOT_NAME_LENGTH);
+        String name = null;
+        if (length >= 0 && length <= StudentModel.MAXIMUM_NAME_LENGTH) {
+            char[] chars = new char[length];
+            for (int i = 0; i < length; i++)
+                chars[i] = data.getChar(offset + SLOT_NAME + 2L * i);
+            name = new String(chars);
+        }
+        return new Student(key, name, grade == 0 ? null : (int) grade, data.getInt(offset + SLOT_VERSION));
+    }
+
+    private void write(long slot, UUID key, Student value) {
+        long offset = slotOffset(slot);
+        String name = value.getName();
+        Integer grade = value.getGrade();
+
+        data.putLong(offset + SLOT_MOST_SIGNIFICANT_BITS, key.getMostSignificantBits());
+        data.putLong(offset + SLOT_LEAST_SIGNIFICANT_BITS, key.getLeastSignificantBits());
+        data.putInt(offset + SLOT_VERSION, value.getVersion());
+        data.putByte(offset + SLOT_GRADE, grade == null ? 0 : grade.byteValue());
+        data.putShort(offset + SLOT_NAME_LENGTH, (short) (name == null ? -1 : name.length()));
+        if (name != null)
+            for (int i = 0; i < name.length(); i++)
+                data.putChar(offset + SLOT_NAME + 2L * i, name.charAt(i));
+        data.putByte(offset + SLOT_STATE, STATE_USED);
+    }
+
+    private static void validate(Student value) {
+        if (value == null)
+            throw new IllegalArgumentException("Value can not be null.");
+        String name = value.getName();
+        if (name != null && name.length() > StudentModel.MAXIMUM_NAME_LENGTH)
+            throw new IllegalArgumentException("Name can not be longer than " + StudentModel.MAXIMUM_NAME_LENGTH + " characters.");
+        if (value.getGrade() != null && (value.getGrade() < 1 || value.getGrade() > Byte.MAX_VALUE))
+            throw new IllegalArgumentException("Grade is out of range.");
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public int getCapacity() {
+        return indexCapacity;
+    }
+
+    @Override
+    public double getLoadFactor() {
+        return INDEX_LOAD_FACTOR;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Returns the length of the longest run of occupied index entries, the longest probe sequence of any lookup.
+     */
+    @Override
+    public int getLongestChain() {
+        long stamp = lock.readLock();
+        try {
+            int mask = indexCapacity - 1;
+            int longest = 0;
+            int run = 0;
+            for (int i = 0; i < 2 * indexCapacity && run < indexCapacity; i++) {
+                run = index.getLong(entryOffset(i & mask) + ENTRY_SLOT) == 0 ? 0 : run + 1;
+                longest = Math.max(longest, run);
+            }
+            return longest;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public long getResizeCount() {
+        return resizeCount.sum();
+    }
+
+    @Override
+    public long getResizeTime() {
+        return resizeTime.sum();
+    }
+
+    @Override
+    public Student get(UUID key) {
+        if (key == null)
+            return null;
+
+        long msb = key.getMostSignificantBits();
+        long lsb = key.getLeastSignificantBits();
+
+        long stamp = lock.tryOptimisticRead();
+        Student student = find(key, msb, lsb);
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                student = find(key, msb, lsb);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return student;
+    }
+
+    private Student find(UUID key, long msb, long lsb) {
+        long slot = slotOf(msb, lsb);
+        return slot == 0 ? null : read(slot, key);
+    }
+
+    @Override
+    public boolean containsKey(UUID key) {
+        if (key == null)
+            return false;
+
+        long msb = key.getMostSignificantBits();
+        long lsb = key.getLeastSignificantBits();
+
+        long stamp = lock.tryOptimisticRead();
+        boolean found = slotOf(msb, lsb) != 0;
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                found = slotOf(msb, lsb) != 0;
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return found;
+    }
+
+    @Override
+    public boolean containsValue(Student value) {
+        for (TableEntry<UUID, Student> entry : this)
+            if (entry.getValue().equals(value))
+                return true;
+        return false;
+    }
+
+    @Override
+    public void put(UUID key, Student value) throws IllegalArgumentException {
+        put(key, value, false);
+    }
+
+    @Override
+    public Student putIfAbsent(UUID key, Student value) throws IllegalArgumentException {
+        return put(key, value, true);
+    }
+
+    /**
+     * Returns the existing student if {@code onlyIfAbsent} kept it, {@code null} otherwise.
+     */
+    private Student put(UUID key, Student value, boolean onlyIfAbsent) throws IllegalArgumentException {
+        if (key == null)
+            throw new IllegalArgumentException("Key can not be null.");
+        validate(value);
+
+        long msb = key.getMostSignificantBits();
+        long lsb = key.getLeastSignificantBits();
+
+        long stamp = lock.writeLock();
+        try {
+            int entry = probe(index, indexCapacity, msb, lsb);
+            long entryOffset = entryOffset(entry);
+            long slot = index.getLong(entryOffset + ENTRY_SLOT);
+
+            if (slot != 0) {
+                if (onlyIfAbsent)
+                    return read(slot, key);
+                rewrite(entryOffset, slot, key, value);
+                return null;
+            }
+
+            // the entry is empty until its slot is set, after the key and the student
+            slot = allocateSlot();
+            write(slot, key, value);
+            index.putLong(entryOffset + ENTRY_MOST_SIGNIFICANT_BITS, msb);
+            index.putLong(entryOffset + ENTRY_LEAST_SIGNIFICANT_BITS, lsb);
+            index.putLong(entryOffset + ENTRY_SLOT, slot);
+
+            size += 1;
+            data.putInt(HEADER_STUDENT_COUNT, size);
+            if (size > indexCapacity * INDEX_LOAD_FACTOR)
+                resizeIndex(indexCapacity * 2);
+            return null;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public boolean replace(UUID key, Student expected, Student value) {
+        if (key == null)
+            return false;
+        validate(value);
+
+        long msb = key.getMostSignificantBits();
+        long lsb = key.getLeastSignificantBits();
+
+        long stamp = lock.writeLock();
+        try {
+            long entryOffset = entryOffset(probe(index, indexCapacity, msb, lsb));
+            long slot = index.getLong(entryOffset + ENTRY_SLOT);
+            if (slot == 0 || !Objects.equals(read(slot, key), expected))
+                return false;
+
+            rewrite(entryOffset, slot, key, value);
+            return true;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Computes the new student while the table is write locked, so {@code function} should be short.
+     */
+    @Override
+    public Student computeIfPresent(UUID key, BiFunction<? super UUID, ? super Student, ? extends Student> function) {
+        if (key == null)
+            return null;
+
+        long msb = key.getMostSignificantBits();
+        long lsb = key.getLeastSignificantBits();
+
+        long stamp = lock.writeLock();
+        try {
+            int entry = probe(index, indexCapacity, msb, lsb);
+            long slot = index.getLong(entryOffset(entry) + ENTRY_SLOT);
+            if (slot == 0)
+                return null;
+
+            Student value = function.apply(key, read(slot, key));
+            if (value == null) {
+                delete(entry, slot);
+                return null;
+            }
+
+            validate(value);
+            rewrite(entryOffset(entry), slot, key, value);
+            return value;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Replaces the student of an index entry: writes it to a fresh slot, points the entry at it and frees the old
+     * slot. The caller must hold the write lock.
+     */
+    private void rewrite(long entryOffset, long slot, UUID key, Student value) {
+        long fresh = allocateSlot();
+        write(fresh, key, value);
+        index.putLong(entryOffset + ENTRY_SLOT, fresh);
+        freeSlot(slot);
+    }
+
+    private long allocateSlot() {
+        long free = data.getLong(HEADER_FREE_HEAD);
+        if (free != 0) {
+            data.putLong(HEADER_FREE_HEAD, data.getLong(slotOffset(free) + SLOT_NEXT_FREE));
+            return free;
+        }
+
+        long slot = data.getLong(HEADER_SLOT_COUNT);
+        data.ensureSize(slotOffset(slot + 1));
+        data.putLong(HEADER_SLOT_COUNT, slot + 1);
+        return slot;
+    }
+
+    private void freeSlot(long slot) {
+        long offset = slotOffset(slot);
+        data.putByte(offset + SLOT_STATE, STATE_FREE);
+        data.putLong(offset + SLOT_NEXT_FREE, data.getLong(HEADER_FREE_HEAD));
+        data.putLong(HEADER_FREE_HEAD, slot);
+    }
+
+    @Override
+    public Student remove(UUID key) {
+        if (key == null)
+            return null;
+
+        long msb = key.getMostSignificantBits();
+        long lsb = key.getLeastSignificantBits();
+
+        long stamp = lock.writeLock();
+        try {
+            int entry = probe(index, indexCapacity, msb, lsb);
+            long slot = index.getLong(entryOffset(entry) + ENTRY_SLOT);
+            if (slot == 0)
+                return null;
+
+            Student removed = read(slot, key);
+            delete(entry, slot);
+            return removed;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Empties an index entry and frees its slot. The caller must hold the write lock.
+     */
+    private void delete(int entry, long slot) {
+        MappedFile index = this.index;
+        int mask = indexCapacity - 1;
+        index.putLong(entryOffset(entry) + ENTRY_SLOT, 0);
+
+        // shift back the following entries of the probe sequence, which may now reach their entry sooner; an entry is
+        // copied into the empty one before it is emptied, so it is never missing, only briefly there twice
+        int next = entry;
+        while (true) {
+            next = (next + 1) & mask;
+            long nextOffset = entryOffset(next);
+            if (index.getLong(nextOffset + ENTRY_SLOT) == 0)
+                break;
+
+            long nextMsb = index.getLong(nextOffset + ENTRY_MOST_SIGNIFICANT_BITS);
+            long nextLsb = index.getLong(nextOffset + ENTRY_LEAST_SIGNIFICANT_BITS);
+            int home = (int) hash(nextMsb, nextLsb) & mask;
+            boolean movable = entry <= next ? home <= entry || home > next : home <= entry && home > next;
+            if (movable) {
+                long offset = entryOffset(entry);
+                index.putLong(offset + ENTRY_MOST_SIGNIFICANT_BITS, nextMsb);
+                index.putLong(offset + ENTRY_LEAST_SIGNIFICANT_BITS, nextLsb);
+                index.putLong(offset + ENTRY_SLOT, index.getLong(nextOffset + ENTRY_SLOT));
+                index.putLong(nextOffset + ENTRY_SLOT, 0);
+                entry = next;
+            }
+        }
+        freeSlot(slot);
+
+        size -= 1;
+        data.putInt(HEADER_STUDENT_COUNT, size);
+    }
+
+    @Override
+    public void ensureCapacity(int expectedSize) {
+        long stamp = lock.writeLock();
+        try {
+            int capacity = indexCapacity;
+            while (capacity * INDEX_LOAD_FACTOR < expectedSize && capacity < (1 << 30))
+                capacity *= 2;
+            if (capacity != indexCapacity)
+                resizeIndex(capacity);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Rehashes the index into a new file with more entries. The caller must hold the write lock.
+     */
+    private void resizeIndex(int capacity) {
+        long start = System.nanoTime();
+        rehashIndex(capacity);
+        resizeCount.increment();
+        resizeTime.add(System.nanoTime() - start);
+    }
+
+    /**
+     * Rehashes the index into a new file, which then atomically replaces the old one.
+     * The caller must hold the write lock.
+     */
+    private void rehashIndex(int capacity) {
+        Path resized = indexPath.resolveSibling(indexPath.getFileName() + ".resize");
+        try {
+            Files.deleteIfExists(resized);
+            MappedFile grown = new MappedFile(resized);
+            grown.ensureSize(entryOffset(capacity));
+            grown.putInt(0, MAGIC);
+            grown.putInt(INDEX_CAPACITY, capacity);
+
+            for (int entry = 0; entry < indexCapacity; entry++) {
+                long offset = entryOffset(entry);
+                long slot = index.getLong(offset + ENTRY_SLOT);
+                if (slot == 0)
+                    continue;
+
+                long msb = index.getLong(offset + ENTRY_MOST_SIGNIFICANT_BITS);
+                long lsb = index.getLong(offset + ENTRY_LEAST_SIGNIFICANT_BITS);
+                long target = entryOffset(probe(grown, capacity, msb, lsb));
+                grown.putLong(target + ENTRY_MOST_SIGNIFICANT_BITS, msb);
+                grown.putLong(target + ENTRY_LEAST_SIGNIFICANT_BITS, lsb);
+                grown.putLong(target + ENTRY_SLOT, slot);
+            }
+            grown.force();
+
+            Files.move(resized, indexPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            MappedFile old = this.index;
+            this.index = grown;
+            this.indexCapacity = capacity;
+            old.close();
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     * Scans the index, a slot stands for the entries whose probe sequence starts in it.
+     * Students are read while the table is read locked and passed to {@code consumer} afterwards.
+     */
+    @Override
+    public long scan(long cursor, long end, int limit, Consumer<TableEntry<UUID, Student>> consumer) throws IllegalArgumentException {
+        if (limit < 1)
+            throw new IllegalArgumentException("Limit must be higher than 0");
+
+        int start = (int) cursor;
+        int entry = start;
+        List<TableEntry<UUID, Student>> entries = new ArrayList<>();
+        long stamp = lock.readLock();
+        try {
+            int mask = indexCapacity - 1;
+            do {
+                int home = entry & mask;
+                for (int i = home; index.getLong(entryOffset(i) + ENTRY_SLOT) != 0; i = (i + 1) & mask) {
+                    long offset = entryOffset(i);
+                    long msb = index.getLong(offset + ENTRY_MOST_SIGNIFICANT_BITS);
+                    long lsb = index.getLong(offset + ENTRY_LEAST_SIGNIFICANT_BITS);
+                    int hash = (int) hash(msb, lsb);
+                    if ((hash & mask) == home && isBetween(hash, start, (int) end)) {
+                        UUID key = new UUID(msb, lsb);
+                        entries.add(new TableEntry<>(key, read(index.getLong(offset + ENTRY_SLOT), key), null));
+                    }
+                    if (((i + 1) & mask) == home)
+                        break;
+                }
+                entry = nextCursor(entry, mask);
+            } while (entry != 0 && entries.size() < limit && precedes(entry, (int) end));
+        } finally {
+            lock.unlockRead(stamp);
+        }
+
+        entries.forEach(consumer);
+        return Integer.toUnsignedLong(entry);
+    }
+
+    @Override
+    public void clear() {
+        long stamp = lock.writeLock();
+        try {
+            // the index first, so the slots are no longer referred to when they are dropped
+            for (int entry = 0; entry < indexCapacity; entry++)
+                index.putLong(entryOffset(entry) + ENTRY_SLOT, 0);
+            data.putLong(HEADER_FREE_HEAD, 0);
+            data.putLong(HEADER_SLOT_COUNT, 1);
+            data.putInt(HEADER_STUDENT_COUNT, 0);
+            size = 0;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder output = new StringBuilder();
+        String prefix = "";
+
+        output.append("[");
+        for (TableEntry<UUID, Student> entry : this) {
+            output.append(prefix);
+            prefix = ", ";
+            output.append(entry.toString());
+        }
+        output.append("]");
+        return output.toString();
+    }
+
+    @Override
+    public void close() throws IOException {
+        long stamp = lock.writeLock();
+        try {
+            index.close();
+            data.force();
+            data.putInt(HEADER_OPEN, 0);
+            data.close();
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Returns a weakly consistent iterator, that reads the data file a batch of slots at a time.
+     */
+    @Override
+    public Iterator<TableEntry<UUID, Student>> iterator() {
+        return new Iterator<TableEntry<UUID, Student>>() {
+
+            private static final int BATCH_SIZE = 1024;
+
+            private final TableEntry<UUID, Student>[] batch = newBatch();
+            private int count = 0;
+            private int position = 0;
+            private long slot = 1;
+            private UUID last = null;
+
+            @SuppressWarnings("unchecked")
+            private TableEntry<UUID, Student>[] newBatch() {
+                return (TableEntry<UUID, Student>[]) new TableEntry<?, ?>[BATCH_SIZE];
+            }
+
+            private void fill() {
+                long stamp = lock.readLock();
+                try {
+                    long slotCount = data.getLong(HEADER_SLOT_COUNT);
+                    count = 0;
+                    position = 0;
+                    while (count < BATCH_SIZE && slot < slotCount) {
+                        long offset = slotOffset(slot);
+                        if (data.getByte(offset + SLOT_STATE) == STATE_USED) {
+                            UUID key = new UUID(
+                                    data.getLong(offset + SLOT_MOST_SIGNIFICANT_BITS),
+                                    data.getLong(offset + SLOT_LEAST_SIGNIFICANT_BITS));
+                            batch[count++] = new TableEntry<>(key, read(slot, key), null);
+                        }
+                        slot += 1;
+                    }
+                } finally {
+                    lock.unlockRead(stamp);
+                }
+            }
+
+            @Override
+            public boolean hasNext() {
+                if (position == count)
+                    fill();
+                return position < count;
+            }
+
+            @Override
+            public TableEntry<UUID, Student> next() {
+                if (!hasNext())
+                    throw new NoSuchElementException();
+                TableEntry<UUID, Student> entry = batch[position];
+                batch[position++] = null;
+                last = entry.getKey();
+                return entry;
+            }
+
+            @Override
+            public void remove() {
+                if (last == null)
+                    throw new IllegalStateException();
+                MappedStudentTable.this.remove(last);
+                last = null;
+            }
+        };
+    }
+
+    /**
+     * Returns a weakly consistent spliterator, that splits the slots of the index into ranges of scan cursors.
+     */
+    @Override
+    public Spliterator<TableEntry<UUID, Student>> spliterator() {
+        return new ScanSpliterator<>(this, 1L << 32, true);
+    }
+}
@@ -0,0 +1,1498 @@
+package eu.bidin.utility;
+
+import eu.bidin.utility.MyHashtable.TableEntry;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+
+import static eu.bidin.utility.MyHashtable.hash;
+import static eu.bidin.utility.ScanCursors.isBetween;
+import static eu.bidin.utility.ScanCursors.nextCursor;
+import static eu.bidin.utility.ScanCursors.precedes;
+
+/**
+ * Represents a thread-safe hash table that can be shared between multiple threads.
+ * <p>
+ * Slots are divided into a fixed number of stripes, each guarded by its own lock, so writers only block each other
+ * when they modify keys of the same stripe. Reads ({@link #get} and {@link #containsKey}) never lock: chains are
+ * immutable except for entry values, and every slot is published through a volatile array.
+ * <p>
+ * Resizing is incremental: the new table is allocated by the writer that crosses the threshold, and every following
+ * modification moves a few slots of the old table into it. A moved slot is replaced by a forwarding node, which
+ * redirects readers and writers to the new table. Iteration is weakly consistent, it never throws
+ * {@link java.util.ConcurrentModificationException}.
+ * <p>
+ * A chain that grows longer than {@link #TREEIFY_THRESHOLD} is replaced by a {@link TreeBin}, a concurrent skip list
+ * ordered by key, so a lookup stays O(log n) when many keys collide, and readers still do not lock.
+ * <p>
+ * A bounded table keeps the state of the CLOCK algorithm in its nodes. Readers set the reference bit of a node without
+ * locking, and the writer that exceeds a limit evicts, one stripe lock at a time, while the others go on: the limits
+ * can be exceeded briefly under concurrent writes. Expired nodes found by readers are removed under their stripe lock.
+ *
+ * @param <K> key type
+ * @param <V> value type
+ * @author Vedran Biđin
+ * @version 1.0
+ */
+public class ConcurrentMyHashtable<K, V> implements Table<K, V> {
+
+    /**
+     * Default number of lock stripes.
+     */
+    private static final int DEFAULT_CONCURRENCY_LEVEL = 16;
+
+    /**
+     * Default ratio of elements to slots that triggers a resize.
+     */
+    private static final double DEFAULT_LOAD_FACTOR = 0.75;
+
+    /**
+     * Highest number of slots, the largest power of two an array can hold.
+     */
+    private static final int MAXIMUM_CAPACITY = 1 << 30;
+
+    /**
+     * Number of old slots moved to the new table by each modification, while a resize is in progress.
+     */
+    private static final int TRANSFER_STEP = 4;
+
+    /**
+     * Hash of {@link ForwardingNode}s, spread hashes of keys are never negative.
+     */
+    private static final int MOVED = -1;
+
+    /**
+     * Hash of {@link TreeBin}s.
+     */
+    private static final int TREEBIN = -2;
+
+    /**
+     * Length of a chain at which it is converted to a {@link TreeBin}.
+     */
+    private static final int TREEIFY_THRESHOLD = 8;
+
+    /**
+     * Number of nodes of a {@link TreeBin} at which it is converted back to a chain.
+     */
+    private static final int UNTREEIFY_THRESHOLD = 6;
+
+    /**
+     * One key-value pair of the hash table.
+     * Everything except the value is final, a removal copies the part of the chain in front of the removed entry.
+     *
+     * @param <K> key type
+     * @param <V> value type
+     */
+    private static class Node<K, V> {
+
+        private final int hash;
+        private final K key;
+        private volatile V value;
+        private final Node<K, V> next;
+
+        private Node(int hash, K key, V value, Node<K, V> next) {
+            this.hash = hash;
+            this.key = key;
+            this.value = value;
+            this.next = next;
+        }
+
+        /**
+         * Returns a copy of this node in front of another chain.
+         */
+        Node<K, V> copy(Node<K, V> next) {
+            return new Node<>(hash, key, value, next);
+        }
+    }
+
+    /**
+     * Node of a bounded hash table, with the state of its eviction.
+     * The weight is only accessed under the stripe lock, the reference bit is set and cleared without locking.
+     *
+     * @param <K> key type
+     * @param <V> value type
+     */
+    private static final class BoundedNode<K, V> extends Node<K, V> {
+
+        private volatile long expiresAt;
+        private int weight;
+        private boolean referenced = true;
+
+        private BoundedNode(int hash, K key, V value, Node<K, V> next) {
+            super(hash, key, value, next);
+        }
+
+        @Override
+        Node<K, V> copy(Node<K, V> next) {
+            BoundedNode<K, V> node = new BoundedNode<>(super.hash, super.key, super.value, next);
+            node.expiresAt = expiresAt;
+            node.weight = weight;
+            node.referenced = referenced;
+            return node;
+        }
+    }
+
+    /**
+     * Placeholder of a slot that was moved to a resized table.
+     *
+     * @param <K> key type
+     * @param <V> value type
+     */
+    private static final class ForwardingNode<K, V> extends Node<K, V> {
+
+        private final AtomicReferenceArray<Node<K, V>> nextTable;
+
+        private ForwardingNode(AtomicReferenceArray<Node<K, V>> nextTable) {
+            super(MOVED, null, null, null);
+            this.nextTable = nextTable;
+        }
+    }
+
+    /**
+     * Head of a slot whose chain grew longer than {@link #TREEIFY_THRESHOLD}, which holds its nodes in a skip list
+     * ordered by their keys instead. Only keys of a single class that implements {@link Comparable} consistently with
+     * {@link Object#equals} are kept in a tree, a slot with any other key stays a chain. The nodes of a tree have no
+     * next node, it is modified in place under the lock of its stripe.
+     *
+     * @param <K> key type
+     * @param <V> value type
+     */
+    private static final class TreeBin<K, V> extends Node<K, V> {
+
+        private final ConcurrentSkipListMap<K, Node<K, V>> nodes = new ConcurrentSkipListMap<>();
+        private final Class<?> keyClass;
+
+        private TreeBin(Class<?> keyClass) {
+            super(TREEBIN, null, null, null);
+            this.keyClass = keyClass;
+        }
+
+        /**
+         * Returns the node with specified key, a key of another class is compared with every node.
+         */
+        private Node<K, V> get(K key) {
+            if (key.getClass() != keyClass) {
+                for (Node<K, V> node : nodes.values()) {
+                    if (node.key.equals(key))
+                        return node;
+                }
+                return null;
+            }
+            Node<K, V> node = nodes.get(key);
+            return node != null && node.key.equals(key) ? node : null;
+        }
+
+        /**
+         * Checks if a key that is not in the slot yet can be added to the tree.
+         */
+        private boolean accepts(K key) {
+            // a key that compares as equal to another one would replace it
+            return key.getClass() == keyClass && !nodes.containsKey(key);
+        }
+
+        private Node<K, V> remove(K key) {
+            Node<K, V> node = get(key);
+            if (node != null)
+                nodes.remove(node.key);
+            return node;
+        }
+
+        /**
+         * Returns a chain of copies of the nodes of the slot.
+         */
+        private Node<K, V> untreeify() {
+            Node<K, V> chain = null;
+            for (Node<K, V> node : nodes.values())
+                chain = node.copy(chain);
+            return chain;
+        }
+    }
+
+    /**
+     * State of a resize that is in progress.
+     *
+     * @param <K> key type
+     * @param <V> value type
+     */
+    private static final class Transfer<K, V> {
+
+        private final AtomicReferenceArray<Node<K, V>> oldTable;
+        private final AtomicReferenceArray<Node<K, V>> newTable;
+        /**
+         * Index of the next old slot that is not yet claimed by any thread.
+         */
+        private final AtomicInteger claimed = new AtomicInteger();
+        /**
+         * Number of old slots already moved.
+         */
+        private final AtomicInteger moved = new AtomicInteger();
+        /**
+         * Time the resize started at, in nanoseconds.
+         */
+        private final long started = System.nanoTime();
+
+        private Transfer(AtomicReferenceArray<Node<K, V>> oldTable, AtomicReferenceArray<Node<K, V>> newTable) {
+            this.oldTable = oldTable;
+            this.newTable = newTable;
+        }
+    }
+
+    /**
+     * Array that represents all the slots of the hash table.
+     * While a resize is in progress, some of them are forwarded to {@link Transfer#newTable}.
+     */
+    private volatile AtomicReferenceArray<Node<K, V>> table;
+
+    /**
+     * Resize that is in progress, {@code null} if there is none.
+     */
+    private volatile Transfer<K, V> transfer;
+
+    /**
+     * Number of elements after which the table is resized.
+     */
+    private volatile int threshold;
+
+    /**
+     * Ratio of elements to slots that triggers a resize.
+     */
+    private final double loadFactor;
+
+    /**
+     * Locks guarding the slots of the table, slot {@code i} belongs to stripe {@code i & (locks.length - 1)}.
+     * A slot of the old table and the slots it is moved to always belong to the same stripe.
+     */
+    private final ReentrantLock[] locks;
+
+    /**
+     * Guards the start and the end of a resize.
+     */
+    private final Object resizeMonitor = new Object();
+
+    /**
+     * Number of elements stored in each stripe.
+     */
+    private final AtomicIntegerArray counts;
+
+    /**
+     * Number of completed resizes.
+     */
+    private final LongAdder resizeCount = new LongAdder();
+
+    /**
+     * Time from the start to the end of each completed resize, in nanoseconds.
+     */
+    private final LongAdder resizeTime = new LongAdder();
+
+    /**
+     * Limits of the collection, {@code null} if it is unbounded. All nodes of a bounded collection are
+     * {@link BoundedNode}s.
+     */
+    private final EvictionPolicy<? super V> policy;
+
+    /**
+     * Total weight of the elements of a bounded collection.
+     */
+    private final AtomicLong weight = new AtomicLong();
+
+    /**
+     * Number of elements removed to stay within the limits.
+     */
+    private final LongAdder evictionCount = new LongAdder();
+
+    /**
+     * Number of elements removed after they expired.
+     */
+    private final LongAdder expirationCount = new LongAdder();
+
+    /**
+     * Held by the thread that evicts, the others do not wait for it.
+     */
+    private final ReentrantLock evictionLock = new ReentrantLock();
+
+    /**
+     * Scan cursor of the next slot the hand of the CLOCK algorithm visits, guarded by {@link #evictionLock}.
+     */
+    private int hand;
+
+    /**
+     * Receives the elements that were evicted or expired, {@code null} if there is no listener.
+     */
+    private volatile BiConsumer<? super K, ? super V> evictionListener;
+
+    /**
+     * Creates a hash table with specified number of slots, load factor and lock stripes.
+     *
+     * @param capacity         number of slots, rounded up to a power of two
+     * @param loadFactor       ratio of elements to slots that triggers a resize
+     * @param concurrencyLevel estimated number of concurrently writing threads
+     * @throws IllegalArgumentException if {@code capacity} < 1, {@code loadFactor} <= 0 or {@code concurrencyLevel} < 1
+     */
+    public ConcurrentMyHashtable(int capacity, double loadFactor, int concurrencyLevel) throws IllegalArgumentException {
+        this(capacity, loadFactor, concurrencyLevel, null);
+    }
+
+    /**
+     * Creates a hash table with specified number of slots, load factor, lock stripes and limits.
+     *
+     * @param capacity         number of slots, rounded up to a power of two
+     * @param loadFactor       ratio of elements to slots that triggers a resize
+     * @param concurrencyLevel estimated number of concurrently writing threads
+     * @param policy           limits of the hash table, {@code null} for an unbounded one
+     * @throws IllegalArgumentException if {@code capacity} < 1, {@code loadFactor} <= 0 or {@code concurrencyLevel} < 1
+     */
+    public ConcurrentMyHashtable(int capacity, double loadFactor, int concurrencyLevel, EvictionPolicy<? super V> policy)
+            throws IllegalArgumentException {
+        if (capacity < 1)
+            throw new IllegalArgumentException("Capacity must be higher than 0");
+        if (!(loadFactor > 0))
+            throw new IllegalArgumentException("Load factor must be higher than 0");
+        if (concurrencyLevel < 1)
+            throw new IllegalArgumentException("Concurrency level must be higher than 0");
+
+        int stripes = powerOfTwo(concurrencyLevel);
+        int slots = Math.max(powerOfTwo(capacity), stripes);
+
+        this.loadFactor = loadFactor;
+        this.locks = new ReentrantLock[stripes];
+        for (int i = 0; i < stripes; i++)
+            this.locks[i] = new ReentrantLock();
+        this.counts = new AtomicIntegerArray(stripes);
+        this.table = new AtomicReferenceArray<>(slots);
+        this.threshold = threshold(slots);
+        this.policy = policy != null && policy.isBounded() ? policy : null;
+    }
+
+    /**
+     * Creates a hash table with specified number of slots.
+     *
+     * @param capacity number of slots
+     * @throws IllegalArgumentException if {@code capacity} < 1
+     */
+    public ConcurrentMyHashtable(int capacity) throws IllegalArgumentException {
+        this(capacity, DEFAULT_LOAD_FACTOR, DEFAULT_CONCURRENCY_LEVEL);
+    }
+
+    /**
+     * Default constructor, creates a hash table with capacity {@code 16}.
+     */
+    public ConcurrentMyHashtable() {
+        this(16);
+    }
+
+    /**
+     * Returns the smallest power of two that is not lower than {@code value}.
+     */
+    private static int powerOfTwo(int value) {
+        int n = 1;
+        while (n < value && n < MAXIMUM_CAPACITY)
+            n *= 2;
+        return n;
+    }
+
+    /**
+     * Returns number of elements a hash table with specified number of slots can hold before it is resized.
+     */
+    private int threshold(int capacity) {
+        return (int) Math.min(capacity * loadFactor, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Returns current number of elements in the collection.
+     * The result is only an estimate while the collection is being modified.
+     *
+     * @return number of elements in the collection
+     */
+    @Override
+    public int size() {
+        long sum = 0;
+        for (int i = 0; i < counts.length(); i++)
+            sum += counts.get(i);
+        return (int) Math.min(sum, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Returns number of hash table slots.
+     *
+     * @return number of hash table slots
+     */
+    @Override
+    public int getCapacity() {
+        return table.length();
+    }
+
+    /**
+     * Returns ratio of elements to slots that triggers a resize.
+     *
+     * @return load factor
+     */
+    @Override
+    public double getLoadFactor() {
+        return loadFactor;
+    }
+
+    /**
+     * Checks if collection is empty.
+     *
+     * @return true: if {@link #size} == 0,
+     * <br>    false: otherwise
+     */
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * Returns the length of the longest chain of elements in a single slot, following slots that were already moved
+     * by a resize in progress.
+     *
+     * @return number of elements in the fullest slot
+     */
+    @Override
+    public int getLongestChain() {
+        AtomicReferenceArray<Node<K, V>> table = this.table;
+        int longest = 0;
+        for (int i = 0; i < table.length(); i++)
+            longest = Math.max(longest, longestChain(table, i));
+        return longest;
+    }
+
+    private static <K, V> int longestChain(AtomicReferenceArray<Node<K, V>> table, int index) {
+        Node<K, V> node = table.get(index);
+        int longest = 0;
+        if (node instanceof ForwardingNode) {
+            AtomicReferenceArray<Node<K, V>> nextTable = ((ForwardingNode<K, V>) node).nextTable;
+            for (int i = index; i < nextTable.length(); i += table.length())
+                longest = Math.max(longest, longestChain(nextTable, i));
+            return longest;
+        }
+        if (node instanceof TreeBin)
+            return ((TreeBin<K, V>) node).nodes.size();
+        for (; node != null; node = node.next)
+            longest += 1;
+        return longest;
+    }
+
+    /**
+     * Returns number of completed resizes.
+     *
+     * @return number of resizes
+     */
+    @Override
+    public long getResizeCount() {
+        return resizeCount.sum();
+    }
+
+    /**
+     * Returns time from the start to the end of completed resizes. The moving of slots is spread over the
+     * modifications made in the meantime, so this is the time readers had to follow forwarding nodes.
+     *
+     * @return resize time in nanoseconds
+     */
+    @Override
+    public long getResizeTime() {
+        return resizeTime.sum();
+    }
+
+    @Override
+    public EvictionPolicy<? super V> getEvictionPolicy() {
+        return policy;
+    }
+
+    @Override
+    public long getWeight() {
+        return weight.get();
+    }
+
+    @Override
+    public long getEvictionCount() {
+        return evictionCount.sum();
+    }
+
+    @Override
+    public long getExpirationCount() {
+        return expirationCount.sum();
+    }
+
+    /**
+     * Sets the listener of evictions and expirations. It is called after an element was removed, while no lock is
+     * held, so it may modify the collection.
+     *
+     * @param listener receives the removed elements, {@code null} for none
+     */
+    @Override
+    public void setEvictionListener(BiConsumer<? super K, ? super V> listener) {
+        this.evictionListener = listener;
+    }
+
+    /**
+     * Returns the table that holds the slot of specified hash, following forwarding nodes of a resize.
+     */
+    private static <K, V> AtomicReferenceArray<Node<K, V>> tableFor(AtomicReferenceArray<Node<K, V>> table, int hash) {
+        Node<K, V> first;
+        while ((first = table.get(hash & (table.length() - 1))) instanceof ForwardingNode)
+            table = ((ForwardingNode<K, V>) first).nextTable;
+        return table;
+    }
+
+    /**
+     * Returns the node with specified key from the chain of its slot.
+     */
+    private static <K, V> Node<K, V> find(AtomicReferenceArray<Node<K, V>> table, int hash, K key) {
+        Node<K, V> node = table.get(hash & (table.length() - 1));
+        // the slot has to be read only once, it may be moved concurrently
+        while (node instanceof ForwardingNode) {
+            table = ((ForwardingNode<K, V>) node).nextTable;
+            node = table.get(hash & (table.length() - 1));
+        }
+        if (node instanceof TreeBin)
+            return ((TreeBin<K, V>) node).get(key);
+        while (node != null) {
+            if (node.hash == hash && node.key.equals(key))
+                return node;
+            node = node.next;
+        }
+        return null;
+    }
+
+    /**
+     * Returns the value of a pair with the specified key, without locking.
+     *
+     * @param key key value
+     * @return value belonging to specified key
+     * <br>    if no matching key is found, returns null
+     */
+    @Override
+    public V get(K key) {
+        if (key == null)
+            return null;
+
+        int hash = hash(key);
+        Node<K, V> node = find(table, hash, key);
+        if (node == null || policy == null)
+            return node == null ? null : node.value;
+        if (isExpired(node, policy.now())) {
+            expire(hash, key);
+            return null;
+        }
+        ((BoundedNode<K, V>) node).referenced = true;
+        return node.value;
+    }
+
+    /**
+     * Checks if a node of a bounded collection has expired.
+     */
+    private boolean isExpired(Node<K, V> node, long now) {
+        return node instanceof BoundedNode && policy.isExpired(((BoundedNode<K, V>) node).expiresAt, now);
+    }
+
+    /**
+     * Removes the node with specified key if it is still expired once its stripe is locked.
+     */
+    private void expire(int hash, K key) {
+        int stripe = hash & (locks.length - 1);
+        Node<K, V> removed = null;
+
+        ReentrantLock lock = locks[stripe];
+        lock.lock();
+        try {
+            AtomicReferenceArray<Node<K, V>> table = tableFor(this.table, hash);
+            Node<K, V> node = find(table, hash, key);
+            if (node != null && isExpired(node, policy.now()))
+                removed = unlink(table, stripe, hash, key);
+        } finally {
+            lock.unlock();
+        }
+        expired(removed);
+    }
+
+    /**
+     * Counts an expired node that was removed and passes it to the listener. Must be called without holding a lock.
+     */
+    private void expired(Node<K, V> removed) {
+        if (removed == null)
+            return;
+        expirationCount.increment();
+        notifyEvicted(removed);
+    }
+
+    private void notifyEvicted(Node<K, V> node) {
+        BiConsumer<? super K, ? super V> listener = evictionListener;
+        if (listener != null)
+            listener.accept(node.key, node.value);
+    }
+
+    /**
+     * Creates a node, with the state of its eviction in a bounded collection. The caller must hold the lock of its
+     * stripe.
+     */
+    private Node<K, V> newNode(int hash, K key, V value, Node<K, V> next) {
+        if (policy == null)
+            return new Node<>(hash, key, value, next);
+
+        BoundedNode<K, V> node = new BoundedNode<>(hash, key, value, next);
+        node.weight = policy.weigh(value);
+        node.expiresAt = policy.expiresAt(policy.now());
+        weight.addAndGet(node.weight);
+        return node;
+    }
+
+    /**
+     * Adds a new node to a slot. A chain that becomes too long is converted to a {@link TreeBin}, a tree that can not
+     * hold the key is converted back to a chain. The caller must hold the lock of its stripe.
+     */
+    private void insert(AtomicReferenceArray<Node<K, V>> table, int index, int hash, K key, V value) {
+        Node<K, V> first = table.get(index);
+        if (first instanceof TreeBin) {
+            TreeBin<K, V> bin = (TreeBin<K, V>) first;
+            if (bin.accepts(key)) {
+                bin.nodes.put(key, newNode(hash, key, value, null));
+                return;
+            }
+            first = bin.untreeify();
+        }
+        table.set(index, treeifyIfLong(newNode(hash, key, value, first)));
+    }
+
+    /**
+     * Converts a chain to a {@link TreeBin} if it is long enough, and all of its keys are of the same comparable
+     * class. The tree holds copies of the nodes, readers may still be traversing the chain.
+     *
+     * @return tree of the nodes, or the unchanged chain
+     */
+    private static <K, V> Node<K, V> treeifyIfLong(Node<K, V> chain) {
+        int length = 0;
+        for (Node<K, V> node = chain; node != null && length < TREEIFY_THRESHOLD; node = node.next)
+            length += 1;
+        if (length < TREEIFY_THRESHOLD || !(chain.key instanceof Comparable))
+            return chain;
+        Class<?> keyClass = chain.key.getClass();
+        for (Node<K, V> node = chain; node != null; node = node.next) {
+            if (node.key.getClass() != keyClass)
+                return chain;
+        }
+
+        TreeBin<K, V> bin = new TreeBin<>(keyClass);
+        try {
+            for (Node<K, V> node = chain; node != null; node = node.next) {
+                if (bin.nodes.putIfAbsent(node.key, node.copy(null)) != null)
+                    return chain;
+            }
+        } catch (ClassCastException ex) {
+            // keys that are not comparable with each other after all
+            return chain;
+        }
+        return bin;
+    }
+
+    /**
+     * Sets the value of a node, which restarts its time to live in a bounded collection. The caller must hold the
+     * lock of its stripe.
+     */
+    private void assign(Node<K, V> node, V value) {
+        if (policy != null) {
+            BoundedNode<K, V> bounded = (BoundedNode<K, V>) node;
+            int newWeight = policy.weigh(value);
+            weight.addAndGet(newWeight - bounded.weight);
+            bounded.weight = newWeight;
+            // before the value, a reader that sees the new value also sees its expiration
+            bounded.expiresAt = policy.expiresAt(policy.now());
+            bounded.referenced = true;
+        }
+        node.value = value;
+    }
+
+    /**
+     * Adds a new element with specified key and value to the collection.
+     *
+     * @param key   key of the key-value pair
+     * @param value value of the key-value pair
+     * @throws IllegalArgumentException if key is {@code null}
+     */
+    @Override
+    public void put(K key, V value) throws IllegalArgumentException {
+        put(key, value, false);
+    }
+
+    /**
+     * Adds a new element with specified key and value, unless the collection already contains the key.
+     * Both happen while the stripe of the key is locked.
+     *
+     * @param key   key of the key-value pair
+     * @param value value of the key-value pair
+     * @return value that already belongs to specified key, {@code null} if the element was added
+     * @throws IllegalArgumentException if key is {@code null}
+     */
+    @Override
+    public V putIfAbsent(K key, V value) throws IllegalArgumentException {
+        return put(key, value, true);
+    }
+
+    private V put(K key, V value, boolean onlyIfAbsent) throws IllegalArgumentException {
+        if (key == null)
+            throw new IllegalArgumentException("Key can not be null.");
+
+        int hash = hash(key);
+        int stripe = hash & (locks.length - 1);
+        int count = 0;
+        V previous = null;
+        Node<K, V> expired = null;
+
+        ReentrantLock lock = locks[stripe];
+        lock.lock();
+        try {
+            AtomicReferenceArray<Node<K, V>> table = tableFor(this.table, hash);
+            Node<K, V> node = find(table, hash, key);
+            // an expired element is replaced as if it was absent
+            if (node != null && policy != null && isExpired(node, policy.now())) {
+                expired = unlink(table, stripe, hash, key);
+                node = null;
+            }
+
+            // if slot already contains key, overwrite previous value
+            if (node != null) {
+                previous = node.value;
+                if (!onlyIfAbsent)
+                    assign(node, value);
+            } else {
+                insert(table, hash & (table.length() - 1), hash, key, value);
+                count = counts.incrementAndGet(stripe);
+            }
+        } finally {
+            lock.unlock();
+        }
+        expired(expired);
+
+        // only sum up all stripes once this one holds more than its share
+        if (count > threshold / locks.length && size() > threshold)
+            startResize();
+        helpResize();
+        evict();
+        return previous;
+    }
+
+    /**
+     * Replaces the value of specified key, only if its current value equals {@code expected}.
+     * Both happen while the stripe of the key is locked.
+     *
+     * @param key      key of the key-value pair
+     * @param expected value the key must currently have
+     * @param value    new value of the key-value pair
+     * @return true: if the value was replaced
+     * <br>    false: if the key is missing or has a different value
+     */
+    @Override
+    public boolean replace(K key, V expected, V value) {
+        if (key == null)
+            return false;
+
+        int hash = hash(key);
+        int stripe = hash & (locks.length - 1);
+        boolean replaced = false;
+        Node<K, V> expired = null;
+
+        ReentrantLock lock = locks[stripe];
+        lock.lock();
+        try {
+            AtomicReferenceArray<Node<K, V>> table = tableFor(this.table, hash);
+            Node<K, V> node = find(table, hash, key);
+            if (node != null && policy != null && isExpired(node, policy.now())) {
+                expired = unlink(table, stripe, hash, key);
+            } else if (node != null && Objects.equals(node.value, expected)) {
+                assign(node, value);
+                replaced = true;
+            }
+        } finally {
+            lock.unlock();
+        }
+        expired(expired);
+
+        if (replaced)
+            evict();
+        return replaced;
+    }
+
+    /**
+     * Replaces the value of specified key with the value computed from it, if the collection contains the key.
+     * The stripe of the key stays locked while {@code function} runs.
+     *
+     * @param key      key of the key-value pair
+     * @param function computes the new value from the key and its current value, {@code null} removes the element
+     * @return new value of the key, {@code null} if there is none
+     */
+    @Override
+    public V computeIfPresent(K key, BiFunction<? super K, ? super V, ? extends V> function) {
+        if (key == null)
+            return null;
+
+        int hash = hash(key);
+        int stripe = hash & (locks.length - 1);
+        V value = null;
+        Node<K, V> expired = null;
+
+        ReentrantLock lock = locks[stripe];
+        lock.lock();
+        try {
+            AtomicReferenceArray<Node<K, V>> table = tableFor(this.table, hash);
+            Node<K, V> node = find(table, hash, key);
+            if (node == null)
+                return null;
+
+            if (policy != null && isExpired(node, policy.now())) {
+                expired = unlink(table, stripe, hash, key);
+            } else {
+                value = function.apply(key, node.value);
+                if (value == null)
+                    unlink(table, stripe, hash, key);
+                else
+                    assign(node, value);
+            }
+        } finally {
+            lock.unlock();
+        }
+        expired(expired);
+
+        helpResize();
+        if (value != null)
+            evict();
+        return value;
+    }
+
+    /**
+     * Removes element with matching key from the collection (if it exists).
+     *
+     * @param key key of key-value pair to remove
+     * @return value of the removed pair, {@code null} if there was none
+     */
+    @Override
+    public V remove(K key) {
+        if (key == null)
+            return null;
+
+        int hash = hash(key);
+        int stripe = hash & (locks.length - 1);
+        Node<K, V> removed;
+
+        ReentrantLock lock = locks[stripe];
+        lock.lock();
+        try {
+            removed = unlink(tableFor(this.table, hash), stripe, hash, key);
+        } finally {
+            lock.unlock();
+        }
+
+        helpResize();
+        if (removed != null && policy != null && isExpired(removed, policy.now())) {
+            expired(removed);
+            return null;
+        }
+        return removed == null ? null : removed.value;
+    }
+
+    /**
+     * Removes the node with specified key from the chain of its slot. The caller must hold the lock of its stripe.
+     *
+     * @return removed node, {@code null} if there was none
+     */
+    private Node<K, V> unlink(AtomicReferenceArray<Node<K, V>> table, int stripe, int hash, K key) {
+        int index = hash & (table.length() - 1);
+        Node<K, V> first = table.get(index);
+
+        if (first instanceof TreeBin) {
+            TreeBin<K, V> bin = (TreeBin<K, V>) first;
+            Node<K, V> removed = bin.remove(key);
+            if (removed == null)
+                return null;
+            if (bin.nodes.size() <= UNTREEIFY_THRESHOLD)
+                table.set(index, bin.untreeify());
+            removed(stripe, removed);
+            return removed;
+        }
+
+        Node<K, V> entry = first;
+        while (entry != null && !(entry.hash == hash && entry.key.equals(key)))
+            entry = entry.next;
+        if (entry == null)
+            return null;
+
+        // copy the entries in front of the removed one, readers may still be traversing the old chain
+        Node<K, V> chain = entry.next;
+        for (Node<K, V> node = first; node != entry; node = node.next)
+            chain = node.copy(chain);
+
+        table.set(index, chain);
+        removed(stripe, entry);
+        return entry;
+    }
+
+    /**
+     * Updates the number and the weight of the elements after a node was unlinked.
+     */
+    private void removed(int stripe, Node<K, V> node) {
+        counts.decrementAndGet(stripe);
+        if (node instanceof BoundedNode)
+            weight.addAndGet(-((BoundedNode<K, V>) node).weight);
+    }
+
+    /**
+     * Checks if collection contains a pair with specified key, without locking.
+     *
+     * @param key key of the key-value pair
+     * @return true: if key was found in the collection
+     * <br>    false: otherwise
+     */
+    @Override
+    public boolean containsKey(K key) {
+        if (key == null)
+            return false;
+
+        int hash = hash(key);
+        Node<K, V> node = find(table, hash, key);
+        if (node == null || policy == null || !isExpired(node, policy.now()))
+            return node != null;
+        expire(hash, key);
+        return false;
+    }
+
+    /**
+     * Checks if collection contains a pair with specified value.
+     *
+     * @param value value of the key-value pair
+     * @return true: if value was found in the collection
+     * <br>    false: otherwise
+     */
+    @Override
+    public boolean containsValue(V value) {
+        for (TableEntry<K, V> entry : this) {
+            V current = entry.getValue();
+            if (current == null ? value == null : current.equals(value))
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns a {@link String} representation of this hash table.
+     *
+     * @return {@link String} representation of this hash table
+     */
+    @Override
+    public String toString() {
+        StringBuilder output = new StringBuilder();
+        String prefix = "";
+
+        output.append("[");
+        for (TableEntry<K, V> entry : this) {
+            output.append(prefix);
+            prefix = ", ";
+            output.append(entry.toString());
+        }
+        output.append("]");
+        return output.toString();
+    }
+
+    /**
+     * Resizes the hash table in advance, so it can hold specified number of elements without further resizing.
+     * Unlike a resize triggered by {@link #put}, all slots are moved at once while every stripe is locked.
+     *
+     * @param expectedSize expected number of elements
+     */
+    @Override
+    public void ensureCapacity(int expectedSize) {
+        if (threshold >= expectedSize)
+            return;
+
+        lockAll();
+        try {
+            finishResize();
+
+            AtomicReferenceArray<Node<K, V>> table = this.table;
+            int capacity = table.length();
+            while (threshold(capacity) < expectedSize && capacity < MAXIMUM_CAPACITY)
+                capacity *= 2;
+            if (capacity == table.length())
+                return;
+
+            synchronized (resizeMonitor) {
+                this.transfer = new Transfer<>(table, new AtomicReferenceArray<>(capacity));
+                this.threshold = threshold(capacity);
+            }
+            finishResize();
+        } finally {
+            unlockAll();
+        }
+    }
+
+    /**
+     * Starts doubling the capacity of the hash table, unless a resize is already in progress.
+     */
+    private void startResize() {
+        synchronized (resizeMonitor) {
+            AtomicReferenceArray<Node<K, V>> table = this.table;
+            if (transfer != null || table.length() >= MAXIMUM_CAPACITY || size() <= threshold)
+                return;
+
+            int capacity = table.length() * 2;
+            this.transfer = new Transfer<>(table, new AtomicReferenceArray<>(capacity));
+            this.threshold = threshold(capacity);
+        }
+    }
+
+    /**
+     * Moves up to {@link #TRANSFER_STEP} slots of the resize in progress to the new table.
+     */
+    private void helpResize() {
+        Transfer<K, V> transfer = this.transfer;
+        if (transfer == null)
+            return;
+
+        for (int i = 0; i < TRANSFER_STEP; i++) {
+            int index = transfer.claimed.getAndIncrement();
+            if (index >= transfer.oldTable.length())
+                return;
+            moveSlot(transfer, index);
+        }
+    }
+
+    /**
+     * Moves all remaining slots of the resize in progress to the new table.
+     * The caller must hold the locks of all stripes.
+     */
+    private void finishResize() {
+        Transfer<K, V> transfer = this.transfer;
+        if (transfer == null)
+            return;
+
+        transfer.claimed.set(transfer.oldTable.length());
+        for (int i = 0; i < transfer.oldTable.length(); i++)
+            moveSlot(transfer, i);
+    }
+
+    /**
+     * Moves the chain of an old slot to the new table and replaces it with a {@link ForwardingNode}.
+     * The resize is completed by the thread that moves the last slot.
+     */
+    private void moveSlot(Transfer<K, V> transfer, int index) {
+        AtomicReferenceArray<Node<K, V>> oldTable = transfer.oldTable;
+        AtomicReferenceArray<Node<K, V>> newTable = transfer.newTable;
+        int capacity = newTable.length();
+
+        ReentrantLock lock = locks[index & (locks.length - 1)];
+        lock.lock();
+        try {
+            Node<K, V> first = oldTable.get(index);
+            if (this.transfer != transfer || first instanceof ForwardingNode)
+                return;
+
+            if (first instanceof TreeBin) {
+                for (Node<K, V> node : ((TreeBin<K, V>) first).nodes.values()) {
+                    int newIndex = node.hash & (capacity - 1);
+                    newTable.set(newIndex, node.copy(newTable.get(newIndex)));
+                }
+            } else if (first != null) {
+                // the tail of the chain that ends up in the same slot can be reused as is
+                Node<K, V> lastRun = first;
+                int lastIndex = first.hash & (capacity - 1);
+                for (Node<K, V> node = first.next; node != null; node = node.next) {
+                    int newIndex = node.hash & (capacity - 1);
+                    if (newIndex != lastIndex) {
+                        lastIndex = newIndex;
+                        lastRun = node;
+                    }
+                }
+                newTable.set(lastIndex, lastRun);
+
+                for (Node<K, V> node = first; node != lastRun; node = node.next) {
+                    int newIndex = node.hash & (capacity - 1);
+                    newTable.set(newIndex, node.copy(newTable.get(newIndex)));
+                }
+            }
+            // the new slots the old one was split into
+            for (int i = index; i < capacity; i += oldTable.length())
+                newTable.set(i, treeifyIfLong(newTable.get(i)));
+            oldTable.set(index, new ForwardingNode<>(newTable));
+        } finally {
+            lock.unlock();
+        }
+
+        if (transfer.moved.incrementAndGet() == oldTable.length()) {
+            synchronized (resizeMonitor) {
+                if (this.transfer == transfer) {
+                    this.table = newTable;
+                    this.transfer = null;
+                    resizeCount.increment();
+                    resizeTime.add(System.nanoTime() - transfer.started);
+                }
+            }
+        }
+    }
+
+    /**
+     * Passes the elements of the slots from {@code cursor} up to {@code end} to {@code consumer}, as
+     * {@link Table#scan(long, long, int, Consumer)} describes. Never locks, a slot that was already moved by a resize
+     * in progress is visited in all slots it was moved to. The elements are copies, like the ones of the
+     * {@link #iterator}.
+     *
+     * @param cursor   cursor returned by the previous call, {@code 0} to start a scan
+     * @param end      cursor at which the scan stops, {@code 0} to scan until the last slot
+     * @param limit    number of elements after which the scan stops
+     * @param consumer receives the elements
+     * @return cursor of the next call, {@code 0} if all slots were visited
+     * @throws IllegalArgumentException if {@code limit} < 1
+     */
+    @Override
+    public long scan(long cursor, long end, int limit, Consumer<TableEntry<K, V>> consumer) throws IllegalArgumentException {
+        if (limit < 1)
+            throw new IllegalArgumentException("Limit must be higher than 0");
+
+        int start = (int) cursor;
+        int slot = start;
+        int count = 0;
+        long now = policy == null ? 0 : policy.now();
+        do {
+            AtomicReferenceArray<Node<K, V>> table = this.table;
+            int mask = table.length() - 1;
+            count += visit(table, slot & mask, start, (int) end, now, consumer);
+            slot = nextCursor(slot, mask);
+        } while (slot != 0 && count < limit && precedes(slot, (int) end));
+        return Integer.toUnsignedLong(slot);
+    }
+
+    /**
+     * Passes the elements of a slot that lie between two cursors, and have not expired, to {@code consumer},
+     * following a forwarding node to the slots it was moved to.
+     *
+     * @return number of passed elements
+     */
+    private int visit(AtomicReferenceArray<Node<K, V>> table, int index, int cursor, int end, long now,
+                      Consumer<TableEntry<K, V>> consumer) {
+        Node<K, V> node = table.get(index);
+        int count = 0;
+        if (node instanceof ForwardingNode) {
+            AtomicReferenceArray<Node<K, V>> nextTable = ((ForwardingNode<K, V>) node).nextTable;
+            for (int i = index; i < nextTable.length(); i += table.length())
+                count += visit(nextTable, i, cursor, end, now, consumer);
+            return count;
+        }
+        if (node instanceof TreeBin)
+            node = ((TreeBin<K, V>) node).untreeify();
+        for (; node != null; node = node.next) {
+            if (isBetween(node.hash, cursor, end) && !isExpired(node, now)) {
+                consumer.accept(new TableEntry<>(node.key, node.value, null));
+                count += 1;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Removes all key-value pairs from the collection.
+     */
+    @Override
+    public void clear() {
+        lockAll();
+        try {
+            synchronized (resizeMonitor) {
+                Transfer<K, V> transfer = this.transfer;
+                int capacity = transfer == null ? table.length() : transfer.newTable.length();
+                this.table = new AtomicReferenceArray<>(capacity);
+                this.transfer = null;
+            }
+            for (int i = 0; i < counts.length(); i++)
+                counts.set(i, 0);
+            weight.set(0);
+        } finally {
+            unlockAll();
+        }
+    }
+
+    private boolean isExceeded() {
+        return policy.isExceeded(size(), weight.get());
+    }
+
+    /**
+     * Evicts elements of a bounded collection until it is within its limits again, with the CLOCK algorithm, as
+     * {@link MyHashtable} does. Only one thread evicts at a time, the others go on without waiting. The nodes of a
+     * slot are read without locking, each candidate is then found again under its stripe lock and evicted only if it
+     * was not referenced or rewritten in the meantime. A round visits each slot at most twice and is repeated while
+     * the limits are exceeded, so a writer that could not evict while this one did is not left over its limits.
+     */
+    private void evict() {
+        while (policy != null && isExceeded() && evictionLock.tryLock())
+            evictRound();
+    }
+
+    /**
+     * Runs one round of {@link #evict} while holding {@link #evictionLock}, and releases it.
+     */
+    private void evictRound() {
+        List<Node<K, V>> evicted = new ArrayList<>();
+        List<Node<K, V>> expired = new ArrayList<>();
+        try {
+            long now = policy.now();
+            List<Node<K, V>> candidates = new ArrayList<>();
+            int slot = hand;
+            for (long visited = 0; isExceeded() && size() > 0 && visited < 2L * table.length(); visited++) {
+                AtomicReferenceArray<Node<K, V>> table = this.table;
+                collect(table, slot & (table.length() - 1), candidates);
+                for (int i = 0; i < candidates.size() && isExceeded(); i++)
+                    evict(candidates.get(i), now, evicted, expired);
+                candidates.clear();
+                slot = nextCursor(slot, table.length() - 1);
+            }
+            hand = slot;
+        } finally {
+            evictionLock.unlock();
+        }
+
+        evictionCount.add(evicted.size());
+        expirationCount.add(expired.size());
+        for (Node<K, V> node : expired)
+            notifyEvicted(node);
+        for (Node<K, V> node : evicted)
+            notifyEvicted(node);
+    }
+
+    /**
+     * Adds the nodes of a slot to a list, following a forwarding node to the slots it was moved to.
+     */
+    private static <K, V> void collect(AtomicReferenceArray<Node<K, V>> table, int index, List<Node<K, V>> nodes) {
+        Node<K, V> node = table.get(index);
+        if (node instanceof ForwardingNode) {
+            AtomicReferenceArray<Node<K, V>> nextTable = ((ForwardingNode<K, V>) node).nextTable;
+            for (int i = index; i < nextTable.length(); i += table.length())
+                collect(nextTable, i, nodes);
+            return;
+        }
+        if (node instanceof TreeBin) {
+            nodes.addAll(((TreeBin<K, V>) node).nodes.values());
+            return;
+        }
+        for (; node != null; node = node.next)
+            nodes.add(node);
+    }
+
+    /**
+     * Passes the hand over a node: clears its reference bit if it is set, and otherwise removes it under its stripe
+     * lock, unless it was referenced again in the meantime.
+     */
+    private void evict(Node<K, V> candidate, long now, List<Node<K, V>> evicted, List<Node<K, V>> expired) {
+        BoundedNode<K, V> bounded = (BoundedNode<K, V>) candidate;
+        if (bounded.referenced && !policy.isExpired(bounded.expiresAt, now)) {
+            bounded.referenced = false;
+            return;
+        }
+
+        int hash = candidate.hash;
+        int stripe = hash & (locks.length - 1);
+        ReentrantLock lock = locks[stripe];
+        lock.lock();
+        try {
+            AtomicReferenceArray<Node<K, V>> table = tableFor(this.table, hash);
+            BoundedNode<K, V> node = (BoundedNode<K, V>) find(table, hash, candidate.key);
+            if (node == null)
+                return;
+
+            boolean isExpired = policy.isExpired(node.expiresAt, now);
+            if (!isExpired && node.referenced)
+                return;
+            unlink(table, stripe, hash, candidate.key);
+            (isExpired ? expired : evicted).add(node);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes the expired elements of the next few slots, as {@link MyHashtable#evictExpired} does. The slots are
+     * read without locking, each expired node is then removed under its stripe lock if it is still expired.
+     *
+     * @param cursor cursor returned by the previous call, {@code 0} to start a pass
+     * @param limit  number of visited elements after which the pass stops
+     * @return cursor of the next call, {@code 0} if all slots were visited
+     * @throws IllegalArgumentException if {@code limit} < 1
+     */
+    @Override
+    public long evictExpired(long cursor, int limit) throws IllegalArgumentException {
+        if (limit < 1)
+            throw new IllegalArgumentException("Limit must be higher than 0");
+        if (policy == null || !policy.isExpiring())
+            return 0;
+
+        long now = policy.now();
+        List<Node<K, V>> candidates = new ArrayList<>();
+        int slot = (int) cursor;
+        do {
+            AtomicReferenceArray<Node<K, V>> table = this.table;
+            collect(table, slot & (table.length() - 1), candidates);
+            slot = nextCursor(slot, table.length() - 1);
+        } while (slot != 0 && candidates.size() < limit);
+
+        for (Node<K, V> candidate : candidates) {
+            if (isExpired(candidate, now))
+                expire(candidate.hash, candidate.key);
+        }
+        return Integer.toUnsignedLong(slot);
+    }
+
+    /**
+     * Acquires the locks of all stripes, always in the same order.
+     */
+    private void lockAll() {
+        for (ReentrantLock lock : locks)
+            lock.lock();
+    }
+
+    /**
+     * Releases the locks of all stripes.
+     */
+    private void unlockAll() {
+        for (int i = locks.length - 1; i >= 0; i--)
+            locks[i].unlock();
+    }
+
+    /**
+     * Returns a new weakly consistent iterator of this collection.
+     * It returns copies of the key-value pairs, changing their value does not change the collection.
+     */
+    @Override
+    public Iterator<TableEntry<K, V>> iterator() {
+        return new IteratorImpl();
+    }
+
+    /**
+     * Returns a new weakly consistent spliterator of this collection, with the same guarantees as {@link #iterator}.
+     */
+    @Override
+    public Spliterator<TableEntry<K, V>> spliterator() {
+        return new ScanSpliterator<>(this, 1L << 32, true);
+    }
+
+    /**
+     * A weakly consistent iterator through a {@link ConcurrentMyHashtable} collection.
+     * Reflects the state of the collection at some point at or since its creation.
+     *
+     * @author Vedran Biđin
+     * @version 1.0
+     */
+    private class IteratorImpl implements Iterator<TableEntry<K, V>> {
+
+        /**
+         * Slots of one table that are iterated through: {@code index}, {@code index + stride}, ...
+         * A forwarded slot is continued in the slots it was moved to, which is a new frame on top of its parent.
+         */
+        private final class Frame {
+
+            private final AtomicReferenceArray<Node<K, V>> table;
+            private final int stride;
+            private final Frame parent;
+            private int index;
+
+            private Frame(AtomicReferenceArray<Node<K, V>> table, int index, int stride, Frame parent) {
+                this.table = table;
+                this.index = index;
+                this.stride = stride;
+                this.parent = parent;
+            }
+        }
+
+        /**
+         * Slots that are currently iterated through, a concurrent resize does not affect them.
+         */
+        private Frame frame = new Frame(table, -1, 1, null);
+        /**
+         * Next node of the iteration.
+         */
+        private Node<K, V> next = null;
+        /**
+         * Key of the last returned element, {@code null} if {@link #remove} can not be called.
+         */
+        private K last = null;
+
+        private IteratorImpl() {
+            advance(null);
+        }
+
+        /**
+         * Moves {@link #next} to the node following specified one.
+         */
+        private void advance(Node<K, V> node) {
+            long now = policy == null ? 0 : policy.now();
+            next = node == null ? null : node.next;
+            while (true) {
+                // expired nodes are skipped
+                while (next != null && isExpired(next, now))
+                    next = next.next;
+                if (next != null || frame == null)
+                    return;
+
+                int index = frame.index + frame.stride;
+                if (index >= frame.table.length()) {
+                    frame = frame.parent;
+                    continue;
+                }
+                frame.index = index;
+                next = frame.table.get(index);
+                if (next instanceof ForwardingNode) {
+                    AtomicReferenceArray<Node<K, V>> nextTable = ((ForwardingNode<K, V>) next).nextTable;
+                    frame = new Frame(nextTable, index - frame.table.length(), frame.table.length(), frame);
+                    next = null;
+                } else if (next instanceof TreeBin) {
+                    next = ((TreeBin<K, V>) next).untreeify();
+                }
+            }
+        }
+
+        /**
+         * Checks if iterator has any elements left to iterate through.
+         */
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        /**
+         * Gets the next element of the iteration.
+         *
+         * @throws NoSuchElementException if no more elements remain to be iterated through
+         */
+        @Override
+        public TableEntry<K, V> next() {
+            Node<K, V> node = next;
+            if (node == null)
+                throw new NoSuchElementException();
+
+            advance(node);
+            last = node.key;
+            return new TableEntry<>(node.key, node.value, null);
+        }
+
+        /**
+         * Removes the current element from the collection.
+         *
+         * @throws IllegalStateException if method was called twice on the same element
+         */
+        @Override
+        public void remove() {
+            if (last == null)
+                throw new IllegalStateException();
+
+            ConcurrentMyHashtable.this.remove(last);
+            last = null;
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package eu.bidin.utility;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Represents an immutable consistent hash ring, that assigns keys to nodes so that adding or removing a node only
+ * moves the keys of that node.
+ * <p>
+ * Every node is placed on the ring at several positions (virtual nodes), derived from its string form, so all rings
+ * with the same nodes agree on the owner of a key regardless of the order the nodes were added in. A key belongs to
+ * the first position at or after the position of the key, wrapping around at the end of the ring.
+ *
+ * @param <N> node type
+ * @author Vedran Biđin
+ * @version 1.0
+ */
+public class ConsistentHashRing<N> {
+
+    /**
+     * Positions of the virtual nodes, in ascending order.
+     */
+    private final long[] positions;
+
+    /**
+     * Nodes of the virtual nodes, parallel to {@link #positions}.
+     */
+    private final N[] owners;
+
+    /**
+     * Distinct nodes, in the order they were given.
+     */
+    private final List<N> nodes;
+
+    /**
+     * Number of positions of every node.
+     */
+    private final int virtualNodes;
+
+    /**
+     * Creates a ring of specified nodes, duplicates are ignored.
+     *
+     * @param nodes        nodes of the ring
+     * @param virtualNodes number of positions of every node, more positions spread the keys more evenly
+     * @throws IllegalArgumentException if there are no nodes or {@code virtualNodes} is lower than 1
+     */
+    @SuppressWarnings("unchecked")
+    public ConsistentHashRing(Collection<N> nodes, int virtualNodes) throws IllegalArgumentException {
+        if (nodes.isEmpty())
+            throw new IllegalArgumentException("Ring must have at least one node.");
+        if (virtualNodes < 1)
+            throw new IllegalArgumentException("Ring must have at least one virtual node per node.");
+
+        this.nodes = Collections.unmodifiableList(new ArrayList<>(new LinkedHashSet<>(nodes)));
+        this.virtualNodes = virtualNodes;
+
+        int count = this.nodes.size() * virtualNodes;
+        long[] positions = new long[count];
+        Object[] owners = new Object[count];
+        int i = 0;
+        for (N node : this.nodes)
+            for (int replica = 0; replica < virtualNodes; replica++, i++) {
+                positions[i] = position(node + "#" + replica);
+                owners[i] = node;
+            }
+
+        // sort positions and owners together, ties are broken by the string form so every ring has the same order
+        Integer[] order = new Integer[count];
+        for (int j = 0; j < count; j++)
+            order[j] = j;
+        Arrays.sort(order, (a, b) -> positions[a] != positions[b]
+                ? Long.compare(positions[a], positions[b])
+                : owners[a].toString().compareTo(owners[b].toString()));
+
+        this.positions = new long[count];
+        this.owners = (N[]) new Object[count];
+        for (int j = 0; j < count; j++) {
+            this.positions[j] = positions[order[j]];
+            this.owners[j] = (N) owners[order[j]];
+        }
+    }
+
+    /**
+     * Returns the position of a string on the ring, FNV-1a of its UTF-8 bytes followed by a 64-bit finalizer.
+     *
+     * @param value string to place on the ring
+     * @return position on the ring
+     */
+    public static long position(String value) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            h ^= b & 0xFF;
+            h *= 0x100000001b3L;
+        }
+        return mix(h);
+    }
+
+    /**
+     * Returns the position of a UUID on the ring. It differs from the hash the tables use for their slots, so the keys
+     * of one node still spread over all slots of its table.
+     *
+     * @param key UUID to place on the ring
+     * @return position on the ring
+     */
+    public static long position(UUID key) {
+        return mix(key.getMostSignificantBits() * 0x9e3779b97f4a7c15L + key.getLeastSignificantBits());
+    }
+
+    private static long mix(long h) {
+        h ^= h >>> 30;
+        h *= 0xbf58476d1ce4e5b9L;
+        h ^= h >>> 27;
+        h *= 0x94d049bb133111ebL;
+        h ^= h >>> 31;
+        return h;
+    }
+
+    /**
+     * Returns the node that owns a position.
+     *
+     * @param position position of a key, see {@link #position(UUID)}
+     * @return owner of the position
+     */
+    public N nodeFor(long position) {
+        int index = Arrays.binarySearch(positions, position);
+        if (index < 0)
+            index = -index - 1;
+        // past the last position, the ring wraps around to the first one
+        return owners[index == positions.length ? 0 : index];
+    }
+
+    /**
+     * Returns the node that owns a UUID.
+     *
+     * @param key UUID to look up
+     * @return owner of the UUID
+     */
+    public N nodeFor(UUID key) {
+        return nodeFor(position(key));
+    }
+
+    /**
+     * Returns a ring with an additional node, or this ring if it already contains the node.
+     *
+     * @param node node to add
+     * @return ring with the node
+     */
+    public ConsistentHashRing<N> with(N node) {
+        if (nodes.contains(node))
+            return this;
+        List<N> nodes = new ArrayList<>(this.nodes);
+        nodes.add(node);
+        return new ConsistentHashRing<>(nodes, virtualNodes);
+    }
+
+    /**
+     * Returns a ring without a node, or this ring if it does not contain the node. Only the keys of the removed node
+     * move, to the nodes that follow its positions.
+     *
+     * @param node node to remove
+     * @return ring without the node
+     * @throws IllegalArgumentException if the node is the last one of the ring
+     */
+    public ConsistentHashRing<N> without(N node) throws IllegalArgumentException {
+        if (!nodes.contains(node))
+            return this;
+        List<N> nodes = new ArrayList<>(this.nodes);
+        nodes.remove(node);
+        return new ConsistentHashRing<>(nodes, virtualNodes);
+    }
+
+    /**
+     * Returns the distinct nodes of the ring.
+     *
+     * @return unmodifiable list of nodes
+     */
+    public List<N> getNodes() {
+        return nodes;
+    }
+
+    /**
+     * Returns the number of positions of every node.
+     *
+     * @return number of virtual nodes
+     */
+    public int getVirtualNodes() {
+        return virtualNodes;
+    }
+}
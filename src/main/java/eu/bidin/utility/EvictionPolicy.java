@@ -0,0 +1,150 @@
+package eu.bidin.utility;
+
+import java.time.Duration;
+import java.util.function.ToIntFunction;
+
+/**
+ * Represents the limits of a bounded hash table: the number of elements, their total weight, and how long an element
+ * lives after it was written.
+ * <p>
+ * A table with a policy evicts elements with the CLOCK algorithm once it exceeds a limit: every element has a
+ * reference bit, set when it is written or read, and a hand moves over the slots in scan order, clearing the bits it
+ * finds set and evicting the first elements whose bit is already clear. Expired elements are never returned, they are
+ * removed when they are accessed, when the hand passes them, or by a background pass.
+ *
+ * @param <V> value type
+ * @author Vedran Biđin
+ * @version 1.0
+ */
+public class EvictionPolicy<V> {
+
+    /**
+     * Highest number of elements, {@code 0} for no limit.
+     */
+    private final int maximumSize;
+
+    /**
+     * Highest total weight of the elements, {@code 0} for no limit.
+     */
+    private final long maximumWeight;
+
+    /**
+     * Computes the weight of a value.
+     */
+    private final ToIntFunction<? super V> weigher;
+
+    /**
+     * Time an element lives after it was written, in nanoseconds, {@code 0} if elements do not expire.
+     */
+    private final long timeToLive;
+
+    /**
+     * Creates a policy with specified limits.
+     *
+     * @param maximumSize   highest number of elements, {@code 0} for no limit
+     * @param maximumWeight highest total weight of the elements, {@code 0} for no limit
+     * @param weigher       computes the weight of a value, only used with a maximum weight
+     * @param timeToLive    time an element lives after it was written, {@code null} or zero if elements do not expire
+     * @throws IllegalArgumentException if a limit is negative, or there is a maximum weight without a weigher
+     */
+    public EvictionPolicy(int maximumSize, long maximumWeight, ToIntFunction<? super V> weigher, Duration timeToLive)
+            throws IllegalArgumentException {
+        if (maximumSize < 0 || maximumWeight < 0)
+            throw new IllegalArgumentException("Limits can not be negative.");
+        if (maximumWeight > 0 && weigher == null)
+            throw new IllegalArgumentException("Maximum weight requires a weigher.");
+        if (timeToLive != null && timeToLive.isNegative())
+            throw new IllegalArgumentException("Time to live can not be negative.");
+
+        this.maximumSize = maximumSize;
+        this.maximumWeight = maximumWeight;
+        this.weigher = maximumWeight > 0 ? weigher : value -> 0;
+        this.timeToLive = timeToLive == null ? 0 : timeToLive.toNanos();
+    }
+
+    /**
+     * Checks if the policy limits anything at all.
+     *
+     * @return true: if there is a limit or elements expire
+     * <br>    false: otherwise
+     */
+    public boolean isBounded() {
+        return maximumSize > 0 || maximumWeight > 0 || timeToLive > 0;
+    }
+
+    /**
+     * Checks if elements expire.
+     *
+     * @return true: if there is a time to live
+     * <br>    false: otherwise
+     */
+    public boolean isExpiring() {
+        return timeToLive > 0;
+    }
+
+    public int getMaximumSize() {
+        return maximumSize;
+    }
+
+    public long getMaximumWeight() {
+        return maximumWeight;
+    }
+
+    public Duration getTimeToLive() {
+        return Duration.ofNanos(timeToLive);
+    }
+
+    /**
+     * Checks if a table exceeds a limit.
+     *
+     * @param size   number of elements of the table
+     * @param weight total weight of the elements of the table
+     * @return true: if an element has to be evicted
+     * <br>    false: otherwise
+     */
+    public boolean isExceeded(int size, long weight) {
+        return maximumSize > 0 && size > maximumSize || maximumWeight > 0 && weight > maximumWeight;
+    }
+
+    /**
+     * Returns the weight of a value, {@code 0} without a maximum weight.
+     *
+     * @param value value of an element
+     * @return weight of the value
+     */
+    public int weigh(V value) {
+        return weigher.applyAsInt(value);
+    }
+
+    /**
+     * Returns the current time for {@link #expiresAt} and {@link #isExpired}, {@code 0} if elements do not expire,
+     * which avoids reading the clock.
+     *
+     * @return current time in nanoseconds
+     */
+    public long now() {
+        return timeToLive > 0 ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Returns the time an element written at specified time expires at.
+     *
+     * @param now time the element was written at, from {@link #now}
+     * @return expiration time in nanoseconds
+     */
+    public long expiresAt(long now) {
+        return now + timeToLive;
+    }
+
+    /**
+     * Checks if an element has expired. Times are compared by their difference, so they may wrap around.
+     *
+     * @param expiresAt expiration time of the element
+     * @param now       current time, from {@link #now}
+     * @return true: if the element has expired
+     * <br>    false: otherwise
+     */
+    public boolean isExpired(long expiresAt, long now) {
+        return timeToLive > 0 && now - expiresAt >= 0;
+    }
+}
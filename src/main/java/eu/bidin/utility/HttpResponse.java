@@ -1,19 +1,121 @@
 package eu.bidin.utility;
 
-import eu.bidin.springexample.controllers.StudentController;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
-import org.springframework.web.servlet.mvc.method.annotation.MvcUriComponentsBuilder;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+
+import javax.servlet.http.HttpServletRequest;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class HttpResponse {
 
-    public static ResponseEntity created(Class controller, String action, String id) {
+    private static final int MAXIMUM_BASE_URLS = 256;
+
+    /**
+     * Base URLs by the parts of the request they are built from.
+     */
+    private static final Map<String, String> BASE_URLS = new ConcurrentHashMap<>();
+
+    /**
+     * Responds with 201 and the URI of a controller action with the given path variables as the Location header.
+     */
+    public static ResponseEntity<Void> created(Class<?> controller, String action, Object... variables) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.LOCATION, location(controller, action, variables));
+        return new ResponseEntity<>(headers, HttpStatus.CREATED);
+    }
+
+    /**
+     * Returns the URI of a controller action for the current request, like
+     * {@code MvcUriComponentsBuilder.fromMethodName}, but from the template of the action resolved once and a cached
+     * base URL, without looking up the method or creating a proxy on every call.
+     */
+    public static String location(Class<?> controller, String action, Object... variables) {
+        return RouteTemplate.of(controller, action).expand(currentBaseUrl(), variables);
+    }
+
+    /**
+     * Returns the base URL of the servlet mapping of the current request. It only depends on a few parts of the
+     * request, which reflect forwarded headers if they are applied by a filter, so it is built once for every distinct
+     * combination of them.
+     */
+    public static String currentBaseUrl() {
+        HttpServletRequest request = ((ServletRequestAttributes) RequestContextHolder.currentRequestAttributes()).getRequest();
+        String key = request.getScheme() + ' ' + request.getServerName() + ' ' + request.getServerPort() + ' '
+                + request.getContextPath() + ' ' + request.getServletPath();
+
+        String baseUrl = BASE_URLS.get(key);
+        if (baseUrl == null) {
+            baseUrl = ServletUriComponentsBuilder.fromServletMapping(request).toUriString();
+            // host headers come from clients, so the number of base URLs is bounded
+            if (BASE_URLS.size() >= MAXIMUM_BASE_URLS)
+                BASE_URLS.clear();
+            BASE_URLS.put(key, baseUrl);
+        }
+        return baseUrl;
+    }
+
+    /**
+     * Responds with 304, the entity tag and the request headers the representation was selected by.
+     */
+    public static <T> ResponseEntity<T> notModified(String eTag, String... varyBy) {
         HttpHeaders headers = new HttpHeaders();
-        headers.setLocation(MvcUriComponentsBuilder
-                .fromMethodName(controller, action, id)
-                .buildAndExpand(id)
-                .toUri());
-        return new ResponseEntity(headers, HttpStatus.CREATED);
+        headers.setETag(eTag);
+        if (varyBy.length > 0)
+            headers.setVary(Arrays.asList(varyBy));
+        return new ResponseEntity<>(headers, HttpStatus.NOT_MODIFIED);
+    }
+
+    /**
+     * Returns the entity tag of another representation of the same resource, so that caches keep the representations
+     * apart. The variant is appended to the opaque tag, a weak tag stays weak.
+     */
+    public static String variantETag(String eTag, String variant) {
+        if (eTag == null)
+            return null;
+        return eTag.substring(0, eTag.length() - 1) + '-' + variant + '"';
+    }
+
+    /**
+     * Checks if an If-None-Match header matches an entity tag, with the weak comparison that applies to GET requests.
+     */
+    public static boolean isNotModified(String ifNoneMatch, String eTag) {
+        if (ifNoneMatch == null || eTag == null)
+            return false;
+
+        String opaqueTag = opaqueTag(eTag);
+        for (String candidate : ifNoneMatch.split(",")) {
+            candidate = candidate.trim();
+            if (candidate.equals("*") || opaqueTag(candidate).equals(opaqueTag))
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Checks if an If-Match header fails to match an entity tag, with the strong comparison that applies to
+     * modifications: weak tags never match.
+     */
+    public static boolean isPreconditionFailed(String ifMatch, String eTag) {
+        if (ifMatch == null)
+            return false;
+        if (eTag == null || eTag.startsWith("W/"))
+            return true;
+
+        for (String candidate : ifMatch.split(",")) {
+            candidate = candidate.trim();
+            if (candidate.equals("*") || candidate.equals(eTag))
+                return false;
+        }
+        return true;
+    }
+
+    private static String opaqueTag(String eTag) {
+        return eTag.startsWith("W/") ? eTag.substring(2) : eTag;
     }
 }
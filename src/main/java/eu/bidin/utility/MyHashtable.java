@@ -1,9 +1,21 @@
 package eu.bidin.utility;
 
 import java.lang.Math;
-import java.util.ConcurrentModificationException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.TreeMap;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+
+import static eu.bidin.utility.ScanCursors.isBetween;
+import static eu.bidin.utility.ScanCursors.nextCursor;
+import static eu.bidin.utility.ScanCursors.precedes;
 
 /**
  * Represents a hash table, a collection made of key-value pairs, that enables O(1) retrieval of collection elements.
@@ -13,7 +25,7 @@ import java.util.NoSuchElementException;
  * @author Vedran Biđin
  * @version 1.0
  */
-public class MyHashtable<K, V> implements Iterable<MyHashtable.TableEntry<K, V>> {
+public class MyHashtable<K, V> implements Table<K, V> {
 
     /**
      * Represents one key-value pair of a hash table.
@@ -58,6 +70,12 @@ public class MyHashtable<K, V> implements Iterable<MyHashtable.TableEntry<K, V>>
             this.next = entry;
         }
 
+        /**
+         * Creates the head of a slot that holds no key-value pair itself, see {@link TreeBin}.
+         */
+        private TableEntry() {
+        }
+
         /**
          * Returns key.
          *
@@ -95,6 +113,139 @@ public class MyHashtable<K, V> implements Iterable<MyHashtable.TableEntry<K, V>>
         }
     }
 
+    /**
+     * Represents one key-value pair of a bounded hash table, with the state of its eviction.
+     *
+     * @param <K> key type
+     * @param <V> value type
+     * @author Vedran Biđin
+     * @version 1.0
+     */
+    private static final class BoundedEntry<K, V> extends TableEntry<K, V> {
+
+        /**
+         * Time the pair expires at, in nanoseconds.
+         */
+        private long expiresAt;
+
+        /**
+         * Weight of the value.
+         */
+        private int weight;
+
+        /**
+         * Reference bit of the CLOCK algorithm, set when the pair is written or read.
+         */
+        private boolean referenced = true;
+
+        private BoundedEntry(K key, V value, TableEntry<K, V> entry) {
+            super(key, value, entry);
+        }
+    }
+
+    /**
+     * Head of a slot whose chain grew longer than {@link #TREEIFY_THRESHOLD}, which holds its entries in a balanced
+     * tree ordered by their keys instead, so a lookup is O(log n) even if many keys have the same hash code.
+     * <p>
+     * Only keys of a single class that implements {@link Comparable} consistently with {@link Object#equals} are
+     * kept in a tree, a slot with any other key stays a chain. The entries of a tree have no {@link TableEntry#next}.
+     *
+     * @param <K> key type
+     * @param <V> value type
+     * @author Vedran Biđin
+     * @version 1.0
+     */
+    private static final class TreeBin<K, V> extends TableEntry<K, V> {
+
+        /**
+         * Entries of the slot, by key.
+         */
+        private final TreeMap<K, TableEntry<K, V>> entries = new TreeMap<>();
+
+        /**
+         * Class of all keys of the slot.
+         */
+        private final Class<?> keyClass;
+
+        private TreeBin(Class<?> keyClass) {
+            this.keyClass = keyClass;
+        }
+
+        /**
+         * Returns the entry with specified key, a key of another class is compared with every entry.
+         */
+        private TableEntry<K, V> get(K key) {
+            if (key.getClass() != keyClass) {
+                for (TableEntry<K, V> entry : entries.values()) {
+                    if (entry.key.equals(key))
+                        return entry;
+                }
+                return null;
+            }
+            TableEntry<K, V> entry = entries.get(key);
+            return entry != null && entry.key.equals(key) ? entry : null;
+        }
+
+        /**
+         * Adds an entry whose key is not in the slot yet.
+         *
+         * @return true: if the entry was added
+         * <br>    false: if its key can not be kept in the tree
+         */
+        private boolean add(TableEntry<K, V> entry) {
+            // a key that compares as equal to another one would replace it
+            if (entry.key.getClass() != keyClass || entries.containsKey(entry.key))
+                return false;
+            entry.next = null;
+            entries.put(entry.key, entry);
+            return true;
+        }
+
+        private TableEntry<K, V> remove(K key) {
+            TableEntry<K, V> entry = get(key);
+            if (entry != null)
+                entries.remove(entry.key);
+            return entry;
+        }
+
+        /**
+         * Links the entries of the slot into a chain again.
+         */
+        private TableEntry<K, V> untreeify() {
+            TableEntry<K, V> chain = null;
+            for (TableEntry<K, V> entry : entries.values()) {
+                entry.next = chain;
+                chain = entry;
+            }
+            return chain;
+        }
+    }
+
+    /**
+     * Default ratio of elements to slots that triggers a {@link #resize}.
+     */
+    private static final double DEFAULT_LOAD_FACTOR = 0.75;
+
+    /**
+     * Highest number of slots, the largest power of two an array can hold.
+     */
+    private static final int MAXIMUM_CAPACITY = 1 << 30;
+
+    /**
+     * Number of old slots moved to the new table by each modification, while an incremental rehash is in progress.
+     */
+    private static final int REHASH_STEP = 4;
+
+    /**
+     * Length of a chain at which it is converted to a {@link TreeBin}.
+     */
+    private static final int TREEIFY_THRESHOLD = 8;
+
+    /**
+     * Number of entries of a {@link TreeBin} at which it is converted back to a chain.
+     */
+    private static final int UNTREEIFY_THRESHOLD = 6;
+
     /**
      * Number of elements (key-value pairs) currently stored in this collection.
      */
@@ -106,10 +257,20 @@ public class MyHashtable<K, V> implements Iterable<MyHashtable.TableEntry<K, V>>
     private int capacity;
 
     /**
-     * Number of times this collection was modified.
-     * Used to prevent changing of the collection during its iteration.
+     * Ratio of elements to slots that triggers a {@link #resize}.
+     */
+    private final double loadFactor;
+
+    /**
+     * Number of elements after which the hash table is resized.
+     */
+    private int threshold;
+
+    /**
+     * Flag that signals if a resize moves the elements to the new table gradually, during subsequent modifications,
+     * instead of all at once.
      */
-    private int modificationCount = 0;
+    private final boolean incrementalRehashing;
 
     /**
      * Array that represents all the slots of the hash table.
@@ -117,19 +278,97 @@ public class MyHashtable<K, V> implements Iterable<MyHashtable.TableEntry<K, V>>
     private TableEntry<K, V> table[];
 
     /**
-     * Creates a hash table with specified number of slots.
+     * Slots of the table before the last resize, whose elements were not yet moved to {@link #table}.
+     * {@code null} if no rehash is in progress.
+     */
+    private TableEntry<K, V> oldTable[];
+
+    /**
+     * Index of the next slot of {@link #oldTable} that will be moved to {@link #table}.
+     */
+    private int rehashIndex;
+
+    /**
+     * Number of completed calls of {@link #resize}.
+     */
+    private long resizeCount;
+
+    /**
+     * Time spent resizing and rehashing, in nanoseconds.
+     */
+    private long resizeTime;
+
+    /**
+     * Limits of the collection, {@code null} if it is unbounded. All entries of a bounded collection are
+     * {@link BoundedEntry}s.
+     */
+    private final EvictionPolicy<? super V> policy;
+
+    /**
+     * Total weight of the elements of a bounded collection.
+     */
+    private long weight;
+
+    /**
+     * Number of elements removed to stay within the limits.
+     */
+    private long evictionCount;
+
+    /**
+     * Number of elements removed after they expired.
+     */
+    private long expirationCount;
+
+    /**
+     * Scan cursor of the next slot the hand of the CLOCK algorithm visits.
+     */
+    private int hand;
+
+    /**
+     * Receives the elements that were evicted or expired, {@code null} if there is no listener.
+     */
+    private BiConsumer<? super K, ? super V> evictionListener;
+
+    /**
+     * Creates a hash table with specified number of slots, load factor and rehashing mode.
+     * <p>
+     * With incremental rehashing, a resize only allocates the new table. Its elements are moved from the old table a
+     * few slots at a time by subsequent {@link #put} and {@link #remove} calls, while lookups check both tables.
+     * That spreads the cost of a resize over many modifications instead of a single {@link #put}.
      *
-     * @param capacity number of slots
-     * @throws IllegalArgumentException if {@code capacity} < 1
+     * @param capacity             number of slots, rounded up to a power of two
+     * @param loadFactor           ratio of elements to slots that triggers a resize
+     * @param incrementalRehashing true to move the elements to a resized table gradually
+     * @throws IllegalArgumentException if {@code capacity} < 1 or {@code loadFactor} <= 0
+     */
+    public MyHashtable(int capacity, double loadFactor, boolean incrementalRehashing) throws IllegalArgumentException {
+        this(capacity, loadFactor, incrementalRehashing, null);
+    }
+
+    /**
+     * Creates a hash table with specified number of slots, load factor, rehashing mode and limits.
+     * <p>
+     * A bounded hash table evicts elements as described by {@link EvictionPolicy}, after the modification that
+     * exceeded a limit. Expired elements are removed when they are accessed or passed by the hand of the eviction,
+     * {@link #evictExpired} removes those that are not.
+     *
+     * @param capacity             number of slots, rounded up to a power of two
+     * @param loadFactor           ratio of elements to slots that triggers a resize
+     * @param incrementalRehashing true to move the elements to a resized table gradually
+     * @param policy               limits of the hash table, {@code null} for an unbounded one
+     * @throws IllegalArgumentException if {@code capacity} < 1 or {@code loadFactor} <= 0
      */
     @SuppressWarnings("unchecked")
-    public MyHashtable(int capacity) throws IllegalArgumentException {
+    public MyHashtable(int capacity, double loadFactor, boolean incrementalRehashing, EvictionPolicy<? super V> policy)
+            throws IllegalArgumentException {
         if (capacity < 1)
             throw new IllegalArgumentException("Capacity must be higher than 0");
+        if (!(loadFactor > 0))
+            throw new IllegalArgumentException("Load factor must be higher than 0");
 
         int sum = 1;
         while (true) {
-            if (sum >= capacity) {
+            if (sum >= capacity || sum == MAXIMUM_CAPACITY) {
                 this.capacity = sum;
                 break;
             }
@@ -137,7 +376,32 @@ public class MyHashtable<K, V> implements Iterable<MyHashtable.TableEntry<K, V>>
         }
 
         this.size = 0;
-        this.table = (TableEntry<K, V>[]) new TableEntry[this.capacity];
+        this.loadFactor = loadFactor;
+        this.threshold = threshold(this.capacity);
+        this.incrementalRehashing = incrementalRehashing;
+        this.table = (TableEntry<K, V>[]) new TableEntry<?, ?>[this.capacity];
+        this.policy = policy != null && policy.isBounded() ? policy : null;
+    }
+
+    /**
+     * Creates a hash table with specified number of slots and load factor.
+     *
+     * @param capacity   number of slots, rounded up to a power of two
+     * @param loadFactor ratio of elements to slots that triggers a resize
+     * @throws IllegalArgumentException if {@code capacity} < 1 or {@code loadFactor} <= 0
+     */
+    public MyHashtable(int capacity, double loadFactor) throws IllegalArgumentException {
+        this(capacity, loadFactor, false);
+    }
+
+    /**
+     * Creates a hash table with specified number of slots.
+     *
+     * @param capacity number of slots
+     * @throws IllegalArgumentException if {@code capacity} < 1
+     */
+    public MyHashtable(int capacity) throws IllegalArgumentException {
+        this(capacity, DEFAULT_LOAD_FACTOR);
     }
 
     /**
@@ -165,6 +429,110 @@ public class MyHashtable<K, V> implements Iterable<MyHashtable.TableEntry<K, V>>
         return capacity;
     }
 
+    /**
+     * Returns {@link #loadFactor}
+     *
+     * @return {@link #loadFactor}
+     */
+    public double getLoadFactor() {
+        return loadFactor;
+    }
+
+    /**
+     * Returns the length of the longest chain of elements in a single slot.
+     * Visits every slot, so it takes time proportional to the capacity.
+     *
+     * @return number of elements in the fullest slot
+     */
+    public int getLongestChain() {
+        int longest = longestChain(table);
+        if (oldTable != null) {
+            longest = Math.max(longest, longestChain(oldTable));
+        }
+        return longest;
+    }
+
+    private int longestChain(TableEntry<K, V> table[]) {
+        int longest = 0;
+        for (TableEntry<K, V> entry : table) {
+            if (entry instanceof TreeBin) {
+                longest = Math.max(longest, ((TreeBin<K, V>) entry).entries.size());
+                continue;
+            }
+            int length = 0;
+            for (; entry != null; entry = entry.next) {
+                length += 1;
+            }
+            longest = Math.max(longest, length);
+        }
+        return longest;
+    }
+
+    /**
+     * Returns number of times the hash table was resized.
+     *
+     * @return number of resizes
+     */
+    public long getResizeCount() {
+        return resizeCount;
+    }
+
+    /**
+     * Returns time spent resizing the hash table, including the moving of elements of incremental rehashing.
+     *
+     * @return resize time in nanoseconds
+     */
+    public long getResizeTime() {
+        return resizeTime;
+    }
+
+    /**
+     * Returns the limits of the collection.
+     *
+     * @return limits of the collection, {@code null} if it is unbounded
+     */
+    public EvictionPolicy<? super V> getEvictionPolicy() {
+        return policy;
+    }
+
+    /**
+     * Returns total weight of the elements of a bounded collection, as computed by its {@link EvictionPolicy}.
+     *
+     * @return total weight, {@code 0} for an unbounded collection
+     */
+    public long getWeight() {
+        return weight;
+    }
+
+    /**
+     * Returns number of elements removed to stay within the limits of the collection.
+     *
+     * @return number of evictions
+     */
+    public long getEvictionCount() {
+        return evictionCount;
+    }
+
+    /**
+     * Returns number of elements removed after they expired.
+     *
+     * @return number of expirations
+     */
+    public long getExpirationCount() {
+        return expirationCount;
+    }
+
+    /**
+     * Sets the listener of evictions and expirations. It is called after an element was removed, with the key and
+     * the value of the element, but not for elements removed by {@link #remove}, {@link #computeIfPresent} or
+     * {@link #clear}. It may modify the collection.
+     *
+     * @param listener receives the removed elements, {@code null} for none
+     */
+    public void setEvictionListener(BiConsumer<? super K, ? super V> listener) {
+        this.evictionListener = listener;
+    }
+
     /**
      * Checks if collection is empty.
      *
@@ -176,13 +544,62 @@ public class MyHashtable<K, V> implements Iterable<MyHashtable.TableEntry<K, V>>
     }
 
     /**
-     * Returns index (slot) of the collection for specified key.
+     * Spreads higher bits of the key's hash code to the lower ones, which are used for indexing, so hash codes that
+     * only differ in their higher bits do not end up in the same slot. Never negative.
      *
      * @param key key value
+     * @return hash of the key
+     */
+    protected static int hash(Object key) {
+        int h = key.hashCode();
+        return (h ^ (h >>> 16)) & Integer.MAX_VALUE;
+    }
+
+    /**
+     * Returns index (slot) of the collection for specified key.
+     * Capacity is always a power of two, so masking the hash selects the same slot as a modulo would, without the
+     * division.
+     *
+     * @param key      key value
+     * @param capacity number of slots
      * @return index of specified key
      */
-    private int index(K key) {
-        return Math.abs(key.hashCode()) % capacity;
+    private int index(K key, int capacity) {
+        return hash(key) & (capacity - 1);
+    }
+
+    /**
+     * Returns the entry with specified key, from the old table if its slot was not yet rehashed.
+     *
+     * @param key key value
+     * @return entry with specified key
+     * <br>    if no matching key is found, returns null
+     */
+    private TableEntry<K, V> entry(K key) {
+        TableEntry<K, V> entry = find(table[index(key, capacity)], key);
+        if (entry != null || oldTable == null)
+            return entry;
+
+        return find(oldTable[index(key, oldTable.length)], key);
+    }
+
+    /**
+     * Returns the entry with specified key from a slot, a chain or a {@link TreeBin}.
+     *
+     * @param entry first entry of the slot
+     * @param key   key value
+     * @return entry with specified key, {@code null} if there is none
+     */
+    private static <K, V> TableEntry<K, V> find(TableEntry<K, V> entry, K key) {
+        if (entry instanceof TreeBin)
+            return ((TreeBin<K, V>) entry).get(key);
+
+        while (entry != null) {
+            if (entry.key.equals(key))
+                return entry;
+            entry = entry.next;
+        }
+        return null;
     }
 
     /**
@@ -196,18 +613,79 @@ public class MyHashtable<K, V> implements Iterable<MyHashtable.TableEntry<K, V>>
         if (key == null)
             return null;
 
-        int index = index(key);
-        TableEntry<K, V> entry = table[index];
+        TableEntry<K, V> entry = live(key);
+        if (entry == null)
+            return null;
+        if (policy != null)
+            ((BoundedEntry<K, V>) entry).referenced = true;
+        return entry.value;
+    }
 
-        while (entry != null)
-            if (entry.key.equals(key))
-                return entry.value;
-            else
-                entry = entry.next;
+    /**
+     * Returns the entry with specified key, unless it has expired, in which case it is removed.
+     *
+     * @param key key value
+     * @return entry with specified key, {@code null} if there is none
+     */
+    private TableEntry<K, V> live(K key) {
+        TableEntry<K, V> entry = entry(key);
+        if (entry == null || policy == null || !policy.isExpired(((BoundedEntry<K, V>) entry).expiresAt, policy.now()))
+            return entry;
 
+        unlink(key);
+        expirationCount += 1;
+        notifyEvicted(entry);
         return null;
     }
 
+    /**
+     * Checks if an entry of a bounded collection has expired.
+     *
+     * @param entry entry of the collection
+     * @param now   current time, from {@link EvictionPolicy#now}
+     * @return true: if the entry has expired
+     * <br>    false: otherwise
+     */
+    private boolean isExpired(TableEntry<K, V> entry, long now) {
+        return policy != null && policy.isExpired(((BoundedEntry<K, V>) entry).expiresAt, now);
+    }
+
+    /**
+     * Creates an entry, with the state of its eviction in a bounded collection.
+     */
+    private TableEntry<K, V> newEntry(K key, V value, TableEntry<K, V> next) {
+        if (policy == null)
+            return new TableEntry<>(key, value, next);
+
+        BoundedEntry<K, V> entry = new BoundedEntry<>(key, value, next);
+        entry.weight = policy.weigh(value);
+        entry.expiresAt = policy.expiresAt(policy.now());
+        weight += entry.weight;
+        return entry;
+    }
+
+    /**
+     * Sets the value of an entry, which restarts its time to live in a bounded collection.
+     */
+    private void assign(TableEntry<K, V> entry, V value) {
+        entry.value = value;
+        if (policy == null)
+            return;
+
+        BoundedEntry<K, V> bounded = (BoundedEntry<K, V>) entry;
+        int newWeight = policy.weigh(value);
+        weight += newWeight - bounded.weight;
+        bounded.weight = newWeight;
+        bounded.expiresAt = policy.expiresAt(policy.now());
+        bounded.referenced = true;
+    }
+
+    private void notifyEvicted(TableEntry<K, V> entry) {
+        BiConsumer<? super K, ? super V> listener = evictionListener;
+        if (listener != null)
+            listener.accept(entry.key, entry.value);
+    }
+
     /**
      * Adds a new element with specified key and value to the collection.
      *
@@ -219,57 +697,225 @@ public class MyHashtable<K, V> implements Iterable<MyHashtable.TableEntry<K, V>>
         if (key == null)
             throw new IllegalArgumentException("Key can not be null.");
 
-        modificationCount += 1;
-        int index = index(key);
-        TableEntry<K, V> entry = table[index];
+        rehashStep();
 
-        // if slot is empty
-        if (entry == null) {
-            table[index] = new TableEntry<>(key, value, null);
-            size += 1;
-            optimize();
-            return;
-        }
+        // if collection already contains key, overwrite previous value
+        TableEntry<K, V> entry = live(key);
+        if (entry != null)
+            assign(entry, value);
+        else
+            insert(key, value);
+        evict();
+    }
 
-        while (true) {
-            // if slot already contains key, overwrite previous value
-            if (entry.key.equals(key)) {
-                entry.value = value;
-                modificationCount -= 1;
-                return;
-            }
-            // otherwise, create a new entry
-            if (entry.next == null) {
-                entry.next = new TableEntry<K, V>(key, value, null);
-                size += 1;
+    /**
+     * Creates a new entry, always in the current table.
+     *
+     * @param key   key of the key-value pair
+     * @param value value of the key-value pair
+     */
+    private void insert(K key, V value) {
+        link(index(key, capacity), newEntry(key, value, null));
+        size += 1;
+        optimize();
+    }
+
+    /**
+     * Adds an entry to a slot of the current table. A chain that becomes too long is converted to a {@link TreeBin},
+     * a tree that can not hold the key of the entry is converted back to a chain.
+     *
+     * @param index index of the slot
+     * @param entry entry to add
+     */
+    private void link(int index, TableEntry<K, V> entry) {
+        TableEntry<K, V> first = table[index];
+        if (first instanceof TreeBin) {
+            TreeBin<K, V> bin = (TreeBin<K, V>) first;
+            if (bin.add(entry))
                 return;
+            first = bin.untreeify();
+        }
+
+        entry.next = first;
+        table[index] = entry;
+        int length = 1;
+        for (; first != null && length < TREEIFY_THRESHOLD; first = first.next)
+            length += 1;
+        if (length == TREEIFY_THRESHOLD)
+            table[index] = treeify(entry);
+    }
+
+    /**
+     * Converts a chain to a {@link TreeBin}, if all of its keys are of the same comparable class.
+     *
+     * @param chain first entry of the chain
+     * @return tree of the entries, or the unchanged chain
+     */
+    private static <K, V> TableEntry<K, V> treeify(TableEntry<K, V> chain) {
+        Class<?> keyClass = chain.key.getClass();
+        if (!(chain.key instanceof Comparable))
+            return chain;
+        for (TableEntry<K, V> entry = chain; entry != null; entry = entry.next) {
+            if (entry.key.getClass() != keyClass)
+                return chain;
+        }
+
+        TreeBin<K, V> bin = new TreeBin<>(keyClass);
+        try {
+            for (TableEntry<K, V> entry = chain; entry != null; entry = entry.next) {
+                if (bin.entries.put(entry.key, entry) != null)
+                    return chain;
             }
-            entry = entry.next;
+        } catch (ClassCastException ex) {
+            // keys that are not comparable with each other after all
+            return chain;
+        }
+        for (TableEntry<K, V> entry : bin.entries.values())
+            entry.next = null;
+        return bin;
+    }
+
+    /**
+     * Adds a new element with specified key and value, unless the collection already contains the key.
+     * The key is looked up once, so no other modification can come between the check and the addition in
+     * implementations that are thread-safe.
+     *
+     * @param key   key of the key-value pair
+     * @param value value of the key-value pair
+     * @return value that already belongs to specified key, {@code null} if the element was added
+     * @throws IllegalArgumentException if key is {@code null}
+     */
+    public V putIfAbsent(K key, V value) throws IllegalArgumentException {
+        if (key == null)
+            throw new IllegalArgumentException("Key can not be null.");
+
+        rehashStep();
+
+        TableEntry<K, V> entry = live(key);
+        if (entry != null)
+            return entry.value;
+
+        insert(key, value);
+        evict();
+        return null;
+    }
+
+    /**
+     * Replaces the value of specified key, only if its current value equals {@code expected}.
+     *
+     * @param key      key of the key-value pair
+     * @param expected value the key must currently have
+     * @param value    new value of the key-value pair
+     * @return true: if the value was replaced
+     * <br>    false: if the key is missing or has a different value
+     */
+    public boolean replace(K key, V expected, V value) {
+        if (key == null)
+            return false;
+
+        TableEntry<K, V> entry = live(key);
+        if (entry == null || !Objects.equals(entry.value, expected))
+            return false;
+
+        assign(entry, value);
+        evict();
+        return true;
+    }
+
+    /**
+     * Replaces the value of specified key with the value computed from it, if the collection contains the key.
+     * If {@code function} returns {@code null}, the element is removed. If it throws, the collection is not
+     * modified. Thread-safe implementations block other modifications of the key while {@code function} runs,
+     * so it must be short and must not modify the collection itself.
+     *
+     * @param key      key of the key-value pair
+     * @param function computes the new value from the key and its current value
+     * @return new value of the key, {@code null} if there is none
+     */
+    public V computeIfPresent(K key, BiFunction<? super K, ? super V, ? extends V> function) {
+        if (key == null)
+            return null;
+
+        TableEntry<K, V> entry = live(key);
+        if (entry == null)
+            return null;
+
+        V value = function.apply(key, entry.value);
+        if (value == null) {
+            remove(key);
+            return null;
         }
+        assign(entry, value);
+        evict();
+        return value;
     }
 
     /**
      * Removes element with matching key from the collection (if it exists).
      *
      * @param key key of key-value pair to remove
+     * @return value of the removed pair, {@code null} if there was none
      */
-    public void remove(K key) {
+    public V remove(K key) {
         if (key == null) {
-            return;
+            return null;
         }
-        int index = index(key);
+        rehashStep();
+        TableEntry<K, V> entry = unlink(key);
+        if (entry == null)
+            return null;
+        if (isExpired(entry, policy == null ? 0 : policy.now())) {
+            expirationCount += 1;
+            notifyEvicted(entry);
+            return null;
+        }
+        return entry.value;
+    }
+
+    /**
+     * Removes element with matching key from whichever table holds it.
+     *
+     * @param key key of key-value pair to remove
+     * @return removed entry, {@code null} if there was none
+     */
+    private TableEntry<K, V> unlink(K key) {
+        TableEntry<K, V> entry = unlink(table, key);
+        if (entry == null && oldTable != null) {
+            entry = unlink(oldTable, key);
+        }
+        return entry;
+    }
+
+    /**
+     * Removes element with matching key from specified table.
+     *
+     * @param table slots to remove the element from
+     * @param key   key of key-value pair to remove
+     * @return removed entry, {@code null} if there was none
+     */
+    private TableEntry<K, V> unlink(TableEntry<K, V> table[], K key) {
+        int index = index(key, table.length);
         TableEntry<K, V> entry = table[index];
 
         // if list is empty
         if (entry == null) {
-            return;
+            return null;
+        }
+        if (entry instanceof TreeBin) {
+            TreeBin<K, V> bin = (TreeBin<K, V>) entry;
+            entry = bin.remove(key);
+            if (entry == null)
+                return null;
+            if (bin.entries.size() <= UNTREEIFY_THRESHOLD)
+                table[index] = bin.untreeify();
+            removed(entry);
+            return entry;
         }
         // if entry is first in list
         if (entry.key.equals(key)) {
             table[index] = entry.next;
-            size -= 1;
-            modificationCount += 1;
-            return;
+            removed(entry);
+            return entry;
         }
         // general case
         TableEntry<K, V> previous = entry;
@@ -277,12 +923,21 @@ public class MyHashtable<K, V> implements Iterable<MyHashtable.TableEntry<K, V>>
             previous = entry;
             entry = entry.next;
             if (entry == null) {
-                return;
+                return null;
             }
         }
         previous.next = entry.next;
+        removed(entry);
+        return entry;
+    }
+
+    /**
+     * Updates the number and the weight of the elements after an entry was unlinked.
+     */
+    private void removed(TableEntry<K, V> entry) {
         size -= 1;
-        modificationCount += 1;
+        if (policy != null)
+            weight -= ((BoundedEntry<K, V>) entry).weight;
     }
 
     /**
@@ -296,16 +951,7 @@ public class MyHashtable<K, V> implements Iterable<MyHashtable.TableEntry<K, V>>
         if (key == null) {
             return false;
         }
-        int index = index(key);
-        TableEntry<K, V> entry = table[index];
-
-        while (entry != null) {
-            if (entry.key.equals(key)) {
-                return true;
-            }
-            entry = entry.next;
-        }
-        return false;
+        return live(key) != null;
     }
 
     /**
@@ -316,18 +962,15 @@ public class MyHashtable<K, V> implements Iterable<MyHashtable.TableEntry<K, V>>
      * <br>    false: otherwise
      */
     public boolean containsValue(V value) {
-        for (TableEntry<K, V> entry : table) {
-            while (entry != null) {
-                if (entry.value == null || value == null) {
-                    if (entry.value == null && value == null) {
-                        return true;
-                    }
-                } else {
-                    if (entry.value.equals(value)) {
-                        return true;
-                    }
+        for (TableEntry<K, V> entry : this) {
+            if (entry.value == null || value == null) {
+                if (entry.value == null && value == null) {
+                    return true;
+                }
+            } else {
+                if (entry.value.equals(value)) {
+                    return true;
                 }
-                entry = entry.next;
             }
         }
         return false;
@@ -343,50 +986,210 @@ public class MyHashtable<K, V> implements Iterable<MyHashtable.TableEntry<K, V>>
         String prefix = "";
 
         output.append("[");
-        for (TableEntry<K, V> entry : table) {
-            while (entry != null) {
-                output.append(prefix);
-                prefix = ", ";
-                output.append(entry.toString());
-                entry = entry.next;
-            }
+        for (TableEntry<K, V> entry : this) {
+            output.append(prefix);
+            prefix = ", ";
+            output.append(entry.toString());
         }
         output.append("]");
         return output.toString();
     }
 
     /**
-     * Checks if more than 75% slots of the collection are filled, and calls {@link #resize} if true.
+     * Returns number of elements a hash table with specified number of slots can hold before it is resized.
+     *
+     * @param capacity number of slots
+     * @return number of elements that triggers a resize
+     */
+    private int threshold(int capacity) {
+        return (int) Math.min(capacity * loadFactor, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Checks if the number of elements exceeds {@link #threshold}, and calls {@link #resize} if true.
      */
     private void optimize() {
-        int n = 0;
-        for (TableEntry<K, V> entry : table) {
-            if (entry != null) {
-                n += 1;
-            }
+        if (size > threshold && capacity < MAXIMUM_CAPACITY) {
+            resize(capacity * 2);
         }
-        if (1. * n / capacity >= 0.75) {
-            resize();
+    }
+
+    /**
+     * Resizes the hash table in advance, so it can hold specified number of elements without further resizing.
+     * The elements are always rehashed immediately.
+     *
+     * @param expectedSize expected number of elements
+     */
+    public void ensureCapacity(int expectedSize) {
+        int newCapacity = capacity;
+        while (threshold(newCapacity) < expectedSize && newCapacity < MAXIMUM_CAPACITY) {
+            newCapacity *= 2;
+        }
+        if (newCapacity != capacity) {
+            resize(newCapacity);
+            long start = System.nanoTime();
+            finishRehash();
+            resizeTime += System.nanoTime() - start;
         }
     }
 
     /**
-     * Doubles the capacity of the hash table.
+     * Changes the capacity of the hash table.
+     * Existing entries are relinked into the new slots instead of being copied, with incremental rehashing only once
+     * their slot is reached by {@link #rehashStep}.
+     *
+     * @param newCapacity new number of slots, a power of two
      */
     @SuppressWarnings("unchecked")
-    private void resize() {
-        TableEntry<K, V> oldTable[] = this.table;
+    private void resize(int newCapacity) {
+        long start = System.nanoTime();
+        // a previous resize has to be completed first
+        finishRehash();
 
-        this.size = 0;
-        this.capacity *= 2;
-        this.table = (TableEntry<K, V>[]) new TableEntry[this.capacity];
+        this.oldTable = this.table;
+        this.rehashIndex = 0;
+        this.capacity = newCapacity;
+        this.threshold = threshold(this.capacity);
+        this.table = (TableEntry<K, V>[]) new TableEntry<?, ?>[this.capacity];
+
+        if (!incrementalRehashing) {
+            finishRehash();
+        }
+        resizeCount += 1;
+        resizeTime += System.nanoTime() - start;
+    }
+
+    /**
+     * Moves up to {@link #REHASH_STEP} non-empty slots of {@link #oldTable} to {@link #table}.
+     * Only modifications call this, so lookups never change the layout of the collection.
+     */
+    private void rehashStep() {
+        if (oldTable == null) {
+            return;
+        }
+        long start = System.nanoTime();
+        int moved = 0;
+        int visited = 0;
+        while (moved < REHASH_STEP && visited < REHASH_STEP * 10 && rehashIndex < oldTable.length) {
+            if (oldTable[rehashIndex] != null) {
+                rehashSlot(rehashIndex);
+                moved += 1;
+            }
+            rehashIndex += 1;
+            visited += 1;
+        }
+        if (rehashIndex == oldTable.length) {
+            oldTable = null;
+        }
+        resizeTime += System.nanoTime() - start;
+    }
+
+    /**
+     * Moves all remaining slots of {@link #oldTable} to {@link #table}.
+     */
+    private void finishRehash() {
+        if (oldTable == null) {
+            return;
+        }
+        while (rehashIndex < oldTable.length) {
+            rehashSlot(rehashIndex);
+            rehashIndex += 1;
+        }
+        oldTable = null;
+    }
+
+    /**
+     * Relinks all entries of a slot of {@link #oldTable} into {@link #table}.
+     *
+     * @param index index of the old slot
+     */
+    private void rehashSlot(int index) {
+        TableEntry<K, V> entry = oldTable[index];
+        oldTable[index] = null;
+        if (entry instanceof TreeBin)
+            entry = ((TreeBin<K, V>) entry).untreeify();
+
+        while (entry != null) {
+            TableEntry<K, V> next = entry.next;
+            link(index(entry.key, capacity), entry);
+            entry = next;
+        }
+    }
 
-        for (TableEntry<K, V> entry : oldTable) {
-            while (entry != null) {
-                put(entry.key, entry.value);
-                entry = entry.next;
+    /**
+     * Scans the slots from {@code cursor} up to, but not including, the slot of cursor {@code end}, as
+     * {@link #scan(long, int, Consumer)} does. Used by {@link ScanSpliterator} to scan a part of the table.
+     *
+     * @param cursor   cursor returned by the previous call, {@code 0} to start a scan
+     * @param end      cursor at which the scan stops, {@code 0} to scan until the last slot
+     * @param limit    number of elements after which the scan stops
+     * @param consumer receives the elements, must not modify the collection
+     * @return cursor of the next call, {@code 0} if all slots were visited
+     * @throws IllegalArgumentException if {@code limit} < 1
+     */
+    public long scan(long cursor, long end, int limit, Consumer<TableEntry<K, V>> consumer) throws IllegalArgumentException {
+        if (limit < 1)
+            throw new IllegalArgumentException("Limit must be higher than 0");
+
+        int start = (int) cursor;
+        int slot = start;
+        int count = 0;
+        long now = policy == null ? 0 : policy.now();
+        do {
+            int index = slot & (capacity - 1);
+            count += visit(table[index], start, (int) end, now, consumer);
+            if (oldTable != null) {
+                // elements of the old slot that are yet to be moved to this one
+                for (TableEntry<K, V> entry : entries(oldTable[slot & (oldTable.length - 1)])) {
+                    if (index(entry.key, capacity) == index && isBetween(hash(entry.key), start, (int) end)
+                            && !isExpired(entry, now)) {
+                        consumer.accept(entry);
+                        count += 1;
+                    }
+                }
+            }
+            slot = nextCursor(slot, capacity - 1);
+        } while (slot != 0 && count < limit && precedes(slot, (int) end));
+        return Integer.toUnsignedLong(slot);
+    }
+
+    /**
+     * Passes the elements of a chain that lie between two cursors, and have not expired, to {@code consumer}.
+     *
+     * @return number of passed elements
+     */
+    private int visit(TableEntry<K, V> entry, int cursor, int end, long now, Consumer<TableEntry<K, V>> consumer) {
+        int count = 0;
+        if (entry instanceof TreeBin) {
+            // the entries of a tree have no next entry
+            for (TableEntry<K, V> treeEntry : ((TreeBin<K, V>) entry).entries.values())
+                count += visit(treeEntry, cursor, end, now, consumer);
+            return count;
+        }
+        for (; entry != null; entry = entry.next) {
+            if (isBetween(hash(entry.key), cursor, end) && !isExpired(entry, now)) {
+                consumer.accept(entry);
+                count += 1;
             }
         }
+        return count;
+    }
+
+    /**
+     * Returns the entries of a slot, a chain or a {@link TreeBin}, as a list that stays the same when the slot is
+     * modified.
+     *
+     * @param entry first entry of the slot
+     * @return entries of the slot
+     */
+    private static <K, V> List<TableEntry<K, V>> entries(TableEntry<K, V> entry) {
+        if (entry instanceof TreeBin)
+            return new ArrayList<>(((TreeBin<K, V>) entry).entries.values());
+
+        List<TableEntry<K, V>> entries = new ArrayList<>();
+        for (; entry != null; entry = entry.next)
+            entries.add(entry);
+        return entries;
     }
 
     /**
@@ -396,17 +1199,120 @@ public class MyHashtable<K, V> implements Iterable<MyHashtable.TableEntry<K, V>>
         for (int i = 0; i < table.length; i++) {
             table[i] = null;
         }
+        oldTable = null;
         size = 0;
+        weight = 0;
+        hand = 0;
+    }
+
+    /**
+     * Evicts elements of a bounded collection until it is within its limits again, with the CLOCK algorithm: the
+     * {@link #hand} visits the slots in scan order, removes the expired elements it passes, clears the reference bits
+     * that are set and evicts the elements whose bit was already clear. Two rounds clear every bit, so it stops.
+     * The listener is called after all elements were removed.
+     */
+    private void evict() {
+        if (policy == null || !policy.isExceeded(size, weight))
+            return;
+
+        // the hand walks the new table only
+        long start = System.nanoTime();
+        finishRehash();
+        resizeTime += System.nanoTime() - start;
+
+        long now = policy.now();
+        List<TableEntry<K, V>> removed = new ArrayList<>();
+        int slot = hand;
+        while (size > 0 && policy.isExceeded(size, weight)) {
+            for (TableEntry<K, V> current : entries(table[slot & (capacity - 1)])) {
+                if (!policy.isExceeded(size, weight))
+                    break;
+                BoundedEntry<K, V> bounded = (BoundedEntry<K, V>) current;
+                if (policy.isExpired(bounded.expiresAt, now)) {
+                    unlink(table, current.key);
+                    expirationCount += 1;
+                    removed.add(current);
+                } else if (bounded.referenced) {
+                    bounded.referenced = false;
+                } else {
+                    unlink(table, current.key);
+                    evictionCount += 1;
+                    removed.add(current);
+                }
+            }
+            slot = nextCursor(slot, capacity - 1);
+        }
+        hand = slot;
+        for (TableEntry<K, V> entry : removed)
+            notifyEvicted(entry);
+    }
+
+    /**
+     * Removes the expired elements of the next few slots and returns the cursor of the slots that follow, with the
+     * same cursors as {@link #scan}. A background task can call it repeatedly to remove the elements that expired but
+     * are no longer accessed.
+     *
+     * @param cursor cursor returned by the previous call, {@code 0} to start a pass
+     * @param limit  number of visited elements after which the pass stops
+     * @return cursor of the next call, {@code 0} if all slots were visited
+     * @throws IllegalArgumentException if {@code limit} < 1
+     */
+    public long evictExpired(long cursor, int limit) throws IllegalArgumentException {
+        if (limit < 1)
+            throw new IllegalArgumentException("Limit must be higher than 0");
+        if (policy == null || !policy.isExpiring())
+            return 0;
+
+        long start = System.nanoTime();
+        finishRehash();
+        resizeTime += System.nanoTime() - start;
+
+        long now = policy.now();
+        List<TableEntry<K, V>> expired = new ArrayList<>();
+        int slot = (int) cursor;
+        int count = 0;
+        do {
+            for (TableEntry<K, V> entry : entries(table[slot & (capacity - 1)])) {
+                if (isExpired(entry, now))
+                    expired.add(entry);
+                count += 1;
+            }
+            slot = nextCursor(slot, capacity - 1);
+        } while (slot != 0 && count < limit);
+
+        for (TableEntry<K, V> entry : expired) {
+            unlink(table, entry.key);
+            expirationCount += 1;
+        }
+        for (TableEntry<K, V> entry : expired)
+            notifyEvicted(entry);
+        return Integer.toUnsignedLong(slot);
     }
 
     /**
-     * Returns a new iterator of this collection.
+     * Returns a new weakly consistent iterator of this collection, that reads a few slots at a time with {@link #scan}.
+     * It never fails when the collection is modified during iteration: elements that are present during the whole
+     * iteration are returned once, elements added or removed in the meantime may or may not be returned.
      */
     @Override
     public Iterator<TableEntry<K, V>> iterator() {
         return new IteratorImpl();
     }
 
+    /**
+     * Returns a new weakly consistent spliterator of this collection, with the same guarantees as {@link #iterator}.
+     * It splits the slots of the table into ranges of scan cursors, which remain valid when the table grows, so the
+     * parts can be scanned in parallel with {@link java.util.stream.StreamSupport#stream}.
+     * <p>
+     * It is {@link Spliterator#SIZED} until it is split. The parts are not {@link Spliterator#SUBSIZED}, since the
+     * elements of a range of slots are not counted before they are read, their sizes are estimated from its share of
+     * the slots instead.
+     */
+    @Override
+    public Spliterator<TableEntry<K, V>> spliterator() {
+        return new ScanSpliterator<>(this, 1L << 32, false);
+    }
+
     /**
      * An iterator that can iterate through a {@link MyHashtable} collection.
      *
@@ -416,94 +1322,68 @@ public class MyHashtable<K, V> implements Iterable<MyHashtable.TableEntry<K, V>>
     private class IteratorImpl implements Iterator<TableEntry<K, V>> {
 
         /**
-         * Current slot of the iterator.
+         * Number of elements read from the collection at a time.
          */
-        private int index = -1;
+        private static final int BATCH_SIZE = 64;
+
         /**
-         * Amount of elements remaining to be iterated.
+         * Elements read from the collection, that were not yet returned.
          */
-        private int remaining = size;
+        private final ArrayDeque<TableEntry<K, V>> entries = new ArrayDeque<>();
         /**
-         * Number of times the collection was changed from its creation.
-         * Used to prevent the collection being changed during its iteration.
+         * Cursor of the slots that are read next, {@code 0} once all slots were read.
          */
-        private int modificationCount = MyHashtable.this.modificationCount;
+        private long cursor = 0;
         /**
-         * Flag that signals if {@link #remove} can be called.
+         * Flag that signals if all slots were read.
          */
-        private boolean isRemovable = false;
+        private boolean isScanned = false;
         /**
-         * Current entry of the iteration.
+         * Key of the last returned element, {@code null} if {@link #remove} can not be called.
          */
-        private TableEntry<K, V> entry = null;
+        private K last = null;
 
         /**
          * Checks if iterator has any elements left to iterate through.
-         *
-         * @throws ConcurrentModificationException if collection has changed during iteration
          */
         @Override
         public boolean hasNext() {
-            if (modificationCount != MyHashtable.this.modificationCount) {
-                throw new ConcurrentModificationException();
+            while (entries.isEmpty() && !isScanned) {
+                cursor = scan(cursor, BATCH_SIZE, entries::add);
+                isScanned = cursor == 0;
             }
-            return remaining != 0;
+            return !entries.isEmpty();
         }
 
         /**
          * Gets the next element of the iteration.
          *
-         * @throws ConcurrentModificationException if collection has changed during iteration
-         * @throws NoSuchElementException          if no more elements remain to be iterated through
+         * @throws NoSuchElementException if no more elements remain to be iterated through
          */
         @Override
         public TableEntry<K, V> next() {
-            if (modificationCount != MyHashtable.this.modificationCount) {
-                throw new ConcurrentModificationException();
-            }
             if (!hasNext()) {
                 throw new NoSuchElementException();
             }
 
-            remaining -= 1;
-            if (entry == null) {
-                while (entry == null) {
-                    index += 1;
-                    entry = table[index];
-                }
-            } else {
-                entry = entry.next;
-                if (entry == null) {
-                    while (entry == null) {
-                        index += 1;
-                        entry = table[index];
-                    }
-                }
-            }
-            isRemovable = true;
+            TableEntry<K, V> entry = entries.poll();
+            last = entry.key;
             return entry;
         }
 
         /**
-         * Removes the current element from the collection.
-         * This is the only way to safely change the collection during an iteration. Cannot be called twice on the same element.
+         * Removes the current element from the collection. Cannot be called twice on the same element.
          *
-         * @throws ConcurrentModificationException if collection has changed during iteration
-         * @throws IllegalStateException           if method was called twice on the same element
+         * @throws IllegalStateException if method was called twice on the same element
          */
         @Override
         public void remove() {
-            if (modificationCount != MyHashtable.this.modificationCount) {
-                throw new ConcurrentModificationException();
-            }
-            if (isRemovable == false) {
+            if (last == null) {
                 throw new IllegalStateException();
             }
 
-            MyHashtable.this.remove(entry.key);
-            modificationCount += 1;
-            isRemovable = false;
+            MyHashtable.this.remove(last);
+            last = null;
         }
     }
 }
-
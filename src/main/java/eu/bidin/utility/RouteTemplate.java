@@ -0,0 +1,181 @@
+package eu.bidin.utility;
+
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.util.UriUtils;
+
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Represents the URI template of a controller action, such as {@code /students/{uuid}}, split into its literal parts
+ * and variables once, so building a URI only appends the encoded values to a base URL.
+ * <p>
+ * Templates are kept in a registry by controller and action. The path of an action is the first path of its
+ * {@link RequestMapping} (or a composed annotation like {@code @GetMapping}), prefixed with the first path of the
+ * mapping of its controller, if there is one.
+ *
+ * @author Vedran Biđin
+ * @version 1.0
+ */
+public class RouteTemplate {
+
+    /**
+     * Templates of all resolved actions, by controller and action name.
+     */
+    private static final Map<Class<?>, Map<String, RouteTemplate>> REGISTRY = new ConcurrentHashMap<>();
+
+    /**
+     * Literal parts of the template, one more than there are variables.
+     */
+    private final String[] literals;
+
+    /**
+     * Names of the variables of the template, in order.
+     */
+    private final String[] variables;
+
+    /**
+     * Compiles a URI template.
+     *
+     * @param template URI template with variables in braces, a variable can be followed by a colon and a pattern
+     * @throws IllegalArgumentException if a brace is not closed
+     */
+    public RouteTemplate(String template) throws IllegalArgumentException {
+        List<String> literals = new ArrayList<>();
+        List<String> variables = new ArrayList<>();
+        int start = 0;
+        for (int open = template.indexOf('{'); open >= 0; open = template.indexOf('{', start)) {
+            int close = closingBrace(template, open);
+            if (close < 0)
+                throw new IllegalArgumentException("Template '" + template + "' has an unclosed variable.");
+            literals.add(template.substring(start, open));
+            String variable = template.substring(open + 1, close);
+            int colon = variable.indexOf(':');
+            variables.add(colon < 0 ? variable.trim() : variable.substring(0, colon).trim());
+            start = close + 1;
+        }
+        literals.add(template.substring(start));
+        this.literals = literals.toArray(new String[0]);
+        this.variables = variables.toArray(new String[0]);
+    }
+
+    /**
+     * Finds the brace that closes a variable, skipping the braces of its pattern.
+     */
+    private static int closingBrace(String template, int open) {
+        int depth = 0;
+        for (int i = open; i < template.length(); i++) {
+            char c = template.charAt(i);
+            if (c == '{')
+                depth++;
+            else if (c == '}' && --depth == 0)
+                return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the template of a controller action, resolving it on first use.
+     *
+     * @param controller controller class
+     * @param action     name of the handler method
+     * @return template of the action
+     * @throws IllegalArgumentException if the controller has no mapped method with that name, or several
+     */
+    public static RouteTemplate of(Class<?> controller, String action) throws IllegalArgumentException {
+        // a lookup of a resolved template does not allocate
+        Map<String, RouteTemplate> actions = REGISTRY.get(controller);
+        if (actions == null)
+            actions = REGISTRY.computeIfAbsent(controller, c -> new ConcurrentHashMap<>());
+        RouteTemplate template = actions.get(action);
+        return template != null ? template : actions.computeIfAbsent(action, a -> resolve(controller, a));
+    }
+
+    /**
+     * Resolves the templates of all mapped methods of a controller, so later requests find them in the registry.
+     * Overloaded methods are skipped, they can not be told apart by name.
+     *
+     * @param controller controller class
+     */
+    public static void register(Class<?> controller) {
+        for (Method method : controller.getMethods()) {
+            if (AnnotatedElementUtils.findMergedAnnotation(method, RequestMapping.class) == null)
+                continue;
+            try {
+                of(controller, method.getName());
+            } catch (IllegalArgumentException ex) {
+                // an overloaded action is resolved, and fails, when it is used
+            }
+        }
+    }
+
+    private static RouteTemplate resolve(Class<?> controller, String action) {
+        Method found = null;
+        for (Method method : controller.getMethods()) {
+            if (!method.getName().equals(action) || AnnotatedElementUtils.findMergedAnnotation(method, RequestMapping.class) == null)
+                continue;
+            if (found != null)
+                throw new IllegalArgumentException("Action '" + action + "' of " + controller.getName() + " is overloaded.");
+            found = method;
+        }
+        if (found == null)
+            throw new IllegalArgumentException("Action '" + action + "' of " + controller.getName() + " is not mapped.");
+
+        RequestMapping type = AnnotatedElementUtils.findMergedAnnotation(controller, RequestMapping.class);
+        RequestMapping method = AnnotatedElementUtils.findMergedAnnotation(found, RequestMapping.class);
+        return new RouteTemplate(join(firstPath(type), firstPath(method)));
+    }
+
+    private static String firstPath(RequestMapping mapping) {
+        return mapping == null || mapping.path().length == 0 ? "" : mapping.path()[0];
+    }
+
+    private static String join(String prefix, String path) {
+        if (!prefix.isEmpty() && !prefix.startsWith("/"))
+            prefix = "/" + prefix;
+        if (prefix.endsWith("/"))
+            prefix = prefix.substring(0, prefix.length() - 1);
+        return path.isEmpty() || path.startsWith("/") ? prefix + path : prefix + "/" + path;
+    }
+
+    /**
+     * Builds a URI by appending the template to a base URL, with the values of its variables encoded as path
+     * segments.
+     *
+     * @param baseUrl base URL, without a trailing slash
+     * @param values  values of the variables, in order
+     * @return built URI
+     * @throws IllegalArgumentException if the number of values differs from the number of variables
+     */
+    public String expand(String baseUrl, Object... values) throws IllegalArgumentException {
+        if (values.length != variables.length)
+            throw new IllegalArgumentException("Template has " + variables.length + " variables, got " + values.length + " values.");
+
+        StringBuilder builder = new StringBuilder(baseUrl.length() + 64).append(baseUrl).append(literals[0]);
+        for (int i = 0; i < values.length; i++)
+            builder.append(UriUtils.encodePathSegment(String.valueOf(values[i]), StandardCharsets.UTF_8)).append(literals[i + 1]);
+        return builder.toString();
+    }
+
+    /**
+     * Returns the names of the variables of the template.
+     *
+     * @return names of the variables, in order
+     */
+    public String[] getVariables() {
+        return variables.clone();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder(literals[0]);
+        for (int i = 0; i < variables.length; i++)
+            builder.append('{').append(variables[i]).append('}').append(literals[i + 1]);
+        return builder.toString();
+    }
+}
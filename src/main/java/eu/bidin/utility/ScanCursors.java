@@ -0,0 +1,64 @@
+package eu.bidin.utility;
+
+/**
+ * Cursors of the scans of hash tables with power of two capacities, see {@link Table#scan(long, int,
+ * java.util.function.Consumer)}.
+ * <p>
+ * A cursor is the index of a slot with its bits reversed and incremented from the highest bit down, so slots are
+ * visited in the order of their reversed index. When a table doubles, slot {@code i} splits into slots {@code i} and
+ * {@code i + capacity}, which are both visited in place of the former slot, so a cursor stays valid across resizes.
+ *
+ * @author Vedran Biđin
+ * @version 1.0
+ */
+public final class ScanCursors {
+
+    private ScanCursors() {
+    }
+
+    /**
+     * Returns the cursor that follows specified one in a table with specified index mask: the masked bits of the
+     * cursor are incremented from the highest to the lowest one, and it wraps around to {@code 0} after the last slot.
+     *
+     * @param cursor current cursor
+     * @param mask   number of slots minus one
+     * @return next cursor
+     */
+    public static int nextCursor(int cursor, int mask) {
+        cursor |= ~mask;
+        cursor = Integer.reverse(cursor);
+        cursor += 1;
+        return Integer.reverse(cursor);
+    }
+
+    /**
+     * Checks if a cursor comes before another one in scan order.
+     *
+     * @param cursor cursor of a scan
+     * @param end    cursor at which the scan stops, {@code 0} for the end of the table
+     * @return true: if the slot of {@code cursor} should be visited
+     * <br>    false: otherwise
+     */
+    public static boolean precedes(int cursor, int end) {
+        return end == 0 || Integer.compareUnsigned(Integer.reverse(cursor), Integer.reverse(end)) < 0;
+    }
+
+    /**
+     * Checks if an element with specified hash is returned by a scan from {@code cursor} to {@code end}.
+     * <p>
+     * The reversed hash of an element is its position in scan order, at any capacity. Slots only need to be filtered
+     * by it when a cursor lies between two slots, which happens when a {@link ScanSpliterator} is split into more parts
+     * than the table has slots: each part then returns the elements of its side of the cursor.
+     *
+     * @param hash   hash of the element, masked to select its slot
+     * @param cursor cursor the scan started at
+     * @param end    cursor at which the scan stops, {@code 0} for the end of the table
+     * @return true: if the element should be returned
+     * <br>    false: otherwise
+     */
+    public static boolean isBetween(int hash, int cursor, int end) {
+        int position = Integer.reverse(hash);
+        return Integer.compareUnsigned(position, Integer.reverse(cursor)) >= 0
+                && (end == 0 || Integer.compareUnsigned(position, Integer.reverse(end)) < 0);
+    }
+}
@@ -0,0 +1,128 @@
+package eu.bidin.utility;
+
+import java.util.ArrayDeque;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * A spliterator through a range of the scan cursors of a {@link Table}.
+ * <p>
+ * Positions are cursors in scan order: the lower half of a cursor with its bits reversed. The upper half, used by
+ * {@link UuidHashtable} for the index of a segment, stays as it is. A split halves the range of positions, which
+ * halves the slots of the table at any capacity.
+ * <p>
+ * Sizes of the parts are estimated, assuming that the hash codes of the elements are spread evenly over the slots.
+ * The unsplit spliterator of a collection that is not thread-safe is {@link Spliterator#SIZED}, the size of a
+ * collection that is modified concurrently is never exact.
+ *
+ * @param <K> key type
+ * @param <V> value type
+ * @author Vedran Biđin
+ * @version 1.0
+ */
+public class ScanSpliterator<K, V> implements Spliterator<MyHashtable.TableEntry<K, V>> {
+
+    /**
+     * Number of elements read from the collection at a time.
+     */
+    private static final int BATCH_SIZE = 64;
+
+    private final Table<K, V> collection;
+    private final ArrayDeque<MyHashtable.TableEntry<K, V>> entries = new ArrayDeque<>();
+    private long position;
+    private final long end;
+    /**
+     * Number of positions of the whole collection.
+     */
+    private final long positions;
+    private final boolean isConcurrent;
+    /**
+     * Flag that signals if the spliterator covers the whole collection, which makes its size exact.
+     */
+    private boolean isWhole;
+
+    /**
+     * Creates a spliterator through all positions of a collection.
+     *
+     * @param collection   collection to scan
+     * @param positions    position after the last slot of the collection
+     * @param isConcurrent flag that signals if the collection can be modified concurrently with the scan
+     */
+    public ScanSpliterator(Table<K, V> collection, long positions, boolean isConcurrent) {
+        this(collection, 0, positions, positions, isConcurrent);
+        this.isWhole = true;
+    }
+
+    private ScanSpliterator(Table<K, V> collection, long position, long end, long positions, boolean isConcurrent) {
+        this.collection = collection;
+        this.position = position;
+        this.end = end;
+        this.positions = positions;
+        this.isConcurrent = isConcurrent;
+    }
+
+    private static long cursor(long position) {
+        return position & 0xFFFFFFFF00000000L | Integer.toUnsignedLong(Integer.reverse((int) position));
+    }
+
+    private static long position(long cursor) {
+        return cursor & 0xFFFFFFFF00000000L | Integer.toUnsignedLong(Integer.reverse((int) cursor));
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super MyHashtable.TableEntry<K, V>> action) {
+        while (entries.isEmpty() && position < end) {
+            long next = collection.scan(cursor(position), cursor(end), BATCH_SIZE, entries::add);
+            position = next == 0 ? end : position(next);
+        }
+        MyHashtable.TableEntry<K, V> entry = entries.poll();
+        if (entry == null)
+            return false;
+        action.accept(entry);
+        return true;
+    }
+
+    /**
+     * Passes the elements straight from the scan to {@code action}, without buffering them.
+     */
+    @Override
+    public void forEachRemaining(Consumer<? super MyHashtable.TableEntry<K, V>> action) {
+        for (MyHashtable.TableEntry<K, V> entry = entries.poll(); entry != null; entry = entries.poll())
+            action.accept(entry);
+        while (position < end) {
+            long next = collection.scan(cursor(position), cursor(end), BATCH_SIZE, action::accept);
+            position = next == 0 ? end : position(next);
+        }
+    }
+
+    /**
+     * Splits off the first half of the remaining positions, after the elements that were already read.
+     */
+    @Override
+    public Spliterator<MyHashtable.TableEntry<K, V>> trySplit() {
+        if (!entries.isEmpty() || end - position < 2)
+            return null;
+
+        long middle = position + (end - position) / 2;
+        Spliterator<MyHashtable.TableEntry<K, V>> prefix = new ScanSpliterator<>(collection, position, middle, positions, isConcurrent);
+        position = middle;
+        isWhole = false;
+        return prefix;
+    }
+
+    @Override
+    public long estimateSize() {
+        if (isWhole && position == 0)
+            return collection.size();
+        double share = (double) (end - position) / positions;
+        return (long) Math.ceil(collection.size() * Math.min(share, 1.0)) + entries.size();
+    }
+
+    @Override
+    public int characteristics() {
+        int characteristics = Spliterator.DISTINCT | Spliterator.NONNULL;
+        if (isConcurrent)
+            return characteristics | Spliterator.CONCURRENT;
+        return isWhole ? characteristics | Spliterator.SIZED : characteristics;
+    }
+}
@@ -0,0 +1,314 @@
+package eu.bidin.utility;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+
+/**
+ * Represents a hash table, a collection made of key-value pairs, independent of how it stores them: in chained slots
+ * ({@link MyHashtable}, {@link ConcurrentMyHashtable}), in open-addressed arrays ({@link UuidHashtable}), off the heap
+ * or in front of a journal.
+ * <p>
+ * The eviction methods have defaults for tables without limits, which never evict or expire anything. Everything else
+ * is implemented by each table.
+ *
+ * @param <K> key type
+ * @param <V> value type
+ * @author Vedran Biđin
+ * @version 1.0
+ */
+public interface Table<K, V> extends Iterable<MyHashtable.TableEntry<K, V>> {
+
+    /**
+     * Returns current number of elements in the collection.
+     *
+     * @return number of elements in the collection
+     */
+    int size();
+
+    /**
+     * Checks if collection is empty.
+     *
+     * @return true: if {@link #size} == 0,
+     * <br>    false: otherwise
+     */
+    boolean isEmpty();
+
+    /**
+     * Returns number of slots of the hash table.
+     *
+     * @return number of slots
+     */
+    int getCapacity();
+
+    /**
+     * Returns ratio of elements to slots that triggers a resize.
+     *
+     * @return load factor
+     */
+    double getLoadFactor();
+
+    /**
+     * Returns the length of the longest chain of elements in a single slot, or the longest probe sequence of a table
+     * with open addressing. Visits every slot, so it takes time proportional to the capacity.
+     *
+     * @return number of elements in the fullest slot
+     */
+    int getLongestChain();
+
+    /**
+     * Returns number of times the hash table was resized.
+     *
+     * @return number of resizes
+     */
+    long getResizeCount();
+
+    /**
+     * Returns time spent resizing the hash table.
+     *
+     * @return resize time in nanoseconds
+     */
+    long getResizeTime();
+
+    /**
+     * Returns the limits of the collection.
+     *
+     * @return limits of the collection, {@code null} if it is unbounded
+     */
+    default EvictionPolicy<? super V> getEvictionPolicy() {
+        return null;
+    }
+
+    /**
+     * Returns total weight of the elements of a bounded collection, as computed by its {@link EvictionPolicy}.
+     *
+     * @return total weight, {@code 0} for an unbounded collection
+     */
+    default long getWeight() {
+        return 0;
+    }
+
+    /**
+     * Returns number of elements removed to stay within the limits of the collection.
+     *
+     * @return number of evictions
+     */
+    default long getEvictionCount() {
+        return 0;
+    }
+
+    /**
+     * Returns number of elements removed after they expired.
+     *
+     * @return number of expirations
+     */
+    default long getExpirationCount() {
+        return 0;
+    }
+
+    /**
+     * Sets the listener of evictions and expirations. It is called after an element was removed, with the key and
+     * the value of the element, but not for elements removed by {@link #remove}, {@link #computeIfPresent} or
+     * {@link #clear}. It may modify the collection. An unbounded collection never calls it.
+     *
+     * @param listener receives the removed elements, {@code null} for none
+     */
+    default void setEvictionListener(BiConsumer<? super K, ? super V> listener) {
+    }
+
+    /**
+     * Removes the expired elements of the next few slots, as a scan from {@code cursor} would visit them.
+     *
+     * @param cursor cursor returned by the previous call, {@code 0} to start
+     * @param limit  number of slots to visit
+     * @return cursor of the next call, {@code 0} if all slots were visited
+     * @throws IllegalArgumentException if {@code limit} < 1
+     */
+    default long evictExpired(long cursor, int limit) throws IllegalArgumentException {
+        if (limit < 1)
+            throw new IllegalArgumentException("Limit must be higher than 0");
+        return 0;
+    }
+
+    /**
+     * Returns the value of a pair with the specified key.
+     *
+     * @param key key value
+     * @return value belonging to specified key
+     * <br>    if no matching key is found, returns null
+     */
+    V get(K key);
+
+    /**
+     * Adds a new element with specified key and value to the collection, or replaces the value of the key.
+     *
+     * @param key   key of the key-value pair
+     * @param value value of the key-value pair
+     * @throws IllegalArgumentException if key is {@code null}, or the value is not accepted by the table
+     */
+    void put(K key, V value) throws IllegalArgumentException;
+
+    /**
+     * Adds a new element with specified key and value, unless the collection already contains the key.
+     * The key is looked up once, so no other modification can come between the check and the addition in
+     * implementations that are thread-safe.
+     *
+     * @param key   key of the key-value pair
+     * @param value value of the key-value pair
+     * @return value that already belongs to specified key, {@code null} if the element was added
+     * @throws IllegalArgumentException if key is {@code null}, or the value is not accepted by the table
+     */
+    V putIfAbsent(K key, V value) throws IllegalArgumentException;
+
+    /**
+     * Replaces the value of specified key, only if its current value equals {@code expected}.
+     *
+     * @param key      key of the key-value pair
+     * @param expected value the key must currently have
+     * @param value    new value of the key-value pair
+     * @return true: if the value was replaced
+     * <br>    false: if the key is missing or has a different value
+     */
+    boolean replace(K key, V expected, V value);
+
+    /**
+     * Replaces the value of specified key with the value computed from it, if the collection contains the key.
+     * If {@code function} returns {@code null}, the element is removed. If it throws, the collection is not
+     * modified. Thread-safe implementations block other modifications of the key while {@code function} runs,
+     * so it must be short and must not modify the collection itself.
+     *
+     * @param key      key of the key-value pair
+     * @param function computes the new value from the key and its current value
+     * @return new value of the key, {@code null} if there is none
+     */
+    V computeIfPresent(K key, BiFunction<? super K, ? super V, ? extends V> function);
+
+    /**
+     * Removes element with matching key from the collection (if it exists).
+     *
+     * @param key key of key-value pair to remove
+     * @return value of the removed pair, {@code null} if there was none
+     */
+    V remove(K key);
+
+    /**
+     * Adds all specified elements to the collection, resizing the hash table once in advance instead of repeatedly.
+     *
+     * @param entries key-value pairs to add
+     * @throws IllegalArgumentException if a value is not accepted by {@link #put}
+     */
+    default void putAll(Collection<MyHashtable.TableEntry<K, V>> entries) throws IllegalArgumentException {
+        ensureCapacity(size() + entries.size());
+        for (MyHashtable.TableEntry<K, V> entry : entries)
+            put(entry.getKey(), entry.getValue());
+    }
+
+    /**
+     * Adds all specified elements whose keys are not in the collection yet, resizing the hash table once in advance
+     * instead of repeatedly. Unlike {@link #putAll}, an element never replaces the value of a key.
+     *
+     * @param entries key-value pairs to add
+     * @return entries that were not added because their key was present, in the order they were given
+     * @throws IllegalArgumentException if a value is not accepted by {@link #putIfAbsent}
+     */
+    default List<MyHashtable.TableEntry<K, V>> putAllIfAbsent(Collection<MyHashtable.TableEntry<K, V>> entries)
+            throws IllegalArgumentException {
+        ensureCapacity(size() + entries.size());
+        List<MyHashtable.TableEntry<K, V>> present = new ArrayList<>();
+        for (MyHashtable.TableEntry<K, V> entry : entries)
+            if (putIfAbsent(entry.getKey(), entry.getValue()) != null)
+                present.add(entry);
+        return present;
+    }
+
+    /**
+     * Removes elements with all specified keys from the collection (if they exist).
+     *
+     * @param keys keys of key-value pairs to remove
+     */
+    default void removeAll(Collection<K> keys) {
+        for (K key : keys)
+            remove(key);
+    }
+
+    /**
+     * Checks if collection contains a pair with specified key.
+     *
+     * @param key key of the key-value pair
+     * @return true: if key was found in the collection
+     * <br>    false: otherwise
+     */
+    boolean containsKey(K key);
+
+    /**
+     * Checks if collection contains a pair with specified value.
+     *
+     * @param value value of the key-value pair
+     * @return true: if value was found in the collection
+     * <br>    false: otherwise
+     */
+    boolean containsValue(V value);
+
+    /**
+     * Resizes the hash table in advance, so it can hold specified number of elements without further resizing.
+     *
+     * @param expectedSize expected number of elements
+     */
+    void ensureCapacity(int expectedSize);
+
+    /**
+     * Passes the elements of the next few slots to {@code consumer} and returns the cursor of the slots that follow.
+     * A scan starts with cursor {@code 0} and is complete once {@code 0} is returned again.
+     * <p>
+     * Slots are visited in the order of their reversed index bits, see {@link ScanCursors}, so a cursor stays valid
+     * when the table grows in the meantime: every element that is present during the whole scan is returned at least
+     * once. Elements added or removed during the scan may or may not be returned. Whole slots are visited, so a call
+     * can return a few more elements than {@code limit}.
+     *
+     * @param cursor   cursor returned by the previous call, {@code 0} to start a scan
+     * @param limit    number of elements after which the scan stops
+     * @param consumer receives the elements, must not modify the collection
+     * @return cursor of the next call, {@code 0} if all slots were visited
+     * @throws IllegalArgumentException if {@code limit} < 1
+     */
+    default long scan(long cursor, int limit, Consumer<MyHashtable.TableEntry<K, V>> consumer) throws IllegalArgumentException {
+        return scan(cursor, 0, limit, consumer);
+    }
+
+    /**
+     * Scans the slots from {@code cursor} up to, but not including, the slot of cursor {@code end}, as
+     * {@link #scan(long, int, Consumer)} does. Used by {@link ScanSpliterator} to scan a part of the table.
+     *
+     * @param cursor   cursor returned by the previous call, {@code 0} to start a scan
+     * @param end      cursor at which the scan stops, {@code 0} to scan until the last slot
+     * @param limit    number of elements after which the scan stops
+     * @param consumer receives the elements, must not modify the collection
+     * @return cursor of the next call, {@code 0} if all slots were visited
+     * @throws IllegalArgumentException if {@code limit} < 1
+     */
+    long scan(long cursor, long end, int limit, Consumer<MyHashtable.TableEntry<K, V>> consumer) throws IllegalArgumentException;
+
+    /**
+     * Removes all key-value pairs from the collection.
+     */
+    void clear();
+
+    /**
+     * Returns a new weakly consistent iterator of this collection: elements that are present during the whole
+     * iteration are returned once, elements added or removed in the meantime may or may not be returned.
+     */
+    @Override
+    Iterator<MyHashtable.TableEntry<K, V>> iterator();
+
+    /**
+     * Returns a new weakly consistent spliterator of this collection, with the same guarantees as {@link #iterator},
+     * that can be split into ranges of scan cursors for parallel streams.
+     */
+    @Override
+    Spliterator<MyHashtable.TableEntry<K, V>> spliterator();
+}
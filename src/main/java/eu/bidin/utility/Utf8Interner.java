@@ -0,0 +1,122 @@
+package eu.bidin.utility;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Encodes strings as UTF-8 and shares the arrays of equal strings, so values that repeat, like names, are stored once.
+ * <p>
+ * The interner is a fixed number of slots, each holding the last array interned into it. A string whose array is in
+ * its slot gets that array, any other string gets a new array, which replaces the one in the slot. The interner is
+ * lossy: equal strings may end up with different arrays when other strings took their slot in between, but it never
+ * grows and holds at most one array per slot.
+ * <p>
+ * Each slot also keeps the string of its array, so {@link #decode} returns it without decoding the array again.
+ * Shared arrays must not be modified.
+ *
+ * @author Vedran Biđin
+ * @version 1.0
+ */
+public class Utf8Interner {
+
+    /**
+     * An interned array and its string, {@code null} until the string is needed.
+     */
+    private static final class Entry {
+
+        private final byte[] bytes;
+        private final String value;
+
+        private Entry(byte[] bytes, String value) {
+            this.bytes = bytes;
+            this.value = value;
+        }
+    }
+
+    /**
+     * Last array interned into each slot, read and written without locks, the atomic array publishes the contents of
+     * the entries it holds.
+     */
+    private final AtomicReferenceArray<Entry> slots;
+
+    /**
+     * Creates an interner.
+     *
+     * @param capacity number of slots, rounded up to a power of two
+     * @throws IllegalArgumentException if capacity is less than 1 or larger than 2^30
+     */
+    public Utf8Interner(int capacity) throws IllegalArgumentException {
+        if (capacity < 1 || capacity > 1 << 30)
+            throw new IllegalArgumentException("Capacity must be between 1 and 2^30.");
+
+        this.slots = new AtomicReferenceArray<>(capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1);
+    }
+
+    /**
+     * Encodes a string as UTF-8, returning the array of an equal string if the interner holds one.
+     *
+     * @param value string to encode
+     * @return UTF-8 bytes of the string, {@code null} if the string is {@code null}
+     */
+    public byte[] intern(String value) {
+        if (value == null)
+            return null;
+        return intern(value.getBytes(StandardCharsets.UTF_8), value);
+    }
+
+    /**
+     * Returns an equal array if the interner holds one, otherwise stores and returns specified array.
+     *
+     * @param bytes array to intern, it must not be modified afterwards
+     * @return equal array held by the interner, or {@code bytes}
+     */
+    public byte[] intern(byte[] bytes) {
+        return intern(bytes, null);
+    }
+
+    private byte[] intern(byte[] bytes, String value) {
+        int index = index(bytes);
+        Entry existing = slots.get(index);
+        if (existing != null && Arrays.equals(existing.bytes, bytes))
+            return existing.bytes;
+        slots.lazySet(index, new Entry(bytes, value));
+        return bytes;
+    }
+
+    /**
+     * Decodes UTF-8 bytes into a string. An array returned by {@link #intern} gets the same string on every call
+     * while it is still in its slot, other arrays are decoded into a new string.
+     *
+     * @param bytes UTF-8 bytes to decode
+     * @return decoded string, {@code null} if the array is {@code null}
+     */
+    public String decode(byte[] bytes) {
+        if (bytes == null)
+            return null;
+        int index = index(bytes);
+        Entry entry = slots.get(index);
+        if (entry == null || entry.bytes != bytes)
+            return new String(bytes, StandardCharsets.UTF_8);
+        if (entry.value != null)
+            return entry.value;
+
+        String value = new String(bytes, StandardCharsets.UTF_8);
+        slots.compareAndSet(index, entry, new Entry(bytes, value));
+        return value;
+    }
+
+    private int index(byte[] bytes) {
+        int hash = Arrays.hashCode(bytes);
+        return (hash ^ hash >>> 16) & (slots.length() - 1);
+    }
+
+    /**
+     * Returns the number of slots of the interner.
+     *
+     * @return number of slots
+     */
+    public int capacity() {
+        return slots.length();
+    }
+}
@@ -0,0 +1,873 @@
+package eu.bidin.utility;
+
+import eu.bidin.utility.MyHashtable.TableEntry;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+
+import static eu.bidin.utility.ScanCursors.isBetween;
+import static eu.bidin.utility.ScanCursors.nextCursor;
+import static eu.bidin.utility.ScanCursors.precedes;
+
+/**
+ * Represents a thread-safe hash table specialized for {@link UUID} keys, that uses open addressing instead of chaining.
+ * <p>
+ * Keys are stored as their two {@code long} halves in parallel arrays, so an element costs no entry object and no
+ * boxed key, and a lookup scans adjacent array slots instead of following references. Collisions are resolved with
+ * linear probing, removals shift the following elements back so no tombstones are left behind.
+ * <p>
+ * The table is split into segments, each with its own {@link StampedLock}. Writers lock their segment, readers use
+ * optimistic reads and only lock if a writer interfered. Iteration is weakly consistent.
+ *
+ * @param <V> value type
+ * @author Vedran Biđin
+ * @version 1.0
+ */
+public class UuidHashtable<V> implements Table<UUID, V> {
+
+    /**
+     * Default number of segments.
+     */
+    private static final int DEFAULT_CONCURRENCY_LEVEL = 16;
+
+    /**
+     * Default ratio of elements to slots that triggers a resize of a segment.
+     */
+    private static final double DEFAULT_LOAD_FACTOR = 0.75;
+
+    /**
+     * Highest ratio of elements to slots, linear probing needs free slots to terminate quickly.
+     */
+    private static final double MAXIMUM_LOAD_FACTOR = 0.9;
+
+    /**
+     * Highest number of slots of a segment.
+     */
+    private static final int MAXIMUM_CAPACITY = 1 << 30;
+
+    /**
+     * Stored in place of {@code null} values, a {@code null} in {@link Segment#values} marks an empty slot.
+     */
+    private static final Object NULL = new Object();
+
+    /**
+     * Highest number of slots a scan visits at a time. A writer that interferes with an optimistic scan waits for at
+     * most this many slots while the scan repeats them under the read lock.
+     */
+    private static final int SCAN_BATCH = 256;
+
+    /**
+     * Returned by {@link #copySlots} when the arrays of a segment were read while they were being replaced.
+     */
+    private static final int TORN = -1;
+
+    /**
+     * Part of the hash table, an independent open addressing table.
+     */
+    private static final class Segment {
+
+        private final StampedLock lock = new StampedLock();
+        private long[] mostSignificantBits;
+        private long[] leastSignificantBits;
+        private Object[] values;
+        private int size;
+        private int threshold;
+
+        private Segment(int capacity, double loadFactor) {
+            allocate(capacity, loadFactor);
+        }
+
+        private void allocate(int capacity, double loadFactor) {
+            this.mostSignificantBits = new long[capacity];
+            this.leastSignificantBits = new long[capacity];
+            this.values = new Object[capacity];
+            this.threshold = (int) Math.min(capacity * loadFactor, capacity - 1);
+        }
+    }
+
+    /**
+     * Segments of the hash table, selected by the highest bits of a key's hash.
+     */
+    private final Segment[] segments;
+
+    /**
+     * Number of bits the hash is shifted by to get the index of its segment.
+     */
+    private final int segmentShift;
+
+    /**
+     * Ratio of elements to slots that triggers a resize of a segment.
+     */
+    private final double loadFactor;
+
+    /**
+     * Number of resizes of all segments.
+     */
+    private final LongAdder resizeCount = new LongAdder();
+
+    /**
+     * Time spent resizing segments, in nanoseconds.
+     */
+    private final LongAdder resizeTime = new LongAdder();
+
+    /**
+     * Creates a hash table with specified number of slots, load factor and segments.
+     *
+     * @param capacity         number of slots, divided between segments and rounded up to powers of two
+     * @param loadFactor       ratio of elements to slots that triggers a resize, at most {@code 0.9}
+     * @param concurrencyLevel estimated number of concurrently writing threads
+     * @throws IllegalArgumentException if {@code capacity} < 1, {@code loadFactor} <= 0 or {@code concurrencyLevel} < 1
+     */
+    public UuidHashtable(int capacity, double loadFactor, int concurrencyLevel) throws IllegalArgumentException {
+        if (capacity < 1)
+            throw new IllegalArgumentException("Capacity must be higher than 0");
+        if (!(loadFactor > 0))
+            throw new IllegalArgumentException("Load factor must be higher than 0");
+        if (concurrencyLevel < 1)
+            throw new IllegalArgumentException("Concurrency level must be higher than 0");
+
+        int count = powerOfTwo(concurrencyLevel);
+        int segmentCapacity = Math.max(powerOfTwo(capacity / count), 2);
+
+        this.loadFactor = Math.min(loadFactor, MAXIMUM_LOAD_FACTOR);
+        this.segmentShift = 64 - Integer.numberOfTrailingZeros(count);
+        this.segments = new Segment[count];
+        for (int i = 0; i < count; i++)
+            this.segments[i] = new Segment(segmentCapacity, this.loadFactor);
+    }
+
+    /**
+     * Creates a hash table with specified number of slots.
+     *
+     * @param capacity number of slots
+     * @throws IllegalArgumentException if {@code capacity} < 1
+     */
+    public UuidHashtable(int capacity) throws IllegalArgumentException {
+        this(capacity, DEFAULT_LOAD_FACTOR, DEFAULT_CONCURRENCY_LEVEL);
+    }
+
+    /**
+     * Default constructor, creates a hash table with capacity {@code 16}.
+     */
+    public UuidHashtable() {
+        this(16);
+    }
+
+    /**
+     * Returns the smallest power of two that is not lower than {@code value}.
+     */
+    private static int powerOfTwo(int value) {
+        int n = 1;
+        while (n < value && n < MAXIMUM_CAPACITY)
+            n *= 2;
+        return n;
+    }
+
+    /**
+     * Mixes both halves of a key into a well distributed hash (finalizer of MurmurHash3).
+     */
+    private static long hash(long mostSignificantBits, long leastSignificantBits) {
+        long h = mostSignificantBits ^ Long.rotateLeft(leastSignificantBits, 32);
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    /**
+     * Returns the segment of specified hash.
+     */
+    private Segment segmentFor(long hash) {
+        return segments.length == 1 ? segments[0] : segments[(int) (hash >>> segmentShift)];
+    }
+
+    /**
+     * Returns the slot that holds specified key, or the empty slot that ends its probe sequence.
+     * Never fails on inconsistent arrays read without locking, the scan is bounded by the array length.
+     */
+    private static int probe(long[] msbs, long[] lsbs, Object[] values, long hash, long msb, long lsb) {
+        int mask = values.length - 1;
+        int index = (int) hash & mask;
+        for (int i = 0; i <= mask; i++) {
+            if (values[index] == null || (msbs[index] == msb && lsbs[index] == lsb))
+                return index;
+            index = (index + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * Returns current number of elements in the collection.
+     * The result is only an estimate while the collection is being modified.
+     *
+     * @return number of elements in the collection
+     */
+    @Override
+    public int size() {
+        long sum = 0;
+        for (Segment segment : segments) {
+            long stamp = segment.lock.tryOptimisticRead();
+            int size = segment.size;
+            if (!segment.lock.validate(stamp)) {
+                stamp = segment.lock.readLock();
+                try {
+                    size = segment.size;
+                } finally {
+                    segment.lock.unlockRead(stamp);
+                }
+            }
+            sum += size;
+        }
+        return (int) Math.min(sum, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Returns number of slots of all segments.
+     *
+     * @return number of hash table slots
+     */
+    @Override
+    public int getCapacity() {
+        long sum = 0;
+        for (Segment segment : segments)
+            // the array is replaced, never resized, so any array of the segment has a valid length
+            sum += segment.values.length;
+        return (int) Math.min(sum, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Returns ratio of elements to slots that triggers a resize.
+     *
+     * @return load factor
+     */
+    @Override
+    public double getLoadFactor() {
+        return loadFactor;
+    }
+
+    /**
+     * Checks if collection is empty.
+     *
+     * @return true: if {@link #size} == 0,
+     * <br>    false: otherwise
+     */
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * Returns the length of the longest run of occupied slots, the longest probe sequence of any lookup.
+     * Visits every slot, so it takes time proportional to the capacity. The slots are read without locks, so the
+     * result is only an estimate while the collection is being modified.
+     *
+     * @return length of the longest probe sequence
+     */
+    @Override
+    public int getLongestChain() {
+        int longest = 0;
+        for (Segment segment : segments) {
+            Object[] values = segment.values;
+            // a run can wrap around the end of the array, so it is counted twice as long
+            int run = 0;
+            for (int i = 0; i < 2 * values.length && run < values.length; i++) {
+                run = values[i & (values.length - 1)] == null ? 0 : run + 1;
+                longest = Math.max(longest, run);
+            }
+        }
+        return longest;
+    }
+
+    /**
+     * Returns number of resizes of all segments.
+     *
+     * @return number of resizes
+     */
+    @Override
+    public long getResizeCount() {
+        return resizeCount.sum();
+    }
+
+    /**
+     * Returns time spent resizing segments, while their writers were blocked.
+     *
+     * @return resize time in nanoseconds
+     */
+    @Override
+    public long getResizeTime() {
+        return resizeTime.sum();
+    }
+
+    /**
+     * Returns the value of a pair with the specified key.
+     * Reads optimistically and only locks the segment if it was modified in the meantime.
+     *
+     * @param key key value
+     * @return value belonging to specified key
+     * <br>    if no matching key is found, returns null
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public V get(UUID key) {
+        if (key == null)
+            return null;
+
+        long msb = key.getMostSignificantBits();
+        long lsb = key.getLeastSignificantBits();
+        long hash = hash(msb, lsb);
+        Segment segment = segmentFor(hash);
+
+        long stamp = segment.lock.tryOptimisticRead();
+        Object value = lookup(segment, hash, msb, lsb);
+        if (!segment.lock.validate(stamp)) {
+            stamp = segment.lock.readLock();
+            try {
+                value = lookup(segment, hash, msb, lsb);
+            } finally {
+                segment.lock.unlockRead(stamp);
+            }
+        }
+        return value == NULL ? null : (V) value;
+    }
+
+    /**
+     * Returns the stored value of specified key in a segment, {@code null} if there is none.
+     */
+    private static Object lookup(Segment segment, long hash, long msb, long lsb) {
+        long[] msbs = segment.mostSignificantBits;
+        long[] lsbs = segment.leastSignificantBits;
+        Object[] values = segment.values;
+        if (msbs.length != values.length || lsbs.length != values.length)
+            return null;
+
+        int index = probe(msbs, lsbs, values, hash, msb, lsb);
+        return index < 0 ? null : values[index];
+    }
+
+    /**
+     * Adds a new element with specified key and value to the collection.
+     *
+     * @param key   key of the key-value pair
+     * @param value value of the key-value pair
+     * @throws IllegalArgumentException if key is {@code null}
+     */
+    @Override
+    public void put(UUID key, V value) throws IllegalArgumentException {
+        put(key, value, false);
+    }
+
+    /**
+     * Adds a new element with specified key and value, unless the collection already contains the key.
+     * Both happen while the segment of the key is locked.
+     *
+     * @param key   key of the key-value pair
+     * @param value value of the key-value pair
+     * @return value that already belongs to specified key, {@code null} if the element was added
+     * @throws IllegalArgumentException if key is {@code null}
+     */
+    @Override
+    public V putIfAbsent(UUID key, V value) throws IllegalArgumentException {
+        return put(key, value, true);
+    }
+
+    @SuppressWarnings("unchecked")
+    private V put(UUID key, V value, boolean onlyIfAbsent) throws IllegalArgumentException {
+        if (key == null)
+            throw new IllegalArgumentException("Key can not be null.");
+
+        long msb = key.getMostSignificantBits();
+        long lsb = key.getLeastSignificantBits();
+        long hash = hash(msb, lsb);
+        Segment segment = segmentFor(hash);
+
+        long stamp = segment.lock.writeLock();
+        try {
+            int index = probe(segment.mostSignificantBits, segment.leastSignificantBits, segment.values, hash, msb, lsb);
+            Object previous = segment.values[index];
+            if (previous != null && onlyIfAbsent)
+                return previous == NULL ? null : (V) previous;
+
+            segment.mostSignificantBits[index] = msb;
+            segment.leastSignificantBits[index] = lsb;
+            segment.values[index] = value == null ? NULL : value;
+
+            if (previous == null) {
+                segment.size += 1;
+                if (segment.size > segment.threshold)
+                    resize(segment, segment.values.length * 2);
+            }
+            return previous == null || previous == NULL ? null : (V) previous;
+        } finally {
+            segment.lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Replaces the value of specified key, only if its current value equals {@code expected}.
+     * Both happen while the segment of the key is locked.
+     *
+     * @param key      key of the key-value pair
+     * @param expected value the key must currently have
+     * @param value    new value of the key-value pair
+     * @return true: if the value was replaced
+     * <br>    false: if the key is missing or has a different value
+     */
+    @Override
+    public boolean replace(UUID key, V expected, V value) {
+        if (key == null)
+            return false;
+
+        long msb = key.getMostSignificantBits();
+        long lsb = key.getLeastSignificantBits();
+        long hash = hash(msb, lsb);
+        Segment segment = segmentFor(hash);
+
+        long stamp = segment.lock.writeLock();
+        try {
+            int index = probe(segment.mostSignificantBits, segment.leastSignificantBits, segment.values, hash, msb, lsb);
+            Object current = segment.values[index];
+            if (current == null || !Objects.equals(current == NULL ? null : current, expected))
+                return false;
+
+            segment.values[index] = value == null ? NULL : value;
+            return true;
+        } finally {
+            segment.lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Replaces the value of specified key with the value computed from it, if the collection contains the key.
+     * The segment of the key stays locked while {@code function} runs.
+     *
+     * @param key      key of the key-value pair
+     * @param function computes the new value from the key and its current value, {@code null} removes the element
+     * @return new value of the key, {@code null} if there is none
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public V computeIfPresent(UUID key, BiFunction<? super UUID, ? super V, ? extends V> function) {
+        if (key == null)
+            return null;
+
+        long msb = key.getMostSignificantBits();
+        long lsb = key.getLeastSignificantBits();
+        long hash = hash(msb, lsb);
+        Segment segment = segmentFor(hash);
+
+        long stamp = segment.lock.writeLock();
+        try {
+            int index = probe(segment.mostSignificantBits, segment.leastSignificantBits, segment.values, hash, msb, lsb);
+            Object current = segment.values[index];
+            if (current == null)
+                return null;
+
+            V value = function.apply(key, current == NULL ? null : (V) current);
+            if (value == null)
+                delete(segment, index);
+            else
+                segment.values[index] = value;
+            return value;
+        } finally {
+            segment.lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Removes element with matching key from the collection (if it exists).
+     *
+     * @param key key of key-value pair to remove
+     * @return value of the removed pair, {@code null} if there was none
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public V remove(UUID key) {
+        if (key == null)
+            return null;
+
+        long msb = key.getMostSignificantBits();
+        long lsb = key.getLeastSignificantBits();
+        long hash = hash(msb, lsb);
+        Segment segment = segmentFor(hash);
+
+        long stamp = segment.lock.writeLock();
+        try {
+            int index = probe(segment.mostSignificantBits, segment.leastSignificantBits, segment.values, hash, msb, lsb);
+            Object removed = segment.values[index];
+            if (removed == null)
+                return null;
+
+            delete(segment, index);
+            return removed == NULL ? null : (V) removed;
+        } finally {
+            segment.lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Empties an occupied slot of a segment. The caller must hold the write lock of the segment.
+     */
+    private static void delete(Segment segment, int index) {
+        long[] msbs = segment.mostSignificantBits;
+        long[] lsbs = segment.leastSignificantBits;
+        Object[] values = segment.values;
+        int mask = values.length - 1;
+
+        // shift back the following elements of the probe sequence, which may now reach their slot sooner
+        int next = index;
+        while (true) {
+            next = (next + 1) & mask;
+            if (values[next] == null)
+                break;
+
+            int home = (int) hash(msbs[next], lsbs[next]) & mask;
+            boolean movable = index <= next ? home <= index || home > next : home <= index && home > next;
+            if (movable) {
+                msbs[index] = msbs[next];
+                lsbs[index] = lsbs[next];
+                values[index] = values[next];
+                index = next;
+            }
+        }
+        values[index] = null;
+        segment.size -= 1;
+    }
+
+    /**
+     * Checks if collection contains a pair with specified key.
+     *
+     * @param key key of the key-value pair
+     * @return true: if key was found in the collection
+     * <br>    false: otherwise
+     */
+    @Override
+    public boolean containsKey(UUID key) {
+        if (key == null)
+            return false;
+
+        long msb = key.getMostSignificantBits();
+        long lsb = key.getLeastSignificantBits();
+        long hash = hash(msb, lsb);
+        Segment segment = segmentFor(hash);
+
+        long stamp = segment.lock.tryOptimisticRead();
+        boolean found = lookup(segment, hash, msb, lsb) != null;
+        if (!segment.lock.validate(stamp)) {
+            stamp = segment.lock.readLock();
+            try {
+                found = lookup(segment, hash, msb, lsb) != null;
+            } finally {
+                segment.lock.unlockRead(stamp);
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Checks if collection contains a pair with specified value.
+     *
+     * @param value value of the key-value pair
+     * @return true: if value was found in the collection
+     * <br>    false: otherwise
+     */
+    @Override
+    public boolean containsValue(V value) {
+        for (TableEntry<UUID, V> entry : this) {
+            V current = entry.getValue();
+            if (current == null ? value == null : current.equals(value))
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns a {@link String} representation of this hash table.
+     *
+     * @return {@link String} representation of this hash table
+     */
+    @Override
+    public String toString() {
+        StringBuilder output = new StringBuilder();
+        String prefix = "";
+
+        output.append("[");
+        for (TableEntry<UUID, V> entry : this) {
+            output.append(prefix);
+            prefix = ", ";
+            output.append(entry.toString());
+        }
+        output.append("]");
+        return output.toString();
+    }
+
+    /**
+     * Resizes the segments in advance, so the collection can hold specified number of elements without further resizing.
+     *
+     * @param expectedSize expected number of elements
+     */
+    @Override
+    public void ensureCapacity(int expectedSize) {
+        int perSegment = expectedSize / segments.length + 1;
+        for (Segment segment : segments) {
+            long stamp = segment.lock.writeLock();
+            try {
+                int capacity = segment.values.length;
+                while (capacity * loadFactor < perSegment && capacity < MAXIMUM_CAPACITY)
+                    capacity *= 2;
+                if (capacity != segment.values.length)
+                    resize(segment, capacity);
+            } finally {
+                segment.lock.unlockWrite(stamp);
+            }
+        }
+    }
+
+    /**
+     * Rehashes a segment into arrays with specified number of slots.
+     * The caller must hold the write lock of the segment.
+     */
+    private void resize(Segment segment, int capacity) {
+        if (capacity > MAXIMUM_CAPACITY)
+            return;
+        long start = System.nanoTime();
+
+        long[] oldMsbs = segment.mostSignificantBits;
+        long[] oldLsbs = segment.leastSignificantBits;
+        Object[] oldValues = segment.values;
+        segment.allocate(capacity, loadFactor);
+
+        long[] msbs = segment.mostSignificantBits;
+        long[] lsbs = segment.leastSignificantBits;
+        Object[] values = segment.values;
+        for (int i = 0; i < oldValues.length; i++) {
+            if (oldValues[i] == null)
+                continue;
+            int index = probe(msbs, lsbs, values, hash(oldMsbs[i], oldLsbs[i]), oldMsbs[i], oldLsbs[i]);
+            msbs[index] = oldMsbs[i];
+            lsbs[index] = oldLsbs[i];
+            values[index] = oldValues[i];
+        }
+        resizeCount.increment();
+        resizeTime.add(System.nanoTime() - start);
+    }
+
+    /**
+     * Passes the elements of the slots from {@code cursor} up to {@code end} to {@code consumer}, as
+     * {@link Table#scan(long, long, int, Consumer)} describes.
+     * Segments are scanned one after another, the upper half of a cursor is the index of the segment.
+     * <p>
+     * A slot stands for the elements whose probe sequence starts in it, which are found between the slot and the next
+     * empty one. The elements are copied up to {@link #SCAN_BATCH} slots at a time with an optimistic read, and passed
+     * to {@code consumer} afterwards. Only a batch a writer interfered with is copied again under the read lock, so a
+     * scan never keeps writers out for longer than one batch.
+     *
+     * @param cursor   cursor returned by the previous call, {@code 0} to start a scan
+     * @param end      cursor at which the scan stops, {@code 0} to scan until the last slot
+     * @param limit    number of elements after which the scan stops
+     * @param consumer receives the elements
+     * @return cursor of the next call, {@code 0} if all slots were visited
+     * @throws IllegalArgumentException if {@code limit} < 1
+     */
+    @Override
+    public long scan(long cursor, long end, int limit, Consumer<TableEntry<UUID, V>> consumer) throws IllegalArgumentException {
+        if (limit < 1)
+            throw new IllegalArgumentException("Limit must be higher than 0");
+
+        int segmentIndex = (int) (cursor >>> 32);
+        int slot = (int) cursor;
+        int start = slot;
+        int endSegment = end == 0 ? segments.length : (int) (end >>> 32);
+        List<TableEntry<UUID, V>> entries = new ArrayList<>();
+        while (segmentIndex < segments.length && entries.size() < limit) {
+            // only the slots before the end cursor of its segment, none of a segment the scan ends at
+            int bound = segmentIndex == endSegment ? (int) end : 0;
+            if (segmentIndex > endSegment || segmentIndex == endSegment && bound == 0)
+                break;
+
+            Segment segment = segments[segmentIndex];
+            int copied = entries.size();
+            long stamp = segment.lock.tryOptimisticRead();
+            int next = stamp == 0 ? TORN : copySlots(segment, slot, start, bound, limit, entries);
+            if (next == TORN || !segment.lock.validate(stamp)) {
+                entries.subList(copied, entries.size()).clear();
+                stamp = segment.lock.readLock();
+                try {
+                    next = copySlots(segment, slot, start, bound, limit, entries);
+                } finally {
+                    segment.lock.unlockRead(stamp);
+                }
+            }
+            slot = next;
+
+            if (slot != 0 && !precedes(slot, bound))
+                break;
+            if (slot == 0) {
+                segmentIndex += 1;
+                start = 0;
+            }
+        }
+
+        entries.forEach(consumer);
+        return segmentIndex >= segments.length ? 0 : (long) segmentIndex << 32 | Integer.toUnsignedLong(slot);
+    }
+
+    /**
+     * Copies the elements of up to {@link #SCAN_BATCH} slots of a segment, from {@code slot} until the scan is
+     * complete, reaches {@code bound} or has {@code limit} elements. Works with an optimistic read as well, the caller
+     * validates it and discards the copies if a writer interfered.
+     *
+     * @return cursor of the next slot, {@code 0} after the last slot, {@link #TORN} if the arrays do not match
+     */
+    @SuppressWarnings("unchecked")
+    private int copySlots(Segment segment, int slot, int start, int bound, int limit, List<TableEntry<UUID, V>> entries) {
+        long[] msbs = segment.mostSignificantBits;
+        long[] lsbs = segment.leastSignificantBits;
+        Object[] values = segment.values;
+        if (msbs.length != values.length || lsbs.length != values.length)
+            return TORN;
+
+        int mask = values.length - 1;
+        int visited = 0;
+        do {
+            int home = slot & mask;
+            for (int i = home; values[i] != null; i = (i + 1) & mask) {
+                int hash = (int) hash(msbs[i], lsbs[i]);
+                if ((hash & mask) == home && isBetween(hash, start, bound)) {
+                    Object value = values[i];
+                    UUID key = new UUID(msbs[i], lsbs[i]);
+                    entries.add(new TableEntry<>(key, value == NULL ? null : (V) value, null));
+                }
+                if (((i + 1) & mask) == home)
+                    break;
+            }
+            slot = nextCursor(slot, mask);
+            visited += 1;
+        } while (slot != 0 && entries.size() < limit && visited < SCAN_BATCH && precedes(slot, bound));
+        return slot;
+    }
+
+    /**
+     * Removes all key-value pairs from the collection.
+     */
+    @Override
+    public void clear() {
+        for (Segment segment : segments) {
+            long stamp = segment.lock.writeLock();
+            try {
+                segment.allocate(segment.values.length, loadFactor);
+                segment.size = 0;
+            } finally {
+                segment.lock.unlockWrite(stamp);
+            }
+        }
+    }
+
+    /**
+     * Returns a new weakly consistent iterator of this collection.
+     * It returns copies of the key-value pairs, changing their value does not change the collection.
+     */
+    @Override
+    public Iterator<TableEntry<UUID, V>> iterator() {
+        return new IteratorImpl();
+    }
+
+    /**
+     * Returns a new weakly consistent spliterator of this collection, that splits the segments and then their slots.
+     */
+    @Override
+    public Spliterator<TableEntry<UUID, V>> spliterator() {
+        return new ScanSpliterator<>(this, (long) segments.length << 32, true);
+    }
+
+    /**
+     * A weakly consistent iterator through a {@link UuidHashtable} collection.
+     * Elements are copied a batch at a time with {@link #scan}, so it never keeps writers out for long.
+     *
+     * @author Vedran Biđin
+     * @version 1.0
+     */
+    private class IteratorImpl implements Iterator<TableEntry<UUID, V>> {
+
+        /**
+         * Cursor of the next batch, {@code 0} once all slots were scanned.
+         */
+        private long cursor = 0;
+        /**
+         * Elements of the current batch.
+         */
+        private final List<TableEntry<UUID, V>> entries = new ArrayList<>();
+        /**
+         * Index of the next element of {@link #entries}.
+         */
+        private int index = 0;
+        /**
+         * True while the scan has slots left.
+         */
+        private boolean scanning = true;
+        /**
+         * Key of the last returned element, {@code null} if {@link #remove} can not be called.
+         */
+        private UUID last = null;
+
+        /**
+         * Copies the next non-empty batch of elements, if the current one is exhausted.
+         */
+        private void advance() {
+            while (index == entries.size() && scanning) {
+                entries.clear();
+                index = 0;
+                cursor = scan(cursor, SCAN_BATCH, entries::add);
+                scanning = cursor != 0;
+            }
+        }
+
+        /**
+         * Checks if iterator has any elements left to iterate through.
+         */
+        @Override
+        public boolean hasNext() {
+            advance();
+            return index < entries.size();
+        }
+
+        /**
+         * Gets the next element of the iteration.
+         *
+         * @throws NoSuchElementException if no more elements remain to be iterated through
+         */
+        @Override
+        public TableEntry<UUID, V> next() {
+            if (!hasNext())
+                throw new NoSuchElementException();
+
+            TableEntry<UUID, V> entry = entries.get(index++);
+            last = entry.getKey();
+            return entry;
+        }
+
+        /**
+         * Removes the current element from the collection.
+         *
+         * @throws IllegalStateException if method was called twice on the same element
+         */
+        @Override
+        public void remove() {
+            if (last == null)
+                throw new IllegalStateException();
+
+            UuidHashtable.this.remove(last);
+            last = null;
+        }
+    }
+}
@@ -1,14 +1,74 @@
 package eu.bidin.utility;
 
+import java.util.Arrays;
 import java.util.UUID;
 
+/**
+ * Parser of UUIDs from request paths and bodies, that rejects invalid values without throwing or allocating.
+ *
+ * @author Vedran Biđin
+ * @version 1.0
+ */
 public class UuidParser {
 
+    /**
+     * Length of the canonical form of a UUID.
+     */
+    private static final int LENGTH = 36;
+
+    /**
+     * Values of the hexadecimal digits indexed by their character, {@code -1} for all other characters.
+     */
+    private static final byte[] DIGITS = new byte[128];
+
+    static {
+        Arrays.fill(DIGITS, (byte) -1);
+        for (int i = 0; i < 10; i++)
+            DIGITS['0' + i] = (byte) i;
+        for (int i = 0; i < 6; i++) {
+            DIGITS['a' + i] = (byte) (10 + i);
+            DIGITS['A' + i] = (byte) (10 + i);
+        }
+    }
+
+    /**
+     * Parses a UUID in its canonical form, 32 hexadecimal digits in groups of 8-4-4-4-12 separated by hyphens, as
+     * returned by {@link UUID#toString}. Digits may be in either case.
+     *
+     * @param value string to parse
+     * @return parsed UUID, or {@code null} if the value is not a UUID in canonical form
+     */
     public static UUID Parse(String value) {
-        try {
-            return UUID.fromString(value);
-        } catch (IllegalArgumentException ex) {
+        if (value == null || value.length() != LENGTH)
+            return null;
+        if (value.charAt(8) != '-' || value.charAt(13) != '-' || value.charAt(18) != '-' || value.charAt(23) != '-')
             return null;
+
+        long group1 = parseHex(value, 0, 8);
+        long group2 = parseHex(value, 9, 13);
+        long group3 = parseHex(value, 14, 18);
+        long group4 = parseHex(value, 19, 23);
+        long group5 = parseHex(value, 24, 36);
+        if ((group1 | group2 | group3 | group4 | group5) < 0)
+            return null;
+
+        return new UUID(group1 << 32 | group2 << 16 | group3, group4 << 48 | group5);
+    }
+
+    /**
+     * Parses at most 12 hexadecimal digits, so a valid result is never negative.
+     *
+     * @return parsed value, or {@code -1} if a character is not a hexadecimal digit
+     */
+    private static long parseHex(String value, int start, int end) {
+        long result = 0;
+        for (int i = start; i < end; i++) {
+            char c = value.charAt(i);
+            int digit = c < DIGITS.length ? DIGITS[c] : -1;
+            if (digit < 0)
+                return -1;
+            result = result << 4 | digit;
         }
+        return result;
     }
 }
@@ -0,0 +1,44 @@
+package eu.bidin.springexample.codecs;
+
+import eu.bidin.springexample.models.StudentModel;
+import org.junit.Test;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.mock.http.MockHttpInputMessage;
+import org.springframework.mock.http.MockHttpOutputMessage;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class StudentProtobufHttpMessageConverterTest {
+
+    private final StudentProtobufHttpMessageConverter converter = new StudentProtobufHttpMessageConverter();
+
+    @Test
+    public void writesWhatItReads() throws Exception {
+        StudentModel model = new StudentModel();
+        model.setName("Ana Anić");
+        model.setGrade(4);
+
+        MockHttpOutputMessage output = new MockHttpOutputMessage();
+        converter.write(model, StudentProtobuf.MEDIA_TYPE, output);
+        assertThat(output.getHeaders().getContentType()).isEqualTo(StudentProtobuf.MEDIA_TYPE);
+
+        StudentModel read = converter.read(StudentModel.class, new MockHttpInputMessage(output.getBodyAsBytes()));
+        assertThat(read.getName()).isEqualTo("Ana Anić");
+        assertThat(read.getGrade()).isEqualTo(4);
+    }
+
+    @Test
+    public void onlyReadsForSpringMvc() {
+        assertThat(converter.canRead(StudentModel.class, StudentProtobuf.MEDIA_TYPE)).isTrue();
+        assertThat(converter.canWrite(StudentModel.class, StudentProtobuf.MEDIA_TYPE)).isFalse();
+        assertThat(converter.canWrite(StudentModel.class, MediaType.ALL)).isFalse();
+    }
+
+    @Test
+    public void rejectsMalformedBody() {
+        assertThatThrownBy(() -> converter.read(StudentModel.class, new MockHttpInputMessage(new byte[]{(byte) 0xFF})))
+                .isInstanceOf(HttpMessageNotReadableException.class);
+    }
+}
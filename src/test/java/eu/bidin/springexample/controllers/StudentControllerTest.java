@@ -0,0 +1,402 @@
+package eu.bidin.springexample.controllers;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import eu.bidin.springexample.codecs.StudentProtobuf;
+import eu.bidin.springexample.entities.Student;
+import eu.bidin.springexample.sharding.ShardDirectory;
+import eu.bidin.utility.Threads;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Tests of the student endpoints. The application context, and with it the student table, is shared by all tests,
+ * so every test only looks at the students it created.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@AutoConfigureMockMvc
+public class StudentControllerTest {
+
+    @Autowired
+    private MockMvc mvc;
+
+    @Autowired
+    private ObjectMapper mapper;
+
+    private JsonNode json(String content) throws Exception {
+        return mapper.readTree(content);
+    }
+
+    /**
+     * Creates students through the batch endpoint and returns their UUIDs.
+     */
+    private List<String> createStudents(int count) throws Exception {
+        StringBuilder body = new StringBuilder("[");
+        for (int i = 0; i < count; i++)
+            body.append(i == 0 ? "" : ",").append("{\"name\":\"Student ").append(i).append("\",\"grade\":").append(i % 5 + 1).append('}');
+        body.append(']');
+
+        String content = mvc.perform(post("/students/batch").contentType(MediaType.APPLICATION_JSON).content(body.toString()))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        List<String> uuids = new ArrayList<>();
+        for (JsonNode result : json(content))
+            uuids.add(result.get("uuid").asText());
+        return uuids;
+    }
+
+    private JsonNode page(String cursor, int limit) throws Exception {
+        String content = mvc.perform(cursor == null
+                ? get("/students").param("limit", Integer.toString(limit))
+                : get("/students").param("limit", Integer.toString(limit)).param("cursor", cursor))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        return json(content);
+    }
+
+    @Test
+    public void pagesReturnEveryStudentOnceWhileTableGrows() throws Exception {
+        List<String> created = createStudents(300);
+
+        Set<String> seen = new HashSet<>();
+        String cursor = null;
+        int pages = 0;
+        do {
+            JsonNode page = page(cursor, 37);
+            for (JsonNode student : page.get("students"))
+                assertThat(seen.add(student.get("uuid").asText())).isTrue();
+            cursor = page.get("next").isNull() ? null : page.get("next").asText();
+            // students added between pages grow the table, the cursor must stay valid
+            if (pages++ % 3 == 0)
+                createStudents(200);
+        } while (cursor != null);
+
+        assertThat(seen).containsAll(created);
+    }
+
+    @Test
+    public void rejectsInvalidCursorAndLimit() throws Exception {
+        mvc.perform(get("/students").param("limit", "10").param("cursor", "not-a-cursor")).andExpect(status().isBadRequest());
+        mvc.perform(get("/students").param("limit", "0")).andExpect(status().isBadRequest());
+        mvc.perform(get("/students").param("limit", "1001")).andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void streamsAllStudents() throws Exception {
+        List<String> created = createStudents(500);
+
+        // the body is written asynchronously by a streaming response
+        MvcResult result = mvc.perform(get("/students").accept(MediaType.APPLICATION_JSON))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        String content = mvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        Set<String> streamed = new HashSet<>();
+        for (JsonNode student : json(content))
+            streamed.add(student.get("uuid").asText());
+        assertThat(streamed).containsAll(created);
+    }
+
+    private JsonNode batch(MockHttpServletRequestBuilder request, String body) throws Exception {
+        String content = mvc.perform(request.contentType(MediaType.APPLICATION_JSON).content(body))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        return json(content);
+    }
+
+    private static List<Integer> statuses(JsonNode results) {
+        List<Integer> statuses = new ArrayList<>();
+        for (int i = 0; i < results.size(); i++) {
+            assertThat(results.get(i).get("index").asInt()).isEqualTo(i);
+            statuses.add(results.get(i).get("status").asInt());
+        }
+        return statuses;
+    }
+
+    @Test
+    public void batchCreateReportsInvalidItems() throws Exception {
+        JsonNode results = batch(post("/students/batch"),
+                "[{\"name\":\"Ana\",\"grade\":5},{\"name\":\"\",\"grade\":5},{\"name\":\"Ivo\",\"grade\":9},{\"name\":\"Eva\",\"grade\":1}]");
+
+        assertThat(statuses(results)).containsExactly(201, 400, 400, 201);
+        assertThat(results.get(1).get("errors")).isNotEmpty();
+        assertThat(results.get(0).get("location").asText()).endsWith("/students/" + results.get(0).get("uuid").asText());
+        mvc.perform(get("/students/" + results.get(3).get("uuid").asText())).andExpect(status().isOk());
+    }
+
+    @Test
+    public void batchCreateAcceptsNewlineDelimitedJson() throws Exception {
+        String content = mvc.perform(post("/students/batch")
+                .contentType(MediaType.parseMediaType("application/x-ndjson"))
+                .content("{\"name\":\"Ana\",\"grade\":5}\n{\"name\":\"Ivo\",\"grade\":4}\n"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        assertThat(statuses(json(content))).containsExactly(201, 201);
+
+        mvc.perform(post("/students/batch").contentType(MediaType.APPLICATION_JSON).content("[{\"name\":"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void batchesReportMissingItems() throws Exception {
+        JsonNode created = batch(post("/students/batch"), "[null,{\"name\":\"Ana\",\"grade\":5}]");
+        assertThat(statuses(created)).containsExactly(400, 201);
+        assertThat(created.get(0).get("errors")).isNotEmpty();
+
+        String content = mvc.perform(post("/students/batch")
+                .contentType(MediaType.parseMediaType("application/x-ndjson"))
+                .content("{\"name\":\"Ana\",\"grade\":5}\nnull\n"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        assertThat(statuses(json(content))).containsExactly(201, 400);
+
+        assertThat(statuses(batch(put("/students/batch"), "[null]"))).containsExactly(400);
+        assertThat(statuses(batch(delete("/students/batch"), "[null]"))).containsExactly(400);
+    }
+
+    @Test
+    public void batchUpdateReportsEachItem() throws Exception {
+        List<String> uuids = createStudents(2);
+        String unknown = UUID.randomUUID().toString();
+        JsonNode results = batch(put("/students/batch"), "["
+                + "{\"uuid\":\"" + uuids.get(0) + "\",\"name\":\"Updated\",\"grade\":2},"
+                + "{\"uuid\":\"not-a-uuid\",\"name\":\"Ana\",\"grade\":2},"
+                + "{\"uuid\":\"" + unknown + "\",\"name\":\"Ana\",\"grade\":2},"
+                + "{\"uuid\":\"" + uuids.get(1) + "\",\"name\":\"Ana\",\"grade\":0}]");
+
+        assertThat(statuses(results)).containsExactly(204, 400, 404, 400);
+        JsonNode updated = json(mvc.perform(get("/students/" + uuids.get(0))).andReturn().getResponse().getContentAsString());
+        assertThat(updated.get("name").asText()).isEqualTo("Updated");
+        assertThat(updated.get("version").asInt()).isEqualTo(2);
+        JsonNode unchanged = json(mvc.perform(get("/students/" + uuids.get(1))).andReturn().getResponse().getContentAsString());
+        assertThat(unchanged.get("version").asInt()).isEqualTo(1);
+    }
+
+    @Test
+    public void batchDeleteReportsEachItem() throws Exception {
+        List<String> uuids = createStudents(2);
+        JsonNode results = batch(delete("/students/batch"), "[\"" + uuids.get(0) + "\",\"" + uuids.get(0) + "\",\"bad\",\""
+                + UUID.randomUUID() + "\",\"" + uuids.get(1) + "\"]");
+
+        // a repeated student was already deleted by its first occurrence
+        assertThat(statuses(results)).containsExactly(204, 404, 400, 404, 204);
+        mvc.perform(get("/students/" + uuids.get(0))).andExpect(status().isNotFound());
+        mvc.perform(get("/students/" + uuids.get(1))).andExpect(status().isNotFound());
+    }
+
+    private String eTag(String uuid) throws Exception {
+        return mvc.perform(get("/students/" + uuid)).andExpect(status().isOk()).andReturn().getResponse().getHeader("ETag");
+    }
+
+    private MockHttpServletRequestBuilder update(String uuid, String ifMatch) {
+        MockHttpServletRequestBuilder request = put("/students/" + uuid).contentType(MediaType.APPLICATION_JSON)
+                .content("{\"name\":\"Updated\",\"grade\":3}");
+        return ifMatch == null ? request : request.header("If-Match", ifMatch);
+    }
+
+    @Test
+    public void updateChecksIfMatch() throws Exception {
+        String uuid = createStudents(1).get(0);
+        String original = eTag(uuid);
+
+        String updated = mvc.perform(update(uuid, original))
+                .andExpect(status().isNoContent())
+                .andReturn().getResponse().getHeader("ETag");
+        assertThat(updated).isNotEqualTo(original).isEqualTo(eTag(uuid));
+
+        // the student changed since the original tag was read, and weak tags never match a modification
+        mvc.perform(update(uuid, original)).andExpect(status().isPreconditionFailed());
+        mvc.perform(update(uuid, "W/" + updated)).andExpect(status().isPreconditionFailed());
+        assertThat(eTag(uuid)).isEqualTo(updated);
+
+        mvc.perform(update(uuid, "\"other\", " + updated)).andExpect(status().isNoContent());
+        mvc.perform(update(uuid, "*")).andExpect(status().isNoContent());
+        mvc.perform(update(uuid, null)).andExpect(status().isNoContent());
+        mvc.perform(update(UUID.randomUUID().toString(), "*")).andExpect(status().isNotFound());
+    }
+
+    @Test
+    public void representationsHaveTheirOwnEntityTags() throws Exception {
+        String uuid = createStudents(1).get(0);
+        String json = eTag(uuid);
+
+        MvcResult result = mvc.perform(get("/students/" + uuid).accept(StudentProtobuf.MEDIA_TYPE))
+                .andExpect(status().isOk())
+                .andReturn();
+        String protobuf = result.getResponse().getHeader("ETag");
+        assertThat(protobuf).isNotEqualTo(json);
+        assertThat(result.getResponse().getHeader("Vary")).isEqualTo("Accept");
+
+        mvc.perform(get("/students/" + uuid).accept(StudentProtobuf.MEDIA_TYPE).header("If-None-Match", protobuf))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string("ETag", protobuf))
+                .andExpect(header().string("Vary", "Accept"));
+        mvc.perform(get("/students/" + uuid).accept(StudentProtobuf.MEDIA_TYPE).header("If-None-Match", json))
+                .andExpect(status().isOk());
+        mvc.perform(get("/students/" + uuid).header("If-None-Match", protobuf)).andExpect(status().isOk());
+        mvc.perform(get("/students/" + uuid).header("If-None-Match", json)).andExpect(status().isNotModified());
+
+        // either tag identifies the current version for a modification
+        mvc.perform(update(uuid, protobuf)).andExpect(status().isNoContent());
+        mvc.perform(update(uuid, protobuf)).andExpect(status().isPreconditionFailed());
+    }
+
+    @Test
+    public void cachedStudentIsRevalidatedAfterUpdateAndDelete() throws Exception {
+        String uuid = createStudents(1).get(0);
+        String original = eTag(uuid);
+        mvc.perform(get("/students/" + uuid).header("If-None-Match", original)).andExpect(status().isNotModified());
+
+        mvc.perform(update(uuid, null)).andExpect(status().isNoContent());
+        MvcResult result = mvc.perform(get("/students/" + uuid).header("If-None-Match", original))
+                .andExpect(status().isOk())
+                .andReturn();
+        String updated = result.getResponse().getHeader("ETag");
+        assertThat(updated).isNotEqualTo(original);
+        // the cached JSON of the original student is not served after the update
+        assertThat(json(result.getResponse().getContentAsString()).get("name").asText()).isEqualTo("Updated");
+        mvc.perform(get("/students/" + uuid).header("If-None-Match", updated)).andExpect(status().isNotModified());
+
+        mvc.perform(delete("/students/" + uuid)).andExpect(status().isNoContent());
+        mvc.perform(get("/students/" + uuid).header("If-None-Match", updated)).andExpect(status().isNotFound());
+    }
+
+    /**
+     * Returns the entity tag of a list, the body of a list is streamed asynchronously.
+     */
+    private String listETag(MediaType accept) throws Exception {
+        MvcResult result = mvc.perform(get("/students").accept(accept)).andExpect(request().asyncStarted()).andReturn();
+        return mvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Vary", "Accept"))
+                .andReturn().getResponse().getHeader("ETag");
+    }
+
+    @Test
+    public void weakTableTagChangesWithEveryWrite() throws Exception {
+        MediaType ndjson = MediaType.parseMediaType("application/x-ndjson");
+        String json = listETag(MediaType.APPLICATION_JSON);
+        String lines = listETag(ndjson);
+        String protobuf = listETag(StudentProtobuf.MEDIA_TYPE);
+        assertThat(json).startsWith("W/");
+        assertThat(new HashSet<>(Arrays.asList(json, lines, protobuf))).hasSize(3);
+
+        mvc.perform(get("/students").accept(MediaType.APPLICATION_JSON).header("If-None-Match", json))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string("Vary", "Accept"));
+        mvc.perform(get("/students").accept(ndjson).header("If-None-Match", lines)).andExpect(status().isNotModified());
+        mvc.perform(get("/students").accept(StudentProtobuf.MEDIA_TYPE).header("If-None-Match", protobuf))
+                .andExpect(status().isNotModified());
+        // a tag of one format does not match another
+        mvc.perform(get("/students").accept(ndjson).header("If-None-Match", json)).andExpect(request().asyncStarted());
+
+        String uuid = createStudents(1).get(0);
+        String created = listETag(MediaType.APPLICATION_JSON);
+        assertThat(created).isNotEqualTo(json);
+        mvc.perform(get("/students").accept(MediaType.APPLICATION_JSON).header("If-None-Match", json))
+                .andExpect(request().asyncStarted());
+
+        mvc.perform(update(uuid, null)).andExpect(status().isNoContent());
+        String updated = listETag(MediaType.APPLICATION_JSON);
+        assertThat(updated).isNotEqualTo(created);
+
+        mvc.perform(delete("/students/" + uuid)).andExpect(status().isNoContent());
+        assertThat(listETag(MediaType.APPLICATION_JSON)).isNotEqualTo(updated);
+    }
+
+    @Test
+    public void concurrentBatchUpdatesGetDistinctVersions() throws Exception {
+        String uuid = createStudents(1).get(0);
+        int threads = 4;
+        int updates = 25;
+
+        Threads.run(threads, thread -> {
+            for (int i = 0; i < updates; i++)
+                batch(put("/students/batch"), "[{\"uuid\":\"" + uuid + "\",\"name\":\"Thread " + thread + "\",\"grade\":3}]");
+        });
+
+        JsonNode student = json(mvc.perform(get("/students/" + uuid)).andReturn().getResponse().getContentAsString());
+        assertThat(student.get("version").asInt()).isEqualTo(1 + threads * updates);
+    }
+
+    @Test
+    public void batchUpdateDoesNotRecreateDeletedStudent() throws Exception {
+        String uuid = createStudents(1).get(0);
+        mvc.perform(delete("/students/" + uuid)).andExpect(status().isNoContent());
+
+        JsonNode results = batch(put("/students/batch"), "[{\"uuid\":\"" + uuid + "\",\"name\":\"Ana\",\"grade\":3}]");
+
+        assertThat(statuses(results)).containsExactly(404);
+        mvc.perform(get("/students/" + uuid)).andExpect(status().isNotFound());
+    }
+
+    private static byte[] delimited(Student... students) throws Exception {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        for (Student student : students)
+            StudentProtobuf.writeDelimited(output, student);
+        return output.toByteArray();
+    }
+
+    @Test
+    public void handoffImportsValidStudentsOnly() throws Exception {
+        Student valid = new Student(UUID.randomUUID(), "Ana", 4, 3);
+        Student invalid = new Student(UUID.randomUUID(), "Ivo", 9, 1);
+        Student unnamed = new Student(UUID.randomUUID(), " ", 2, 1);
+
+        mvc.perform(post("/shards/students").contentType(StudentProtobuf.MEDIA_TYPE)
+                .header(ShardDirectory.FORWARDED_HEADER, "http://localhost:8080")
+                .content(delimited(valid)))
+                .andExpect(status().isNoContent());
+        mvc.perform(get("/students/" + valid.getUuid())).andExpect(status().isOk());
+
+        for (Student student : new Student[]{invalid, unnamed}) {
+            mvc.perform(post("/shards/students").contentType(StudentProtobuf.MEDIA_TYPE)
+                    .header(ShardDirectory.FORWARDED_HEADER, "http://localhost:8080")
+                    .content(delimited(student)))
+                    .andExpect(status().isBadRequest());
+            mvc.perform(get("/students/" + student.getUuid())).andExpect(status().isNotFound());
+        }
+    }
+
+    @Test
+    public void handoffIsOnlyAcceptedFromMembers() throws Exception {
+        Student student = new Student(UUID.randomUUID(), "Ana", 4, 1);
+
+        mvc.perform(post("/shards/students").contentType(StudentProtobuf.MEDIA_TYPE).content(delimited(student)))
+                .andExpect(status().isForbidden());
+        mvc.perform(post("/shards/students").contentType(StudentProtobuf.MEDIA_TYPE)
+                .header(ShardDirectory.FORWARDED_HEADER, "http://intruder:8080")
+                .content(delimited(student)))
+                .andExpect(status().isForbidden());
+        mvc.perform(post("/shards/nodes").param("node", "http://intruder:8080")).andExpect(status().isForbidden());
+        mvc.perform(get("/students/" + student.getUuid())).andExpect(status().isNotFound());
+    }
+}
@@ -0,0 +1,142 @@
+package eu.bidin.springexample.handlers;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.reactive.function.server.MockServerRequest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Tests of the routes of the reactive execution mode. The application context, and with it the student table, is
+ * shared by all tests, so every test only looks at the students it created.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = "spring.main.web-application-type=reactive")
+@ActiveProfiles("reactive")
+@AutoConfigureWebTestClient
+public class StudentHandlerTest {
+
+    @Autowired
+    private WebTestClient client;
+
+    @Autowired
+    private ObjectMapper mapper;
+
+    private JsonNode json(byte[] content) throws Exception {
+        return mapper.readTree(content);
+    }
+
+    private JsonNode batch(String body) throws Exception {
+        byte[] content = client.post().uri("/students/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .syncBody(body)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody().returnResult().getResponseBody();
+        return json(content);
+    }
+
+    private static List<Integer> statuses(JsonNode results) {
+        List<Integer> statuses = new ArrayList<>();
+        for (JsonNode result : results)
+            statuses.add(result.get("status").asInt());
+        return statuses;
+    }
+
+    @Test
+    public void createsAndGetsStudent() throws Exception {
+        String location = client.post().uri("/students")
+                .contentType(MediaType.APPLICATION_JSON)
+                .syncBody("{\"name\":\"Ana\",\"grade\":5}")
+                .exchange()
+                .expectStatus().isCreated()
+                .returnResult(Void.class).getResponseHeaders().getLocation().getPath();
+        assertThat(location).startsWith("/students/");
+
+        WebTestClient.ResponseSpec response = client.get().uri(location).exchange().expectStatus().isOk();
+        String eTag = response.returnResult(Void.class).getResponseHeaders().getETag();
+        JsonNode student = json(client.get().uri(location).exchange().expectBody().returnResult().getResponseBody());
+        assertThat(student.get("name").asText()).isEqualTo("Ana");
+        assertThat(student.get("grade").asInt()).isEqualTo(5);
+
+        client.get().uri(location).header("If-None-Match", eTag).exchange()
+                .expectStatus().isNotModified()
+                .expectHeader().valueEquals("Vary", "Accept");
+        client.put().uri(location)
+                .contentType(MediaType.APPLICATION_JSON)
+                .header("If-Match", eTag)
+                .syncBody("{\"name\":\"Ana Anić\",\"grade\":4}")
+                .exchange()
+                .expectStatus().isNoContent();
+        client.get().uri(location).header("If-None-Match", eTag).exchange().expectStatus().isOk();
+
+        client.delete().uri(location).exchange().expectStatus().isNoContent();
+        client.get().uri(location).exchange().expectStatus().isNotFound();
+    }
+
+    @Test
+    public void batchCreateReportsEachItem() throws Exception {
+        JsonNode results = batch("[{\"name\":\"Ana\",\"grade\":5},null,{\"name\":\"Ivo\",\"grade\":9}]");
+
+        assertThat(statuses(results)).containsExactly(201, 400, 400);
+        client.get().uri("/students/" + results.get(0).get("uuid").asText()).exchange().expectStatus().isOk();
+        client.post().uri("/students/batch").contentType(MediaType.APPLICATION_JSON).exchange().expectStatus().isBadRequest();
+    }
+
+    @Test
+    public void streamsAllStudents() throws Exception {
+        StringBuilder body = new StringBuilder("[");
+        for (int i = 0; i < 600; i++)
+            body.append(i == 0 ? "" : ",").append("{\"name\":\"Student ").append(i).append("\",\"grade\":").append(i % 5 + 1).append('}');
+        Set<String> created = new HashSet<>();
+        for (JsonNode result : batch(body.append(']').toString()))
+            created.add(result.get("uuid").asText());
+
+        Set<String> streamed = new HashSet<>();
+        for (JsonNode student : json(client.get().uri("/students").accept(MediaType.APPLICATION_JSON).exchange()
+                .expectStatus().isOk()
+                .expectBody().returnResult().getResponseBody()))
+            streamed.add(student.get("uuid").asText());
+        assertThat(streamed).containsAll(created);
+
+        List<String> lines = client.get().uri("/students").accept(MediaType.parseMediaType("application/x-ndjson")).exchange()
+                .expectStatus().isOk()
+                .returnResult(String.class).getResponseBody().collectList().block();
+        Set<String> streamedLines = new HashSet<>();
+        for (String line : lines)
+            streamedLines.add(mapper.readTree(line).get("uuid").asText());
+        assertThat(streamedLines).containsAll(created);
+    }
+
+    @Test
+    public void boundedBodyRefusesLargerBodies() {
+        DefaultDataBufferFactory buffers = new DefaultDataBufferFactory();
+        Flux<DataBuffer> body = Flux.defer(() -> Flux.just(buffers.wrap(new byte[6]), buffers.wrap(new byte[6])));
+
+        assertThat(StudentHandler.boundedBody(MockServerRequest.builder().body(body), 12).block()).hasSize(12);
+        assertThatThrownBy(() -> StudentHandler.boundedBody(MockServerRequest.builder().body(body), 11).block())
+                .isInstanceOfSatisfying(ResponseStatusException.class,
+                        ex -> assertThat(ex.getStatus()).isEqualTo(HttpStatus.PAYLOAD_TOO_LARGE));
+        assertThat(StudentHandler.boundedBody(MockServerRequest.builder().body(Flux.empty()), 12).block()).isEmpty();
+    }
+}
@@ -0,0 +1,72 @@
+package eu.bidin.springexample.indexes;
+
+import eu.bidin.springexample.entities.Student;
+import eu.bidin.utility.MyHashtable;
+import eu.bidin.utility.Table;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class StudentIndexTest {
+
+    private static List<String> names(List<Student> students) {
+        return students.stream().map(Student::getName).collect(Collectors.toList());
+    }
+
+    private static UUID put(Table<UUID, Student> database, StudentIndex index, String name, int grade) {
+        UUID key = UUID.randomUUID();
+        database.put(key, new Student(key, name, grade));
+        index.refresh(key);
+        return key;
+    }
+
+    @Test
+    public void findsNamesByPrefixIgnoringCase() {
+        Table<UUID, Student> database = new MyHashtable<>();
+        StudentIndex index = new StudentIndex(database);
+        put(database, index, "Ana Anić", 5);
+        put(database, index, "ANAMARIJA", 4);
+        put(database, index, "Čedo", 3);
+        put(database, index, "İlker", 3);
+        put(database, index, "Iva", 2);
+
+        assertThat(names(index.find(null, "ana", 10))).containsExactly("Ana Anić", "ANAMARIJA");
+        assertThat(names(index.find(null, "AnA a", 10))).containsExactly("Ana Anić");
+        assertThat(names(index.find(null, "č", 10))).containsExactly("Čedo");
+        assertThat(names(index.find(3, "i", 10))).containsExactly("İlker");
+        assertThat(names(index.find(null, "ivan", 10))).isEmpty();
+    }
+
+    @Test
+    public void keepsNameWhenOnlyGradeChanges() {
+        Table<UUID, Student> database = new MyHashtable<>();
+        StudentIndex index = new StudentIndex(database);
+        UUID key = put(database, index, "Ana", 5);
+
+        database.put(key, new Student(key, "Ana", 4, 1));
+        index.refresh(key);
+        assertThat(index.find(null, "an", 10)).extracting(Student::getGrade).containsExactly(4);
+        assertThat(index.find(5, null, 10)).isEmpty();
+
+        database.put(key, new Student(key, "Iva", 4, 2));
+        index.refresh(key);
+        assertThat(index.find(null, "an", 10)).isEmpty();
+        assertThat(names(index.find(4, "IV", 10))).containsExactly("Iva");
+    }
+
+    @Test
+    public void skipsStudentsChangedBeforeRefresh() {
+        Table<UUID, Student> database = new MyHashtable<>();
+        StudentIndex index = new StudentIndex(database);
+        UUID key = put(database, index, "Ana", 5);
+
+        database.put(key, new Student(key, "Iva", 5, 1));
+
+        assertThat(index.find(null, "ana", 10)).isEmpty();
+        assertThat(names(index.find(5, null, 10))).containsExactly("Iva");
+    }
+}
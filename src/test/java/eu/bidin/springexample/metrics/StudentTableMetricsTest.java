@@ -0,0 +1,97 @@
+package eu.bidin.springexample.metrics;
+
+import eu.bidin.springexample.entities.Student;
+import eu.bidin.utility.EvictionPolicy;
+import eu.bidin.utility.MyHashtable;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class StudentTableMetricsTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    private double gauge(String name) {
+        Gauge gauge = registry.find(name).gauge();
+        assertThat(gauge).as(name).isNotNull();
+        return gauge.value();
+    }
+
+    private double counter(String name) {
+        FunctionCounter counter = registry.find(name).functionCounter();
+        assertThat(counter).as(name).isNotNull();
+        return counter.count();
+    }
+
+    private static void put(MyHashtable<UUID, Student> database, int count) {
+        for (int i = 0; i < count; i++) {
+            UUID key = UUID.randomUUID();
+            database.put(key, new Student(key, "Student " + i, i % 5 + 1));
+        }
+    }
+
+    @Test
+    public void gaugesFollowTheTable() {
+        MyHashtable<UUID, Student> database = new MyHashtable<>(1, 0.75, true);
+        new StudentTableMetrics(database).bindTo(registry);
+
+        assertThat(gauge("students.table.size")).isZero();
+        assertThat(gauge("students.table.load.factor")).isEqualTo(0.75);
+        assertThat(gauge("students.table.weight")).isZero();
+
+        put(database, 1000);
+
+        assertThat(gauge("students.table.size")).isEqualTo(1000);
+        assertThat(gauge("students.table.capacity")).isEqualTo(database.getCapacity());
+        assertThat(gauge("students.table.load")).isEqualTo((double) database.size() / database.getCapacity());
+        assertThat(gauge("students.table.longest.chain")).isEqualTo(database.getLongestChain()).isPositive();
+        assertThat(registry.find("students.table.capacity").gauge().getId().getBaseUnit()).isEqualTo("slots");
+
+        database.clear();
+        assertThat(gauge("students.table.size")).isZero();
+    }
+
+    @Test
+    public void timerCountsResizes() {
+        MyHashtable<UUID, Student> database = new MyHashtable<>(1, 0.75, true);
+        new StudentTableMetrics(database).bindTo(registry);
+        FunctionTimer resizes = registry.find("students.table.resizes").functionTimer();
+        assertThat(resizes).isNotNull();
+        assertThat(resizes.count()).isZero();
+
+        put(database, 1000);
+
+        assertThat(resizes.count()).isEqualTo(database.getResizeCount()).isPositive();
+        assertThat(resizes.totalTime(TimeUnit.NANOSECONDS)).isEqualTo(database.getResizeTime());
+    }
+
+    @Test
+    public void countersFollowEvictionsAndExpirations() throws Exception {
+        MyHashtable<UUID, Student> database = new MyHashtable<>(16, 0.75, true,
+                new EvictionPolicy<>(10, 0, null, Duration.ofMillis(100)));
+        new StudentTableMetrics(database).bindTo(registry);
+        assertThat(counter("students.table.evictions")).isZero();
+        assertThat(counter("students.table.expirations")).isZero();
+
+        put(database, 15);
+        assertThat(counter("students.table.evictions")).isEqualTo(5);
+        assertThat(gauge("students.table.size")).isEqualTo(10);
+
+        Thread.sleep(150);
+        long cursor = 0;
+        do {
+            cursor = database.evictExpired(cursor, 10);
+        } while (cursor != 0);
+        assertThat(counter("students.table.expirations")).isEqualTo(10);
+        assertThat(counter("students.table.evictions")).isEqualTo(5);
+        assertThat(gauge("students.table.size")).isZero();
+    }
+}
@@ -0,0 +1,203 @@
+package eu.bidin.springexample.persistence;
+
+import eu.bidin.springexample.entities.Student;
+import eu.bidin.springexample.storage.MappedStudentTable;
+import eu.bidin.utility.ConcurrentMyHashtable;
+import eu.bidin.utility.MyHashtable.TableEntry;
+import eu.bidin.utility.Table;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class JournaledStudentTableTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * A log whose appends fail while {@link #failing} is set.
+     */
+    private static class FailingLog extends WriteAheadLog {
+
+        private volatile boolean failing;
+
+        FailingLog(Path directory, FsyncPolicy policy, long lastLsn) throws IOException {
+            super(directory, policy, lastLsn);
+        }
+
+        @Override
+        public long appendPut(UUID key, Student student) {
+            if (failing)
+                throw new UncheckedIOException(new IOException("No space left on device"));
+            return super.appendPut(key, student);
+        }
+
+        @Override
+        public long appendRemove(UUID key) {
+            if (failing)
+                throw new UncheckedIOException(new IOException("No space left on device"));
+            return super.appendRemove(key);
+        }
+    }
+
+    private PersistenceProperties properties() {
+        PersistenceProperties properties = new PersistenceProperties();
+        properties.setEnabled(true);
+        properties.setDirectory(folder.getRoot().toPath().resolve("journal").toString());
+        return properties;
+    }
+
+    private static Student student(UUID key, String name) {
+        return new Student(key, name, 4, 1);
+    }
+
+    @Test
+    public void recoversFromSnapshotAndLog() throws Exception {
+        PersistenceProperties properties = properties();
+        UUID kept = UUID.randomUUID();
+        UUID removed = UUID.randomUUID();
+        UUID late = UUID.randomUUID();
+        UUID snapshotted = UUID.randomUUID();
+        try (JournaledStudentTable table = new JournaledStudentTable(new ConcurrentMyHashtable<>(), properties)) {
+            table.put(kept, student(kept, "Ana"));
+            table.put(removed, student(removed, "Ivo"));
+            table.put(snapshotted, new Student(snapshotted, "Iva", 2, 7));
+            table.snapshot();
+            table.remove(removed);
+            table.computeIfPresent(kept, (key, student) -> new Student(key, "Ana Anić", 4, student.getVersion() + 1));
+            table.putIfAbsent(late, student(late, "Eva"));
+        }
+
+        // versions are recovered from the snapshot and from the log, so entity tags stay the same across restarts
+        try (JournaledStudentTable table = new JournaledStudentTable(new ConcurrentMyHashtable<>(), properties)) {
+            assertThat(table.size()).isEqualTo(3);
+            assertThat(table.get(kept)).isEqualTo(new Student(kept, "Ana Anić", 4, 2));
+            assertThat(table.get(removed)).isNull();
+            assertThat(table.get(late)).isEqualTo(student(late, "Eva"));
+            assertThat(table.get(snapshotted)).isEqualTo(new Student(snapshotted, "Iva", 2, 7));
+        }
+    }
+
+    @Test
+    public void putAllIfAbsentOnlyLogsAddedStudents() throws Exception {
+        PersistenceProperties properties = properties();
+        UUID present = UUID.randomUUID();
+        UUID added = UUID.randomUUID();
+        try (JournaledStudentTable table = new JournaledStudentTable(new ConcurrentMyHashtable<>(), properties)) {
+            table.put(present, student(present, "Ana"));
+            List<TableEntry<UUID, Student>> rejected = table.putAllIfAbsent(Arrays.asList(
+                    new TableEntry<>(present, student(present, "Ivo"), null),
+                    new TableEntry<>(added, student(added, "Eva"), null)));
+
+            assertThat(rejected).extracting(TableEntry::getKey).containsExactly(present);
+        }
+
+        try (JournaledStudentTable table = new JournaledStudentTable(new ConcurrentMyHashtable<>(), properties)) {
+            assertThat(table.get(present)).isEqualTo(student(present, "Ana"));
+            assertThat(table.get(added)).isEqualTo(student(added, "Eva"));
+        }
+    }
+
+    @Test
+    public void snapshotTruncatesLog() throws Exception {
+        PersistenceProperties properties = properties();
+        Path directory = folder.getRoot().toPath().resolve("journal");
+        try (JournaledStudentTable table = new JournaledStudentTable(new ConcurrentMyHashtable<>(), properties)) {
+            for (int i = 0; i < 100; i++) {
+                UUID key = UUID.randomUUID();
+                table.put(key, student(key, "Student " + i));
+            }
+            table.snapshot();
+            UUID key = UUID.randomUUID();
+            table.put(key, student(key, "After"));
+            table.snapshot();
+
+            // only the segment started by the last snapshot is left, next to the snapshot itself
+            try (Stream<Path> files = Files.list(directory)) {
+                assertThat(files.map(path -> path.getFileName().toString()))
+                        .containsExactlyInAnyOrder("snapshot-00000000000000000101.snap", "wal-00000000000000000102.log");
+            }
+        }
+
+        try (JournaledStudentTable table = new JournaledStudentTable(new ConcurrentMyHashtable<>(), properties)) {
+            assertThat(table.size()).isEqualTo(101);
+        }
+    }
+
+    @Test
+    public void failedAppendLeavesTableUnchanged() throws Exception {
+        PersistenceProperties properties = properties();
+        FailingLog[] log = new FailingLog[1];
+        UUID key = UUID.randomUUID();
+        Student original = student(key, "Ana");
+        try (JournaledStudentTable table = new JournaledStudentTable(new ConcurrentMyHashtable<>(), properties,
+                (directory, policy, lastLsn) -> log[0] = new FailingLog(directory, policy, lastLsn))) {
+            table.put(key, original);
+            log[0].failing = true;
+
+            UUID other = UUID.randomUUID();
+            assertThatThrownBy(() -> table.put(key, student(key, "Changed"))).isInstanceOf(UncheckedIOException.class);
+            assertThatThrownBy(() -> table.put(other, student(other, "New"))).isInstanceOf(UncheckedIOException.class);
+            assertThatThrownBy(() -> table.remove(key)).isInstanceOf(UncheckedIOException.class);
+            assertThatThrownBy(() -> table.computeIfPresent(key, (k, s) -> null)).isInstanceOf(UncheckedIOException.class);
+
+            assertThat(table.get(key)).isEqualTo(original);
+            assertThat(table.containsKey(other)).isFalse();
+            log[0].failing = false;
+        }
+
+        try (JournaledStudentTable table = new JournaledStudentTable(new ConcurrentMyHashtable<>(), properties)) {
+            assertThat(table.size()).isEqualTo(1);
+            assertThat(table.get(key)).isEqualTo(original);
+        }
+    }
+
+    @Test
+    public void rejectedValueIsUndoneInLog() throws Exception {
+        PersistenceProperties properties = properties();
+        Path data = folder.getRoot().toPath().resolve("data");
+        UUID key = UUID.randomUUID();
+        UUID other = UUID.randomUUID();
+        Student original = student(key, "Ana");
+        String tooLong = new String(new char[60]).replace('\0', 'a');
+        try (JournaledStudentTable table = new JournaledStudentTable(new MappedStudentTable(data), properties)) {
+            table.put(key, original);
+
+            // the mapped table rejects the name after the record was appended
+            assertThatThrownBy(() -> table.put(key, student(key, tooLong))).isInstanceOf(IllegalArgumentException.class);
+            assertThatThrownBy(() -> table.put(other, student(other, tooLong))).isInstanceOf(IllegalArgumentException.class);
+            assertThatThrownBy(() -> table.put(key, null)).isInstanceOf(IllegalArgumentException.class);
+            assertThat(table.get(key)).isEqualTo(original);
+            assertThat(table.get(other)).isNull();
+        }
+
+        // replaying the log skips the rejected records and applies the ones that undo them
+        Table<UUID, Student> recovered = new ConcurrentMyHashtable<>();
+        long snapshot = SnapshotFile.read(folder.getRoot().toPath().resolve("journal"), recovered::put);
+        WriteAheadLog.replay(folder.getRoot().toPath().resolve("journal"), snapshot, record -> {
+            if (record.getOperation() == WriteAheadLog.Operation.PUT)
+                recovered.put(record.getKey(), record.getStudent());
+            else
+                recovered.remove(record.getKey());
+        });
+        assertThat(recovered.get(key)).isEqualTo(original);
+        assertThat(recovered.get(other)).isNull();
+
+        try (JournaledStudentTable table = new JournaledStudentTable(new MappedStudentTable(data), properties)) {
+            assertThat(table.size()).isEqualTo(1);
+            assertThat(table.get(key)).isEqualTo(original);
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package eu.bidin.springexample.persistence;
+
+import eu.bidin.springexample.entities.Student;
+import eu.bidin.utility.Threads;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class WriteAheadLogTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static List<WriteAheadLog.Record> replay(Path directory, long afterLsn) throws Exception {
+        List<WriteAheadLog.Record> records = new ArrayList<>();
+        WriteAheadLog.replay(directory, afterLsn, records::add);
+        return records;
+    }
+
+    private static List<Path> files(Path directory, String suffix) throws Exception {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> path.toString().endsWith(suffix)).sorted().collect(Collectors.toList());
+        }
+    }
+
+    @Test
+    public void replaysRecordsInOrder() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        UUID key = UUID.randomUUID();
+        try (WriteAheadLog log = new WriteAheadLog(directory, FsyncPolicy.BATCH, 0)) {
+            log.appendPut(key, new Student(key, "Ana", 5, 1));
+            log.appendRemove(key);
+            log.appendClear();
+            log.await(3);
+        }
+
+        List<WriteAheadLog.Record> records = replay(directory, 0);
+        assertThat(records).extracting(WriteAheadLog.Record::getOperation).containsExactly(
+                WriteAheadLog.Operation.PUT, WriteAheadLog.Operation.REMOVE, WriteAheadLog.Operation.CLEAR);
+        assertThat(records).extracting(WriteAheadLog.Record::getLsn).containsExactly(1L, 2L, 3L);
+        assertThat(records.get(0).getStudent()).isEqualTo(new Student(key, "Ana", 5, 1));
+        assertThat(replay(directory, 2)).hasSize(1);
+    }
+
+    @Test
+    public void readsRecordsWithoutVersions() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        UUID key = UUID.randomUUID();
+        // a put record as it was written before students carried their version
+        ByteArrayOutputStream payload = new ByteArrayOutputStream();
+        DataOutputStream output = new DataOutputStream(payload);
+        output.writeByte(WriteAheadLog.Operation.PUT.ordinal());
+        output.writeLong(1);
+        StudentRecords.writeKey(output, key);
+        output.writeInt(5);
+        output.writeBoolean(true);
+        output.writeUTF("Ana");
+        CRC32 crc = new CRC32();
+        crc.update(payload.toByteArray());
+        ByteBuffer frame = ByteBuffer.allocate(8 + payload.size());
+        frame.putInt(payload.size()).putInt((int) crc.getValue()).put(payload.toByteArray());
+        Files.write(directory.resolve("wal-00000000000000000001.log"), frame.array());
+
+        List<WriteAheadLog.Record> records = replay(directory, 0);
+        assertThat(records).hasSize(1);
+        assertThat(records.get(0).getStudent()).isEqualTo(new Student(key, "Ana", 5, 0));
+        assertThat(records.get(0).getStudent().getName()).isEqualTo("Ana");
+    }
+
+    @Test
+    public void cutsTornTail() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        try (WriteAheadLog log = new WriteAheadLog(directory, FsyncPolicy.ALWAYS, 0)) {
+            for (int i = 0; i < 10; i++)
+                log.appendRemove(UUID.randomUUID());
+        }
+        Path segment = files(directory, ".log").get(0);
+        long complete = Files.size(segment);
+        // the last record is torn, and followed by garbage
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.truncate(complete - 3);
+            channel.write(ByteBuffer.wrap(new byte[]{1, 2, 3, 4, 5, 6, 7, 8, 9}), complete - 3);
+        }
+
+        assertThat(WriteAheadLog.replay(directory, 0, record -> {
+        })).isEqualTo(9);
+        assertThat(Files.size(segment)).isLessThan(complete);
+
+        // the log continues after the last complete record
+        try (WriteAheadLog log = new WriteAheadLog(directory, FsyncPolicy.ALWAYS, 9)) {
+            assertThat(log.appendClear()).isEqualTo(10);
+        }
+        assertThat(replay(directory, 0)).extracting(WriteAheadLog.Record::getLsn).endsWith(9L, 10L);
+    }
+
+    @Test
+    public void stopsAtFirstGap() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        try (WriteAheadLog log = new WriteAheadLog(directory, FsyncPolicy.ALWAYS, 0)) {
+            for (int i = 0; i < 5; i++)
+                log.appendRemove(UUID.randomUUID());
+            log.rollover();
+            for (int i = 0; i < 5; i++)
+                log.appendRemove(UUID.randomUUID());
+            log.rollover();
+            for (int i = 0; i < 5; i++)
+                log.appendRemove(UUID.randomUUID());
+        }
+        List<Path> segments = files(directory, ".log");
+        assertThat(segments).hasSize(3);
+        // a torn record in the middle segment
+        try (FileChannel channel = FileChannel.open(segments.get(1), StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 1);
+        }
+
+        assertThat(replay(directory, 0)).extracting(WriteAheadLog.Record::getLsn).containsExactly(1L, 2L, 3L, 4L, 5L, 6L, 7L, 8L, 9L);
+        assertThat(files(directory, ".log")).hasSize(2);
+        assertThat(files(directory, ".discarded")).hasSize(1);
+
+        // the log continues at the gap, a later replay does not see the discarded records
+        try (WriteAheadLog log = new WriteAheadLog(directory, FsyncPolicy.ALWAYS, 9)) {
+            log.appendClear();
+        }
+        assertThat(replay(directory, 0)).extracting(WriteAheadLog.Record::getLsn).endsWith(9L, 10L).hasSize(10);
+    }
+
+    @Test
+    public void syncRacingWithRollover() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        AtomicBoolean done = new AtomicBoolean();
+        try (WriteAheadLog log = new WriteAheadLog(directory, FsyncPolicy.INTERVAL, 0)) {
+            Threads.run(4, thread -> {
+                if (thread == 0) {
+                    for (int i = 0; i < 1000; i++) {
+                        log.appendRemove(UUID.randomUUID());
+                        log.rollover();
+                    }
+                    done.set(true);
+                } else {
+                    // a sync must never fail because the segment it forces was rolled over and closed
+                    while (!done.get()) {
+                        log.appendRemove(UUID.randomUUID());
+                        log.sync();
+                    }
+                }
+            });
+        }
+        assertThat(replay(directory, 0)).isNotEmpty();
+    }
+}
@@ -0,0 +1,150 @@
+package eu.bidin.springexample.replication;
+
+import eu.bidin.springexample.entities.Student;
+import eu.bidin.springexample.exceptions.ChangesExpiredException;
+import eu.bidin.springexample.exceptions.InvalidCursorException;
+import eu.bidin.springexample.models.StudentChange;
+import org.junit.After;
+import org.junit.Test;
+import org.reactivestreams.Subscription;
+import org.springframework.http.codec.ServerSentEvent;
+import reactor.core.publisher.BaseSubscriber;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class ChangeFeedTest {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(10);
+
+    private ChangeLog log;
+    private ChangeFeed feed;
+
+    private void start(int capacity) {
+        ReplicationProperties properties = new ReplicationProperties();
+        properties.setChangeFeed(true);
+        properties.setLogCapacity(capacity);
+        properties.setChangeFeedHeartbeat(Duration.ofSeconds(1));
+        log = new ChangeLog(properties);
+        feed = new ChangeFeed(log, properties);
+        feed.start();
+    }
+
+    @After
+    public void close() {
+        if (feed != null)
+            feed.close();
+    }
+
+    private void record(UUID key, StudentChange.Type type, Student student) {
+        log.record(key, type, student, log.getSequence(), k -> student);
+    }
+
+    private void created(int count) {
+        for (int i = 0; i < count; i++) {
+            UUID key = UUID.randomUUID();
+            record(key, StudentChange.Type.CREATED, new Student(key, "Ana", 5, 1));
+        }
+    }
+
+    @Test
+    public void resumesAfterSequence() {
+        start(16);
+        UUID key = UUID.randomUUID();
+        record(key, StudentChange.Type.CREATED, new Student(key, "Ana", 5, 1));
+        record(key, StudentChange.Type.UPDATED, new Student(key, "Ana", 4, 2));
+        record(key, StudentChange.Type.DELETED, null);
+
+        List<ServerSentEvent<StudentChange>> events = feed.subscribe("1").take(2).collectList().block(TIMEOUT);
+
+        assertThat(events).extracting(ServerSentEvent::id).containsExactly("2", "3");
+        assertThat(events.get(0).data().getType()).isEqualTo(StudentChange.Type.UPDATED);
+        assertThat(events.get(0).data().getStudent().getGrade()).isEqualTo(4);
+        assertThat(events.get(1).data().getType()).isEqualTo(StudentChange.Type.DELETED);
+        assertThat(events.get(1).data().getStudent()).isNull();
+        assertThat(events.get(1).data().getUuid()).isEqualTo(key);
+    }
+
+    @Test
+    public void streamsChangesFromNowOn() throws Exception {
+        start(16);
+        created(2);
+        CountDownLatch subscribed = new CountDownLatch(1);
+
+        Thread writer = new Thread(() -> {
+            try {
+                subscribed.await();
+                created(1);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        writer.start();
+        ServerSentEvent<StudentChange> event = feed.subscribe(null)
+                .doOnSubscribe(subscription -> subscribed.countDown())
+                .filter(e -> e.id() != null)
+                .blockFirst(TIMEOUT);
+        writer.join();
+
+        assertThat(event.id()).isEqualTo("3");
+        assertThat(event.data().getType()).isEqualTo(StudentChange.Type.CREATED);
+    }
+
+    @Test
+    public void rejectsCursorsItCannotResume() {
+        start(16);
+        created(20);
+
+        assertThatThrownBy(() -> feed.subscribe("3")).isInstanceOf(ChangesExpiredException.class);
+        assertThatThrownBy(() -> feed.subscribe("21")).isInstanceOf(ChangesExpiredException.class);
+        assertThatThrownBy(() -> feed.subscribe("-1")).isInstanceOf(InvalidCursorException.class);
+        assertThatThrownBy(() -> feed.subscribe("abc")).isInstanceOf(InvalidCursorException.class);
+        assertThat(feed.subscribe("4").take(1).blockFirst(TIMEOUT).id()).isEqualTo("5");
+    }
+
+    @Test
+    public void slowSubscriberOverflows() throws Exception {
+        start(16);
+        created(1);
+        List<ServerSentEvent<StudentChange>> events = new CopyOnWriteArrayList<>();
+        CountDownLatch first = new CountDownLatch(1);
+        CountDownLatch completed = new CountDownLatch(1);
+
+        BaseSubscriber<ServerSentEvent<StudentChange>> subscriber = new BaseSubscriber<ServerSentEvent<StudentChange>>() {
+            @Override
+            protected void hookOnSubscribe(Subscription subscription) {
+                request(1);
+            }
+
+            @Override
+            protected void hookOnNext(ServerSentEvent<StudentChange> event) {
+                events.add(event);
+                first.countDown();
+            }
+
+            @Override
+            protected void hookOnComplete() {
+                completed.countDown();
+            }
+        };
+        feed.subscribe("0").subscribe(subscriber);
+        assertThat(first.await(10, TimeUnit.SECONDS)).isTrue();
+
+        // the subscriber requests more only after the log no longer keeps its next change
+        created(20);
+        subscriber.request(100);
+        assertThat(completed.await(10, TimeUnit.SECONDS)).isTrue();
+
+        assertThat(events).hasSize(2);
+        assertThat(events.get(0).id()).isEqualTo("1");
+        assertThat(events.get(1).event()).isEqualTo("overflow");
+        assertThat(events.get(1).comment()).contains("Changes after 1");
+    }
+}
@@ -0,0 +1,177 @@
+package eu.bidin.springexample.replication;
+
+import eu.bidin.springexample.entities.Student;
+import eu.bidin.springexample.models.StudentChange;
+import eu.bidin.utility.Threads;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ChangeLogTest {
+
+    private static ChangeLog log(int capacity) {
+        ReplicationProperties properties = new ReplicationProperties();
+        properties.setRole(ReplicationProperties.Role.LEADER);
+        properties.setLogCapacity(capacity);
+        return new ChangeLog(properties);
+    }
+
+    private static void removed(ChangeLog log, UUID key) {
+        log.record(key, StudentChange.Type.DELETED, null, log.getSequence(), k -> null);
+    }
+
+    @Test
+    public void readsChangesInOrder() {
+        ChangeLog log = log(16);
+        UUID key = UUID.randomUUID();
+        Student student = new Student(key, "Ana", 5, 1);
+
+        log.record(key, StudentChange.Type.CREATED, student, 0, k -> student);
+        removed(log, key);
+
+        assertThat(log.getSequence()).isEqualTo(2);
+        List<ChangeLog.Change> changes = log.read(0, 10);
+        assertThat(changes).extracting(ChangeLog.Change::getSequence).containsExactly(1L, 2L);
+        assertThat(changes).extracting(ChangeLog.Change::getType)
+                .containsExactly(StudentChange.Type.CREATED, StudentChange.Type.DELETED);
+        assertThat(changes.get(0).getStudent()).isSameAs(student);
+        assertThat(changes.get(1).getKey()).isEqualTo(key);
+        assertThat(changes.get(1).getStudent()).isNull();
+        assertThat(log.read(1, 10)).hasSize(1);
+        assertThat(log.read(2, 10)).isEmpty();
+        assertThat(log.read(0, 1)).hasSize(1);
+    }
+
+    @Test
+    public void forgetsChangesBeyondCapacity() {
+        ChangeLog log = log(10);
+        assertThat(log.getCapacity()).isEqualTo(16);
+        for (int i = 0; i < 20; i++)
+            removed(log, UUID.randomUUID());
+
+        // a reader that is further behind than the log keeps has to start over
+        assertThat(log.read(3, 100)).isNull();
+        assertThat(log.read(4, 100)).extracting(ChangeLog.Change::getSequence).startsWith(5L).hasSize(16);
+        assertThat(log.read(21, 100)).isNull();
+    }
+
+    @Test
+    public void disabledLogRecordsNothing() {
+        ChangeLog log = new ChangeLog(new ReplicationProperties());
+
+        log.record(UUID.randomUUID(), StudentChange.Type.DELETED, null, 0, key -> {
+            throw new AssertionError("A disabled log must not read the table");
+        });
+
+        assertThat(log.isEnabled()).isFalse();
+        assertThat(log.getSequence()).isZero();
+    }
+
+    @Test
+    public void awaitReturnsOnChangeOrTimeout() throws Exception {
+        ChangeLog log = log(16);
+        long start = System.nanoTime();
+        log.await(0, 50, TimeUnit.MILLISECONDS);
+        assertThat(System.nanoTime() - start).isGreaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(50));
+
+        Threads.run(2, thread -> {
+            if (thread == 0)
+                log.await(0, 10, TimeUnit.SECONDS);
+            else
+                removed(log, UUID.randomUUID());
+        });
+        assertThat(log.getSequence()).isEqualTo(1);
+    }
+
+    @Test
+    public void lastChangeOfKeyIsItsLatestState() throws Exception {
+        ChangeLog log = log(1 << 16);
+        ConcurrentHashMap<UUID, Student> table = new ConcurrentHashMap<>();
+        UUID key = UUID.randomUUID();
+
+        // every thread modifies the key, then records what it wrote
+        Threads.run(4, thread -> {
+            for (int i = 0; i < 1000; i++) {
+                long after = log.getSequence();
+                Student student = table.compute(key, (k, current) -> new Student(k, "Ana", 5, current == null ? 1 : current.getVersion() + 1));
+                log.record(key, StudentChange.Type.UPDATED, student, after, table::get);
+            }
+        });
+
+        // a change whose later write was recorded first is dropped
+        List<ChangeLog.Change> changes = log.read(0, 4000);
+        assertThat(changes.size()).isBetween(1, 4000);
+        assertThat(changes.get(changes.size() - 1).getStudent().getVersion()).isEqualTo(4000);
+        for (int i = 1; i < changes.size(); i++)
+            assertThat(changes.get(i).getStudent().getVersion()).isGreaterThanOrEqualTo(changes.get(i - 1).getStudent().getVersion());
+    }
+
+    @Test
+    public void recordsTypeAndWrittenStudent() {
+        ChangeLog log = log(16);
+        ConcurrentHashMap<UUID, Student> table = new ConcurrentHashMap<>();
+        UUID key = UUID.randomUUID();
+
+        // students recovered from a journal without versions are in version 0
+        table.put(key, new Student(key, "Ana", 5, 0));
+        Student updated = new Student(key, "Ana", 4, 1);
+        table.put(key, updated);
+        log.record(key, StudentChange.Type.UPDATED, updated, 0, table::get);
+
+        ChangeLog.Change change = log.read(0, 1).get(0);
+        assertThat(change.getType()).isEqualTo(StudentChange.Type.UPDATED);
+        assertThat(change.getStudent()).isSameAs(updated);
+    }
+
+    @Test
+    public void keepsChangesWhoseLaterWritesAreNotRecordedYet() {
+        ChangeLog log = log(16);
+        ConcurrentHashMap<UUID, Student> table = new ConcurrentHashMap<>();
+        UUID key = UUID.randomUUID();
+
+        // the key is created, updated and deleted before the creation is recorded
+        long created = log.getSequence();
+        Student student = new Student(key, "Ana", 5, 1);
+        table.put(key, student);
+        long updated = log.getSequence();
+        Student next = new Student(key, "Ana", 4, 2);
+        table.put(key, next);
+        long deleted = log.getSequence();
+        table.remove(key);
+
+        log.record(key, StudentChange.Type.CREATED, student, created, table::get);
+        log.record(key, StudentChange.Type.UPDATED, next, updated, table::get);
+        log.record(key, StudentChange.Type.DELETED, null, deleted, table::get);
+
+        assertThat(log.read(0, 10)).extracting(ChangeLog.Change::getType)
+                .containsExactly(StudentChange.Type.CREATED, StudentChange.Type.UPDATED, StudentChange.Type.DELETED);
+        assertThat(log.read(0, 10)).extracting(ChangeLog.Change::getStudent).containsExactly(student, next, null);
+    }
+
+    @Test
+    public void dropsChangesWhoseLaterWritesWereRecorded() {
+        ChangeLog log = log(16);
+        ConcurrentHashMap<UUID, Student> table = new ConcurrentHashMap<>();
+        UUID key = UUID.randomUUID();
+
+        // the update is recorded before the creation it followed
+        long created = log.getSequence();
+        Student student = new Student(key, "Ana", 5, 1);
+        table.put(key, student);
+        long updated = log.getSequence();
+        Student next = new Student(key, "Ana", 4, 2);
+        table.put(key, next);
+
+        log.record(key, StudentChange.Type.UPDATED, next, updated, table::get);
+        log.record(key, StudentChange.Type.CREATED, student, created, table::get);
+
+        List<ChangeLog.Change> changes = log.read(0, 10);
+        assertThat(changes).extracting(ChangeLog.Change::getType).containsExactly(StudentChange.Type.UPDATED);
+        assertThat(changes.get(0).getStudent()).isSameAs(next);
+    }
+}
@@ -0,0 +1,184 @@
+package eu.bidin.springexample.replication;
+
+import eu.bidin.springexample.entities.Student;
+import eu.bidin.springexample.models.StudentChange;
+import eu.bidin.springexample.services.StudentService;
+import eu.bidin.utility.ConcurrentMyHashtable;
+import eu.bidin.utility.MyHashtable;
+import eu.bidin.utility.Table;
+import org.junit.After;
+import org.junit.Test;
+
+import java.net.ServerSocket;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Replicates between a leader and a follower over a socket, with the tables of their services in memory.
+ */
+public class ReplicationTest {
+
+    private final List<ReplicationServer> leaders = new ArrayList<>();
+    private ReplicationProperties followerProperties;
+    private ReplicationClient follower;
+
+    @After
+    public void close() throws Exception {
+        if (follower != null)
+            follower.close();
+        for (ReplicationServer leader : leaders)
+            leader.close();
+    }
+
+    private static int freePort() throws Exception {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private static ReplicationProperties properties(ReplicationProperties.Role role, int port) {
+        ReplicationProperties properties = new ReplicationProperties();
+        properties.setRole(role);
+        properties.setPort(port);
+        properties.setLeader("localhost:" + port);
+        properties.setHeartbeatInterval(Duration.ofMillis(20));
+        return properties;
+    }
+
+    private ChangeLog startLeader(int port, Table<UUID, Student> table) throws Exception {
+        ReplicationProperties properties = properties(ReplicationProperties.Role.LEADER, port);
+        ChangeLog log = new ChangeLog(properties);
+        StudentService service = mock(StudentService.class);
+        when(service.scanStudents(anyLong(), anyInt(), any())).thenAnswer(invocation -> {
+            Consumer<Student> consumer = invocation.getArgument(2);
+            return table.scan(invocation.getArgument(0), invocation.getArgument(1), entry -> consumer.accept(entry.getValue()));
+        });
+
+        ReplicationServer leader = new ReplicationServer(log, service, properties);
+        leader.start();
+        leaders.add(leader);
+        return log;
+    }
+
+    private ReplicaStatus startFollower(int port, Map<UUID, Student> table) {
+        ReplicationProperties properties = properties(ReplicationProperties.Role.FOLLOWER, port);
+        followerProperties = properties;
+        ReplicaStatus status = new ReplicaStatus(properties);
+        StudentService service = mock(StudentService.class);
+        doAnswer(invocation -> {
+            Student student = invocation.getArgument(1);
+            if (student == null)
+                table.remove(invocation.<UUID>getArgument(0));
+            else
+                table.put(invocation.getArgument(0), student);
+            return null;
+        }).when(service).applyReplicated(any(), any());
+        doAnswer(invocation -> table.keySet().retainAll(invocation.<Set<UUID>>getArgument(0)))
+                .when(service).retainReplicated(any());
+
+        follower = new ReplicationClient(service, status, properties);
+        follower.start();
+        return status;
+    }
+
+    private static void modify(Table<UUID, Student> table, ChangeLog log, UUID key, Student student) {
+        long after = log.getSequence();
+        StudentChange.Type type = student == null ? StudentChange.Type.DELETED
+                : table.containsKey(key) ? StudentChange.Type.UPDATED : StudentChange.Type.CREATED;
+        if (student == null)
+            table.remove(key);
+        else
+            table.put(key, student);
+        log.record(key, type, student, after, table::get);
+    }
+
+    private static Map<UUID, Student> contents(Table<UUID, Student> table) {
+        Map<UUID, Student> contents = new HashMap<>();
+        for (MyHashtable.TableEntry<UUID, Student> entry : table)
+            contents.put(entry.getKey(), entry.getValue());
+        return contents;
+    }
+
+    private static void awaitEqual(Map<UUID, Student> follower, Table<UUID, Student> leader) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!follower.equals(contents(leader)) && System.nanoTime() < deadline)
+            Thread.sleep(10);
+        assertThat(follower).isEqualTo(contents(leader));
+    }
+
+    private static Student student(String name, int version) {
+        UUID key = UUID.randomUUID();
+        return new Student(key, name, 3, version);
+    }
+
+    @Test
+    public void followerCopiesSnapshotThenChanges() throws Exception {
+        int port = freePort();
+        Table<UUID, Student> leader = new ConcurrentMyHashtable<>();
+        List<Student> existing = new ArrayList<>();
+        for (int i = 0; i < 3000; i++) {
+            Student student = student("Student " + i, 1);
+            leader.put(student.getUuid(), student);
+            existing.add(student);
+        }
+        ChangeLog log = startLeader(port, leader);
+        Map<UUID, Student> replica = new ConcurrentHashMap<>();
+        ReplicaStatus status = startFollower(port, replica);
+
+        awaitEqual(replica, leader);
+        assertThat(replica.get(existing.get(7).getUuid()).getName()).isEqualTo("Student 7");
+
+        Student added = student("Ana", 1);
+        modify(leader, log, added.getUuid(), added);
+        modify(leader, log, existing.get(0).getUuid(), new Student(existing.get(0).getUuid(), "Updated", 5, 2));
+        modify(leader, log, existing.get(1).getUuid(), null);
+
+        awaitEqual(replica, leader);
+        assertThat(replica.get(existing.get(0).getUuid()).getVersion()).isEqualTo(2);
+        assertThat(replica).doesNotContainKey(existing.get(1).getUuid());
+        assertThat(status.getStaleness(TimeUnit.SECONDS)).isLessThan(1);
+    }
+
+    @Test
+    public void followerStartsOverWithNewLeader() throws Exception {
+        int port = freePort();
+        Table<UUID, Student> first = new ConcurrentMyHashtable<>();
+        Student kept = student("Kept", 1);
+        Student dropped = student("Dropped", 1);
+        first.put(kept.getUuid(), kept);
+        first.put(dropped.getUuid(), dropped);
+        startLeader(port, first);
+        Map<UUID, Student> replica = new ConcurrentHashMap<>();
+        startFollower(port, replica);
+        awaitEqual(replica, first);
+
+        // a new leader starts a new epoch, the follower replaces its students with a snapshot of the new one
+        leaders.remove(0).close();
+        Table<UUID, Student> second = new ConcurrentMyHashtable<>();
+        Student added = student("Added", 1);
+        second.put(kept.getUuid(), kept);
+        second.put(added.getUuid(), added);
+        int secondPort = freePort();
+        startLeader(secondPort, second);
+        followerProperties.setLeader("localhost:" + secondPort);
+
+        awaitEqual(replica, second);
+        assertThat(replica).doesNotContainKey(dropped.getUuid());
+    }
+}
@@ -0,0 +1,97 @@
+package eu.bidin.springexample.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import eu.bidin.springexample.cache.CacheProperties;
+import eu.bidin.springexample.cache.StudentCache;
+import eu.bidin.springexample.entities.Student;
+import eu.bidin.springexample.indexes.StudentIndex;
+import eu.bidin.springexample.models.GradeAverage;
+import eu.bidin.springexample.replication.ChangeLog;
+import eu.bidin.springexample.replication.ReplicaStatus;
+import eu.bidin.springexample.replication.ReplicationProperties;
+import eu.bidin.springexample.sharding.ShardDirectory;
+import eu.bidin.springexample.sharding.ShardingProperties;
+import eu.bidin.utility.ConcurrentMyHashtable;
+import eu.bidin.utility.Table;
+import org.junit.Test;
+
+import java.util.SortedMap;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+
+public class StudentServiceTest {
+
+    private final Table<UUID, Student> database = new ConcurrentMyHashtable<>();
+
+    private final StudentService service = new StudentService(database, new StudentIndex(database),
+            new StudentCache(new CacheProperties()), new ObjectMapper(), new ShardDirectory(new ShardingProperties()),
+            new ChangeLog(new ReplicationProperties()), new ReplicaStatus(new ReplicationProperties()));
+
+    private void put(String name, Integer grade) {
+        UUID key = UUID.randomUUID();
+        database.put(key, new Student(key, name, grade));
+    }
+
+    @Test
+    public void emptyTableHasNoAverage() {
+        GradeAverage average = service.getAverageGrade();
+
+        assertThat(average.getCount()).isZero();
+        assertThat(average.getAverage()).isNull();
+        assertThat(service.getGradeHistogram()).containsOnlyKeys(1, 2, 3, 4, 5).doesNotContainValue(1L);
+        assertThat(service.getInitialCounts()).isEmpty();
+    }
+
+    @Test
+    public void studentsWithoutGradeAreOnlyCountedByName() {
+        put("Ana", 5);
+        put("Ivo", 2);
+        put("Iva", null);
+        put("Marko", null);
+
+        GradeAverage average = service.getAverageGrade();
+        assertThat(average.getCount()).isEqualTo(2);
+        assertThat(average.getAverage()).isEqualTo(3.5);
+        SortedMap<Integer, Long> histogram = service.getGradeHistogram();
+        assertThat(histogram).containsExactly(entry(1, 0L), entry(2, 1L), entry(3, 0L), entry(4, 0L), entry(5, 1L));
+        assertThat(service.getInitialCounts()).containsExactly(entry("A", 1L), entry("I", 2L), entry("M", 1L));
+    }
+
+    @Test
+    public void studentsWithOnlyMissingGradesHaveNoAverage() {
+        put("Ana", null);
+
+        assertThat(service.getAverageGrade().getAverage()).isNull();
+        assertThat(service.getAverageGrade().getCount()).isZero();
+    }
+
+    @Test
+    public void initialsAreWholeCharactersInUpperCase() {
+        put("čedo", 3);
+        put("Čedomir", 4);
+        put("  šime", 4);
+        put("đuro", 1);
+        put("ölmez", 2);
+        // a letter outside the basic multilingual plane is one initial, not half of a surrogate pair
+        put("𐐷ilbert", 2);
+        put("𐐏ona", 2);
+        put(" ", 5);
+        put(null, 5);
+
+        assertThat(service.getInitialCounts()).containsExactly(
+                entry("Ö", 1L), entry("Č", 2L), entry("Đ", 1L), entry("Š", 1L), entry("𐐏", 2L));
+    }
+
+    @Test
+    public void statisticsFollowLargeTables() {
+        for (int i = 0; i < 10000; i++)
+            put("Student " + i, i % 5 + 1);
+
+        assertThat(service.getAverageGrade().getCount()).isEqualTo(10000);
+        assertThat(service.getAverageGrade().getAverage()).isEqualTo(3.0);
+        assertThat(service.getGradeHistogram().values()).containsOnly(2000L);
+        assertThat(service.getInitialCounts()).containsExactly(entry("S", 10000L));
+    }
+}
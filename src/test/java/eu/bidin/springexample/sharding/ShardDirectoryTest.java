@@ -0,0 +1,103 @@
+package eu.bidin.springexample.sharding;
+
+import eu.bidin.springexample.exceptions.ShardMembershipException;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class ShardDirectoryTest {
+
+    private static ShardingProperties properties(boolean enabled) {
+        ShardingProperties properties = new ShardingProperties();
+        properties.setEnabled(enabled);
+        properties.setSelf("http://a:8080/");
+        properties.setNodes(Arrays.asList(" http://b:8080/", "http://a:8080"));
+        return properties;
+    }
+
+    @Test
+    public void disabledDirectoryOwnsEverything() {
+        ShardDirectory directory = new ShardDirectory(properties(false));
+
+        assertThat(directory.getNodes()).containsExactly("http://a:8080");
+        assertThat(directory.getPeers()).isEmpty();
+        for (int i = 0; i < 100; i++) {
+            UUID key = UUID.randomUUID();
+            assertThat(directory.isLocal(key)).isTrue();
+            assertThat(directory.ownerOf(key)).isEqualTo("http://a:8080");
+        }
+        assertThat(directory.addNodes(Collections.singletonList("http://c:8080"))).isFalse();
+    }
+
+    @Test
+    public void enabledDirectorySplitsKeysBetweenNodes() {
+        ShardDirectory directory = new ShardDirectory(properties(true));
+
+        assertThat(directory.getNodes()).containsExactly("http://a:8080", "http://b:8080");
+        assertThat(directory.getPeers()).containsExactly("http://b:8080");
+        int local = 0;
+        for (int i = 0; i < 1000; i++) {
+            UUID key = UUID.randomUUID();
+            assertThat(directory.isLocal(key)).isEqualTo(directory.ownerOf(key).equals("http://a:8080"));
+            if (directory.isLocal(key))
+                local += 1;
+        }
+        assertThat(local).isBetween(300, 700);
+    }
+
+    @Test
+    public void addsOnlyNewNodes() {
+        ShardDirectory directory = new ShardDirectory(properties(true));
+
+        assertThat(directory.addNodes(Arrays.asList("http://b:8080/", "http://a:8080"))).isFalse();
+        assertThat(directory.addNodes(Arrays.asList("http://b:8080", "http://c:8080/"))).isTrue();
+        assertThat(directory.getPeers()).containsExactly("http://b:8080", "http://c:8080");
+    }
+
+    @Test
+    public void removesNodesButKeepsTheLast() {
+        ShardDirectory directory = new ShardDirectory(properties(true));
+
+        assertThat(directory.removeNodes(Collections.singletonList("http://c:8080"))).isFalse();
+        assertThat(directory.removeNodes(Collections.singletonList("http://b:8080/"))).isTrue();
+        assertThat(directory.getPeers()).isEmpty();
+        assertThat(directory.removeNodes(Collections.singletonList("http://a:8080"))).isFalse();
+        assertThat(directory.getNodes()).containsExactly("http://a:8080");
+    }
+
+    @Test
+    public void selfThatLeftForwardsEverything() {
+        ShardDirectory directory = new ShardDirectory(properties(true));
+
+        assertThat(directory.removeNodes(Collections.singletonList("http://a:8080"))).isTrue();
+        assertThat(directory.getPeers()).containsExactly("http://b:8080");
+        for (int i = 0; i < 100; i++)
+            assertThat(directory.isLocal(UUID.randomUUID())).isFalse();
+    }
+
+    @Test
+    public void onlyConfiguredNodesAreMembersWithoutSecret() {
+        ShardDirectory directory = new ShardDirectory(properties(true));
+
+        directory.checkMember("http://b:8080/", null);
+        directory.checkMember("http://a:8080", "anything");
+        assertThatThrownBy(() -> directory.checkMember("http://c:8080", null)).isInstanceOf(ShardMembershipException.class);
+        assertThatThrownBy(() -> directory.checkMember(null, null)).isInstanceOf(ShardMembershipException.class);
+    }
+
+    @Test
+    public void nodesWithTheSecretAreMembers() {
+        ShardingProperties properties = properties(true);
+        properties.setSecret("s3cret");
+        ShardDirectory directory = new ShardDirectory(properties);
+
+        directory.checkMember("http://c:8080", "s3cret");
+        assertThatThrownBy(() -> directory.checkMember("http://b:8080", null)).isInstanceOf(ShardMembershipException.class);
+        assertThatThrownBy(() -> directory.checkMember("http://b:8080", "secret")).isInstanceOf(ShardMembershipException.class);
+    }
+}
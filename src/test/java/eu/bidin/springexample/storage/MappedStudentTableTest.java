@@ -0,0 +1,149 @@
+package eu.bidin.springexample.storage;
+
+import eu.bidin.springexample.entities.Student;
+import eu.bidin.utility.MyHashtable.TableEntry;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class MappedStudentTableTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static Map<UUID, Student> contents(MappedStudentTable table) {
+        Map<UUID, Student> contents = new HashMap<>();
+        for (TableEntry<UUID, Student> entry : table)
+            assertThat(contents.put(entry.getKey(), entry.getValue())).isNull();
+        return contents;
+    }
+
+    private static List<Student> students(int count) {
+        List<Student> students = new ArrayList<>();
+        for (int i = 0; i < count; i++)
+            students.add(new Student(UUID.randomUUID(), "Student " + i, i % 5 + 1));
+        return students;
+    }
+
+    @Test
+    public void putGetReplaceRemove() throws Exception {
+        try (MappedStudentTable table = new MappedStudentTable(folder.getRoot().toPath())) {
+            Student student = new Student(UUID.randomUUID(), "Ana", 5, 1);
+            UUID key = student.getUuid();
+
+            table.put(key, student);
+            assertThat(table.get(key)).isEqualTo(student);
+            assertThat(table.putIfAbsent(key, new Student(key, "Other", 1))).isEqualTo(student);
+
+            Student updated = new Student(key, "Ana Anić", null, 2);
+            assertThat(table.replace(key, student, updated)).isTrue();
+            assertThat(table.replace(key, student, updated)).isFalse();
+            assertThat(table.get(key)).isEqualTo(updated);
+            assertThat(table.get(key).getGrade()).isNull();
+            assertThat(table.computeIfPresent(key, (k, s) -> new Student(k, "Ana", 4, 3)).getVersion()).isEqualTo(3);
+
+            assertThat(table.remove(key).getName()).isEqualTo("Ana");
+            assertThat(table.get(key)).isNull();
+            assertThat(table.isEmpty()).isTrue();
+            assertThatThrownBy(() -> table.put(key, new Student(key, new String(new char[51]), 1)))
+                    .isInstanceOf(IllegalArgumentException.class);
+        }
+    }
+
+    @Test
+    public void updatesReuseFreedSlots() throws Exception {
+        try (MappedStudentTable table = new MappedStudentTable(folder.getRoot().toPath())) {
+            List<Student> students = students(100);
+            students.forEach(student -> table.put(student.getUuid(), student));
+
+            // every update moves a student to a fresh slot, the old one must be freed and nothing left behind
+            for (int round = 0; round < 20; round++)
+                for (Student student : students)
+                    table.put(student.getUuid(), new Student(student.getUuid(), "Round " + round, 3, round));
+
+            Map<UUID, Student> contents = contents(table);
+            assertThat(contents).hasSize(100);
+            assertThat(contents.values()).allMatch(student -> student.getVersion() == 19);
+            assertThat(slotCount(folder.getRoot().toPath())).isLessThanOrEqualTo(102);
+        }
+    }
+
+    @Test
+    public void reopensClosedFiles() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        List<Student> students = students(3000);
+        try (MappedStudentTable table = new MappedStudentTable(directory)) {
+            // grows the index a few times
+            students.forEach(student -> table.put(student.getUuid(), student));
+            for (int i = 0; i < 1000; i++)
+                table.remove(students.get(i).getUuid());
+            assertThat(table.getResizeCount()).isPositive();
+        }
+
+        try (MappedStudentTable table = new MappedStudentTable(directory)) {
+            assertThat(table.size()).isEqualTo(2000);
+            for (int i = 0; i < students.size(); i++)
+                assertThat(table.get(students.get(i).getUuid())).isEqualTo(i < 1000 ? null : students.get(i));
+            assertThat(contents(table)).hasSize(2000);
+        }
+    }
+
+    @Test
+    public void recoversFilesThatWereNotClosed() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        List<Student> students = students(200);
+        MappedStudentTable crashed = new MappedStudentTable(directory);
+        students.forEach(student -> crashed.put(student.getUuid(), student));
+        for (int i = 0; i < 50; i++)
+            crashed.remove(students.get(i).getUuid());
+
+        // a student written to a slot that was allocated but never published in the index, then the application dies
+        long leaked = slotCount(directory);
+        try (FileChannel channel = FileChannel.open(directory.resolve("students.dat"), StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer slot = ByteBuffer.allocate(128).order(ByteOrder.BIG_ENDIAN);
+            slot.put(0, (byte) 1);
+            slot.putLong(8, 42);
+            slot.putLong(16, 42);
+            slot.putShort(26, (short) 0);
+            channel.write(slot, leaked * 128);
+            ByteBuffer count = ByteBuffer.allocate(8).putLong(0, leaked + 1);
+            channel.write(count, 8);
+            ByteBuffer free = ByteBuffer.allocate(8).putLong(0, 0);
+            channel.write(free, 16);
+        }
+
+        try (MappedStudentTable table = new MappedStudentTable(directory)) {
+            assertThat(table.size()).isEqualTo(150);
+            Map<UUID, Student> contents = contents(table);
+            assertThat(contents).hasSize(150).doesNotContainKey(new UUID(42, 42));
+            for (int i = 50; i < students.size(); i++)
+                assertThat(contents.get(students.get(i).getUuid())).isEqualTo(students.get(i));
+
+            // the freed slots and the leaked one are reused before the file grows
+            students(51).forEach(student -> table.put(student.getUuid(), student));
+            assertThat(slotCount(directory)).isEqualTo(leaked + 1);
+        }
+    }
+
+    private static long slotCount(Path directory) throws Exception {
+        try (FileChannel channel = FileChannel.open(directory.resolve("students.dat"), StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(8);
+            channel.read(buffer, 8);
+            return buffer.getLong(0);
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package eu.bidin.utility;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A key whose hash code is always {@code 0}, so all keys share a slot, which counts how often it is compared with
+ * {@link #equals}: a slot that is a chain compares a key with most of the others, a tree with only one.
+ * <p>
+ * Odd integers below 2^16 never share a slot with these keys, whatever the capacity of a table.
+ */
+final class CollidingKey implements Comparable<CollidingKey> {
+
+    private final int id;
+    private final AtomicLong comparisons;
+
+    CollidingKey(int id, AtomicLong comparisons) {
+        this.id = id;
+        this.comparisons = comparisons;
+    }
+
+    @Override
+    public int compareTo(CollidingKey other) {
+        return Integer.compare(id, other.id);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        comparisons.incrementAndGet();
+        return obj instanceof CollidingKey && ((CollidingKey) obj).id == id;
+    }
+
+    @Override
+    public int hashCode() {
+        return 0;
+    }
+
+    @Override
+    public String toString() {
+        return "CollidingKey" + id;
+    }
+
+    /**
+     * A key that is not comparable, and shares the slot of the colliding keys.
+     */
+    static final class Plain {
+
+        @Override
+        public int hashCode() {
+            return 0;
+        }
+    }
+}
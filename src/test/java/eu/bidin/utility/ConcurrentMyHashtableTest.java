@@ -0,0 +1,309 @@
+package eu.bidin.utility;
+
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class ConcurrentMyHashtableTest {
+
+    private static final int THREADS = 8;
+
+    @Test
+    public void putGetRemove() {
+        ConcurrentMyHashtable<Integer, String> table = new ConcurrentMyHashtable<>(4, 0.75, 2);
+
+        for (int i = 0; i < 1000; i++)
+            table.put(i, "v" + i);
+        table.put(7, "seven");
+
+        assertThat(table.size()).isEqualTo(1000);
+        assertThat(table.get(7)).isEqualTo("seven");
+        assertThat(table.get(999)).isEqualTo("v999");
+        assertThat(table.get(1000)).isNull();
+        assertThat(table.getResizeCount()).isPositive();
+
+        assertThat(table.remove(7)).isEqualTo("seven");
+        assertThat(table.remove(7)).isNull();
+        assertThat(table.containsKey(7)).isFalse();
+        assertThat(table.containsValue("v8")).isTrue();
+        assertThat(table.size()).isEqualTo(999);
+
+        table.clear();
+        assertThat(table.isEmpty()).isTrue();
+        assertThat(table.get(8)).isNull();
+    }
+
+    @Test
+    public void conditionalWrites() {
+        ConcurrentMyHashtable<String, Integer> table = new ConcurrentMyHashtable<>();
+
+        assertThat(table.putIfAbsent("a", 1)).isNull();
+        assertThat(table.putIfAbsent("a", 2)).isEqualTo(1);
+        assertThat(table.replace("a", 2, 3)).isFalse();
+        assertThat(table.replace("a", 1, 3)).isTrue();
+        assertThat(table.replace("b", null, 3)).isFalse();
+        assertThat(table.computeIfPresent("a", (key, value) -> value + 1)).isEqualTo(4);
+        assertThat(table.computeIfPresent("b", (key, value) -> 1)).isNull();
+        assertThat(table.containsKey("b")).isFalse();
+        assertThat(table.computeIfPresent("a", (key, value) -> null)).isNull();
+        assertThat(table.containsKey("a")).isFalse();
+    }
+
+    @Test
+    public void rejectsInvalidArguments() {
+        assertThatThrownBy(() -> new ConcurrentMyHashtable<>(0)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new ConcurrentMyHashtable<>(16, 0, 1)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new ConcurrentMyHashtable<>(16, 0.75, 0)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new ConcurrentMyHashtable<String, String>().put(null, "v"))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void concurrentPutsOfDisjointKeysWhileResizing() throws Exception {
+        ConcurrentMyHashtable<Integer, Integer> table = new ConcurrentMyHashtable<>(1, 0.75, THREADS);
+        int perThread = 20000;
+
+        run(thread -> {
+            for (int i = 0; i < perThread; i++)
+                table.put(thread * perThread + i, i);
+        });
+
+        assertThat(table.size()).isEqualTo(THREADS * perThread);
+        for (int i = 0; i < THREADS * perThread; i++)
+            assertThat(table.get(i)).isEqualTo(i % perThread);
+    }
+
+    @Test
+    public void concurrentComputeIfPresentLosesNoUpdates() throws Exception {
+        ConcurrentMyHashtable<Integer, Integer> table = new ConcurrentMyHashtable<>(16, 0.75, THREADS);
+        int keys = 64;
+        int increments = 5000;
+        for (int i = 0; i < keys; i++)
+            table.put(i, 0);
+
+        run(thread -> {
+            for (int i = 0; i < increments; i++)
+                table.computeIfPresent(i % keys, (key, value) -> value + 1);
+        });
+
+        long total = 0;
+        for (int i = 0; i < keys; i++)
+            total += table.get(i);
+        assertThat(total).isEqualTo((long) THREADS * increments);
+    }
+
+    @Test
+    public void concurrentPutIfAbsentAddsOnce() throws Exception {
+        ConcurrentMyHashtable<Integer, Integer> table = new ConcurrentMyHashtable<>(1, 0.75, THREADS);
+        int keys = 10000;
+        int[] added = new int[THREADS];
+
+        run(thread -> {
+            for (int i = 0; i < keys; i++)
+                if (table.putIfAbsent(i, thread) == null)
+                    added[thread]++;
+        });
+
+        int total = 0;
+        for (int count : added)
+            total += count;
+        assertThat(total).isEqualTo(keys);
+        assertThat(table.size()).isEqualTo(keys);
+    }
+
+    @Test
+    public void readersSeeStableKeysWhileWritersChurn() throws Exception {
+        ConcurrentMyHashtable<Integer, Integer> table = new ConcurrentMyHashtable<>(1, 0.75, THREADS);
+        int stable = 1000;
+        for (int i = 0; i < stable; i++)
+            table.put(i, i);
+
+        run(thread -> {
+            if (thread % 2 == 0) {
+                // writers add and remove keys that do not overlap with the stable ones, resizing the table
+                for (int i = 0; i < 20000; i++) {
+                    int key = stable + thread * 20000 + i;
+                    table.put(key, key);
+                    if (i % 2 == 0)
+                        table.remove(key);
+                }
+            } else {
+                for (int round = 0; round < 50; round++)
+                    for (int i = 0; i < stable; i++)
+                        assertThat(table.get(i)).isEqualTo(i);
+            }
+        });
+    }
+
+    @Test
+    public void scansReturnStableElementsWhileWritersResize() throws Exception {
+        ConcurrentMyHashtable<Integer, Integer> table = new ConcurrentMyHashtable<>(1, 0.75, THREADS);
+        int stable = 2000;
+        for (int i = 0; i < stable; i++)
+            table.put(i, i);
+        AtomicInteger writers = new AtomicInteger(THREADS / 2);
+
+        run(thread -> {
+            if (thread % 2 == 0) {
+                for (int i = 0; i < 50000; i++)
+                    table.put(stable + thread * 50000 + i, i);
+                writers.decrementAndGet();
+                return;
+            }
+            do {
+                // scans, iterators and parallel streams must all return every stable element while the table grows
+                Set<Integer> scanned = new HashSet<>();
+                long cursor = 0;
+                do {
+                    cursor = table.scan(cursor, 50, entry -> scanned.add(entry.getKey()));
+                } while (cursor != 0);
+                assertStable(scanned, stable);
+
+                Set<Integer> iterated = new HashSet<>();
+                for (MyHashtable.TableEntry<Integer, Integer> entry : table)
+                    iterated.add(entry.getKey());
+                assertStable(iterated, stable);
+
+                Set<Integer> streamed = StreamSupport.stream(table.spliterator(), true)
+                        .map(MyHashtable.TableEntry::getKey)
+                        .filter(key -> key < stable)
+                        .collect(Collectors.toSet());
+                assertThat(streamed).hasSize(stable);
+            } while (writers.get() > 0);
+        });
+
+        assertThat(table.size()).isEqualTo(stable + THREADS / 2 * 50000);
+    }
+
+    @Test
+    public void concurrentWritersStayWithinMaximumSize() throws Exception {
+        ConcurrentMyHashtable<Integer, Integer> table = new ConcurrentMyHashtable<>(16, 0.75, THREADS,
+                new EvictionPolicy<>(1000, 0, null, null));
+        Set<Integer> evicted = ConcurrentHashMap.newKeySet();
+        table.setEvictionListener((key, value) -> assertThat(evicted.add(key)).isTrue());
+        int perThread = 10000;
+
+        run(thread -> {
+            for (int i = 0; i < perThread; i++)
+                table.put(thread * perThread + i, i);
+        });
+
+        // every element is either still there or was reported once
+        assertThat(table.size()).isLessThanOrEqualTo(1000);
+        assertThat(table.size() + table.getEvictionCount()).isEqualTo(THREADS * perThread);
+        assertThat(evicted).hasSize((int) table.getEvictionCount());
+        for (int key : evicted)
+            assertThat(table.containsKey(key)).isFalse();
+    }
+
+    @Test
+    public void weightFollowsReplacedAndRemovedValues() throws Exception {
+        ConcurrentMyHashtable<Integer, String> table = new ConcurrentMyHashtable<>(16, 0.75, THREADS,
+                new EvictionPolicy<>(0, 1 << 20, String::length, null));
+
+        run(thread -> {
+            for (int i = 0; i < 2000; i++) {
+                int key = i % 100;
+                table.put(key, new String(new char[thread + 1]));
+                if (i % 7 == 0)
+                    table.remove(key);
+                if (i % 5 == 0)
+                    table.computeIfPresent(key, (k, value) -> value + "x");
+            }
+        });
+
+        long weight = 0;
+        for (MyHashtable.TableEntry<Integer, String> entry : table)
+            weight += entry.getValue().length();
+        assertThat(table.getWeight()).isEqualTo(weight);
+        assertThat(table.getEvictionCount()).isZero();
+    }
+
+    @Test
+    public void expiredElementsAreRemovedAndReported() throws Exception {
+        ConcurrentMyHashtable<Integer, Integer> table = new ConcurrentMyHashtable<>(16, 0.75, THREADS,
+                new EvictionPolicy<>(0, 0, null, Duration.ofMillis(100)));
+        Set<Integer> expired = ConcurrentHashMap.newKeySet();
+        table.setEvictionListener((key, value) -> assertThat(expired.add(key)).isTrue());
+        for (int i = 0; i < 1000; i++)
+            table.put(i, i);
+
+        Thread.sleep(150);
+        assertThat(table.get(1)).isNull();
+        assertThat(table.putIfAbsent(2, -2)).isNull();
+        assertThat(table.replace(3, 3, -3)).isFalse();
+        assertThat(table.computeIfPresent(4, (key, value) -> -4)).isNull();
+
+        // the expired elements that were accessed are gone already, sweeps of several threads over the same slots
+        // report each of the others once
+        run(thread -> {
+            long cursor = 0;
+            do {
+                cursor = table.evictExpired(cursor, 16);
+            } while (cursor != 0);
+        });
+        assertThat(table.size()).isEqualTo(1);
+        assertThat(table.get(2)).isEqualTo(-2);
+        assertThat(table.getExpirationCount()).isEqualTo(1000);
+        assertThat(expired).hasSize(1000);
+    }
+
+    @Test
+    public void concurrentlyAddedCollidingKeysAreKeptInTree() throws Exception {
+        ConcurrentMyHashtable<Object, Integer> table = new ConcurrentMyHashtable<>(4, 0.75, THREADS);
+        AtomicLong comparisons = new AtomicLong();
+        int perThread = 250;
+        CollidingKey[] keys = new CollidingKey[THREADS * perThread];
+        for (int i = 0; i < keys.length; i++)
+            keys[i] = new CollidingKey(i, comparisons);
+
+        // other keys resize the table while the colliding ones are added
+        run(thread -> {
+            for (int i = thread * perThread; i < (thread + 1) * perThread; i++) {
+                table.put(keys[i], i);
+                table.put(2 * i + 1, -1);
+            }
+        });
+
+        assertThat(table.getLongestChain()).isEqualTo(keys.length);
+        comparisons.set(0);
+        for (int i = 0; i < keys.length; i++)
+            assertThat(table.get(keys[i])).isEqualTo(i);
+        assertThat(comparisons.get()).isLessThanOrEqualTo(2L * keys.length);
+
+        // a key of another class turns the tree into a chain, which still holds every key
+        CollidingKey.Plain plain = new CollidingKey.Plain();
+        table.put(plain, -1);
+        comparisons.set(0);
+        for (int i = 0; i < keys.length; i++)
+            assertThat(table.get(keys[i])).isEqualTo(i);
+        assertThat(comparisons.get()).isGreaterThan(10L * keys.length);
+        assertThat(table.get(plain)).isEqualTo(-1);
+
+        run(thread -> {
+            for (int i = thread * perThread; i < (thread + 1) * perThread; i++)
+                assertThat(table.remove(keys[i])).isEqualTo(i);
+        });
+        assertThat(table.getLongestChain()).isEqualTo(1);
+        assertThat(table.size()).isEqualTo(keys.length + 1);
+    }
+
+    private static void assertStable(Set<Integer> seen, int stable) {
+        for (int i = 0; i < stable; i++)
+            assertThat(seen.contains(i)).isTrue();
+    }
+
+    private static void run(Threads.Task task) throws Exception {
+        Threads.run(THREADS, task);
+    }
+}
@@ -0,0 +1,104 @@
+package eu.bidin.utility;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class ConsistentHashRingTest {
+
+    private static final List<String> NODES = Arrays.asList("http://a:8080", "http://b:8080", "http://c:8080");
+
+    private static List<UUID> keys(int count) {
+        Random random = new Random(42);
+        List<UUID> keys = new ArrayList<>(count);
+        for (int i = 0; i < count; i++)
+            keys.add(new UUID(random.nextLong(), random.nextLong()));
+        return keys;
+    }
+
+    @Test
+    public void ownersDoNotDependOnOrderOfNodes() {
+        ConsistentHashRing<String> ring = new ConsistentHashRing<>(NODES, 64);
+        ConsistentHashRing<String> reversed = new ConsistentHashRing<>(Arrays.asList("http://c:8080", "http://b:8080",
+                "http://a:8080", "http://b:8080"), 64);
+
+        assertThat(reversed.getNodes()).containsExactly("http://c:8080", "http://b:8080", "http://a:8080");
+        for (UUID key : keys(10000))
+            assertThat(reversed.nodeFor(key)).isEqualTo(ring.nodeFor(key));
+    }
+
+    @Test
+    public void addedNodeOnlyTakesOverKeys() {
+        ConsistentHashRing<String> ring = new ConsistentHashRing<>(NODES, 128);
+        ConsistentHashRing<String> grown = ring.with("http://d:8080");
+
+        int moved = 0;
+        List<UUID> keys = keys(20000);
+        for (UUID key : keys) {
+            String before = ring.nodeFor(key);
+            String after = grown.nodeFor(key);
+            if (!after.equals(before)) {
+                // keys never move between the nodes that were already there
+                assertThat(after).isEqualTo("http://d:8080");
+                moved += 1;
+            }
+        }
+        // the new node takes over about a quarter of the keys
+        assertThat(moved).isBetween(keys.size() / 6, keys.size() / 3);
+        assertThat(grown.with("http://d:8080")).isSameAs(grown);
+    }
+
+    @Test
+    public void removedNodeOnlyGivesUpItsKeys() {
+        ConsistentHashRing<String> ring = new ConsistentHashRing<>(NODES, 128);
+        ConsistentHashRing<String> shrunk = ring.without("http://b:8080");
+
+        assertThat(shrunk.getNodes()).containsExactly("http://a:8080", "http://c:8080");
+        for (UUID key : keys(20000)) {
+            String before = ring.nodeFor(key);
+            // keys of the remaining nodes stay where they are
+            if (!before.equals("http://b:8080"))
+                assertThat(shrunk.nodeFor(key)).isEqualTo(before);
+        }
+        assertThat(shrunk.without("http://b:8080")).isSameAs(shrunk);
+        assertThatThrownBy(() -> new ConsistentHashRing<>(Arrays.asList("http://a:8080"), 8).without("http://a:8080"))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void virtualNodesSpreadKeysEvenly() {
+        ConsistentHashRing<String> ring = new ConsistentHashRing<>(NODES, 128);
+        Map<String, Integer> counts = new HashMap<>();
+        List<UUID> keys = keys(30000);
+        for (UUID key : keys)
+            counts.merge(ring.nodeFor(key), 1, Integer::sum);
+
+        assertThat(counts).hasSize(3);
+        for (int count : counts.values())
+            assertThat(count).isBetween(keys.size() / 3 * 3 / 4, keys.size() / 3 * 5 / 4);
+    }
+
+    @Test
+    public void positionsWrapAroundTheRing() {
+        ConsistentHashRing<String> ring = new ConsistentHashRing<>(NODES, 8);
+        String first = ring.nodeFor(Long.MIN_VALUE);
+
+        assertThat(ring.nodeFor(Long.MAX_VALUE)).isEqualTo(first);
+        assertThat(new ConsistentHashRing<>(NODES.subList(0, 1), 1).nodeFor(UUID.randomUUID())).isEqualTo(NODES.get(0));
+    }
+
+    @Test
+    public void rejectsInvalidArguments() {
+        assertThatThrownBy(() -> new ConsistentHashRing<>(new ArrayList<String>(), 16)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new ConsistentHashRing<>(NODES, 0)).isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,110 @@
+package eu.bidin.utility;
+
+import org.junit.After;
+import org.junit.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class HttpResponseTest {
+
+    @RequestMapping("/students")
+    static class StudentController {
+
+        @GetMapping("/{uuid}")
+        public void getStudent(@PathVariable String uuid) {
+        }
+    }
+
+    private static void request(String scheme, String host, int port, String contextPath, String servletPath) {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", contextPath + servletPath + "/students");
+        request.setScheme(scheme);
+        request.setServerName(host);
+        request.setServerPort(port);
+        request.setContextPath(contextPath);
+        request.setServletPath(servletPath);
+        request.setPathInfo(servletPath.isEmpty() ? null : "/students");
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+    }
+
+    private static String location() {
+        return HttpResponse.location(StudentController.class, "getStudent", "123");
+    }
+
+    @After
+    public void resetRequest() {
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    @Test
+    public void createdRespondsWithLocationOfAction() {
+        request("http", "localhost", 8080, "", "");
+
+        ResponseEntity<Void> response = HttpResponse.created(StudentController.class, "getStudent", "a b");
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.CREATED);
+        assertThat(response.getHeaders().getFirst(HttpHeaders.LOCATION)).isEqualTo("http://localhost:8080/students/a%20b");
+        assertThat(response.getBody()).isNull();
+    }
+
+    @Test
+    public void locationFollowsHostPortAndPaths() {
+        request("http", "localhost", 8080, "", "");
+        assertThat(location()).isEqualTo("http://localhost:8080/students/123");
+
+        request("http", "example.com", 80, "", "");
+        assertThat(location()).isEqualTo("http://example.com/students/123");
+
+        request("https", "example.com", 443, "/school", "");
+        assertThat(location()).isEqualTo("https://example.com/school/students/123");
+
+        request("https", "example.com", 8443, "/school", "/api");
+        assertThat(location()).isEqualTo("https://example.com:8443/school/api/students/123");
+
+        // the cached base URL of the first request is not returned for the others
+        request("http", "localhost", 8080, "", "");
+        assertThat(location()).isEqualTo("http://localhost:8080/students/123");
+        request("http", "localhost", 8081, "", "");
+        assertThat(location()).isEqualTo("http://localhost:8081/students/123");
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void baseUrlsStayCorrectWhenTheCacheIsCleared() {
+        Map<String, String> baseUrls = (Map<String, String>) ReflectionTestUtils.getField(HttpResponse.class, "BASE_URLS");
+        int maximum = (Integer) ReflectionTestUtils.getField(HttpResponse.class, "MAXIMUM_BASE_URLS");
+
+        for (int i = 0; i < maximum * 3; i++) {
+            request("http", "host" + i + ".example.com", 8080, "/school", "");
+            assertThat(location()).isEqualTo("http://host" + i + ".example.com:8080/school/students/123");
+            assertThat(baseUrls.size()).isLessThanOrEqualTo(maximum);
+        }
+
+        // hosts whose base URLs were dropped are built again
+        request("http", "host0.example.com", 8080, "/school", "");
+        assertThat(location()).isEqualTo("http://host0.example.com:8080/school/students/123");
+        assertThat(baseUrls).containsValue("http://host0.example.com:8080/school");
+    }
+
+    @Test
+    public void notModifiedCarriesTagAndVary() {
+        ResponseEntity<Void> response = HttpResponse.notModified("\"1\"", HttpHeaders.ACCEPT);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.NOT_MODIFIED);
+        assertThat(response.getHeaders().getETag()).isEqualTo("\"1\"");
+        assertThat(response.getHeaders().getVary()).containsExactly(HttpHeaders.ACCEPT);
+        assertThat(HttpResponse.notModified("\"1\"").getHeaders().getVary()).isEmpty();
+        assertThat(HttpResponse.variantETag("W/\"1\"", "pb")).isEqualTo("W/\"1-pb\"");
+    }
+}
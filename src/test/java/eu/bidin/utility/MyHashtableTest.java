@@ -0,0 +1,359 @@
+package eu.bidin.utility;
+
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.StreamSupport;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class MyHashtableTest {
+
+    @Test
+    public void incrementalRehashKeepsElementsReachable() {
+        MyHashtable<Integer, Integer> table = new MyHashtable<>(1, 0.75, true);
+
+        // every put may start a resize or move a few slots, every element must stay reachable in between
+        for (int i = 0; i < 5000; i++) {
+            table.put(i, i);
+            assertThat(table.get(i / 2)).isEqualTo(i / 2);
+            assertThat(table.containsKey(i)).isTrue();
+        }
+
+        assertThat(table.size()).isEqualTo(5000);
+        assertThat(table.getResizeCount()).isPositive();
+        for (int i = 0; i < 5000; i++)
+            assertThat(table.get(i)).isEqualTo(i);
+    }
+
+    @Test
+    public void incrementalRehashRemovesFromBothTables() {
+        MyHashtable<Integer, Integer> table = new MyHashtable<>(1, 0.75, true);
+
+        for (int i = 0; i < 4096; i++)
+            table.put(i, i);
+        // removes right after the resize find most elements in the slots that were not yet moved
+        for (int i = 0; i < 4096; i += 2)
+            assertThat(table.remove(i)).isEqualTo(i);
+
+        assertThat(table.size()).isEqualTo(2048);
+        for (int i = 0; i < 4096; i++)
+            assertThat(table.get(i)).isEqualTo(i % 2 == 0 ? null : i);
+    }
+
+    @Test
+    public void incrementalRehashIteratesEveryElementOnce() {
+        MyHashtable<Integer, Integer> table = new MyHashtable<>(1, 0.75, true);
+        for (int i = 0; i < 3000; i++)
+            table.put(i, i);
+
+        Set<Integer> seen = new HashSet<>();
+        for (MyHashtable.TableEntry<Integer, Integer> entry : table)
+            assertThat(seen.add(entry.getKey())).isTrue();
+        assertThat(seen).hasSize(3000);
+    }
+
+    @Test
+    public void matchesHashMapInBothRehashingModes() {
+        for (boolean incremental : new boolean[]{false, true}) {
+            MyHashtable<Integer, Integer> table = new MyHashtable<>(2, 0.75, incremental);
+            Map<Integer, Integer> expected = new HashMap<>();
+            Random random = new Random(42);
+
+            for (int i = 0; i < 100000; i++) {
+                int key = random.nextInt(20000);
+                switch (random.nextInt(4)) {
+                    case 0:
+                        assertThat(table.remove(key)).isEqualTo(expected.remove(key));
+                        break;
+                    case 1:
+                        assertThat(table.putIfAbsent(key, i)).isEqualTo(expected.putIfAbsent(key, i));
+                        break;
+                    default:
+                        table.put(key, i);
+                        expected.put(key, i);
+                }
+                if (i % 1000 == 0)
+                    assertThat(table.size()).isEqualTo(expected.size());
+            }
+
+            assertThat(table.size()).isEqualTo(expected.size());
+            for (Map.Entry<Integer, Integer> entry : expected.entrySet())
+                assertThat(table.get(entry.getKey())).isEqualTo(entry.getValue());
+        }
+    }
+
+    @Test
+    public void ensureCapacityAvoidsLaterResizes() {
+        MyHashtable<Integer, Integer> table = new MyHashtable<>(1, 0.75, true);
+        table.ensureCapacity(10000);
+        long resizes = table.getResizeCount();
+
+        for (int i = 0; i < 10000; i++)
+            table.put(i, i);
+
+        assertThat(table.getResizeCount()).isEqualTo(resizes);
+        assertThat(table.getCapacity()).isGreaterThanOrEqualTo((int) (10000 / 0.75));
+    }
+
+    @Test
+    public void putAllIfAbsentKeepsPresentValues() {
+        MyHashtable<Integer, Integer> table = new MyHashtable<>(1, 0.75, true);
+        table.put(2, 20);
+        MyHashtable.TableEntry<Integer, Integer> present = new MyHashtable.TableEntry<>(2, 2, null);
+        MyHashtable.TableEntry<Integer, Integer> repeated = new MyHashtable.TableEntry<>(1, 10, null);
+
+        List<MyHashtable.TableEntry<Integer, Integer>> rejected = table.putAllIfAbsent(Arrays.asList(
+                new MyHashtable.TableEntry<>(1, 1, null), present, new MyHashtable.TableEntry<>(3, 3, null), repeated));
+
+        assertThat(rejected).containsExactly(present, repeated);
+        assertThat(table.size()).isEqualTo(3);
+        assertThat(table.get(1)).isEqualTo(1);
+        assertThat(table.get(2)).isEqualTo(20);
+        assertThat(table.get(3)).isEqualTo(3);
+    }
+
+    @Test
+    public void clearDuringRehash() {
+        MyHashtable<Integer, Integer> table = new MyHashtable<>(1, 0.75, true);
+        for (int i = 0; i < 1000; i++)
+            table.put(i, i);
+
+        table.clear();
+
+        assertThat(table.isEmpty()).isTrue();
+        assertThat(table.get(1)).isNull();
+        assertThat(table.iterator().hasNext()).isFalse();
+        table.put(1, 1);
+        assertThat(table.get(1)).isEqualTo(1);
+    }
+
+    @Test
+    public void scanReturnsStableElementsWhileTableGrows() {
+        for (boolean incremental : new boolean[]{false, true}) {
+            MyHashtable<Integer, Integer> table = new MyHashtable<>(1, 0.75, incremental);
+            for (int i = 0; i < 1000; i++)
+                table.put(i, i);
+            long resizes = table.getResizeCount();
+
+            // every step of the scan is followed by puts that resize the table several times in the course of the scan
+            Map<Integer, Integer> seen = new HashMap<>();
+            int added = 1000;
+            long cursor = 0;
+            do {
+                cursor = table.scan(cursor, 10, entry -> seen.merge(entry.getKey(), 1, Integer::sum));
+                for (int i = 0; i < 50; i++, added++)
+                    table.put(added, added);
+            } while (cursor != 0);
+
+            assertThat(table.getResizeCount() - resizes).isGreaterThanOrEqualTo(3);
+            for (int i = 0; i < 1000; i++)
+                assertThat(seen.get(i)).isEqualTo(1);
+        }
+    }
+
+    @Test
+    public void iteratorReturnsStableElementsOnceWhileTableGrows() {
+        MyHashtable<Integer, Integer> table = new MyHashtable<>(1, 0.75, true);
+        for (int i = 0; i < 1000; i++)
+            table.put(i, i);
+
+        Set<Integer> seen = new HashSet<>();
+        int added = 1000;
+        for (MyHashtable.TableEntry<Integer, Integer> entry : table) {
+            assertThat(seen.add(entry.getKey())).isTrue();
+            table.put(added, added);
+            added += 1;
+        }
+
+        for (int i = 0; i < 1000; i++)
+            assertThat(seen).contains(i);
+    }
+
+    @Test
+    public void splitPartsReturnStableElementsWhileTableGrows() {
+        MyHashtable<Integer, Integer> table = new MyHashtable<>(1, 0.75, true);
+        for (int i = 0; i < 1000; i++)
+            table.put(i, i);
+
+        Spliterator<MyHashtable.TableEntry<Integer, Integer>> first = table.spliterator();
+        assertThat(first.hasCharacteristics(Spliterator.SIZED)).isTrue();
+        assertThat(first.estimateSize()).isEqualTo(1000);
+        Spliterator<MyHashtable.TableEntry<Integer, Integer>> second = first.trySplit();
+        Spliterator<MyHashtable.TableEntry<Integer, Integer>> third = first.trySplit();
+        assertThat(second).isNotNull();
+        assertThat(third).isNotNull();
+
+        // the parts are ranges of cursors, which still cover the table once it has grown
+        for (int i = 1000; i < 20000; i++)
+            table.put(i, i);
+
+        Set<Integer> seen = new HashSet<>();
+        for (Spliterator<MyHashtable.TableEntry<Integer, Integer>> part : Arrays.asList(first, second, third))
+            part.forEachRemaining(entry -> assertThat(seen.add(entry.getKey())).isTrue());
+        assertThat(seen).hasSize(20000);
+
+        assertThat(StreamSupport.stream(table.spliterator(), true).mapToLong(MyHashtable.TableEntry::getValue).sum())
+                .isEqualTo(19999L * 20000 / 2);
+    }
+
+    @Test
+    public void maximumSizeEvictsElementsThatWereNotReadRecently() {
+        MyHashtable<Integer, Integer> table = new MyHashtable<>(16, 0.75, true, new EvictionPolicy<>(100, 0, null, null));
+        List<Integer> evicted = new ArrayList<>();
+        table.setEvictionListener((key, value) -> evicted.add(key));
+
+        // the hot element is read before every write, so the hand always finds its reference bit set
+        table.put(-1, -1);
+        for (int i = 0; i < 1000; i++) {
+            assertThat(table.get(-1)).isEqualTo(-1);
+            table.put(i, i);
+            assertThat(table.size()).isLessThanOrEqualTo(100);
+        }
+
+        assertThat(table.size()).isEqualTo(100);
+        assertThat(table.getEvictionCount()).isEqualTo(901);
+        assertThat(evicted).hasSize(901).doesNotContain(-1).doesNotHaveDuplicates();
+        assertThat(table.get(999)).isEqualTo(999);
+        for (Integer key : evicted)
+            assertThat(table.containsKey(key)).isFalse();
+    }
+
+    @Test
+    public void maximumWeightCountsReplacedValues() {
+        MyHashtable<Integer, String> table = new MyHashtable<>(16, 0.75, false, new EvictionPolicy<>(0, 100, String::length, null));
+
+        table.put(1, "aaaaaaaaaa");
+        table.put(2, "bbbbbbbbbb");
+        assertThat(table.getWeight()).isEqualTo(20);
+        table.put(1, "a");
+        assertThat(table.getWeight()).isEqualTo(11);
+        table.remove(2);
+        assertThat(table.getWeight()).isEqualTo(1);
+
+        for (int i = 10; i < 100; i++) {
+            table.put(i, "cccccccccc");
+            assertThat(table.getWeight()).isLessThanOrEqualTo(100);
+        }
+        assertThat(table.getEvictionCount()).isPositive();
+        // an element heavier than the limit is evicted with all the others
+        table.put(0, new String(new char[101]));
+        assertThat(table.getWeight()).isLessThanOrEqualTo(100);
+    }
+
+    @Test
+    public void expiredElementsAreNeverReturned() throws Exception {
+        MyHashtable<Integer, Integer> table = new MyHashtable<>(16, 0.75, true,
+                new EvictionPolicy<>(0, 0, null, Duration.ofMillis(100)));
+        List<Integer> expired = new ArrayList<>();
+        table.setEvictionListener((key, value) -> expired.add(key));
+        for (int i = 0; i < 100; i++)
+            table.put(i, i);
+
+        Thread.sleep(150);
+        // a write replaces the expired element, and starts the time to live of the key over
+        table.put(0, 0);
+
+        assertThat(table.get(1)).isNull();
+        assertThat(table.containsKey(2)).isFalse();
+        assertThat(table.get(0)).isEqualTo(0);
+        List<Integer> scanned = new ArrayList<>();
+        for (MyHashtable.TableEntry<Integer, Integer> entry : table)
+            scanned.add(entry.getKey());
+        assertThat(scanned).containsExactly(0);
+
+        long cursor = 0;
+        do {
+            cursor = table.evictExpired(cursor, 10);
+        } while (cursor != 0);
+        assertThat(table.size()).isEqualTo(1);
+        assertThat(table.getExpirationCount()).isEqualTo(100);
+        assertThat(expired).hasSize(100).doesNotHaveDuplicates();
+    }
+
+    /**
+     * Counts the comparisons of looking up every one of the keys.
+     */
+    private static long lookups(Table<Object, Integer> table, List<CollidingKey> keys, AtomicLong comparisons) {
+        comparisons.set(0);
+        for (int i = 0; i < keys.size(); i++)
+            assertThat(table.get(keys.get(i))).isEqualTo(i);
+        return comparisons.get();
+    }
+
+    @Test
+    public void collidingKeysAreKeptInTree() {
+        for (boolean incremental : new boolean[]{false, true}) {
+            MyHashtable<Object, Integer> table = new MyHashtable<>(4, 0.75, incremental);
+            AtomicLong comparisons = new AtomicLong();
+            List<CollidingKey> keys = new ArrayList<>();
+            // other keys in between resize the table, which moves the tree of the colliding keys
+            for (int i = 0; i < 1000; i++) {
+                keys.add(new CollidingKey(i, comparisons));
+                table.put(keys.get(i), i);
+                table.put(2 * i + 1, -1);
+            }
+
+            assertThat(table.getLongestChain()).isEqualTo(1000);
+            assertThat(table.getResizeCount()).isPositive();
+            // a chain would compare each key with half of the others on average
+            assertThat(lookups(table, keys, comparisons)).isLessThanOrEqualTo(2 * keys.size());
+            assertThat(table.get(new CollidingKey(1000, comparisons))).isNull();
+        }
+    }
+
+    @Test
+    public void keyOfAnotherClassTurnsTreeIntoChain() {
+        MyHashtable<Object, Integer> table = new MyHashtable<>();
+        AtomicLong comparisons = new AtomicLong();
+        List<CollidingKey> keys = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            keys.add(new CollidingKey(i, comparisons));
+            table.put(keys.get(i), i);
+        }
+        assertThat(lookups(table, keys, comparisons)).isLessThanOrEqualTo(2 * keys.size());
+
+        CollidingKey.Plain plain = new CollidingKey.Plain();
+        table.put(plain, -1);
+        assertThat(table.get(plain)).isEqualTo(-1);
+        assertThat(lookups(table, keys, comparisons)).isGreaterThan(10 * keys.size());
+
+        // once the other key is gone, the next addition builds the tree again
+        assertThat(table.remove(plain)).isEqualTo(-1);
+        keys.add(new CollidingKey(200, comparisons));
+        table.put(keys.get(200), 200);
+        assertThat(lookups(table, keys, comparisons)).isLessThanOrEqualTo(2 * keys.size());
+    }
+
+    @Test
+    public void treeShrinksBackIntoChain() {
+        MyHashtable<Object, Integer> table = new MyHashtable<>();
+        AtomicLong comparisons = new AtomicLong();
+        List<CollidingKey> keys = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            keys.add(new CollidingKey(i, comparisons));
+            table.put(keys.get(i), i);
+        }
+
+        for (int i = 19; i >= 3; i--) {
+            assertThat(table.remove(keys.get(i))).isEqualTo(i);
+            assertThat(table.size()).isEqualTo(i);
+            assertThat(lookups(table, keys.subList(0, i), comparisons)).isPositive();
+        }
+        assertThat(table.getLongestChain()).isEqualTo(3);
+        Set<Object> iterated = new HashSet<>();
+        for (MyHashtable.TableEntry<Object, Integer> entry : table)
+            iterated.add(entry.getKey());
+        assertThat(iterated).containsExactlyInAnyOrderElementsOf(keys.subList(0, 3));
+    }
+}
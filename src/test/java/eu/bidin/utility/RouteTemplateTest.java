@@ -0,0 +1,91 @@
+package eu.bidin.utility;
+
+import org.junit.Test;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class RouteTemplateTest {
+
+    @RequestMapping("courses/")
+    static class CourseController {
+
+        @GetMapping("/{course}/students/{uuid:[0-9a-f-]{36}}")
+        public void getStudent(@PathVariable String course, @PathVariable String uuid) {
+        }
+
+        @PostMapping
+        public void createCourse() {
+        }
+
+        @DeleteMapping("{course}")
+        public void deleteCourse(@PathVariable String course) {
+        }
+
+        @DeleteMapping("{course}/{uuid}")
+        public void deleteCourse(@PathVariable String course, @PathVariable String uuid) {
+        }
+
+        public void unmapped() {
+        }
+    }
+
+    static class RootController {
+
+        @GetMapping("status")
+        public void status() {
+        }
+    }
+
+    @Test
+    public void splitsLiteralsAndVariables() {
+        RouteTemplate template = new RouteTemplate("/courses/{course}/students/{ uuid : [0-9a-f-]{36} }");
+
+        assertThat(template.getVariables()).containsExactly("course", "uuid");
+        assertThat(template.toString()).isEqualTo("/courses/{course}/students/{uuid}");
+        assertThat(template.expand("http://localhost:8080", "java", "123")).isEqualTo("http://localhost:8080/courses/java/students/123");
+        assertThat(new RouteTemplate("/students").expand("")).isEqualTo("/students");
+    }
+
+    @Test
+    public void encodesValuesAsPathSegments() {
+        RouteTemplate template = new RouteTemplate("/courses/{course}");
+
+        assertThat(template.expand("", "a/b c?")).isEqualTo("/courses/a%2Fb%20c%3F");
+        assertThat(template.expand("", "Čakavski")).isEqualTo("/courses/%C4%8Cakavski");
+        assertThat(template.expand("", (Object) null)).isEqualTo("/courses/null");
+    }
+
+    @Test
+    public void rejectsMalformedTemplatesAndWrongValueCounts() {
+        assertThatThrownBy(() -> new RouteTemplate("/courses/{course")).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new RouteTemplate("/courses/{course:\\d{2}")).isInstanceOf(IllegalArgumentException.class);
+
+        RouteTemplate template = new RouteTemplate("/courses/{course}");
+        assertThatThrownBy(() -> template.expand("")).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> template.expand("", "a", "b")).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void resolvesActionsWithTheMappingOfTheirController() {
+        assertThat(RouteTemplate.of(CourseController.class, "getStudent").toString()).isEqualTo("/courses/{course}/students/{uuid}");
+        assertThat(RouteTemplate.of(CourseController.class, "createCourse").toString()).isEqualTo("/courses");
+        assertThat(RouteTemplate.of(RootController.class, "status").toString()).isEqualTo("/status");
+        assertThat(RouteTemplate.of(CourseController.class, "getStudent")).isSameAs(RouteTemplate.of(CourseController.class, "getStudent"));
+    }
+
+    @Test
+    public void rejectsUnmappedAndOverloadedActions() {
+        assertThatThrownBy(() -> RouteTemplate.of(CourseController.class, "unmapped")).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> RouteTemplate.of(CourseController.class, "missing")).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> RouteTemplate.of(CourseController.class, "deleteCourse")).isInstanceOf(IllegalArgumentException.class);
+
+        RouteTemplate.register(CourseController.class);
+        assertThat(RouteTemplate.of(CourseController.class, "createCourse").toString()).isEqualTo("/courses");
+    }
+}
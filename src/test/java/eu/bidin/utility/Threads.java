@@ -0,0 +1,50 @@
+package eu.bidin.utility;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs a task on several threads at once in concurrency tests.
+ */
+public final class Threads {
+
+    public interface Task {
+        void run(int thread) throws Exception;
+    }
+
+    private Threads() {
+    }
+
+    /**
+     * Runs the task on specified number of threads that start together, waits for all of them and rethrows the
+     * first failure.
+     *
+     * @param threads number of threads, each gets its index as the argument of the task
+     * @param task    task to run
+     */
+    public static void run(int threads, Task task) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                int thread = i;
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    task.run(thread);
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures)
+                future.get(60, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package eu.bidin.utility;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class Utf8InternerTest {
+
+    @Test
+    public void equalStringsShareArray() {
+        Utf8Interner interner = new Utf8Interner(16);
+
+        byte[] first = interner.intern(new String("Ana Anić"));
+        byte[] second = interner.intern(new String("Ana Anić"));
+
+        assertThat(second).isSameAs(first);
+        assertThat(first).isEqualTo("Ana Anić".getBytes(StandardCharsets.UTF_8));
+        assertThat(interner.intern((String) null)).isNull();
+    }
+
+    @Test
+    public void internedArrayIsDecodedOnce() {
+        Utf8Interner interner = new Utf8Interner(16);
+        byte[] interned = interner.intern("Čedo".getBytes(StandardCharsets.UTF_8));
+
+        String decoded = interner.decode(interned);
+
+        assertThat(decoded).isEqualTo("Čedo");
+        assertThat(interner.decode(interned)).isSameAs(decoded);
+        assertThat(interner.decode(interner.intern("Čedo".getBytes(StandardCharsets.UTF_8)))).isSameAs(decoded);
+    }
+
+    @Test
+    public void internedStringIsReturnedByDecode() {
+        Utf8Interner interner = new Utf8Interner(16);
+        String name = new String("Iva");
+
+        assertThat(interner.decode(interner.intern(name))).isSameAs(name);
+    }
+
+    @Test
+    public void otherArraysAreDecodedIntoNewStrings() {
+        Utf8Interner interner = new Utf8Interner(1);
+        byte[] replaced = interner.intern("Ana");
+        byte[] current = interner.intern("Iva");
+        byte[] copy = "Iva".getBytes(StandardCharsets.UTF_8);
+
+        assertThat(interner.decode(replaced)).isEqualTo("Ana");
+        assertThat(interner.decode(copy)).isEqualTo("Iva").isNotSameAs(interner.decode(copy));
+        assertThat(interner.decode(current)).isSameAs(interner.decode(current));
+        assertThat(interner.decode(null)).isNull();
+    }
+}
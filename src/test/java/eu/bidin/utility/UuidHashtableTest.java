@@ -0,0 +1,156 @@
+package eu.bidin.utility;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class UuidHashtableTest {
+
+    private static List<UUID> keys(int count) {
+        List<UUID> keys = new ArrayList<>(count);
+        for (int i = 0; i < count; i++)
+            keys.add(new UUID(i * 0x9E3779B97F4A7C15L, i));
+        return keys;
+    }
+
+    @Test
+    public void putGetRemove() {
+        UuidHashtable<String> table = new UuidHashtable<>(4, 0.75, 2);
+        List<UUID> keys = keys(5000);
+
+        for (UUID key : keys)
+            table.put(key, key.toString());
+        table.put(keys.get(3), null);
+
+        assertThat(table.size()).isEqualTo(5000);
+        assertThat(table.get(keys.get(3))).isNull();
+        assertThat(table.containsKey(keys.get(3))).isTrue();
+        assertThat(table.get(keys.get(4))).isEqualTo(keys.get(4).toString());
+        assertThat(table.get(UUID.randomUUID())).isNull();
+
+        // removals shift the following elements back, the remaining ones must stay reachable
+        for (int i = 0; i < keys.size(); i += 3)
+            table.remove(keys.get(i));
+        for (int i = 0; i < keys.size(); i++)
+            assertThat(table.containsKey(keys.get(i))).isEqualTo(i % 3 != 0);
+
+        table.clear();
+        assertThat(table.isEmpty()).isTrue();
+        assertThatThrownBy(() -> table.put(null, "v")).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void scanAndIteratorReturnEveryElementOnce() {
+        UuidHashtable<Integer> table = new UuidHashtable<>(1, 0.75, 4);
+        List<UUID> keys = keys(3000);
+        for (int i = 0; i < keys.size(); i++)
+            table.put(keys.get(i), i);
+
+        Set<UUID> scanned = new HashSet<>();
+        long cursor = 0;
+        do {
+            cursor = table.scan(cursor, 7, entry -> assertThat(scanned.add(entry.getKey())).isTrue());
+        } while (cursor != 0);
+        assertThat(scanned).containsExactlyInAnyOrderElementsOf(keys);
+
+        Set<UUID> iterated = new HashSet<>();
+        for (Iterator<MyHashtable.TableEntry<UUID, Integer>> it = table.iterator(); it.hasNext(); ) {
+            UUID key = it.next().getKey();
+            assertThat(iterated.add(key)).isTrue();
+            if (key.getLeastSignificantBits() % 2 == 0)
+                it.remove();
+        }
+        assertThat(iterated).hasSize(3000);
+        assertThat(table.size()).isEqualTo(1500);
+
+        assertThat(StreamSupport.stream(table.spliterator(), true).count()).isEqualTo(1500);
+    }
+
+    @Test
+    public void scanDuringResizeReturnsStableElements() throws Exception {
+        UuidHashtable<Integer> table = new UuidHashtable<>(1, 0.75, 1);
+        List<UUID> stable = keys(2000);
+        for (UUID key : stable)
+            table.put(key, 0);
+
+        AtomicBoolean done = new AtomicBoolean();
+        Threads.run(4, thread -> {
+            if (thread == 0) {
+                // grows the single segment many times while the others scan it
+                for (int i = 0; i < 200000; i++)
+                    table.put(new UUID(-1 - i, i), i);
+                done.set(true);
+            } else {
+                do {
+                    Set<UUID> seen = new HashSet<>();
+                    long cursor = 0;
+                    do {
+                        cursor = table.scan(cursor, 50, entry -> seen.add(entry.getKey()));
+                    } while (cursor != 0);
+                    assertThat(seen.containsAll(stable)).isTrue();
+                } while (!done.get());
+            }
+        });
+    }
+
+    @Test
+    public void writersProgressWhileReadersScanContinuously() throws Exception {
+        UuidHashtable<Integer> table = new UuidHashtable<>(1 << 18, 0.75, 1);
+        List<UUID> keys = keys(150000);
+        for (int i = 0; i < keys.size(); i++)
+            table.put(keys.get(i), i);
+
+        AtomicBoolean done = new AtomicBoolean();
+        long[] writeTime = new long[1];
+        Threads.run(4, thread -> {
+            if (thread == 0) {
+                long start = System.nanoTime();
+                for (int i = 0; i < 20000; i++)
+                    table.put(keys.get(i), -i);
+                writeTime[0] = System.nanoTime() - start;
+                done.set(true);
+            } else {
+                // back to back full scans, sizes and iterations of the only segment
+                while (!done.get()) {
+                    table.size();
+                    long cursor = 0;
+                    do {
+                        cursor = table.scan(cursor, Integer.MAX_VALUE, entry -> {
+                        });
+                    } while (cursor != 0 && !done.get());
+                    table.iterator().hasNext();
+                }
+            }
+        });
+
+        // readers that held the read lock for whole segments kept the writer waiting for seconds
+        assertThat(writeTime[0]).isLessThan(TimeUnit.SECONDS.toNanos(2));
+        assertThat(table.get(keys.get(1))).isEqualTo(-1);
+        assertThat(table.get(keys.get(30000))).isEqualTo(30000);
+    }
+
+    @Test
+    public void streamsAggregateEveryElement() {
+        UuidHashtable<Integer> table = new UuidHashtable<>();
+        List<UUID> keys = keys(10000);
+        for (int i = 0; i < keys.size(); i++)
+            table.put(keys.get(i), i);
+
+        Set<UUID> parallel = StreamSupport.stream(table.spliterator(), true)
+                .map(MyHashtable.TableEntry::getKey)
+                .collect(Collectors.toSet());
+        assertThat(parallel).hasSize(10000);
+    }
+}
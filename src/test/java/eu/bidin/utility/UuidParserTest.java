@@ -0,0 +1,69 @@
+package eu.bidin.utility;
+
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class UuidParserTest {
+
+    private static final String CANONICAL = "123e4567-e89b-12d3-a456-426614174000";
+
+    @Test
+    public void parsesWhatToStringReturns() {
+        Random random = new Random(42);
+        for (int i = 0; i < 10000; i++) {
+            UUID uuid = new UUID(random.nextLong(), random.nextLong());
+            assertThat(UuidParser.Parse(uuid.toString())).isEqualTo(uuid);
+        }
+        UUID extremes = new UUID(-1, -1);
+        assertThat(UuidParser.Parse(extremes.toString())).isEqualTo(extremes);
+        assertThat(UuidParser.Parse(new UUID(0, 0).toString())).isEqualTo(new UUID(0, 0));
+    }
+
+    @Test
+    public void acceptsDigitsInEitherCase() {
+        UUID uuid = UUID.fromString(CANONICAL);
+
+        assertThat(UuidParser.Parse(CANONICAL.toUpperCase())).isEqualTo(uuid);
+        assertThat(UuidParser.Parse("123E4567-e89B-12D3-a456-426614174000")).isEqualTo(uuid);
+    }
+
+    @Test
+    public void rejectsWrongLength() {
+        assertThat(UuidParser.Parse("")).isNull();
+        assertThat(UuidParser.Parse(CANONICAL.substring(1))).isNull();
+        assertThat(UuidParser.Parse(CANONICAL + "0")).isNull();
+        // UUID.fromString accepts groups of other lengths, the canonical form does not
+        assertThat(UuidParser.Parse("1-2-3-4-5")).isNull();
+        assertThat(UuidParser.Parse("123e4567e89b12d3a456426614174000")).isNull();
+    }
+
+    @Test
+    public void rejectsMisplacedHyphens() {
+        assertThat(UuidParser.Parse("123e456-7e89b-12d3-a456-426614174000")).isNull();
+        assertThat(UuidParser.Parse("123e4567-e89b12d3--a456-426614174000")).isNull();
+        assertThat(UuidParser.Parse("123e4567-e89b-12d3-a4564-26614174000")).isNull();
+        assertThat(UuidParser.Parse("123e4567_e89b_12d3_a456_426614174000")).isNull();
+        assertThat(UuidParser.Parse("-23e4567-e89b-12d3-a456-426614174000")).isNull();
+    }
+
+    @Test
+    public void rejectsCharactersThatAreNotHexadecimalDigits() {
+        assertThat(UuidParser.Parse("123g4567-e89b-12d3-a456-426614174000")).isNull();
+        assertThat(UuidParser.Parse("123e4567-e89b-12d3-a456-42661417400 ")).isNull();
+        assertThat(UuidParser.Parse("+23e4567-e89b-12d3-a456-426614174000")).isNull();
+        // digits of other scripts and full-width letters are not ASCII
+        assertThat(UuidParser.Parse("١٢٣e4567-e89b-12d3-a456-426614174000")).isNull();
+        assertThat(UuidParser.Parse("123e4567-e89b-12d3-a456-４２６614174000")).isNull();
+        assertThat(UuidParser.Parse("123e4567-e89b-12d3-a456-42661417400ａ")).isNull();
+        assertThat(UuidParser.Parse("123e4567-e89b-12d3-a456-42661417400\u0000")).isNull();
+    }
+
+    @Test
+    public void rejectsNull() {
+        assertThat(UuidParser.Parse(null)).isNull();
+    }
+}